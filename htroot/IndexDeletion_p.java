@@ -175,7 +175,7 @@ public class IndexDeletion_p {
                     prop.put("urldelete-active", count == 0 ? 2 : 1);
                 } else {
                     try {
-                        defaultConnector.deleteByQuery(regexquery);
+                        sb.index.fulltext().deleteByQuery(regexquery);
                         defaultConnector.commit(false);
                         sb.tables.recordAPICall(post, "IndexDeletion_p.html", WorkTables.TABLE_API_TYPE_DELETION, "deletion, regex match = " + urldelete);
                     } catch (final IOException e) {
@@ -204,7 +204,7 @@ public class IndexDeletion_p {
                 prop.put("timedelete-active", count == 0 ? 2 : 1);
             } else {
                 try {
-                    defaultConnector.deleteByQuery(collection1Query);
+                    sb.index.fulltext().deleteByQuery(collection1Query);
                     defaultConnector.commit(false);
                     if (webgraphConnector != null) webgraphConnector.deleteByQuery(webgraphQuery);
                     sb.tables.recordAPICall(post, "IndexDeletion_p.html", WorkTables.TABLE_API_TYPE_DELETION, "deletion, docs older than " + timedelete_number + " " + timedelete_unit);
@@ -230,7 +230,7 @@ public class IndexDeletion_p {
                 prop.put("collectiondelete-active", count == 0 ? 2 : 1);
             } else {
                 try {
-                    defaultConnector.deleteByQuery(query);
+                    sb.index.fulltext().deleteByQuery(query);
                     defaultConnector.commit(false);
                     sb.tables.recordAPICall(post, "IndexDeletion_p.html", WorkTables.TABLE_API_TYPE_DELETION, "deletion, collection " + collectiondelete);
                 } catch (final IOException e) {
@@ -256,7 +256,7 @@ public class IndexDeletion_p {
             } else {
                 try {
                     ConcurrentLog.info("IndexDeletion", "delete by query \"" + querydelete + "\", size before deletion = " + connector.getSize());
-                    connector.deleteByQuery(querydelete);
+                    if (connector == defaultConnector) sb.index.fulltext().deleteByQuery(querydelete); else connector.deleteByQuery(querydelete);
                     connector.commit(false);
                     ConcurrentLog.info("IndexDeletion", "delete by query \"" + querydelete + "\", size after commit = " + connector.getSize());
                     sb.tables.recordAPICall(post, "IndexDeletion_p.html", WorkTables.TABLE_API_TYPE_DELETION, "deletion, solr query, q = " + querydelete);
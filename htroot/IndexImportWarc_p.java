@@ -46,6 +46,7 @@ public class IndexImportWarc_p {
             prop.put("import_runningMinutes", (WarcImporter.job.runningTime() / 60) % 60);
             prop.put("import_remainingHours", (WarcImporter.job.remainingTime() / 60) / 60);
             prop.put("import_remainingMinutes", (WarcImporter.job.remainingTime() / 60) % 60);
+            prop.put("import_status", WarcImporter.job.status());
             if (post != null && post.containsKey("abort")) {
                 WarcImporter.job.quit();
             }
@@ -94,6 +95,7 @@ public class IndexImportWarc_p {
                     prop.put("import_runningMinutes", 0);
                     prop.put("import_remainingHours", 0);
                     prop.put("import_remainingMinutes", 0);
+                    prop.put("import_status", "");
                 }
             }
         }
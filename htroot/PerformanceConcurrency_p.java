@@ -61,7 +61,8 @@ public class PerformanceConcurrency_p {
             prop.putHTML("table_" + c + "_longdescr", p.getDescription());
             prop.put("table_" + c + "_queuesize", p.getQueueSize());
             prop.put("table_" + c + "_queuesizemax", p.getMaxQueueSize());
-            prop.put("table_" + c + "_concurrency", p.getMaxConcurrency());
+            prop.put("table_" + c + "_concurrency", p.getConcurrency());
+            prop.put("table_" + c + "_concurrencymax", p.getMaxConcurrency());
             prop.put("table_" + c + "_executors", p.getExecutors());
             prop.putHTML("table_" + c + "_childs", p.getChilds());
 
@@ -72,6 +73,9 @@ public class PerformanceConcurrency_p {
             prop.putNum("table_" + c + "_blockreadpercent", 100 * blocktime / blocktime_total);
             prop.putNum("table_" + c + "_exectime", exectime / cycles);
             prop.putNum("table_" + c + "_execpercent", 100 * exectime / exectime_total);
+            prop.putNum("table_" + c + "_execp50", p.getExecTimePercentile(0.5d));
+            prop.putNum("table_" + c + "_execp90", p.getExecTimePercentile(0.9d));
+            prop.putNum("table_" + c + "_execp99", p.getExecTimePercentile(0.99d));
             prop.putNum("table_" + c + "_blockwritetime", passontime / cycles);
             prop.putNum("table_" + c + "_blockwritepercent", 100 * passontime / passontime_total);
             prop.putNum("table_" + c + "_totalcycles", p.getExecCount());
@@ -54,6 +54,10 @@ public class latency_p {
             prop.put("domains_" + c + "_average", host.average());
             prop.put("domains_" + c + "_robots", host.robotsDelay());
             prop.put("domains_" + c + "_flux", host.flux(agent.minimumDelta));
+            prop.put("domains_" + c + "_errors", host.errors());
+            prop.put("domains_" + c + "_errorrate", Float.toString(host.errorRate()));
+            prop.put("domains_" + c + "_delay", host.adaptiveDelay());
+            prop.put("domains_" + c + "_throughput", Float.toString(host.throughput()));
             c++;
         }
         prop.put("domains", c);
@@ -26,6 +26,7 @@
 // Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
 
 import java.io.IOException;
+import java.util.Locale;
 
 import net.yacy.cora.protocol.RequestHeader;
 import net.yacy.cora.util.Memory;
@@ -33,6 +34,7 @@ import net.yacy.crawler.CrawlSwitchboard;
 import net.yacy.crawler.data.CrawlProfile;
 import net.yacy.kelondro.index.RowHandleSet;
 import net.yacy.kelondro.io.ByteCount;
+import net.yacy.kelondro.rwi.IODispatcher;
 import net.yacy.kelondro.util.MemoryControl;
 import net.yacy.kelondro.workflow.WorkflowProcessor;
 import net.yacy.search.Switchboard;
@@ -92,9 +94,28 @@ public class status_p {
         prop.putNum("rwipublictextSize", segment.RWICount());
         prop.putNum("rwipublictextSegmentCount", segment.RWISegmentCount());
 
+        // rwi dump and merge jobs
+        final IODispatcher merger = segment.merger();
+        prop.putNum("rwiDumpQueue", merger == null ? 0 : merger.dumpQueueSize());
+        prop.putNum("rwiMergeQueue", merger == null ? 0 : merger.mergeQueueSize());
+        prop.putNum("rwiMergeActive", merger == null ? 0 : merger.activeMerges());
+        prop.putNum("rwiMergeCount", merger == null ? 0 : merger.mergeCount());
+        prop.putNum("rwiMergeBytesPerSecond", merger == null ? 0 : merger.mergeBytesPerSecond());
+        prop.put("rwiWriteAmplification", merger == null ? "0.00" : String.format(Locale.ROOT, "%.2f", merger.writeAmplification()));
+
         // loader queue
         prop.putNum("loaderSize", sb.crawlQueues.activeWorkerEntries().size());
         prop.putNum("loaderMax", sb.getConfigLong(SwitchboardConstants.CRAWLER_THREADS_ACTIVE_MAX, 10));
+        prop.putNum("loaderFlights", sb.loader.flightCount());
+        prop.putNum("loaderCoalesced", sb.loader.coalescedCount());
+        prop.putNum("loaderCoalescedFails", sb.loader.coalescedFailCount());
+        prop.putNum("loaderCoalescedTimeouts", sb.loader.coalescedTimeoutCount());
+
+        // asynchronous writes to the solr cores
+        prop.putNum("solrwriteCollectionQueue", fulltext.collectionWriter().size());
+        prop.putNum("solrwriteCollectionFailed", fulltext.collectionWriter().failed());
+        prop.putNum("solrwriteWebgraphQueue", fulltext.webgraphWriter().size());
+        prop.putNum("solrwriteWebgraphFailed", fulltext.webgraphWriter().failed());
 
         //local crawl queue
         prop.putNum("localCrawlSize", sb.getThread(SwitchboardConstants.CRAWLJOB_LOCAL_CRAWL).getJobCount());
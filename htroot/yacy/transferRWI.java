@@ -28,15 +28,19 @@
 
 
 import java.io.IOException;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.document.encoding.UTF8;
 import net.yacy.cora.document.feed.RSSMessage;
 import net.yacy.cora.federate.yacy.Distribution;
+import net.yacy.cora.order.Base64Order;
 import net.yacy.cora.protocol.HeaderFramework;
 import net.yacy.cora.protocol.RequestHeader;
 import net.yacy.cora.storage.HandleSet;
@@ -44,13 +48,16 @@ import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.Memory;
 import net.yacy.cora.util.SpaceExceededException;
 import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.data.word.WordReference;
 import net.yacy.kelondro.data.word.WordReferenceRow;
 import net.yacy.kelondro.index.RowHandleSet;
+import net.yacy.kelondro.rwi.ReferenceContainer;
 import net.yacy.kelondro.util.FileUtils;
 import net.yacy.kelondro.util.MemoryControl;
 import net.yacy.peers.EventChannel;
 import net.yacy.peers.Network;
 import net.yacy.peers.Protocol;
+import net.yacy.peers.RWIBinaryFormat;
 import net.yacy.peers.Seed;
 import net.yacy.repository.Blacklist.BlacklistType;
 import net.yacy.search.Switchboard;
@@ -96,7 +103,7 @@ public final class transferRWI {
             prop.put("result", result);
             return prop;
         }
-        if (!post.containsKey("indexes")) {
+        if (!post.containsKey("indexes") && !post.containsKey(RWIBinaryFormat.PART_NAME + "$file")) {
             result = "missing indexes";
             prop.put("result", result);
             return prop;
@@ -116,6 +123,7 @@ public final class transferRWI {
         final int wordc       = post.getInt("wordc", 0);                  // number of different words
         final int entryc      = post.getInt("entryc", 0);                 // number of entries in indexes
         byte[] indexes        = post.get("indexes", "").getBytes();       // the indexes, as list of word entries
+        final String binaryIndexes = post.get(RWIBinaryFormat.PART_NAME + "$file"); // the indexes in the RWIBinaryFormat, base64-encoded by the http server
         boolean granted       = sb.getConfigBool(SwitchboardConstants.INDEX_RECEIVE_ALLOW, false);
         final boolean blockBlacklist = sb.getConfigBool(SwitchboardConstants.INDEX_RECEIVE_BLOCK_BLACKLIST, false);
         final long cachelimit = sb.getConfigLong(SwitchboardConstants.WORDCACHE_MAX_COUNT, 100000);
@@ -167,42 +175,67 @@ public final class transferRWI {
         } else {
             // we want and can receive indexes
             // log value status (currently added to find outOfMemory error
-            if (sb.getLog().isFine()) sb.getLog().fine("Processing " + indexes.length + " bytes / " + wordc + " words / " + entryc + " entries from " + otherPeerName);
+            if (sb.getLog().isFine()) sb.getLog().fine("Processing " + (binaryIndexes == null ? indexes.length : binaryIndexes.length()) + " bytes / " + wordc + " words / " + entryc + " entries from " + otherPeerName);
             final long startProcess = System.currentTimeMillis();
 
             // decode request
-            //System.out.println("STRINGS " + UTF8.String(indexes));
-            final Iterator<String> it = FileUtils.strings(indexes);
+            int blocked = 0;
+            int count = 0;
+            final List<Map.Entry<String, WordReference>> entries = new ArrayList<Map.Entry<String, WordReference>>(Math.min(entryc, 1000));
+            if (binaryIndexes != null) {
+                // the rows of the exported collections are used as they are
+                try {
+                    decode: for (final ReferenceContainer<WordReference> container: RWIBinaryFormat.decode(Base64Order.standardCoder.decode(binaryIndexes), 1000)) {
+                        final String wordHash = ASCII.String(container.getTermHash());
+                        final Iterator<WordReference> i = container.entries();
+                        while (i.hasNext()) {
+                            count++;
+                            if (count > 1000) break decode; // protection against flooding
+                            entries.add(new AbstractMap.SimpleImmutableEntry<String, WordReference>(wordHash, i.next()));
+                        }
+                    }
+                } catch (final IOException e) {
+                    sb.getLog().info("Rejecting RWIs from peer " + otherPeerName + ", broken binary transfer: " + e.getMessage());
+                    blocked = entryc;
+                    entries.clear();
+                }
+            } else {
+                //System.out.println("STRINGS " + UTF8.String(indexes));
+                final Iterator<String> it = FileUtils.strings(indexes);
+
+                // free memory
+                indexes = null;
+
+                // now parse the Strings in the value-vector
+                String estring;
+                int p;
+                while (it.hasNext()) {
+                    estring = it.next();
+                    count++;
+                    if (count > 1000) break; // protection against flooding
 
-            // free memory
-            indexes = null;
+                    // check if RWI entry is well-formed
+                    p = estring.indexOf('{',0);
+                    if (p < 0 || estring.indexOf("x=",0) < 0 || !(estring.indexOf("[B@",0) < 0)) {
+                        blocked++;
+                        continue;
+                    }
+                    entries.add(new AbstractMap.SimpleImmutableEntry<String, WordReference>(estring.substring(0, p), new WordReferenceRow(estring.substring(p))));
+                }
+            }
 
-            // now parse the Strings in the value-vector and write index entries
-            String estring;
-            int p;
+            // write index entries
             String wordHash;
             byte[] urlHash;
-            WordReferenceRow iEntry;
+            WordReference iEntry;
             final HandleSet unknownURL = new RowHandleSet(Word.commonHashLength, Word.commonHashOrder, 0);
             final ArrayList<String> wordhashes = new ArrayList<String>();
             int received = 0;
-            int blocked = 0;
-            int count = 0;
             Set<String> testids = new HashSet<String>();
-            while (it.hasNext()) {
-                estring = it.next();
-                count++;
-                if (count > 1000) break; // protection against flooding
-
-                // check if RWI entry is well-formed
-                p = estring.indexOf('{',0);
-                if (p < 0 || estring.indexOf("x=",0) < 0 || !(estring.indexOf("[B@",0) < 0)) {
-                    blocked++;
-                    continue;
-                }
-                wordHash = estring.substring(0, p);
+            for (final Map.Entry<String, WordReference> entry: entries) {
+                wordHash = entry.getKey();
                 wordhashes.add(wordHash);
-                iEntry = new WordReferenceRow(estring.substring(p));
+                iEntry = entry.getValue();
                 urlHash = iEntry.urlhash();
 
                 // block blacklisted entries
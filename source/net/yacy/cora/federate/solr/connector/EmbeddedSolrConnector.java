@@ -26,6 +26,7 @@ import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -188,6 +189,21 @@ public class EmbeddedSolrConnector extends SolrServerConnector implements SolrCo
         return numDocs;
     }
 
+    /**
+     * get the version of the index which is visible to searches. The version changes with every commit which
+     * changes the index; it is stored in the index and therefore keeps its value when the index is opened again.
+     * @return the index version of the current searcher
+     */
+    public long getIndexVersion() {
+        RefCounted<SolrIndexSearcher> refCountedIndexSearcher = this.core.getSearcher();
+        try {
+            SolrIndexSearcher searcher = refCountedIndexSearcher.get();
+            return searcher.getIndexReader().getVersion();
+        } finally {
+            refCountedIndexSearcher.decref();
+        }
+    }
+
     /**
      * get a new query request. MUST be closed after usage using close()
      * @param params
@@ -248,13 +264,14 @@ public class EmbeddedSolrConnector extends SolrServerConnector implements SolrCo
         if (response != null) {
             try {
                 SolrIndexSearcher searcher = req.getSearcher();
+                final FieldList fields = FieldList.parse(req.getParams().getParams(CommonParams.FL));
                 final int responseCount = response.size();
                 DocIterator iterator = response.iterator();
                 for (int i = 0; i < responseCount; i++) {
                     int docid = iterator.nextDoc();
                     Thread.currentThread().setName("EmbeddedSolrConnector.SolrQueryResponse2SolrDocumentList: " + docid);
-                    Document responsedoc = searcher.doc(docid, (Set<String>) null);
-                    SolrDocument sordoc = doc2SolrDoc(responsedoc);
+                    Document responsedoc = searcher.doc(docid, fields == null ? null : fields.names);
+                    SolrDocument sordoc = doc2SolrDoc(responsedoc, fields);
                     sdl.add(sordoc);
                 }
             } catch (IOException e) {
@@ -280,10 +297,65 @@ public class EmbeddedSolrConnector extends SolrServerConnector implements SolrCo
         return sf;
     }
     
+    /**
+     * the stored fields which are requested with the fl parameter of a query
+     */
+    public static final class FieldList {
+
+        /** the field names without wildcard; these fields are loaded from the index, all other fields are loaded lazy */
+        public final Set<String> names;
+        private final ArrayList<String> prefixes;
+
+        private FieldList(final Set<String> names, final ArrayList<String> prefixes) {
+            this.names = names;
+            this.prefixes = prefixes;
+        }
+
+        /**
+         * @param fl the values of the fl parameter of a query, may be null
+         * @return the field list or null if all fields are requested because there is no field list or it contains
+         * a general wildcard, a function or a transformer
+         */
+        public static FieldList parse(final String[] fl) {
+            if (fl == null || fl.length == 0) return null;
+            final Set<String> names = new HashSet<>();
+            final ArrayList<String> prefixes = new ArrayList<>(1);
+            for (final String f: fl) {
+                if (f == null) continue;
+                for (final String name: f.split("[,\\s]+")) {
+                    if (name.isEmpty() || name.equals("score")) continue;
+                    if (name.indexOf('(') >= 0 || name.indexOf('[') >= 0 || name.indexOf(':') >= 0 || name.indexOf('?') >= 0) return null;
+                    final int p = name.indexOf('*');
+                    if (p == 0) return null;
+                    if (p < 0) names.add(name); else prefixes.add(name.substring(0, p));
+                }
+            }
+            return names.isEmpty() && prefixes.isEmpty() ? null : new FieldList(names, prefixes);
+        }
+
+        public boolean contains(final String name) {
+            if (this.names.contains(name)) return true;
+            for (final String prefix: this.prefixes) if (name.startsWith(prefix)) return true;
+            return false;
+        }
+    }
+
     public SolrDocument doc2SolrDoc(Document doc) {
+        return doc2SolrDoc(doc, null);
+    }
+
+    /**
+     * convert a lucene document into a solr document
+     * @param doc the lucene document
+     * @param fields the fields of the result or null for all fields. Fields which are not in the list are not touched,
+     * so their values are never read from the index if the document was loaded with lazy field loading
+     * @return the solr document
+     */
+    public SolrDocument doc2SolrDoc(Document doc, FieldList fields) {
         SolrDocument solrDoc = new SolrDocument();
         for (IndexableField field : doc) {
             String fieldName = field.name();
+            if (fields != null && !fields.contains(fieldName)) continue;
             SchemaField sf = getSchemaField(fieldName); // hack-patch of this.core.getLatestSchema().getFieldOrNull(fieldName); makes it a lot faster!!
             Object val = null;
             try {
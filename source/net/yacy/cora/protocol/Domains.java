@@ -24,8 +24,14 @@
 
 package net.yacy.cora.protocol;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.lang.reflect.Array;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -46,11 +52,15 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.Callable;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -67,9 +77,6 @@ import net.yacy.kelondro.util.MemoryControl;
 import net.yacy.kelondro.util.NamePrefixThreadFactory;
 
 import com.google.common.net.InetAddresses;
-import com.google.common.util.concurrent.SimpleTimeLimiter;
-import com.google.common.util.concurrent.TimeLimiter;
-import com.google.common.util.concurrent.UncheckedTimeoutException;
 
 public class Domains {
     
@@ -81,7 +88,6 @@ public class Domains {
     private static Class<?> InetAddressLocatorClass;
     private static Method InetAddressLocatorGetLocaleInetAddressMethod;
     private static final Set<String> ccSLD_TLD = new HashSet<String>();
-    private static final String PRESENT = "";
     private static final String LOCALHOST_IPv4_PATTERN = "(127\\..*)";
     private static final String LOCALHOST_IPv6_PATTERN = "((\\[?fe80\\:.*)|(\\[?0\\:0\\:0\\:0\\:0\\:0\\:0\\:1.*)|(\\[?\\:\\:1))(/.*|%.*|\\z)";
     private static final String INTRANET_IPv4_PATTERN = "(10\\..*)|(172\\.(1[6-9]|2[0-9]|3[0-1])\\..*)|(169\\.254\\..*)|(192\\.168\\..*)";
@@ -92,11 +98,16 @@ public class Domains {
     private static final int MAX_NAME_CACHE_HIT_SIZE = 10000;
     private static final int MAX_NAME_CACHE_MISS_SIZE = 1000;
     private static final int CONCURRENCY_LEVEL = Runtime.getRuntime().availableProcessors() * 2;
-
-    // a dns cache
-    private static final ARC<String, InetAddress> NAME_CACHE_HIT = new ConcurrentARC<>(MAX_NAME_CACHE_HIT_SIZE, CONCURRENCY_LEVEL);
-    private static final ARC<String, String> NAME_CACHE_MISS = new ConcurrentARC<>(MAX_NAME_CACHE_MISS_SIZE, CONCURRENCY_LEVEL);
-    private static final ConcurrentHashMap<String, Object> LOOKUP_SYNC = new ConcurrentHashMap<>(100, 0.75f, Runtime.getRuntime().availableProcessors() * 2);
+    private static final long NAME_CACHE_HIT_TTL = 6L * 60L * 60L * 1000L; // time until a resolved address is looked up again
+    private static final long NAME_CACHE_MISS_TTL = 60L * 60L * 1000L; // time until an unresolvable host is looked up again
+    private static final long LOOKUP_TIMEOUT = 3000L; // time a caller waits for a dns lookup
+    private static final int MAX_PREFETCH_LOOKUPS = 64; // prefetching stops if that many lookups are running
+
+    // a dns cache; the values of the miss cache are the expiry times
+    private static final ARC<String, CachedAddress> NAME_CACHE_HIT = new ConcurrentARC<>(MAX_NAME_CACHE_HIT_SIZE, CONCURRENCY_LEVEL);
+    private static final ARC<String, Long> NAME_CACHE_MISS = new ConcurrentARC<>(MAX_NAME_CACHE_MISS_SIZE, CONCURRENCY_LEVEL);
+    // the running dns lookups; concurrent requests for the same host wait for the same lookup
+    private static final ConcurrentHashMap<String, CompletableFuture<InetAddress>> LOOKUP_INFLIGHT = new ConcurrentHashMap<>(100, 0.75f, CONCURRENCY_LEVEL);
     private static       List<Pattern> nameCacheNoCachingPatterns = Collections.synchronizedList(new LinkedList<Pattern>());
     public static long cacheHit_Hit = 0, cacheHit_Miss = 0, cacheHit_Insert = 0; // for statistics only; do not write
     public static long cacheMiss_Hit = 0, cacheMiss_Miss = 0, cacheMiss_Insert = 0; // for statistics only; do not write
@@ -733,9 +744,67 @@ public class Domains {
     }
 
     private static KeyList globalHosts = null;
+    private static File nameCacheFile = null;
     private static boolean noLocalCheck = false;
 
+    /**
+     * an address in the name cache together with the time when it must be looked up again.
+     * Two entries are equal if their addresses are equal, which is used for reverse lookups.
+     */
+    private static final class CachedAddress {
+        private final InetAddress address;
+        private final long expires;
+
+        private CachedAddress(final InetAddress address, final long expires) {
+            this.address = address;
+            this.expires = expires;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof CachedAddress && this.address.equals(((CachedAddress) obj).address);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.address.hashCode();
+        }
+    }
+
+    /**
+     * the dns lookup of a host name; this can be replaced i.e. for tests
+     */
+    public interface Resolver {
+        public InetAddress resolve(String host) throws UnknownHostException;
+    }
+
+    private static final Resolver DEFAULT_RESOLVER = new Resolver() {
+        @Override
+        public InetAddress resolve(final String host) throws UnknownHostException {
+            return InetAddress.getByName(host);
+        }
+    };
+
+    private static Resolver resolver = DEFAULT_RESOLVER;
+
+    /**
+     * set the resolver for dns lookups
+     * @param r the resolver or null to use the resolver of the operating system
+     */
+    public static void setResolver(final Resolver r) {
+        resolver = r == null ? DEFAULT_RESOLVER : r;
+    }
+
     public static void init(final File globalHostsnameCache) {
+        init(globalHostsnameCache, null);
+    }
+
+    /**
+     * initialize the host name caches
+     * @param globalHostsnameCache the list of global host names
+     * @param nameCache the file where the dns cache is stored when YaCy shuts down, may be null
+     */
+    public static void init(final File globalHostsnameCache, final File nameCache) {
         if (globalHostsnameCache == null) {
             globalHosts = null;
         } else try {
@@ -744,6 +813,59 @@ public class Domains {
         } catch (final IOException e) {
             globalHosts = null;
         }
+        nameCacheFile = nameCache;
+        if (nameCache != null && nameCache.exists()) try {
+            loadNameCache(nameCache);
+            log.info("loaded dns cache, size = " + NAME_CACHE_HIT.size() + " addresses, " + NAME_CACHE_MISS.size() + " unknown hosts");
+        } catch (final IOException e) {
+            log.warn("cannot load dns cache " + nameCache + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * write the dns cache to a file. Each line contains a host name, the address
+     * (empty for unresolvable hosts) and the expiry time, separated by tabs.
+     * @param file the target file
+     * @throws IOException
+     */
+    public static void saveNameCache(final File file) throws IOException {
+        final File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8))) {
+            for (final Map.Entry<String, CachedAddress> entry: NAME_CACHE_HIT) {
+                writer.write(entry.getKey() + '\t' + entry.getValue().address.getHostAddress() + '\t' + entry.getValue().expires + '\n');
+            }
+            for (final Map.Entry<String, Long> entry: NAME_CACHE_MISS) {
+                writer.write(entry.getKey() + "\t\t" + entry.getValue() + '\n');
+            }
+        }
+        if (file.exists() && !file.delete()) throw new IOException("cannot delete " + file);
+        if (!tmp.renameTo(file)) throw new IOException("cannot rename " + tmp + " to " + file);
+    }
+
+    /**
+     * load a dns cache file which was written with saveNameCache. Expired entries are loaded as well,
+     * the addresses are used until a new lookup is finished.
+     * @param file the source file
+     * @throws IOException
+     */
+    public static void loadNameCache(final File file) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] fields = CommonPattern.TAB.split(line, -1);
+                if (fields.length != 3) continue;
+                try {
+                    final long expires = Long.parseLong(fields[2]);
+                    if (fields[1].isEmpty()) {
+                        NAME_CACHE_MISS.insertIfAbsent(fields[0], expires);
+                    } else {
+                        NAME_CACHE_HIT.insertIfAbsent(fields[0], new CachedAddress(InetAddresses.forString(fields[1]), expires));
+                    }
+                } catch (final IllegalArgumentException e) {
+                    continue; // a broken line; NumberFormatException is also an IllegalArgumentException
+                }
+            }
+        }
     }
 
     /**
@@ -760,6 +882,7 @@ public class Domains {
 
     public static synchronized void close() {
         if (globalHosts != null) try {globalHosts.close();} catch (final IOException e) {log.warn(e);}
+        if (nameCacheFile != null) try {saveNameCache(nameCacheFile);} catch (final IOException e) {log.warn(e);}
         if(getByNameService != null) {
         	getByNameService.shutdownNow();
         }
@@ -776,14 +899,15 @@ public class Domains {
         host = host.toLowerCase(Locale.ROOT).trim();
 
         // trying to resolve host by doing a name cache lookup
-        InetAddress ip = NAME_CACHE_HIT.get(host);
-        if (ip != null) {
+        final CachedAddress cached = NAME_CACHE_HIT.get(host);
+        if (cached != null) {
             cacheHit_Hit++;
-            return ip;
+            return cached.address;
         }
         cacheHit_Miss++;
 
-        if (NAME_CACHE_MISS.containsKey(host)) {
+        final Long expires = NAME_CACHE_MISS.get(host);
+        if (expires != null && expires.longValue() >= System.currentTimeMillis()) {
             cacheMiss_Hit++;
             return null;
         }
@@ -812,10 +936,10 @@ public class Domains {
     }
 
     public static String getHostName(final InetAddress i) {
-        final Collection<String> hosts = NAME_CACHE_HIT.getKeys(i);
+        final Collection<String> hosts = NAME_CACHE_HIT.getKeys(new CachedAddress(i, 0));
         if (!hosts.isEmpty()) return hosts.iterator().next();
         final String host = i.getHostName();
-        NAME_CACHE_HIT.insertIfAbsent(host, i);
+        NAME_CACHE_HIT.insertIfAbsent(host, new CachedAddress(i, System.currentTimeMillis() + NAME_CACHE_HIT_TTL));
         cacheHit_Insert++;
         return host;
     }
@@ -827,15 +951,13 @@ public class Domains {
      * @param host the known host name
      */
     public static void setHostName(final InetAddress i, final String host) {
-        NAME_CACHE_HIT.insertIfAbsent(host, i);
+        NAME_CACHE_HIT.insertIfAbsent(host, new CachedAddress(i, System.currentTimeMillis() + NAME_CACHE_HIT_TTL));
         cacheHit_Insert++;
     }
     
 	final private static ExecutorService getByNameService = Executors
 			.newCachedThreadPool(new NamePrefixThreadFactory("InetAddress.getByName"));
 
-	final private static TimeLimiter timeLimiter = new SimpleTimeLimiter(getByNameService);
-
     /**
      * strip off any parts of an url, address string (containing host/ip:port) or raw IPs/Hosts,
      * considering that the host may also be an (IPv4) IP or a IPv6 IP in brackets.
@@ -932,103 +1054,135 @@ public class Domains {
         }
 
         // try to resolve host by doing a name cache lookup
-        InetAddress ip = NAME_CACHE_HIT.get(host);
-        if (ip != null) {
-            //System.out.println("DNSLOOKUP-CACHE-HIT(CONC) " + host);
+        final CachedAddress cached = NAME_CACHE_HIT.get(host);
+        if (cached != null) {
             cacheHit_Hit++;
-            return ip;
+            // an expired address is used until the new lookup is finished
+            if (cached.expires < System.currentTimeMillis()) lookup(host);
+            return cached.address;
         }
         cacheHit_Miss++;
-        if (NAME_CACHE_MISS.containsKey(host)) {
-            //System.out.println("DNSLOOKUP-CACHE-MISS(CONC) " + host);
-            cacheMiss_Hit++;
-            return null;
-        }
-        cacheMiss_Miss++;
-
-        // call dnsResolveNetBased(host) using concurrency to interrupt execution in case of a time-out
-        final Object sync_obj_new = new Object();
-        Object sync_obj = LOOKUP_SYNC.putIfAbsent(host, sync_obj_new);
-        if (sync_obj == null) sync_obj = sync_obj_new;
-        synchronized (sync_obj) {
-            // now look again if the host is in the cache where it may be meanwhile because of the synchronization
-
-            ip = NAME_CACHE_HIT.get(host);
-            if (ip != null) {
-                //System.out.println("DNSLOOKUP-CACHE-HIT(SYNC) " + host);
-                LOOKUP_SYNC.remove(host);
-                cacheHit_Hit++;
-                return ip;
-            }
-            cacheHit_Miss++;
-            if (NAME_CACHE_MISS.containsKey(host)) {
-                //System.out.println("DNSLOOKUP-CACHE-MISS(SYNC) " + host);
-                LOOKUP_SYNC.remove(host);
+        final Long expires = NAME_CACHE_MISS.get(host);
+        if (expires != null) {
+            if (expires.longValue() >= System.currentTimeMillis()) {
                 cacheMiss_Hit++;
                 return null;
             }
-            cacheMiss_Miss++;
-
-            // do the dns lookup on the dns server
-            //if (!matchesList(host, nameCacheNoCachingPatterns)) System.out.println("DNSLOOKUP " + host);
-            try {
-                //final long t = System.currentTimeMillis();
-                String oldName = Thread.currentThread().getName();
-                Thread.currentThread().setName("Domains: DNS resolve of '" + host + "'"); // thread dump show which host is resolved
-                if (InetAddresses.isInetAddress(host)) {
+            NAME_CACHE_MISS.remove(host);
+        }
+        cacheMiss_Miss++;
+
+        // do the dns lookup on the dns server; concurrent requests for the same host share one lookup
+        try {
+            return lookup(host).get(LOOKUP_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (final TimeoutException e) {
+            // in case of a timeout - maybe cause of massive requests - do not wait any longer;
+            // the lookup goes on and fills the cache for the next request
+            return null;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (final ExecutionException e) {
+            return null;
+        }
+    }
+
+    /**
+     * resolve a host in the background, so that a later dnsResolve finds the address in the cache.
+     * This should be called as soon as it is known that a host will be requested, i.e. when a crawl
+     * queue for the host is created. Prefetching is skipped if too many lookups are running already.
+     * @param host0 the host name
+     */
+    public static void prefetch(final String host0) {
+        if (host0 == null || host0.isEmpty()) return;
+        final String host = host0.toLowerCase(Locale.ROOT).trim();
+        if (NAME_CACHE_HIT.containsKey(host) || NAME_CACHE_MISS.containsKey(host)) return;
+        if (LOOKUP_INFLIGHT.size() >= MAX_PREFETCH_LOOKUPS) return;
+        lookup(host);
+    }
+
+    /**
+     * start a dns lookup for a host or join the lookup which is already running for the host.
+     * The result is written to the name caches before the future is completed.
+     * @param host the lowercase host name
+     * @return the future address; null as result if the host cannot be resolved
+     */
+    private static CompletableFuture<InetAddress> lookup(final String host) {
+        CompletableFuture<InetAddress> future = LOOKUP_INFLIGHT.get(host);
+        if (future != null) return future;
+        final CompletableFuture<InetAddress> newFuture = new CompletableFuture<InetAddress>();
+        future = LOOKUP_INFLIGHT.putIfAbsent(host, newFuture);
+        if (future != null) return future;
+        try {
+            getByNameService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    final String oldName = Thread.currentThread().getName();
+                    Thread.currentThread().setName("Domains: DNS resolve of '" + host + "'"); // thread dump show which host is resolved
+                    InetAddress ip = null;
                     try {
-                        ip = InetAddresses.forString(host);
-                        log.info("using guava for host resolution:"  + host);
-                    } catch (final IllegalArgumentException e) {
+                        if (InetAddresses.isInetAddress(host)) {
+                            try {
+                                ip = InetAddresses.forString(host);
+                            } catch (final IllegalArgumentException e) {
+                                ip = null;
+                            }
+                        }
+                        if (ip == null) ip = resolver.resolve(host); // this makes the DNS request to backbone
+                    } catch (final Throwable e) {
                         ip = null;
-                    }
-                }
-                Thread.currentThread().setName(oldName);
-                if (ip == null) try {
-                    ip = timeLimiter.callWithTimeout(new Callable<InetAddress>() {
-                        @Override
-                        public InetAddress call() throws Exception {
-                            return InetAddress.getByName(host);
+                    } finally {
+                        Thread.currentThread().setName(oldName);
+                        try {
+                            cache(host, ip);
+                        } finally {
+                            LOOKUP_INFLIGHT.remove(host);
+                            newFuture.complete(ip);
                         }
-                    }, 3000L, TimeUnit.MILLISECONDS, false);
-                    //ip = TimeoutRequest.getByName(host, 1000); // this makes the DNS request to backbone
-                } catch (final UncheckedTimeoutException e) {
-                	// in case of a timeout - maybe cause of massive requests - do not fill NAME_CACHE_MISS
-                	LOOKUP_SYNC.remove(host);
-                    return null;
+                    }
                 }
-                //.out.println("DNSLOOKUP-*LOOKUP* " + host + ", time = " + (System.currentTimeMillis() - t) + "ms");
-            } catch (final Throwable e) {
-                // add new entries
-                NAME_CACHE_MISS.insertIfAbsent(host, PRESENT);
-                cacheMiss_Insert++;
-                LOOKUP_SYNC.remove(host);
-                return null;
-            }
+            });
+        } catch (final RejectedExecutionException e) {
+            // the service is shut down
+            LOOKUP_INFLIGHT.remove(host);
+            newFuture.complete(null);
+        }
+        return newFuture;
+    }
 
-            if (ip == null) {
-                // add new entries
-                NAME_CACHE_MISS.insertIfAbsent(host, PRESENT);
-                cacheMiss_Insert++;
-                LOOKUP_SYNC.remove(host);
-                return null;
+    /**
+     * write the result of a dns lookup to the name caches
+     * @param host the host name
+     * @param ip the address or null if the host could not be resolved
+     */
+    private static void cache(final String host, final InetAddress ip) {
+        final long now = System.currentTimeMillis();
+        if (ip == null) {
+            final CachedAddress cached = NAME_CACHE_HIT.get(host);
+            if (cached != null) {
+                // the lookup of a known host failed, this may be a temporary problem of the dns server:
+                // keep the address and try again later
+                NAME_CACHE_HIT.insert(host, new CachedAddress(cached.address, now + NAME_CACHE_MISS_TTL));
+                return;
             }
+            // add new entries
+            NAME_CACHE_MISS.insert(host, now + NAME_CACHE_MISS_TTL);
+            cacheMiss_Insert++;
+            return;
+        }
 
-            if (!ip.isLoopbackAddress() && !matchesList(host, nameCacheNoCachingPatterns)) {
-                // add new ip cache entries
-                NAME_CACHE_HIT.insertIfAbsent(host, ip);
-                cacheHit_Insert++;
-
-                // add also the isLocal host name caches
-                final boolean localp = ip.isAnyLocalAddress() || ip.isLinkLocalAddress() || ip.isSiteLocalAddress();
-                if (!localp) {
-                    if (globalHosts != null) try {
-                        globalHosts.add(host);
-                    } catch (final IOException e) {}
-                }
+        if (!ip.isLoopbackAddress() && !matchesList(host, nameCacheNoCachingPatterns)) {
+            // add new ip cache entries
+            NAME_CACHE_HIT.insert(host, new CachedAddress(ip, now + NAME_CACHE_HIT_TTL));
+            cacheHit_Insert++;
+
+            // add also the isLocal host name caches
+            final boolean localp = ip.isAnyLocalAddress() || ip.isLinkLocalAddress() || ip.isSiteLocalAddress();
+            if (!localp) {
+                if (globalHosts != null) try {
+                    globalHosts.add(host);
+                } catch (final IOException e) {}
             }
-            LOOKUP_SYNC.remove(host);
-            return ip;
         }
     }
 
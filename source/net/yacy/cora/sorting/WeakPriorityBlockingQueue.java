@@ -27,11 +27,15 @@ package net.yacy.cora.sorting;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
-import java.util.TreeSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * implements a stack where elements 'float' on-top of the stack according to a weight value.
@@ -39,15 +43,21 @@ import java.util.concurrent.TimeUnit;
  * for a double-check.
  * If the queue gets larger that the given maxsize, then elements from the tail of the queue
  * are drained (deleted).
+ * The queue is filled concurrently by many producers (i.e. the threads of a search event);
+ * put, peek and the size methods do not lock, the elements are held in a concurrent skip list
+ * which is bounded to maxsize. Only the consumer methods which record the drained elements and
+ * the removal of the tail of a full queue are synchronized among each other.
  */
 public class WeakPriorityBlockingQueue<E> implements Serializable {
 
 	private static final long serialVersionUID = 4573442576760691887L;
 
-	private final TreeSet<Element<E>>   queue;    // object within the stack, ordered using a TreeSet
+	private final ConcurrentSkipListSet<Element<E>> queue; // object within the stack, ordered using a skip list
+    private final AtomicInteger queueSize; // the size of the queue; the size() of the skip list must traverse all elements
     private final Semaphore    enqueued; // semaphore for elements in the stack
     private final ArrayList<Element<E>> drained;  // objects that had been on the stack but had been removed
-    private int maxsize;
+    private final Set<Element<E>> drainedSet; // the same objects as in drained, for a check without lock
+    private final int maxsize;
 
     /**
      * create a new WeakPriorityBlockingQueue
@@ -58,8 +68,10 @@ public class WeakPriorityBlockingQueue<E> implements Serializable {
     public WeakPriorityBlockingQueue(final int maxsize, boolean drain) {
         // the maxsize is the maximum number of entries in the stack
         // if this is set to -1, the size is unlimited
-        this.queue = new TreeSet<Element<E>>();
+        this.queue = new ConcurrentSkipListSet<Element<E>>();
+        this.queueSize = new AtomicInteger(0);
         this.drained = drain ? new ArrayList<Element<E>>() : null;
+        this.drainedSet = drain ? Collections.newSetFromMap(new ConcurrentHashMap<Element<E>, Boolean>()) : null;
         this.enqueued = new Semaphore(0);
         this.maxsize = maxsize;
     }
@@ -68,9 +80,13 @@ public class WeakPriorityBlockingQueue<E> implements Serializable {
      * clear the queue
      */
     public synchronized void clear() {
-        if (this.drained != null) this.drained.clear();
-        this.queue.clear();
+        if (this.drained != null) {
+            this.drained.clear();
+            this.drainedSet.clear();
+        }
         this.enqueued.drainPermits();
+        this.queue.clear();
+        this.queueSize.set(0);
     }
 
     /**
@@ -78,15 +94,15 @@ public class WeakPriorityBlockingQueue<E> implements Serializable {
      * @return true if the queue is empty, false if not
      */
     public boolean isEmpty() {
-        return this.queue.isEmpty() & (this.drained == null || this.drained.isEmpty());
+        return this.queue.isEmpty() & (this.drainedSet == null || this.drainedSet.isEmpty());
     }
 
     /**
      * get the number of elements in the queue, waiting to be removed with take() or poll()
      * @return
      */
-    public synchronized int sizeQueue() {
-        return this.queue.size();
+    public int sizeQueue() {
+        return Math.max(0, this.queueSize.get());
     }
 
 
@@ -95,8 +111,8 @@ public class WeakPriorityBlockingQueue<E> implements Serializable {
      * in a list to get enumerated with element()
      * @return
      */
-    public synchronized int sizeDrained() {
-        return this.drained == null ? 0 : this.drained.size();
+    public int sizeDrained() {
+        return this.drainedSet == null ? 0 : this.drainedSet.size();
     }
 
     /**
@@ -104,10 +120,9 @@ public class WeakPriorityBlockingQueue<E> implements Serializable {
      * this is a combined number of sizeQueue() and sizeDrained();
      * @return
      */
-    public synchronized int sizeAvailable() {
-        return this.maxsize < 0 ?
-                        this.queue.size() + (this.drained == null ? 0 : this.drained.size()) :
-                        Math.min(this.maxsize, this.queue.size() + (this.drained == null ? 0 : this.drained.size()));
+    public int sizeAvailable() {
+        final int available = sizeQueue() + sizeDrained();
+        return this.maxsize < 0 ? available : Math.min(this.maxsize, available);
     }
 
     /**
@@ -116,21 +131,32 @@ public class WeakPriorityBlockingQueue<E> implements Serializable {
      * they are checked against the drained list
      * @param element the element (must have a equals() method)
      */
-    public synchronized void put(final Element<E> element) {
+    public void put(final Element<E> element) {
         // put the element on the stack
-        if (this.drained != null && this.drained.contains(element)) {
+        if (this.drainedSet != null && this.drainedSet.contains(element)) {
         	return;
         }
-        if (this.queue.size() == this.maxsize) {
-            // remove last elements if stack is too large
-            if (this.queue.add(element)) {
-            	this.queue.remove(this.queue.last());
-            }
+        // just add entry but only count it if entry was not double
+        if (!this.queue.add(element)) return;
+        if (this.maxsize >= 0 && this.queueSize.incrementAndGet() > this.maxsize) {
+            trim();
+        } else {
+            if (this.maxsize < 0) this.queueSize.incrementAndGet();
+            this.enqueued.release();
+        }
+    }
+
+    /**
+     * remove the last element if the stack is too large after an element was added. A consumer may have
+     * taken an element but not yet counted it, therefore the size is checked again under the lock of the consumers.
+     */
+    private synchronized void trim() {
+        if (this.queueSize.get() > this.maxsize) {
+            // the number of permits does not change
+            if (this.queue.pollLast() != null) this.queueSize.decrementAndGet();
         } else {
-            // just add entry but only release semaphore if entry was not double
-            if (this.queue.add(element)) this.enqueued.release();
+            this.enqueued.release();
         }
-        assert this.queue.size() >= this.enqueued.availablePermits() : "(put) queue.size() = " + this.queue.size() + ", enqueued.availablePermits() = " + this.enqueued.availablePermits();
     }
 
     /**
@@ -140,9 +166,7 @@ public class WeakPriorityBlockingQueue<E> implements Serializable {
     public Element<E> poll() {
         boolean a = this.enqueued.tryAcquire();
         if (!a) return null;
-        synchronized (this) {
-            return takeUnsafe();
-        }
+        return takeAcquired();
     }
 
     /**
@@ -155,17 +179,32 @@ public class WeakPriorityBlockingQueue<E> implements Serializable {
     public Element<E> poll(long timeout) throws InterruptedException {
         boolean a = (timeout <= 0) ? this.enqueued.tryAcquire() : this.enqueued.tryAcquire(timeout, TimeUnit.MILLISECONDS);
         if (!a) return null;
-        synchronized (this) {
-            return takeUnsafe();
-        }
+        return takeAcquired();
     }
 
-    private Element<E> takeUnsafe() {
-        final Element<E> element = this.queue.pollFirst();
-        assert element != null;
-        if (this.drained != null && (this.maxsize == -1 || this.drained.size() < this.maxsize)) this.drained.add(element);
-        assert this.queue.size() >= this.enqueued.availablePermits() : "(take) queue.size() = " + this.queue.size() + ", enqueued.availablePermits() = " + this.enqueued.availablePermits();
-        return element;
+    /**
+     * take the head of the queue after a permit was acquired. The drained list must record the
+     * elements in the order in which they are taken, therefore the consumers are synchronized
+     * with each other, but not with the producers. A producer may have put an element again which
+     * was drained after its check, such an element is skipped.
+     */
+    private synchronized Element<E> takeAcquired() {
+        while (true) {
+            final Element<E> element = this.queue.pollFirst();
+            if (element == null) return null; // the element was removed by a concurrent put which exceeded the maxsize
+            this.queueSize.decrementAndGet();
+            if (this.drained == null) return element;
+            if (this.drainedSet.contains(element)) {
+                // the permit of the skipped element was used; the next element needs its own permit
+                if (!this.enqueued.tryAcquire()) return null;
+                continue;
+            }
+            if (this.maxsize == -1 || this.drained.size() < this.maxsize) {
+                this.drained.add(element);
+                this.drainedSet.add(element);
+            }
+            return element;
+        }
     }
     
     /**
@@ -176,47 +215,36 @@ public class WeakPriorityBlockingQueue<E> implements Serializable {
     		final int initialDrainedSize = this.drained.size();
     		for(int step = 0; step < initialDrainedSize; step++) {
     			Element<E> element = this.drained.remove(this.drained.size() - 1);
+    			this.drainedSet.remove(element);
     			put(element);
     		}
     	}
     }
     
-    /**
-     * remove a drained element
-     * @param element
-     */
-    /*
-    public void removeDrained(Element<E> element) {
-        if (element == null) return;
-        synchronized (this.drained) {
-            int p = this.drained.size() - 1;
-            if (this.drained.get(p) == element) {
-                this.drained.remove(p);
-                return;
-            }
-        }
-        this.drained.remove(element);
-    }
-    */
-    
     /**
      * Return the element with the smallest weight from the internal queue, but do not remove it
      * @return null if no element is on the queue or the head of the queue
      */
-    public synchronized Element<E> peek() {
-        if (this.queue.isEmpty()) return null;
-        return this.queue.first();
+    public Element<E> peek() {
+        final Iterator<Element<E>> i = this.queue.iterator();
+        return i.hasNext() ? i.next() : null;
     }
     
     /**
      * Return the element with the highest weight, but do not remove it
      * @return null if no element is on the queue or the tail of the queue
      */
-    public synchronized Element<E> getLastInQueue() {
-        if (this.queue.isEmpty()) {
-        	return null;
-        }
-        return this.queue.last();
+    public Element<E> getLastInQueue() {
+        final Iterator<Element<E>> i = this.queue.descendingIterator();
+        return i.hasNext() ? i.next() : null;
+    }
+
+    /**
+     * get an element from the drained list
+     * @return the element at the position or null if the drained list is not large enough
+     */
+    private synchronized Element<E> drainedElement(final int position) {
+        return position < this.drained.size() ? this.drained.get(position) : null;
     }
 
     /**
@@ -232,11 +260,9 @@ public class WeakPriorityBlockingQueue<E> implements Serializable {
      */
     public Element<E> element(final int position) {
         if (this.drained == null) return null;
-        if (position < this.drained.size()) {
-            return this.drained.get(position);
-        }
         synchronized (this) {
-            if (position >= this.queue.size() + this.drained.size()) return null; // we don't have that element
+            if (position < this.drained.size()) return this.drained.get(position);
+            if (position >= this.queueSize.get() + this.drained.size()) return null; // we don't have that element
             Element<E> p;
             int s;
             while (position >= this.drained.size()) {
@@ -262,16 +288,14 @@ public class WeakPriorityBlockingQueue<E> implements Serializable {
     public Element<E> element(final int position, long time) throws InterruptedException {
         if (this.drained == null) return null;
         long timeout = time == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + time;
-        if (position < this.drained.size()) {
-            return this.drained.get(position);
-        }
-        while (position >= this.drained.size()) {
+        Element<E> element = drainedElement(position);
+        while (element == null) {
             long t = timeout - System.currentTimeMillis();
             if (t <= 0) break;
-            this.poll(t);
+            this.poll(t); // not synchronized while waiting, so the producers and other consumers are not blocked
+            element = drainedElement(position);
         }
-        if (position >= this.drained.size()) return null; // we still don't have that element
-        return this.drained.get(position);
+        return element;
     }
 
     /**
@@ -287,7 +311,7 @@ public class WeakPriorityBlockingQueue<E> implements Serializable {
             return list();
         }
         if (count > sizeAvailable()) throw new RuntimeException("list(" + count + ") exceeded avaiable number of elements (" + sizeAvailable() + ")");
-        while (count > this.drained.size()) this.poll();
+        while (count > this.drained.size() && this.poll() != null) {}
         return this.drained;
     }
 
@@ -298,7 +322,7 @@ public class WeakPriorityBlockingQueue<E> implements Serializable {
     private synchronized ArrayList<Element<E>> list() {
         if (this.drained == null) return null;
         // shift all elements
-        while (!this.queue.isEmpty()) this.poll();
+        while (this.poll() != null) {}
         return this.drained;
     }
 
@@ -309,7 +333,7 @@ public class WeakPriorityBlockingQueue<E> implements Serializable {
     public synchronized Iterator<Element<E>> iterator() {
         if (this.drained == null) return null;
         // shift all elements to the offstack
-        while (!this.queue.isEmpty()) this.poll();
+        while (this.poll() != null) {}
         return this.drained.iterator();
     }
 
@@ -349,6 +373,13 @@ public class WeakPriorityBlockingQueue<E> implements Serializable {
             return this.element.equals(o.getElement());
         }
 
+        @SuppressWarnings("unchecked")
+        @Override
+        public boolean equals(final Object o) {
+            // the drained set must find elements which had been put as different objects
+            return o instanceof Element && equals((Element<E>) o);
+        }
+
         @Override
         public int hashCode() {
             return this.element.hashCode();
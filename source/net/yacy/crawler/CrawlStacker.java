@@ -27,6 +27,7 @@ package net.yacy.crawler;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.MalformedURLException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
@@ -60,6 +61,7 @@ import net.yacy.peers.SeedDB;
 import net.yacy.repository.Blacklist.BlacklistType;
 import net.yacy.repository.FilterEngine;
 import net.yacy.search.Switchboard;
+import net.yacy.search.index.LoadDateIndex;
 import net.yacy.search.index.Segment;
 
 public final class CrawlStacker implements WorkflowTask<Request>{
@@ -157,6 +159,28 @@ public final class CrawlStacker implements WorkflowTask<Request>{
         if (CrawlStacker.log.isFinest()) CrawlStacker.log.finest("ENQUEUE " + entry.url() + ", referer=" + entry.referrerhash() + ", initiator=" + ((entry.initiator() == null) ? "" : ASCII.String(entry.initiator())) + ", name=" + entry.name() + ", appdate=" + entry.appdate() + ", depth=" + entry.depth());
         this.requestQueue.enQueue(entry);
     }
+
+    /**
+     * Enqueue the links of a loaded document. All links are checked at once against the index of load dates:
+     * links to documents in the local index which are not old enough for a re-crawl are not enqueued,
+     * because the stacker would reject them as double anyway.
+     * @param entries the crawl requests of the links
+     * @param profile the crawl profile of all requests
+     * @return the number of enqueued requests
+     */
+    public int enqueueEntries(final List<Request> entries, final CrawlProfile profile) {
+        final List<byte[]> urlhashes = new ArrayList<byte[]>(entries.size());
+        for (final Request entry: entries) urlhashes.add(entry.url().hash());
+        final long[] loadDays = this.indexSegment.fulltext().loadDates().getLoadDays(urlhashes);
+        final long recrawlIfOlder = profile.recrawlIfOlder();
+        int c = 0;
+        for (int i = 0; i < loadDays.length; i++) {
+            if (loadDays[i] >= 0 && recrawlIfOlder <= loadDays[i]) continue;
+            enqueueEntry(entries.get(i));
+            c++;
+        }
+        return c;
+    }
     
     public void enqueueEntriesAsynchronous(
             final byte[] initiator,
@@ -426,7 +450,13 @@ public final class CrawlStacker implements WorkflowTask<Request>{
         }
         String urlhash = ASCII.String(url.hash());
         LoadTimeURL oldEntry = null;
-        try {
+        final long loadDay = this.indexSegment.fulltext().loadDates().getLoadDay(url.hash());
+        if (loadDay == -1) {
+            // the url is not in the local index
+        } else if (loadDay >= 0 && (profile.recrawlIfOlder() <= loadDay || profile.recrawlIfOlder() >= loadDay + LoadDateIndex.DAY)) {
+            // the day of the load date is sufficient for the re-crawl decision
+            oldEntry = new LoadTimeURL(url.toNormalform(true), loadDay);
+        } else try {
             oldEntry = this.indexSegment.fulltext().getDefaultConnector().getLoadTimeURL(urlhash);
         } catch (IOException e) {
             // if an exception here occurs then there is the danger that urls which had been in the crawler are overwritten a second time
@@ -27,7 +27,6 @@ import java.net.MalformedURLException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.ConcurrentModificationException;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -39,6 +38,7 @@ import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.document.id.DigestURL;
 import net.yacy.cora.order.Base64Order;
 import net.yacy.cora.protocol.ClientIdentification;
+import net.yacy.cora.protocol.Domains;
 import net.yacy.cora.storage.HandleMap;
 import net.yacy.cora.storage.HandleSet;
 import net.yacy.cora.util.ConcurrentLog;
@@ -69,7 +69,9 @@ public class HostBalancer implements Balancer {
     private final File hostsPath;
     private final boolean exceed134217727;
     private final Map<String, HostQueue> queues;
-    private final Set<String> roundRobinHostHashes;
+    private final HostReadyQueue readyHosts; // all hosts with a queue which is not currently popped, ordered by the time when they may be accessed again
+    private final Latency.Listener latencyListener;
+    private volatile RobotsTxt robots; // the robots as given in the latest push or pop; used to compute the ready time after a host was accessed
     private final int onDemandLimit;
 
     /**
@@ -104,7 +106,19 @@ public class HostBalancer implements Balancer {
         // create a stack for newly entered entries
         if (!(hostsPath.exists())) hostsPath.mkdirs(); // make the path
         this.queues = new ConcurrentHashMap<String, HostQueue>();
-        this.roundRobinHostHashes = new HashSet<String>();
+        this.readyHosts = new HostReadyQueue();
+        this.robots = null;
+        this.latencyListener = new Latency.Listener() {
+            @Override
+            public void hostAccessed(final String hosthash) {
+                // move the host to the time when it may be accessed again after this access
+                if (!HostBalancer.this.readyHosts.contains(hosthash)) return;
+                final HostQueue queue = HostBalancer.this.queues.get(hosthash);
+                if (queue == null) return;
+                HostBalancer.this.readyHosts.reschedule(hosthash, nextAccessGuessed(queue));
+            }
+        };
+        Latency.addListener(this.latencyListener);
         init(asyncInit); // return without wait but starts a thread to fill the queues
     }
 
@@ -134,30 +148,52 @@ public class HostBalancer implements Balancer {
     private void runInit() {
         final String[] hostlist = hostsPath.list();
         for (String hoststr : hostlist) {
+            final HostQueue queue;
             try {
                 File queuePath = new File(hostsPath, hoststr);
-                HostQueue queue = new HostQueue(queuePath, queues.size() > onDemandLimit, exceed134217727);
+                queue = new HostQueue(queuePath, queues.size() > onDemandLimit, exceed134217727);
                 if (queue.isEmpty()) {
                     queue.close();
                     FileUtils.deletedelete(queuePath);
-                } else {
-                    queues.put(queue.getHostHash(), queue);
+                    continue;
                 }
+                queues.put(queue.getHostHash(), queue);
             } catch (MalformedURLException | RuntimeException e) {
                 log.warn("delete queue due to init error for " + hostsPath.getName() + " host=" + hoststr + " " + e.getLocalizedMessage());
                 // if exception thrown we can't init the queue, maybe due to name violation. That won't get better, delete it.
                 FileUtils.deletedelete(new File(hostsPath, hoststr));
+                continue;
+            }
+            // the ready time is guessed outside of the block above: a failing guess must never delete a stored queue
+            long nextAccess;
+            try {
+                nextAccess = nextAccessGuessed(queue);
+            } catch (final RuntimeException e) {
+                log.warn("cannot guess the next access time for host=" + hoststr + " " + e.getLocalizedMessage());
+                nextAccess = 0;
             }
+            this.readyHosts.schedule(queue.getHostHash(), nextAccess);
         }
     }
 
+    /**
+     * guess the time when the host of a queue may be accessed again
+     * @param queue
+     * @return the time in milliseconds; 0 if the host was not accessed before
+     */
+    private long nextAccessGuessed(final HostQueue queue) {
+        return Latency.nextAccessGuessed(queue.getHost(), queue.getPort(), queue.getHostHash(), this.robots, ClientIdentification.yacyInternetCrawlerAgent);
+    }
+
     @Override
     public synchronized void close() {
+        Latency.removeListener(this.latencyListener);
         if (depthCache != null) {
             depthCache.clear();
         }
         for (HostQueue queue: this.queues.values()) queue.close();
         this.queues.clear();
+        this.readyHosts.clear();
     }
 
     @Override
@@ -167,6 +203,7 @@ public class HostBalancer implements Balancer {
         }
         for (HostQueue queue: this.queues.values()) queue.clear();
         this.queues.clear();
+        this.readyHosts.clear();
     }
 
     @Override
@@ -284,13 +321,18 @@ public class HostBalancer implements Balancer {
         if (this.has(entry.url().hash())) return "double occurrence";
         depthCache.put(entry.url().hash(), entry.depth());
         String hosthash = entry.url().hosthash();
+        if (robots != null) this.robots = robots;
         synchronized (this) {
             HostQueue queue = this.queues.get(hosthash);
             if (queue == null) {
                 queue = new HostQueue(this.hostsPath, entry.url(), this.queues.size() > this.onDemandLimit, this.exceed134217727);
                 this.queues.put(hosthash, queue);
+                Domains.prefetch(entry.url().getHost()); // resolve the host before the first loader needs it
                 // profile might be null when continue crawls after YaCy restart
                 robots.ensureExist(entry.url(), profile == null ? ClientIdentification.yacyInternetCrawlerAgent : profile.getAgent(), true); // concurrently load all robots.txt
+                String result = queue.push(entry, profile, robots);
+                this.readyHosts.schedule(hosthash, nextAccessGuessed(queue));
+                return result;
             }
             return queue.push(entry, profile, robots);
         }
@@ -301,7 +343,11 @@ public class HostBalancer implements Balancer {
      * and always above the given minimum delay time. An additional delay time is computed using the robots.txt
      * crawl-delay time which is always respected. In case the minimum time cannot ensured, this method pauses
      * the necessary time until the url is released and returned as CrawlEntry object. In case that a profile
-     * for the computed Entry does not exist, null is returned
+     * for the computed Entry does not exist, null is returned.
+     * The host is taken from a queue of hosts ordered by the time when they may be accessed again. That time is
+     * computed when a host is put into the queue and updated when Latency.updateAfterLoad reports an access,
+     * so selecting a host does not need to look at all other hosts. While a host is popped it is not in the queue;
+     * concurrent loaders therefore always get different hosts.
      * @param delay true if the requester demands forced delays using explicit thread sleep
      * @param profile
      * @return a url in a CrawlEntry object
@@ -310,176 +356,29 @@ public class HostBalancer implements Balancer {
      */
     @Override
     public Request pop(boolean delay, CrawlSwitchboard cs, RobotsTxt robots) throws IOException {
+        if (robots != null) this.robots = robots;
         tryagain: while (true) try {
-            HostQueue rhq = null;
-            String rhh = null;
-        
-            synchronized (this) {
-                if (this.roundRobinHostHashes.size() == 0) {
-                    // refresh the round-robin cache
-                    this.roundRobinHostHashes.addAll(this.queues.keySet());
-                    // quickly get rid of small stacks to reduce number of files:
-                    // remove all stacks with more than 10 entries
-                    // this shall kick out small stacks to prevent that too many files are opened for very wide crawls
-                    boolean smallStacksExist = false;
-                    boolean singletonStacksExist = false;
-                    smallsearch: for (String s: this.roundRobinHostHashes) {
-                        HostQueue hq = this.queues.get(s);
-                        if (hq != null) {
-                            int size = hq.size();
-                            if (size ==  1) {singletonStacksExist = true; break smallsearch;}
-                            if (size <= 10) {smallStacksExist = true; break smallsearch;}
-                        }
-                    }
-                    if (singletonStacksExist || smallStacksExist) {
-                        Iterator<String> i = this.roundRobinHostHashes.iterator();
-                        smallstacks: while (i.hasNext()) {
-                            if (this.roundRobinHostHashes.size() <= 10) break smallstacks; // don't shrink the hosts until nothing is left
-                            String s = i.next();
-                            HostQueue hq = this.queues.get(s);
-                            if (hq == null) {i.remove(); continue smallstacks;}
-                            int delta = Latency.waitingRemainingGuessed(hq.getHost(), hq.getPort(), s, robots, ClientIdentification.yacyInternetCrawlerAgent);
-                            if (delta < 0) continue; // keep all non-waiting stacks; they are useful to speed up things
-                            // to protect all small stacks which have a fast throughput, remove all with long waiting time
-                            if (delta >= 1000) {i.remove(); continue smallstacks;}
-                            int size = hq.size();
-                            if (singletonStacksExist) {
-                                if (size != 1) {i.remove(); continue smallstacks;} // remove all non-singletons
-                            } else /*smallStacksExist*/ {
-                                if (size > 10) {i.remove(); continue smallstacks;} // remove all large stacks
-                            }
-                        }
-                    }
-                    if (this.roundRobinHostHashes.size() == 1) {
-                        if (log.isFine()) log.fine("(re-)initialized the round-robin queue with one host");
-                    } else {
-                        log.info("(re-)initialized the round-robin queue; " + this.roundRobinHostHashes.size() + " hosts.");
-                    }
-                }
-                if (this.roundRobinHostHashes.size() == 0) return null;
-                
-                // if the queue size is 1, just take that
-                if (this.roundRobinHostHashes.size() == 1) {
-                    rhh = this.roundRobinHostHashes.iterator().next();
-                    rhq = this.queues.get(rhh);
-                }
-                
-                if (rhq == null) {
-                    // mixed minimum sleep time / largest queue strategy:
-                    // create a map of sleep time / queue relations with a fuzzy sleep time (ms / 500).
-                    // if the entry with the smallest sleep time contains at least two entries,
-                    // then the larger one from these queues are selected.
-                    TreeMap<Integer, List<String>> fastTree = new TreeMap<>();
-                    mixedstrategy: for (String h: this.roundRobinHostHashes) {
-                        HostQueue hq = this.queues.get(h);
-                        if (hq != null) {
-                            int delta = Latency.waitingRemainingGuessed(hq.getHost(), hq.getPort(), h, robots, ClientIdentification.yacyInternetCrawlerAgent) / 200;
-                            if (delta < 0) delta = 0;
-                            List<String> queueHashes = fastTree.get(delta);
-                            if (queueHashes == null) {
-                                queueHashes = new ArrayList<>(2);
-                                fastTree.put(delta, queueHashes);
-                            }
-                            queueHashes.add(h);
-                            // check stop criteria
-                            List<String> firstEntries = fastTree.firstEntry().getValue();
-                            if (firstEntries.size() > 1) {
-                                // select larger queue from that list
-                                int largest = Integer.MIN_VALUE;
-                                for (String hh: firstEntries) {
-                                    HostQueue hhq = this.queues.get(hh);
-                                    if (hhq != null) {
-                                        int s = hhq.size();
-                                        if (s > largest) {
-                                            largest = s;
-                                            rhh = hh;
-                                        }
-                                    }
-                                }
-                                rhq = this.queues.get(rhh);
-                                break mixedstrategy;
-                            }
-                        }
-                    }
-                    if (rhq == null && fastTree.size() > 0) {
-                        // it may be possible that the lowest entry never has more than one queues assigned
-                        // in this case just take the smallest entry
-                        List<String> firstEntries = fastTree.firstEntry().getValue();
-                        assert firstEntries.size() == 1;
-                        rhh = firstEntries.get(0);
-                        rhq = this.queues.get(rhh);
-                    }
-                    // to prevent that the complete roundrobinhosthashes are taken for each round, we remove the entries from the top of the fast queue
-                    List<String> lastEntries = fastTree.size() > 0 ? fastTree.lastEntry().getValue() : null;
-                    if (lastEntries != null) {
-                        for (String h: lastEntries) this.roundRobinHostHashes.remove(h);
-                    }
-                }
+            final String rhh = this.readyHosts.poll();
+            if (rhh == null) return null;
+            final HostQueue rhq = this.queues.get(rhh);
+            if (rhq == null) continue tryagain; // the queue was removed
 
-                /*
-                // first strategy: get one entry which does not need sleep time
-                Iterator<String> nhhi = this.roundRobinHostHashes.iterator();
-                nosleep: while (nhhi.hasNext()) {
-                    rhh = nhhi.next();
-                    rhq = this.queues.get(rhh);
-                    if (rhq == null) {
-                        nhhi.remove();
-                        continue nosleep;
-            }
-                    int delta = Latency.waitingRemainingGuessed(rhq.getHost(), rhh, robots, ClientIdentification.yacyInternetCrawlerAgent);
-                    if (delta <= 10 || this.roundRobinHostHashes.size() == 1 || rhq.size() == 1) {
-                        nhhi.remove();
-                        break nosleep;
-                    }
-                }
-                if (rhq == null) {
-                    // second strategy: take from the largest stack
-                    int largest = Integer.MIN_VALUE;
-                    for (String h: this.roundRobinHostHashes) {
-                        HostQueue hq = this.queues.get(h);
-                        if (hq != null) {
-                            int s = hq.size();
-                            if (s > largest) {
-                                largest = s;
-                                rhh = h;
-                            }
-                        }
-                    }
-                    rhq = this.queues.get(rhh);
-                }
-                */
-            }
-            
-            if (rhq == null) {
-                this.roundRobinHostHashes.clear(); // force re-initialization
-                continue tryagain;
-            }
-            this.roundRobinHostHashes.remove(rhh); // prevent that the queue is used again
-            long timestamp = System.currentTimeMillis();
-            Request request = rhq.pop(delay, cs, robots); // this pop is outside of synchronization to prevent blocking of pushes
-            long actualwaiting = System.currentTimeMillis() - timestamp;
-            
-            if (actualwaiting > 1000) {
+            Request request;
+            try {
+                request = rhq.pop(delay, cs, robots); // this pop is outside of synchronization to prevent blocking of pushes
+            } finally {
+                // the host has just been selected; until Latency.updateAfterLoad reports the actual access
+                // we assume that it will be accessed now
+                final long readyTime = Math.max(nextAccessGuessed(rhq), System.currentTimeMillis() + ClientIdentification.yacyInternetCrawlerAgent.minimumDelta);
                 synchronized (this) {
-                    // to prevent that this occurs again, remove all stacks with positive delay times (which may be less after that waiting)
-                    Iterator<String> i = this.roundRobinHostHashes.iterator();
-                    protectcheck: while (i.hasNext()) {
-                        if (this.roundRobinHostHashes.size() <= 3) break protectcheck; // don't shrink the hosts until nothing is left
-                        String s = i.next();
-                        HostQueue hq = this.queues.get(s);
-                        if (hq == null) {i.remove(); continue protectcheck;}
-                        int delta = Latency.waitingRemainingGuessed(hq.getHost(), hq.getPort(), s, robots, ClientIdentification.yacyInternetCrawlerAgent);
-                        if (delta >= 0) {i.remove();}
+                    // synchronized with push: a queue is either removed or scheduled again, pushes to it are never lost
+                    if (rhq.isEmpty()) {
+                        if (this.queues.remove(rhh) != null) rhq.close();
+                    } else {
+                        this.readyHosts.schedule(rhh, readyTime);
                     }
                 }
             }
-            
-            if (rhq.isEmpty()) {
-                synchronized (this) {
-                    this.queues.remove(rhh);
-                }
-                rhq.close();
-            }
             if (request == null) continue tryagain;
             return request;
         } catch (ConcurrentModificationException e) {
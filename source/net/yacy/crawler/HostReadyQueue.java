@@ -0,0 +1,127 @@
+// HostReadyQueue.java
+// -----------------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.crawler;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A priority queue of host hashes ordered by the time when the host may be accessed again.
+ * The queue is used by the HostBalancer to select the next host without computing the waiting
+ * time of all hosts for each pop. All operations are O(log n) and do not lock; a host is
+ * contained at most once and is removed from the queue when it is polled. Hosts with the
+ * same ready time are returned in the order in which they were scheduled.
+ */
+final class HostReadyQueue {
+
+    private static final class Entry implements Comparable<Entry> {
+        private final String hosthash;
+        private final long readyTime;
+        private final long sequence;
+        private Entry(final String hosthash, final long readyTime, final long sequence) {
+            this.hosthash = hosthash;
+            this.readyTime = readyTime;
+            this.sequence = sequence;
+        }
+        @Override
+        public int compareTo(final Entry o) {
+            if (this.readyTime != o.readyTime) return this.readyTime < o.readyTime ? -1 : 1;
+            return this.sequence < o.sequence ? -1 : (this.sequence == o.sequence ? 0 : 1);
+        }
+    }
+
+    private final ConcurrentSkipListSet<Entry> order;        // the entries sorted by ready time
+    private final ConcurrentHashMap<String, Entry> current;  // the valid entry for each scheduled host; all other entries in the order set are stale
+    private final AtomicLong sequence;
+
+    HostReadyQueue() {
+        this.order = new ConcurrentSkipListSet<Entry>();
+        this.current = new ConcurrentHashMap<String, Entry>();
+        this.sequence = new AtomicLong(0);
+    }
+
+    /**
+     * put a host into the queue or move it to a new ready time if it is already queued
+     * @param hosthash
+     * @param readyTime the time in milliseconds when the host may be accessed again
+     */
+    void schedule(final String hosthash, final long readyTime) {
+        final Entry e = new Entry(hosthash, readyTime, this.sequence.incrementAndGet());
+        while (true) {
+            final Entry old = this.current.get(hosthash);
+            if (old == null) {
+                if (this.current.putIfAbsent(hosthash, e) == null) break;
+            } else if (this.current.replace(hosthash, old, e)) {
+                this.order.remove(old);
+                break;
+            }
+        }
+        this.order.add(e);
+    }
+
+    /**
+     * move a host to a new ready time, but only if it is queued. Hosts which are not queued
+     * (because they are currently used by a loader) are not added.
+     * @param hosthash
+     * @param readyTime the time in milliseconds when the host may be accessed again
+     * @return true if the host was queued and has been moved
+     */
+    boolean reschedule(final String hosthash, final long readyTime) {
+        final Entry old = this.current.get(hosthash);
+        if (old == null) return false;
+        final Entry e = new Entry(hosthash, readyTime, this.sequence.incrementAndGet());
+        if (!this.current.replace(hosthash, old, e)) return false; // polled or moved concurrently
+        this.order.remove(old);
+        this.order.add(e);
+        return true;
+    }
+
+    /**
+     * remove the host with the smallest ready time from the queue
+     * @return the host hash or null if the queue is empty
+     */
+    String poll() {
+        Entry e;
+        while ((e = this.order.pollFirst()) != null) {
+            if (this.current.remove(e.hosthash, e)) return e.hosthash;
+            // the entry is stale: the host has been moved or removed
+        }
+        return null;
+    }
+
+    boolean contains(final String hosthash) {
+        return this.current.containsKey(hosthash);
+    }
+
+    void remove(final String hosthash) {
+        final Entry old = this.current.remove(hosthash);
+        if (old != null) this.order.remove(old);
+    }
+
+    int size() {
+        return this.current.size();
+    }
+
+    void clear() {
+        this.current.clear();
+        this.order.clear();
+    }
+
+}
@@ -23,7 +23,6 @@
  */
 package net.yacy.crawler;
 
-import java.io.IOException;
 import java.net.MalformedURLException;
 import java.time.LocalDateTime;
 import java.util.Date;
@@ -296,13 +295,10 @@ public class RecrawlBusyThread extends AbstractBusyThread {
                     this.urlstack.add(new DigestURL((String) doc.getFieldValue(CollectionSchema.sku.getSolrFieldName())));
                 } catch (final MalformedURLException ex) {
                 	this.malformedUrlsCount++;
-                    try { // if index entry hasn't a valid url (useless), delete it
-                        solrConnector.deleteById((String) doc.getFieldValue(CollectionSchema.id.getSolrFieldName()));
-                        this.malformedUrlsDeletedCount++;
-                        ConcurrentLog.severe(THREAD_NAME, "deleted index document with invalid url " + (String) doc.getFieldValue(CollectionSchema.sku.getSolrFieldName()));
-                    } catch (final IOException ex1) {
-                        ConcurrentLog.severe(THREAD_NAME, ex1.getMessage());
-                    }
+                    // if index entry hasn't a valid url (useless), delete it
+                    this.sb.index.fulltext().remove(ASCII.getBytes((String) doc.getFieldValue(CollectionSchema.id.getSolrFieldName())));
+                    this.malformedUrlsDeletedCount++;
+                    ConcurrentLog.severe(THREAD_NAME, "deleted index document with invalid url " + (String) doc.getFieldValue(CollectionSchema.sku.getSolrFieldName()));
                 }
             }
             this.chunkstart = this.chunkstart + this.chunksize;
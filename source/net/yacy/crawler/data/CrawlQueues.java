@@ -56,6 +56,7 @@ import net.yacy.cora.protocol.ConnectionInfo;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.crawler.HarvestProcess;
 import net.yacy.crawler.data.NoticedURL.StackType;
+import net.yacy.crawler.retrieval.AsyncHTTPLoader;
 import net.yacy.crawler.retrieval.Request;
 import net.yacy.crawler.retrieval.Response;
 import net.yacy.crawler.robots.RobotsTxtEntry;
@@ -78,6 +79,7 @@ public class CrawlQueues {
     private final Switchboard sb;
     private final Loader[] worker;
     private final ArrayBlockingQueue<Request> workerQueue;
+    private AsyncHTTPLoader asyncLoader; // loads http requests of crawls without a worker thread for each load; null if switched off
     private ArrayList<String> remoteCrawlProviderHashes;
 
     public  NoticedURL noticeURL;
@@ -103,6 +105,17 @@ public class CrawlQueues {
         this.errorURL = new ErrorCache(sb);
         log.config("Opening delegatedURL..");
         this.delegatedURL = null;
+        this.asyncLoader = null;
+        if (sb.getConfigBool(SwitchboardConstants.CRAWLER_ASYNC, false)) {
+            try {
+                this.asyncLoader = new AsyncHTTPLoader(sb,
+                        sb.getConfigInt(SwitchboardConstants.CRAWLER_ASYNC_MAX_ACTIVE, 500),
+                        sb.getConfigInt(SwitchboardConstants.CRAWLER_ASYNC_THREADS, 8));
+                log.config("Started asynchronous http loader");
+            } catch (final IOException e) {
+                log.warn("cannot start asynchronous http loader, using loader threads only: " + e.getMessage());
+            }
+        }
     }
 
     public void initRemoteCrawlQueues () {
@@ -156,6 +169,7 @@ public class CrawlQueues {
                 }
             }
         }
+        if (this.asyncLoader != null) this.asyncLoader.close();
         if (this.delegatedURL != null) this.delegatedURL.clear();
     }
 
@@ -258,6 +272,7 @@ public class CrawlQueues {
                     if (r != null) map.put(r.url(), r);
                 }
             }
+            if (this.asyncLoader != null) map.putAll(this.asyncLoader.activeEntries());
             return map;
         }
     }
@@ -382,8 +397,13 @@ public class CrawlQueues {
                 } else {
                     if (!activeWorkerEntries().containsKey(urlEntry.url())) {
                         try {
-                            ensureLoaderRunning();
-                            this.workerQueue.put(urlEntry);
+                            if (this.asyncLoader != null && this.asyncLoader.accepts(urlEntry, profile)) {
+                                // load without a worker thread; the loader pushes the response to the indexer
+                                this.asyncLoader.load(urlEntry, profile);
+                            } else {
+                                ensureLoaderRunning();
+                                this.workerQueue.put(urlEntry);
+                            }
                         } catch (InterruptedException e) {
                             ConcurrentLog.logException(e);
                         }
@@ -430,7 +450,7 @@ public class CrawlQueues {
         }
 
         // check again
-        if (this.workerQueue.remainingCapacity() == 0) {
+        if (this.workerQueue.remainingCapacity() == 0 && (this.asyncLoader == null || this.asyncLoader.remainingCapacity() == 0)) {
             return "too many workers active: " + this.workerQueue.size();
         }
 
@@ -438,6 +458,11 @@ public class CrawlQueues {
         if (cautionCause != null) {
             return "online caution: " + cautionCause;
         }
+
+        // do not load more documents than the indexer can process
+        if (this.sb.indexingDocumentProcessor != null && this.sb.indexingDocumentProcessor.isSaturated()) {
+            return "indexing queue is saturated: " + this.sb.indexingDocumentProcessor.getQueueSize();
+        }
         return null;
     }
 
@@ -23,16 +23,29 @@
 
 package net.yacy.crawler.data;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import net.yacy.cora.document.id.DigestURL;
 import net.yacy.cora.document.id.MultiProtocolURL;
 import net.yacy.cora.federate.yacy.CacheStrategy;
+import net.yacy.cora.order.Base64Order;
 import net.yacy.cora.protocol.ClientIdentification;
+import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.crawler.robots.RobotsTxt;
 import net.yacy.crawler.robots.RobotsTxtEntry;
 import net.yacy.kelondro.util.MemoryControl;
@@ -46,6 +59,90 @@ public class Latency {
     private static final int mapMaxSize = 1000;
     private static final ConcurrentHashMap<String, Host> map = new ConcurrentHashMap<String, Host>();
 
+    // listeners which are informed when the access time of a host has changed
+    private static final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+    // the statistics of all known hosts; the map above contains the recently used hosts
+    private static File storeFile = null;
+    private static Store store = null;
+
+    // the adaptive delay of a host: errors and overload double the delay, each successful load decreases it
+    private static final int ADAPTIVE_DELAY_MIN = 1000;
+    private static final int ADAPTIVE_DELAY_MAX = 60000;
+    private static final int ADAPTIVE_DELAY_DECREASE = 100;
+
+    /**
+     * A listener is informed after a host was accessed, i.e. when the time
+     * when the host may be accessed again has changed.
+     */
+    public interface Listener {
+        public void hostAccessed(String hosthash);
+    }
+
+    public static void addListener(final Listener listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeListener(final Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * set the file where the host statistics are stored. The file is loaded when a host
+     * is requested the first time.
+     * @param file the statistics file
+     */
+    public static synchronized void init(final File file) {
+        map.clear();
+        storeFile = file;
+        store = null;
+    }
+
+    /**
+     * write the host statistics to the file given in init
+     */
+    public static synchronized void close() {
+        if (storeFile == null || store == null) return;
+        try {
+            store.save(storeFile);
+        } catch (final IOException e) {
+            ConcurrentLog.warn("Latency", "cannot write host statistics to " + storeFile + ": " + e.getMessage());
+        }
+    }
+
+    private static synchronized Store store() {
+        if (store == null) {
+            store = new Store();
+            if (storeFile != null && storeFile.exists()) try {
+                store.load(storeFile);
+                ConcurrentLog.info("Latency", "loaded statistics of " + store.size() + " hosts");
+            } catch (final IOException e) {
+                ConcurrentLog.warn("Latency", "cannot read host statistics from " + storeFile + ": " + e.getMessage());
+            }
+        }
+        return store;
+    }
+
+    /**
+     * get the statistics of a host; hosts which are not in the map of recently used hosts
+     * are taken from the store
+     * @param hosthash
+     * @return the host or null if the host was never accessed
+     */
+    private static Host get(final String hosthash) {
+        Host h = map.get(hosthash);
+        if (h != null || storeFile == null) return h;
+        h = store().get(hosthash);
+        if (h != null) put(hosthash, h);
+        return h;
+    }
+
+    private static void put(final String hosthash, final Host h) {
+        if (map.size() > mapMaxSize || MemoryControl.shortStatus()) map.clear();
+        map.put(hosthash, h);
+        if (storeFile != null) store().put(hosthash, h);
+    }
+
     /**
      * update the latency entry after a host was selected for queueing into the loader
      * @param url
@@ -55,11 +152,12 @@ public class Latency {
         final String host = url.getHost();
         if (host == null) return;
         String hosthash = url.hosthash();
-        Host h = map.get(hosthash);
+        Host h = get(hosthash);
         if (h == null) {
             h = new Host(host, Switchboard.getSwitchboard().getConfigInt("crawler.defaultAverageLatency", 500), robotsCrawlDelay);
-            if (map.size() > mapMaxSize || MemoryControl.shortStatus()) map.clear();
-            map.put(hosthash, h);
+            put(hosthash, h);
+        } else {
+            h.robotsMinDelay = robotsCrawlDelay;
         }
     }
 
@@ -72,11 +170,10 @@ public class Latency {
         final String host = url.getHost();
         if (host == null) return;
         String hosthash = url.hosthash();
-        Host h = map.get(hosthash);
+        Host h = get(hosthash);
         if (h == null) {
             h = new Host(host, 500, 0);
-            if (map.size() > mapMaxSize || MemoryControl.shortStatus()) map.clear();
-            map.put(hosthash, h);
+            put(hosthash, h);
         } else {
             h.update();
         }
@@ -91,20 +188,38 @@ public class Latency {
         final String host = url.getHost();
         if (host == null) return;
         String hosthash = url.hosthash();
-        Host h = map.get(hosthash);
+        Host h = get(hosthash);
         if (h == null) {
             h = new Host(host, time, 0);
-            if (map.size() > mapMaxSize || MemoryControl.shortStatus()) map.clear();
-            map.put(hosthash, h);
+            put(hosthash, h);
         } else {
             h.update(time);
         }
+        for (final Listener listener: listeners) listener.hostAccessed(hosthash);
+    }
+
+    /**
+     * update the latency entry after the access to a host failed because of a network error
+     * or an error response of the server; this increases the adaptive delay of the host
+     * @param url
+     */
+    public static void updateAfterError(final DigestURL url) {
+        final String host = url.getHost();
+        if (host == null) return;
+        String hosthash = url.hosthash();
+        Host h = get(hosthash);
+        if (h == null) {
+            h = new Host(host, 500, 0);
+            put(hosthash, h);
+        }
+        h.error();
+        for (final Listener listener: listeners) listener.hostAccessed(hosthash);
     }
 
     private static Host host(final DigestURL url) {
         final String host = url.getHost();
         if (host == null) return null;
-        return map.get(url.hosthash());
+        return get(url.hosthash());
     }
 
     public static Iterator<Map.Entry<String, Host>> iterator() {
@@ -149,36 +264,76 @@ public class Latency {
     public static int waitingRemainingGuessed(final String hostname, final int port, final String hosthash, final RobotsTxt robots, final ClientIdentification.Agent agent) {
 
         // first check if the domain was _ever_ accessed before
-        final Host host = map.get(hosthash);
+        final Host host = get(hosthash);
         if (host == null) return Integer.MIN_VALUE; // no delay if host is new; use Integer because there is a cast to int somewhere
 
+        // the time since last access to the domain is the basis of the remaining calculation
+        final int timeSinceLastAccess = (int) (System.currentTimeMillis() - host.lastacc());
+
+        final int waiting = waitingGuessed(host, hostname, port, robots, agent);
+        if (waiting < 0) return -timeSinceLastAccess; // no limits if granted exclusively for this peer
+        return waiting - timeSinceLastAccess;
+    }
+
+    /**
+     * guess the time when a host may be accessed again; this is the time of the last access plus
+     * the waiting time as computed by waitingRemainingGuessed
+     * @param hostname
+     * @param port
+     * @param hosthash
+     * @param robots
+     * @param agent
+     * @return the time in milliseconds when the host may be accessed; 0 if the host was never accessed before
+     */
+    public static long nextAccessGuessed(final String hostname, final int port, final String hosthash, final RobotsTxt robots, final ClientIdentification.Agent agent) {
+        final Host host = get(hosthash);
+        if (host == null) return 0; // no delay if host is new
+        final int waiting = waitingGuessed(host, hostname, port, robots, agent);
+        return host.lastacc() + Math.max(0, waiting);
+    }
+
+    /**
+     * @return the waiting time between two accesses to the host in milliseconds or -1 if the robots.txt grants exclusive access
+     */
+    private static int waitingGuessed(final Host host, final String hostname, final int port, final RobotsTxt robots, final ClientIdentification.Agent agent) {
+
         // find the minimum waiting time based on the network domain (local or global)
         int waiting = agent.minimumDelta;
 
         // if we have accessed the domain many times, get slower (the flux factor)
         waiting += host.flux(waiting);
 
+        // get slower if the host had errors or was overloaded
+        waiting += host.adaptiveDelay();
+
         // use the access latency as rule how fast we can access the server
         // this applies also to localhost, but differently, because it is not necessary to
         // consider so many external accesses
         waiting = Math.max(waiting, (int) (host.average() * Switchboard.getSwitchboard().getConfigFloat(SwitchboardConstants.CRAWLER_LATENCY_FACTOR, 0.5f)));
 
         // if the number of same hosts as in the url in the loading queue is greater than MaxSameHostInQueue, then increase waiting
-        if (Switchboard.getSwitchboard().crawlQueues.hostcount(hostname) > Switchboard.getSwitchboard().getConfigInt(SwitchboardConstants.CRAWLER_MAX_SAME_HOST_IN_QUEUE, 20)) waiting += 3000;
-        
-        // the time since last access to the domain is the basis of the remaining calculation
-        final int timeSinceLastAccess = (int) (System.currentTimeMillis() - host.lastacc());
+        if (queuedHostCount(hostname) > Switchboard.getSwitchboard().getConfigInt(SwitchboardConstants.CRAWLER_MAX_SAME_HOST_IN_QUEUE, 20)) waiting += 3000;
         
         // find the delay as given by robots.txt on target site
         if (robots != null) {
             int robotsDelay = waitingRobots(hostname + ":" + port, robots, agent, false);
-            if (robotsDelay < 0) return -timeSinceLastAccess; // no limits if granted exclusively for this peer
+            if (robotsDelay < 0) return -1; // no limits if granted exclusively for this peer
             waiting = Math.max(waiting, robotsDelay);
         }
 
-        return Math.min(60000, waiting) - timeSinceLastAccess;
+        return Math.min(60000, waiting);
     }
     
+    /**
+     * @return the number of urls of the host in the loading queue; 0 while the crawl queues are not yet initialized
+     */
+    private static int queuedHostCount(final String hostname) {
+        final Switchboard sb = Switchboard.getSwitchboard();
+        if (sb == null) return 0;
+        final CrawlQueues crawlQueues = sb.crawlQueues;
+        return crawlQueues == null ? 0 : crawlQueues.hostcount(hostname);
+    }
+
     /**
      * calculates how long should be waited until the domain can be accessed again
      * this follows from:
@@ -203,11 +358,14 @@ public class Latency {
         // if we have accessed the domain many times, get slower (the flux factor)
         if (!local) waiting += host.flux(waiting);
 
+        // get slower if the host had errors or was overloaded
+        waiting += host.adaptiveDelay();
+
         // use the access latency as rule how fast we can access the server
         waiting = Math.max(waiting, (int) (host.average() * Switchboard.getSwitchboard().getConfigFloat(SwitchboardConstants.CRAWLER_LATENCY_FACTOR, 0.5f)));
         
         // if the number of same hosts as in the url in the loading queue is greater than MaxSameHostInQueue, then increase waiting
-        if (Switchboard.getSwitchboard().crawlQueues.hostcount(url.getHost()) > Switchboard.getSwitchboard().getConfigInt(SwitchboardConstants.CRAWLER_MAX_SAME_HOST_IN_QUEUE, 20)) waiting += 3000;
+        if (queuedHostCount(url.getHost()) > Switchboard.getSwitchboard().getConfigInt(SwitchboardConstants.CRAWLER_MAX_SAME_HOST_IN_QUEUE, 20)) waiting += 3000;
 
         // the time since last access to the domain is the basis of the remaining calculation
         final int timeSinceLastAccess = (int) (System.currentTimeMillis() - host.lastacc());
@@ -240,6 +398,10 @@ public class Latency {
             waiting += flux;
             s.append(", flux = ").append(flux);
         }
+
+        // get slower if the host had errors or was overloaded
+        waiting += host.adaptiveDelay();
+        s.append(", adaptiveDelay = ").append(host.adaptiveDelay());
         
         // use the access latency as rule how fast we can access the server
         // this applies also to localhost, but differently, because it is not necessary to
@@ -248,7 +410,7 @@ public class Latency {
         waiting = Math.max(waiting, (int) (host.average() * Switchboard.getSwitchboard().getConfigFloat(SwitchboardConstants.CRAWLER_LATENCY_FACTOR, 0.5f)));
         
         // if the number of same hosts as in the url in the loading queue is greater than MaxSameHostInQueue, then increase waiting
-        int hostcount = Switchboard.getSwitchboard().crawlQueues.hostcount(url.getHost());
+        int hostcount = queuedHostCount(url.getHost());
         if (hostcount > Switchboard.getSwitchboard().getConfigInt(SwitchboardConstants.CRAWLER_MAX_SAME_HOST_IN_QUEUE, 20)) {
             s.append(", hostcount = ").append(hostcount);
             waiting += 5000;
@@ -301,38 +463,62 @@ public class Latency {
     }
     
     public static final class Host {
-        private AtomicLong timeacc;
-        private AtomicLong lastacc;
-        private AtomicInteger count;
+        private final AtomicInteger average;
+        private final AtomicLong lastacc;
+        private final AtomicInteger count;
+        private final AtomicInteger errors;
+        private final AtomicInteger adaptiveDelay;
+        private final long firstacc;
         private final String host;
-        private long robotsMinDelay;
+        private volatile long robotsMinDelay;
         private Host(final String host, final long time, long robotsMinDelay) {
+            this(host, (int) Math.min(30000, time), 1, 0, 0, robotsMinDelay, System.currentTimeMillis(), System.currentTimeMillis());
+        }
+        private Host(final String host, final int average, final int count, final int errors, final int adaptiveDelay, final long robotsMinDelay, final long firstacc, final long lastacc) {
             this.host = host;
-            this.timeacc = new AtomicLong(time);
-            this.count = new AtomicInteger(1);
-            this.lastacc = new AtomicLong(System.currentTimeMillis());
+            this.average = new AtomicInteger(average);
+            this.count = new AtomicInteger(count);
+            this.errors = new AtomicInteger(errors);
+            this.adaptiveDelay = new AtomicInteger(adaptiveDelay);
             this.robotsMinDelay = robotsMinDelay;
+            this.firstacc = firstacc;
+            this.lastacc = new AtomicLong(lastacc);
         }
         private void update(final long time) {
-            if (this.count.get() > 100) {
-                synchronized(this) {
-                    // faster adoption to new values
-                    this.timeacc.set(this.timeacc.get() / this.count.get());
-                    this.count.set(1);
-                }
-            }
+            final int t = (int) Math.min(30000, time);
+            final int average = this.average.get();
             this.lastacc.set(System.currentTimeMillis());
-            this.timeacc.addAndGet(Math.min(30000, time));
+            // exponentially weighted moving average, the latest loading time has a weight of 1/8
+            this.average.set(average + (t - average) / 8);
             this.count.incrementAndGet();
+            if (t > 2000 && t > 3 * average) {
+                // the host is much slower than usual, it may be overloaded
+                increaseDelay();
+            } else {
+                final int delay = this.adaptiveDelay.get();
+                if (delay > 0) this.adaptiveDelay.compareAndSet(delay, Math.max(0, delay - ADAPTIVE_DELAY_DECREASE));
+            }
         }
         private void update() {
             this.lastacc.set(System.currentTimeMillis());
         }
+        private void error() {
+            this.lastacc.set(System.currentTimeMillis());
+            this.errors.incrementAndGet();
+            increaseDelay();
+        }
+        private void increaseDelay() {
+            final int delay = this.adaptiveDelay.get();
+            this.adaptiveDelay.compareAndSet(delay, Math.min(ADAPTIVE_DELAY_MAX, Math.max(ADAPTIVE_DELAY_MIN, delay * 2)));
+        }
         public int count() {
             return this.count.get();
         }
+        /**
+         * @return the average loading time in milliseconds
+         */
         public int average() {
-            return (int) (this.timeacc.get() / this.count.get());
+            return this.average.get();
         }
         public long lastacc() {
             return this.lastacc.get();
@@ -343,15 +529,171 @@ public class Latency {
         public long robotsDelay() {
             return this.robotsMinDelay;
         }
+        /**
+         * @return the number of failed accesses
+         */
+        public int errors() {
+            return this.errors.get();
+        }
+        /**
+         * @return the ratio of failed accesses to all accesses
+         */
+        public float errorRate() {
+            final int errors = this.errors.get();
+            return ((float) errors) / (errors + this.count.get());
+        }
+        /**
+         * @return the additional delay in milliseconds because of errors or overload of the host
+         */
+        public int adaptiveDelay() {
+            return this.adaptiveDelay.get();
+        }
+        /**
+         * @return the number of loaded documents per minute since the host was accessed the first time
+         */
+        public float throughput() {
+            final long time = this.lastacc.get() - this.firstacc;
+            return time < 1000 ? 0.0f : this.count.get() * 60000.0f / time;
+        }
         /**
          * Used by crawler to calculate additional access delay time for often accessed hosts
-         * (access count > 10000 returns half of the range parameter) linear incrementet from 0 up to (range div 2)
+         * linear incrementet from 0 up to (range div 200)
          * @param range the current delay time
-         * @return the additional delay in ms (max: range div 2)
+         * @return the additional delay in ms (max: range div 200)
          */
         public int flux(final int range) {
-            return this.count.get() >= 10000 ? range >> 1 : (range * this.count.get() / 10000) >> 1;
+            // the access count was reset after 100 accesses when the average was computed from the sum of all loading times;
+            // the count is limited here to keep the delay as it was
+            return (range * Math.min(101, this.count.get()) / 10000) >> 1;
         }
     }
     
+    /**
+     * The statistics of all hosts which were accessed, with the host hash as primitive key of
+     * an open addressing table. The store is written to a file when YaCy shuts down; hosts
+     * which were not accessed for a long time are removed if the store exceeds its maximum size.
+     */
+    private static final class Store {
+
+        private static final int FORMAT = 1;
+        private static final int MAX_SIZE = 100000;
+
+        private long[] keys = new long[1024]; // the decoded host hashes plus 1, 0 marks an empty slot
+        private Host[] hosts = new Host[1024];
+        private int size = 0;
+
+        private static long key(final String hosthash) {
+            return Base64Order.enhancedCoder.decodeLong(hosthash) + 1;
+        }
+
+        private int slot(final long key) {
+            final int mask = this.keys.length - 1;
+            int i = (int) (key ^ (key >>> 32)) * 0x9E3779B9 & mask;
+            while (this.keys[i] != 0 && this.keys[i] != key) i = (i + 1) & mask;
+            return i;
+        }
+
+        private synchronized int size() {
+            return this.size;
+        }
+
+        private synchronized Host get(final String hosthash) {
+            final int i = slot(key(hosthash));
+            return this.keys[i] == 0 ? null : this.hosts[i];
+        }
+
+        private synchronized void put(final String hosthash, final Host host) {
+            put(key(hosthash), host);
+        }
+
+        private void put(final long key, final Host host) {
+            if (this.size >= MAX_SIZE) trim();
+            final int i = slot(key);
+            if (this.keys[i] == 0) {
+                this.keys[i] = key;
+                this.size++;
+            }
+            this.hosts[i] = host;
+            if (this.size * 2 > this.keys.length) rehash(this.keys.length * 2);
+        }
+
+        private void rehash(final int capacity) {
+            final long[] oldKeys = this.keys;
+            final Host[] oldHosts = this.hosts;
+            this.keys = new long[capacity];
+            this.hosts = new Host[capacity];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == 0) continue;
+                final int j = slot(oldKeys[i]);
+                this.keys[j] = oldKeys[i];
+                this.hosts[j] = oldHosts[i];
+            }
+        }
+
+        /**
+         * remove the half of the hosts which were not accessed for the longest time
+         */
+        private void trim() {
+            final long[] times = new long[this.size];
+            int c = 0;
+            for (int i = 0; i < this.keys.length; i++) if (this.keys[i] != 0) times[c++] = this.hosts[i].lastacc();
+            Arrays.sort(times);
+            final long limit = times[this.size / 2];
+            final long[] oldKeys = this.keys;
+            final Host[] oldHosts = this.hosts;
+            this.keys = new long[oldKeys.length];
+            this.hosts = new Host[oldHosts.length];
+            this.size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == 0 || oldHosts[i].lastacc() < limit) continue;
+                final int j = slot(oldKeys[i]);
+                this.keys[j] = oldKeys[i];
+                this.hosts[j] = oldHosts[i];
+                this.size++;
+            }
+        }
+
+        private synchronized void load(final File file) throws IOException {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readInt() != FORMAT) throw new IOException("unknown format");
+                final int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    final long key = in.readLong();
+                    final String host = in.readUTF();
+                    final int average = in.readInt();
+                    final int accesses = in.readInt();
+                    final int errors = in.readInt();
+                    final int adaptiveDelay = in.readInt();
+                    final long robotsDelay = in.readLong();
+                    final long firstacc = in.readLong();
+                    final long lastacc = in.readLong();
+                    put(key, new Host(host, average, accesses, errors, adaptiveDelay, robotsDelay, firstacc, lastacc));
+                }
+            }
+        }
+
+        private synchronized void save(final File file) throws IOException {
+            final File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(FORMAT);
+                out.writeInt(this.size);
+                for (int i = 0; i < this.keys.length; i++) {
+                    if (this.keys[i] == 0) continue;
+                    final Host host = this.hosts[i];
+                    out.writeLong(this.keys[i]);
+                    out.writeUTF(host.host());
+                    out.writeInt(host.average());
+                    out.writeInt(host.count());
+                    out.writeInt(host.errors());
+                    out.writeInt(host.adaptiveDelay());
+                    out.writeLong(host.robotsDelay());
+                    out.writeLong(host.firstacc);
+                    out.writeLong(host.lastacc());
+                }
+            }
+            if (file.exists() && !file.delete()) throw new IOException("cannot delete " + file);
+            if (!tmp.renameTo(file)) throw new IOException("cannot rename " + tmp + " to " + file);
+        }
+    }
+
 }
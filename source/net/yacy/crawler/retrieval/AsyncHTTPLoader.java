@@ -0,0 +1,379 @@
+// AsyncHTTPLoader.java
+// ---------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.crawler.retrieval;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.client.util.BufferingResponseListener;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+import net.yacy.cora.document.id.DigestURL;
+import net.yacy.cora.federate.solr.FailCategory;
+import net.yacy.cora.federate.yacy.CacheStrategy;
+import net.yacy.cora.protocol.Domains;
+import net.yacy.cora.protocol.HeaderFramework;
+import net.yacy.cora.protocol.RequestHeader;
+import net.yacy.cora.protocol.ResponseHeader;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.crawler.CrawlSwitchboard;
+import net.yacy.crawler.data.Cache;
+import net.yacy.crawler.data.CrawlProfile;
+import net.yacy.crawler.data.Latency;
+import net.yacy.crawler.robots.RobotsTxt;
+import net.yacy.crawler.robots.RobotsTxtEntry;
+import net.yacy.kelondro.io.ByteCount;
+import net.yacy.kelondro.util.NamePrefixThreadFactory;
+import net.yacy.kelondro.workflow.WorkflowJob;
+import net.yacy.repository.Blacklist.BlacklistType;
+import net.yacy.search.Switchboard;
+import net.yacy.search.SwitchboardConstants;
+
+/**
+ * An asynchronous loader for crawl requests. Requests are sent with a non-blocking http client
+ * which keeps persistent connections for each host; a small thread pool handles all connections,
+ * so the number of concurrent loads is not limited by the number of crawler threads. Loaded
+ * documents are handed over to the indexer with Switchboard.toIndexer, which puts them into
+ * the indexingDocumentProcessor queue, just like the CrawlQueues loader threads do.
+ *
+ * The loader handles only the plain case of the crawler: http(s) requests of crawl profiles which
+ * are not answered from the cache and for which the robots.txt is already known. All other requests
+ * are refused by {@link #accepts(Request, CrawlProfile)} and must be loaded with the LoaderDispatcher.
+ * Politeness is not handled here: the HostBalancer only releases a request when the host may be
+ * accessed again, and this loader reports each access to Latency.
+ *
+ * Completed responses are evaluated by a separate pool of processing threads, because handing a
+ * document to the indexer or stacking a redirect may block; the threads of the http client must
+ * never wait for the indexer.
+ */
+public final class AsyncHTTPLoader {
+
+    private final static ConcurrentLog log = new ConcurrentLog("AsyncHTTPLoader");
+
+    /** maximum number of connections which are kept for a single host */
+    private static final int MAX_CONNECTIONS_PER_HOST = 2;
+
+    private final Switchboard sb;
+    private final HTTPLoader httpLoader; // used to create the request headers and to evaluate redirects
+    private final HttpClient client;
+    private final ThreadPoolExecutor processor; // evaluates completed responses outside of the http client threads
+    private final int timeout;
+    private final Semaphore slots; // one permit for each load which may be active at the same time
+    private final Map<DigestURL, Request> active;
+    private final AtomicLong loaded, failed;
+
+    /**
+     * @param sb the switchboard
+     * @param maxActive the maximum number of concurrent loads
+     * @param threads the number of threads which handle all connections and responses
+     * @throws IOException if the http client cannot be started
+     */
+    public AsyncHTTPLoader(final Switchboard sb, final int maxActive, final int threads) throws IOException {
+        this.sb = sb;
+        this.httpLoader = new HTTPLoader(sb, log);
+        this.timeout = (int) sb.getConfigLong("crawler.clientTimeout", 30000);
+        this.slots = new Semaphore(maxActive);
+        this.active = new ConcurrentHashMap<DigestURL, Request>();
+        this.loaded = new AtomicLong(0);
+        this.failed = new AtomicLong(0);
+
+        // the queue cannot grow beyond maxActive because every queued response holds a slot
+        this.processor = new ThreadPoolExecutor(Math.max(1, threads), Math.max(1, threads),
+                0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new NamePrefixThreadFactory("AsyncHTTPLoader.process"));
+
+        final QueuedThreadPool pool = new QueuedThreadPool(Math.max(4, threads), 2);
+        pool.setName("AsyncHTTPLoader");
+        pool.setDaemon(true);
+        this.client = new HttpClient(new SslContextFactory(true)); // accept all certificates as the HTTPClient does
+        this.client.setExecutor(pool);
+        this.client.setMaxConnectionsPerDestination(MAX_CONNECTIONS_PER_HOST);
+        this.client.setMaxRequestsQueuedPerDestination(Math.max(1024, maxActive));
+        this.client.setFollowRedirects(false); // we want to handle redirection ourselves, so we don't index pages twice
+        this.client.setConnectTimeout(this.timeout);
+        this.client.setIdleTimeout(25000); // keep connections as long as the HTTPClient keep-alive strategy does
+        this.client.setUserAgentField(null); // the agent is set for each request
+        try {
+            this.client.start();
+        } catch (final Exception e) {
+            throw new IOException("cannot start http client: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * check if a request can be loaded with this loader
+     * @param request
+     * @param profile the crawl profile of the request
+     * @return true if the request can be loaded asynchronously; false if it must be loaded with the LoaderDispatcher
+     */
+    public boolean accepts(final Request request, final CrawlProfile profile) {
+        if (profile == null || CrawlSwitchboard.DEFAULT_PROFILES.contains(profile.name())) return false;
+        final DigestURL url = request.url();
+        final String protocol = url.getProtocol();
+        if (!protocol.equals("http") && !protocol.equals("https")) return false;
+        final String host = url.getHost();
+        if (host == null || host.length() < 2 || Domains.isLocalhost(host)) return false;
+        // requests which may be answered from the cache are handled by the LoaderDispatcher
+        final CacheStrategy cacheStrategy = profile.cacheStrategy();
+        if (cacheStrategy == CacheStrategy.CACHEONLY) return false;
+        if (cacheStrategy != CacheStrategy.NOCACHE && Cache.has(url.hash())) return false;
+        // the robots.txt must be known already, because it cannot be loaded here without blocking
+        return this.sb.robots.getEntry(RobotsTxt.getHostPort(url), profile.getAgent(), false) != null;
+    }
+
+    /**
+     * @return the number of loads which can be started without waiting
+     */
+    public int remainingCapacity() {
+        return this.slots.availablePermits();
+    }
+
+    /**
+     * @return the requests which are currently loaded
+     */
+    public Map<DigestURL, Request> activeEntries() {
+        return this.active;
+    }
+
+    public long loadedCount() {
+        return this.loaded.get();
+    }
+
+    public long failedCount() {
+        return this.failed.get();
+    }
+
+    /**
+     * start loading a request. This waits only if the maximum number of concurrent loads is reached.
+     * The loaded document is pushed to the indexer, errors are written to the error cache.
+     * @param request a request which was accepted by {@link #accepts(Request, CrawlProfile)}
+     * @param profile the crawl profile of the request
+     * @throws InterruptedException
+     */
+    public void load(final Request request, final CrawlProfile profile) throws InterruptedException {
+        this.slots.acquire();
+        try {
+            start(request, profile);
+        } catch (final Throwable e) {
+            finish(request, profile, request.url(), "cannot start load - " + e.getMessage());
+        }
+    }
+
+    private void start(final Request request, final CrawlProfile profile) throws IOException {
+        final DigestURL url = request.url();
+        request.setStatus("worker-checkingrobots", WorkflowJob.STATUS_STARTED);
+        final RobotsTxtEntry robotsEntry = this.sb.robots.getEntry(RobotsTxt.getHostPort(url), profile.getAgent(), false);
+        if (robotsEntry != null && robotsEntry.isDisallowed(url)) {
+            this.sb.crawlQueues.errorURL.push(url, request.depth(), profile, FailCategory.FINAL_ROBOTS_RULE, "denied by robots.txt", -1);
+            request.setStatus("worker-disallowed", WorkflowJob.STATUS_FINISHED);
+            this.slots.release();
+            return;
+        }
+
+        // check if url is in blacklist
+        final String hostlow = url.getHost().toLowerCase(Locale.ROOT);
+        if (Switchboard.urlBlacklist.isListed(BlacklistType.CRAWLER, hostlow, url.getFile())) {
+            this.sb.crawlQueues.errorURL.push(url, request.depth(), profile, FailCategory.FINAL_LOAD_CONTEXT, "url in blacklist", -1);
+            request.setStatus("worker-error", WorkflowJob.STATUS_FINISHED);
+            this.slots.release();
+            return;
+        }
+
+        final RequestHeader requestHeader = this.httpLoader.createRequestheader(request, profile.getAgent());
+        final int maxFileSize = this.sb.loader.protocolMaxFileSize(url);
+        final org.eclipse.jetty.client.api.Request httpRequest = this.client.newRequest(url.toNormalform(true))
+                .method(HttpMethod.GET)
+                .timeout(this.timeout, TimeUnit.MILLISECONDS);
+        for (final Map.Entry<String, String> entry: requestHeader.entrySet()) {
+            // the client sets its own accept-encoding header for the content encodings it can decode
+            if (entry.getKey().equalsIgnoreCase(HeaderFramework.ACCEPT_ENCODING)) continue;
+            httpRequest.header(entry.getKey(), entry.getValue());
+        }
+
+        this.active.put(url, request);
+        request.setStatus("loading", WorkflowJob.STATUS_RUNNING);
+        Latency.updateBeforeLoad(url);
+        final long start = System.currentTimeMillis();
+        httpRequest.send(new BufferingResponseListener(maxFileSize < 0 ? Integer.MAX_VALUE : maxFileSize) {
+            private long contentLength = -1;
+
+            @Override
+            public void onHeaders(final org.eclipse.jetty.client.api.Response response) {
+                this.contentLength = response.getHeaders().getLongField(HttpHeader.CONTENT_LENGTH.asString());
+                super.onHeaders(response);
+            }
+
+            @Override
+            public void onComplete(final Result result) {
+                // the listener aborts the response with an IllegalArgumentException when the content exceeds the buffer
+                final boolean tooLarge = result.isFailed() && maxFileSize >= 0 &&
+                        (this.contentLength > maxFileSize || result.getFailure() instanceof IllegalArgumentException);
+                // as in HTTPLoader: network errors and overloaded or failing servers increase the delay of the host
+                final int statusCode = result.getResponse() == null ? -1 : result.getResponse().getStatus();
+                if ((result.isFailed() && !tooLarge) || statusCode == 429 || statusCode >= 500) {
+                    Latency.updateAfterError(url);
+                } else if (!result.isFailed() && statusCode < 400) {
+                    Latency.updateAfterLoad(url, System.currentTimeMillis() - start);
+                }
+                final byte[] content = result.isFailed() ? null : getContent();
+                final long contentLength = this.contentLength;
+                try {
+                    AsyncHTTPLoader.this.processor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            String error;
+                            try {
+                                if (tooLarge) {
+                                    AsyncHTTPLoader.this.sb.crawlQueues.errorURL.push(url, request.depth(), profile, FailCategory.FINAL_PROCESS_CONTEXT, "file size limit exceeded", result.getResponse().getStatus());
+                                    error = "REJECTED URL " + url + " because file size " + (contentLength > maxFileSize ? "'" + contentLength + "' " : "") + "exceeds max filesize limit of " + maxFileSize + " bytes. (GET)$";
+                                } else if (result.isFailed()) {
+                                    final Throwable e = result.getFailure();
+                                    error = "load error - " + (e == null ? "unknown" : e.getMessage());
+                                } else {
+                                    error = processResponse(request, profile, requestHeader, result.getResponse(), content);
+                                }
+                            } catch (final Throwable e) {
+                                error = e.getMessage() + " - in worker";
+                            }
+                            finish(request, profile, url, error);
+                        }
+                    });
+                } catch (final RejectedExecutionException e) {
+                    finish(request, profile, url, "loader closed");
+                }
+            }
+        });
+    }
+
+    /**
+     * evaluate a response and push a loaded document to the indexer
+     * @return null if the document was pushed to the indexer, an error message otherwise; messages ending with '$' were already written to the error cache
+     */
+    private String processResponse(final Request request, final CrawlProfile profile, final RequestHeader requestHeader,
+            final org.eclipse.jetty.client.api.Response httpResponse, final byte[] content) throws IOException {
+        final int statusCode = httpResponse.getStatus();
+        final String statusLine = statusCode + " " + httpResponse.getReason();
+        final ResponseHeader responseHeader = new ResponseHeader(statusCode);
+        final boolean decoded = httpResponse.getHeaders().containsKey(HeaderFramework.CONTENT_ENCODING);
+        for (final HttpField field: httpResponse.getHeaders()) {
+            // the client has already decoded the content
+            if (decoded && (field.getName().equalsIgnoreCase(HeaderFramework.CONTENT_ENCODING) || field.getName().equalsIgnoreCase(HeaderFramework.CONTENT_LENGTH))) continue;
+            responseHeader.add(field.getName(), field.getValue());
+        }
+        final String requestURLString = request.url().toNormalform(true);
+
+        if (statusCode > 299 && statusCode < 310) {
+            final DigestURL redirectionUrl = this.httpLoader.extractRedirectURL(request, profile, request.url(), statusCode, statusLine, responseHeader, requestURLString);
+            if (!this.sb.getConfigBool(SwitchboardConstants.CRAWLER_FOLLOW_REDIRECTS, true)) {
+                this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile, FailCategory.FINAL_PROCESS_CONTEXT, "redirection not wanted", statusCode);
+                return "REJECTED UNWANTED REDIRECTION '" + statusLine + "' for URL '" + requestURLString + "'$";
+            }
+            // put redirect url on the crawler queue to repeat a double-check
+            final Request redirectedRequest = new Request(request.initiator(), redirectionUrl, request.referrerhash(), request.name(),
+                    request.appdate(), request.profileHandle(), request.depth(), request.timezoneOffset());
+            final String rejectReason = this.sb.crawlStacker.stackCrawl(redirectedRequest);
+            if (rejectReason != null) return "CRAWLER Redirect of URL=" + requestURLString + " aborted. Reason : " + rejectReason;
+            if (log.isFine()) log.fine("CRAWLER Redirect of URL=" + requestURLString + " to " + redirectionUrl.toNormalform(false) + " placed on crawler queue for double-check");
+            return null;
+        }
+        if (content == null) {
+            this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile, FailCategory.TEMPORARY_NETWORK_FAILURE, "no response body", statusCode);
+            return "REJECTED EMPTY RESPONSE BODY '" + statusLine + "' for URL '" + requestURLString + "'$";
+        }
+        if (statusCode != 200 && statusCode != 203) {
+            this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile, FailCategory.TEMPORARY_NETWORK_FAILURE, "wrong http status code", statusCode);
+            return "REJECTED WRONG STATUS TYPE '" + statusLine + "' for URL '" + requestURLString + "'$";
+        }
+        ByteCount.addAccountCount(ByteCount.CRAWLER, content.length);
+
+        final Response response = new Response(request, requestHeader, responseHeader, profile, false, content);
+        request.setStatus("loaded", WorkflowJob.STATUS_RUNNING);
+
+        // store the content in the cache as the LoaderDispatcher does
+        if (profile.storeHTCache()) {
+            final String storeError = response.shallStoreCacheForCrawler();
+            if (storeError == null) {
+                try {
+                    Cache.store(response.url(), response.getResponseHeader(), content);
+                } catch (final IOException e) {
+                    log.warn("cannot write " + response.url() + " to Cache: " + e.getMessage(), e);
+                }
+            }
+        }
+
+        final String storedFailMessage = this.sb.toIndexer(response);
+        return (storedFailMessage == null) ? null : "not enqueued to indexer: " + storedFailMessage;
+    }
+
+    private void finish(final Request request, final CrawlProfile profile, final DigestURL url, String error) {
+        try {
+            if (error == null) {
+                this.loaded.incrementAndGet();
+                request.setStatus("worker-processed", WorkflowJob.STATUS_FINISHED);
+            } else {
+                this.failed.incrementAndGet();
+                if (error.endsWith("$")) {
+                    // the error was already pushed to the error-db by the reporting method
+                    error = error.substring(0, error.length() - 1).trim();
+                } else {
+                    this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile, FailCategory.TEMPORARY_NETWORK_FAILURE, "cannot load: " + error, -1);
+                }
+                if (log.isFine()) log.fine("problem loading " + request.url().toString() + ": " + error);
+                request.setStatus("worker-error", WorkflowJob.STATUS_FINISHED);
+            }
+        } finally {
+            if (url != null) this.active.remove(url);
+            this.slots.release();
+        }
+    }
+
+    /**
+     * stop the http client; loads which are still running are aborted
+     */
+    public void close() {
+        try {
+            this.client.stop();
+        } catch (final Exception e) {
+            log.warn("cannot stop http client: " + e.getMessage());
+        }
+        this.processor.shutdown();
+        try {
+            this.processor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.active.clear();
+    }
+
+}
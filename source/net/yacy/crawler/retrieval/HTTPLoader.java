@@ -148,7 +148,12 @@ public final class HTTPLoader {
 		client.setHeader(requestHeader.entrySet());
 
 		// send request
-		client.GET(url, false);
+		try {
+			client.GET(url, false);
+		} catch (final IOException e) {
+			Latency.updateAfterError(request.url());
+			throw e;
+		}
 		final StatusLine statusline = client.getHttpResponse().getStatusLine();
 		final int statusCode = statusline.getStatusCode();
 		final ResponseHeader responseHeader = new ResponseHeader(statusCode, client.getHttpResponse().getAllHeaders());
@@ -248,6 +253,7 @@ public final class HTTPLoader {
 			return new StreamResponse(new Response(request, requestHeader, responseHeader, profile, false, null), contentStream);
 		} else {
 			client.finish();
+			if (statusCode == 429 || statusCode >= 500) Latency.updateAfterError(request.url()); // the server is overloaded or has an error
 			// if the response has not the right response type then reject file
 			this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile,
 					FailCategory.TEMPORARY_NETWORK_FAILURE, "wrong http status code", statusCode);
@@ -264,6 +270,17 @@ public final class HTTPLoader {
 	private DigestURL extractRedirectURL(final Request request, CrawlProfile profile, DigestURL url,
 			final StatusLine statusline, final ResponseHeader responseHeader, String requestURLString)
 					throws IOException {
+		return extractRedirectURL(request, profile, url, statusline.getStatusCode(), statusline.toString(), responseHeader, requestURLString);
+	}
+
+	/**
+	 * Extract the redirection URL from a response, see {@link #extractRedirectURL(Request, CrawlProfile, DigestURL, StatusLine, ResponseHeader, String)}
+	 * @param statusCode the response status code
+	 * @param statusline the status line as text for log and error messages
+	 */
+	DigestURL extractRedirectURL(final Request request, CrawlProfile profile, DigestURL url,
+			final int statusCode, final String statusline, final ResponseHeader responseHeader, String requestURLString)
+					throws IOException {
 		// read redirection URL
 		String redirectionUrlString = responseHeader.get(HeaderFramework.LOCATION);
 		redirectionUrlString = redirectionUrlString == null ? "" : redirectionUrlString.trim();
@@ -271,7 +288,7 @@ public final class HTTPLoader {
 		if (redirectionUrlString.isEmpty()) {
 			this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile,
 					FailCategory.TEMPORARY_NETWORK_FAILURE,
-					"no redirection url provided, field '" + HeaderFramework.LOCATION + "' is empty", statusline.getStatusCode());
+					"no redirection url provided, field '" + HeaderFramework.LOCATION + "' is empty", statusCode);
 			throw new IOException("REJECTED EMTPY REDIRECTION '" + statusline
 					+ "' for URL '" + requestURLString + "'$");
 		}
@@ -288,7 +305,7 @@ public final class HTTPLoader {
 
 		if (this.sb.getConfigBool(SwitchboardConstants.CRAWLER_RECORD_REDIRECTS, true)) {
 			this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile,
-					FailCategory.FINAL_REDIRECT_RULE, "redirect to " + redirectionUrlString, statusline.getStatusCode());
+					FailCategory.FINAL_REDIRECT_RULE, "redirect to " + redirectionUrlString, statusCode);
 		}
 		return redirectionUrl;
 	}
@@ -300,7 +317,7 @@ public final class HTTPLoader {
 	 * @return a request header
 	 * @throws IOException when an error occured
 	 */
-	private RequestHeader createRequestheader(final Request request, final ClientIdentification.Agent agent)
+	RequestHeader createRequestheader(final Request request, final ClientIdentification.Agent agent)
 			throws IOException {
 		final RequestHeader requestHeader = new RequestHeader();
 		requestHeader.put(HeaderFramework.USER_AGENT, agent.userAgent);
@@ -366,7 +383,13 @@ public final class HTTPLoader {
         client.setHeader(requestHeader.entrySet());
 
         // send request
-    	final byte[] responseBody = client.GETbytes(url, sb.getConfig(SwitchboardConstants.ADMIN_ACCOUNT_USER_NAME, "admin"), sb.getConfig(SwitchboardConstants.ADMIN_ACCOUNT_B64MD5, ""), maxFileSize, false);
+        final byte[] responseBody;
+        try {
+            responseBody = client.GETbytes(url, sb.getConfig(SwitchboardConstants.ADMIN_ACCOUNT_USER_NAME, "admin"), sb.getConfig(SwitchboardConstants.ADMIN_ACCOUNT_B64MD5, ""), maxFileSize, false);
+        } catch (final IOException e) {
+            Latency.updateAfterError(request.url());
+            throw e;
+        }
         final int statusCode = client.getHttpResponse().getStatusLine().getStatusCode();
     	final ResponseHeader responseHeader = new ResponseHeader(statusCode, client.getHttpResponse().getAllHeaders());
         String requestURLString = request.url().toNormalform(true);
@@ -443,6 +466,7 @@ public final class HTTPLoader {
 
             return response;
     	} else {
+            if (statusCode == 429 || statusCode >= 500) Latency.updateAfterError(request.url()); // the server is overloaded or has an error
             // if the response has not the right response type then reject file
         	this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile, FailCategory.TEMPORARY_NETWORK_FAILURE, "wrong http status code", statusCode);
             throw new IOException("REJECTED WRONG STATUS TYPE '" + client.getHttpResponse().getStatusLine() + "' for URL '" + requestURLString + "'$");
@@ -81,44 +81,49 @@ public class Tokenizer {
         //final Map<StringBuilder, Phrase> sentences = new HashMap<StringBuilder, Phrase>(100);
         if (LibraryProvider.autotagging.isEmpty()) doAutotagging = false;
 
-        // read source
+        // read source; all words are read into the same buffer and counted in a map which can be accessed with the buffer,
+        // so only distinct words are turned into strings
+        final StringBuilder token = new StringBuilder(32);
+        final WordMap wordmap = new WordMap();
         WordTokenizer wordenum = new WordTokenizer(new SentenceReader(text), meaningLib);
         try {
-            while (wordenum.hasMoreElements()) {
-                String word = wordenum.nextElement().toString().toLowerCase(Locale.ENGLISH);
+            while (wordenum.next(token)) {
+                toLowerCase(token);
                 // handle punktuation (start new sentence)
-                if (word.length() == 1 && SentenceReader.punctuation(word.charAt(0))) {
+                if (token.length() == 1 && SentenceReader.punctuation(token.charAt(0))) {
                     // store sentence
                     if (wordInSentenceCounter > 1) // if no word in sentence repeated punktuation ".....", don't count as sentence
                         allsentencecounter++;
                     wordInSentenceCounter = 1;
                     continue;
                 }
-                if (word.length() < wordminsize) continue;
+                if (token.length() < wordminsize) continue;
 
                 // get tags from autotagging
                 if (doAutotagging) {
+                    final String word = token.toString();
                     Set<String> vocabularyNames = LibraryProvider.autotagging.getVocabularyNames();
                     extendVocabularies(root, scraper, vocabularyNames);
                     
                     extractAutoTagsFromText(wordcache, word, vocabularyNames);
+
+                    // shift wordcache
+                    System.arraycopy(wordcache, 1, wordcache, 0, wordcache.length - 1);
+                    wordcache[wordcache.length - 1] = word;
                 }
-                // shift wordcache
-                System.arraycopy(wordcache, 1, wordcache, 0, wordcache.length - 1);
-                wordcache[wordcache.length - 1] = word;
 
                 // check index.of detection
-                if (last_last && comb_indexof && word.equals("modified")) {
+                if (last_last && comb_indexof && "modified".contentEquals(token)) {
                     this.RESULT_FLAGS.set(flag_cat_indexof, true);
                     wordenum.pre(true); // parse lines as they come with CRLF
                 }
-                if (last_index && (wordminsize > 2 || word.equals("of"))) comb_indexof = true;
-                last_last = word.equals("last");
-                last_index = word.equals("index");
+                if (last_index && (wordminsize > 2 || "of".contentEquals(token))) comb_indexof = true;
+                last_last = "last".contentEquals(token);
+                last_index = "index".contentEquals(token);
 
                 // store word
                 allwordcounter++;
-                Word wsp = this.words.get(word);
+                Word wsp = wordmap.get(token);
                 if (wsp != null) {
                     // word already exists
                     wsp.inc();
@@ -126,7 +131,7 @@ public class Tokenizer {
                     // word does not yet exist, create new word entry
                     wsp = new Word(allwordcounter, wordInSentenceCounter, allsentencecounter + 100); // nomal sentence start at 100 !
                     wsp.flags = this.RESULT_FLAGS.clone();
-                    this.words.put(word, wsp);
+                    wordmap.put(token, wsp);
                 }
                 // we now have the unique handle of the word, put it into the sentence:
                 wordInSentenceCounter++;
@@ -135,6 +140,7 @@ public class Tokenizer {
             wordenum.close();
             wordenum = null;
         }
+        wordmap.putAllTo(this.words);
 
         if (pseudostemming) {
             // we search for similar words and reorganize the corresponding sentences
@@ -257,6 +263,30 @@ public class Tokenizer {
 		}
 	}
 
+    /**
+     * Lower case the content of a buffer in place, with the same result as String.toLowerCase(Locale.ENGLISH)
+     * @param sb a buffer containing a word
+     */
+    static void toLowerCase(final StringBuilder sb) {
+        char c;
+        for (int i = 0; i < sb.length(); i++) {
+            c = sb.charAt(i);
+            if (c < 'A') continue;
+            if (c <= 'Z') {
+                sb.setCharAt(i, (char) (c + ('a' - 'A')));
+            } else if (c >= 0x80) {
+                if (c == '\u0130' || c == '\u03a3' || Character.isSurrogate(c)) {
+                    // the lower case of these characters depends on the context or is not a single char
+                    final String s = sb.toString().toLowerCase(Locale.ENGLISH);
+                    sb.setLength(0);
+                    sb.append(s);
+                    return;
+                }
+                sb.setCharAt(i, Character.toLowerCase(c));
+            }
+        }
+    }
+
     /**
      * @return returns the words as word/indexWord relation map. All words are lowercase.
      */
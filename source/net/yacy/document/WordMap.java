@@ -0,0 +1,135 @@
+/**
+ *  WordMap
+ *  part of YaCy
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.document;
+
+import java.util.Map;
+
+import net.yacy.kelondro.data.word.Word;
+
+/**
+ * An open addressing hash map from words to word statistics which can be accessed with a char sequence.
+ * The tokenizer reads every word into the same buffer and looks it up with the buffer content,
+ * so a String is only created for the first occurrence of a word.
+ * The hash of a word is the same as the hash of the equal String.
+ */
+final class WordMap {
+
+    private String[] keys;
+    private int[] hashes;
+    private Word[] values;
+    private int size;
+
+    WordMap() {
+        this.keys = new String[64];
+        this.hashes = new int[64];
+        this.values = new Word[64];
+        this.size = 0;
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    private static int hash(final CharSequence word) {
+        int h = 0;
+        for (int i = 0; i < word.length(); i++) h = 31 * h + word.charAt(i);
+        return h;
+    }
+
+    private static boolean equals(final String key, final CharSequence word) {
+        if (key.length() != word.length()) return false;
+        for (int i = word.length() - 1; i >= 0; i--) {
+            if (key.charAt(i) != word.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * find the slot of a word
+     * @return the slot which contains the word or the empty slot where the word must be inserted
+     */
+    private int slot(final CharSequence word, final int h) {
+        final int mask = this.keys.length - 1;
+        int p = (h ^ (h >>> 16)) & mask;
+        while (this.keys[p] != null) {
+            if (this.hashes[p] == h && equals(this.keys[p], word)) return p;
+            p = (p + 1) & mask;
+        }
+        return p;
+    }
+
+    /**
+     * @param word the word, i.e. the content of a reused buffer
+     * @return the statistics of the word or null if the word is not in the map
+     */
+    Word get(final CharSequence word) {
+        return this.values[slot(word, hash(word))];
+    }
+
+    /**
+     * put a word into the map; the content of the word is copied into a new String
+     * @param word the word, i.e. the content of a reused buffer
+     * @param value the statistics of the word
+     */
+    void put(final CharSequence word, final Word value) {
+        final int h = hash(word);
+        int p = slot(word, h);
+        if (this.keys[p] == null) {
+            if ((this.size + 1) * 4 > this.keys.length * 3) {
+                grow();
+                p = slot(word, h);
+            }
+            this.keys[p] = word.toString();
+            this.hashes[p] = h;
+            this.size++;
+        }
+        this.values[p] = value;
+    }
+
+    private void grow() {
+        final String[] oldkeys = this.keys;
+        final int[] oldhashes = this.hashes;
+        final Word[] oldvalues = this.values;
+        this.keys = new String[oldkeys.length * 2];
+        this.hashes = new int[oldkeys.length * 2];
+        this.values = new Word[oldkeys.length * 2];
+        final int mask = this.keys.length - 1;
+        for (int i = 0; i < oldkeys.length; i++) {
+            if (oldkeys[i] == null) continue;
+            final int h = oldhashes[i];
+            int p = (h ^ (h >>> 16)) & mask;
+            while (this.keys[p] != null) p = (p + 1) & mask;
+            this.keys[p] = oldkeys[i];
+            this.hashes[p] = h;
+            this.values[p] = oldvalues[i];
+        }
+    }
+
+    /**
+     * put all words into the given map
+     * @param map the target map
+     */
+    void putAllTo(final Map<String, Word> map) {
+        for (int i = 0; i < this.keys.length; i++) {
+            if (this.keys[i] != null) map.put(this.keys[i], this.values[i]);
+        }
+    }
+
+}
@@ -24,9 +24,7 @@
 
 package net.yacy.document;
 
-import java.util.ArrayList;
 import java.util.Enumeration;
-import java.util.List;
 import java.util.Locale;
 import java.util.SortedMap;
 import java.util.TreeMap;
@@ -55,12 +53,8 @@ public class WordTokenizer implements Enumeration<StringBuilder> {
     }
 
     private StringBuilder nextElement0() {
-        StringBuilder s;
-        while (this.e.hasMoreElements()) {
-            s = this.e.nextElement(); // next word (invisible chars filtered)
-            return s;
-        }
-        return null;
+        final StringBuilder s = new StringBuilder(20);
+        return this.e.next(s) ? s : null;
     }
 
     @Override
@@ -77,86 +71,85 @@ public class WordTokenizer implements Enumeration<StringBuilder> {
         return r;
     }
 
+    /**
+     * read the next word or punctuation into a buffer which can be reused by the caller for every word;
+     * this does not create objects for the words. As with nextElement(), every word is learned by the word cache
+     * before the caller changes or filters it.
+     * @param word the buffer for the word, the buffer is cleared before the word is written
+     * @return false if there is no more word
+     */
+    public boolean next(final StringBuilder word) {
+        if (this.buffer == null) {
+            word.setLength(0);
+            return false;
+        }
+        word.setLength(0);
+        word.append(this.buffer);
+        // put word to words statistics cache; the cache keeps the learned object, so it gets a copy of the buffer
+        if (this.meaningLib != null) WordCache.learn(new StringBuilder(this.buffer));
+        // the buffer of the enumeration is reused as look-ahead
+        if (!this.e.next(this.buffer)) this.buffer = null;
+        return true;
+    }
+
     public synchronized void close() {
     	this.e.close();
     	this.e = null;
     	this.buffer = null;
     }
 
-    private class unsievedWordsEnum implements Enumeration<StringBuilder> {
-        // returns an enumeration of StringBuilder Objects
-        private StringBuilder buffer = null;
+    private class unsievedWordsEnum {
+        // splits the sentences into words and punctuation
         private SentenceReader sr;
-        private List<StringBuilder> s;
-        private int sIndex;
+        private StringBuilder sentence;
+        private int pos;
 
         public unsievedWordsEnum(final SentenceReader sr0) {
             assert sr0 != null;
             this.sr = sr0;
-            this.s = new ArrayList<StringBuilder>();
-            this.sIndex = 0;
-            this.buffer = nextElement0();
+            this.sentence = null;
+            this.pos = 0;
         }
 
         public void pre(final boolean x) {
             this.sr.pre(x);
         }
 
-        private StringBuilder nextElement0() {
-            StringBuilder r;
-            StringBuilder sb;
+        /**
+         * write the next word or punctuation character into the given buffer
+         * @return false if there is no more word
+         */
+        private boolean next(final StringBuilder sb) {
+            sb.setLength(0);
             char c;
-            if (this.sIndex >= this.s.size()) {
-                this.sIndex = 0;
-                this.s.clear();
-            }
-            while (this.s.isEmpty()) {
-                if (!this.sr.hasNext()) return null;
-                r = this.sr.next(); // read next sentence (incl. ending punctuation)
-                if (r == null) return null;
-                r = trim(r);
-                sb = new StringBuilder(20);
-                for (int i = 0; i < r.length(); i++) { // tokenize one sentence
-                    c = r.charAt(i);
+            while (true) {
+                if (this.sentence == null || this.pos >= this.sentence.length()) {
+                    if (!this.sr.hasNext()) return false;
+                    this.sentence = this.sr.next(); // read next sentence (incl. ending punctuation)
+                    if (this.sentence == null) return false;
+                    this.pos = 0;
+                }
+                while (this.pos < this.sentence.length()) { // tokenize one sentence
+                    c = this.sentence.charAt(this.pos);
                     if (SentenceReader.punctuation(c)) { // punctuation check is simple/quick, do it before invisible
-                        if (sb.length() > 0) {
-                            this.s.add(sb);
-                            sb = new StringBuilder(1);
-                        }
+                        if (sb.length() > 0) return true; // the punctuation is the next element
                         sb.append(c);
-                        this.s.add(sb);
-                        sb = new StringBuilder(20);
-                    } else if (SentenceReader.invisible(c)) { // ! currently punctuation again checked by invisible()
-                        if (sb.length() > 0) {this.s.add(sb); sb = new StringBuilder(20);}
+                        this.pos++;
+                        return true;
+                    }
+                    this.pos++;
+                    if (SentenceReader.invisible(c)) { // ! currently punctuation again checked by invisible()
+                        if (sb.length() > 0) return true;
                     } else {
-                        sb = sb.append(c);
+                        sb.append(c);
                     }
                 }
-                if (sb.length() > 0) {
-                    this.s.add(sb);
-                    sb = null;
-                }
+                if (sb.length() > 0) return true;
             }
-            r = this.s.get(this.sIndex++);
-            return r;
-        }
-
-        @Override
-        public boolean hasMoreElements() {
-            return this.buffer != null;
-        }
-
-        @Override
-        public StringBuilder nextElement() {
-            final StringBuilder r = this.buffer;
-            this.buffer = nextElement0();
-            return r;
         }
 
         public synchronized void close() {
-            this.sIndex = 0;
-            this.s.clear();
-            this.s = null;
+            this.sentence = null;
             this.sr.close();
             this.sr = null;
         }
@@ -222,10 +215,11 @@ public class WordTokenizer implements Enumeration<StringBuilder> {
         WordTokenizer words = new WordTokenizer(new SentenceReader(sentence), null);
         try {
 	        int pos = 0;
+	        final StringBuilder token = new StringBuilder(20);
 	        String word;
 	        Integer oldpos;
-	        while (words.hasMoreElements() && maxlength-- > 0) {
-	            word = words.nextElement().toString().toLowerCase(Locale.ENGLISH);
+	        while (maxlength-- > 0 && words.next(token)) {
+	            word = token.toString().toLowerCase(Locale.ENGLISH);
 
 	            // don't overwrite old values, that leads to too far word distances
 	            oldpos = map.put(word, LargeNumberCache.valueOf(pos));
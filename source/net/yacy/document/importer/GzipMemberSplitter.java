@@ -0,0 +1,242 @@
+/**
+ * GzipMemberSplitter.java
+ *
+ * This is a part of YaCy, a peer-to-peer based web search engine
+ *
+ * LICENSE
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.yacy.document.importer;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Splits a gzip compressed WARC file into its gzip members, so that the members can be read in parallel.
+ * WARC writers compress every record as a separate gzip member. The file is divided into segments
+ * of equal size; a segment consists of all members which start within the segment. The start of the
+ * first member of a segment is found by a search for a gzip header. A header signature which is only a
+ * part of the compressed data is recognized because it can not be inflated or does not inflate
+ * to a WARC record. A file which is compressed as one single member is read by the first segment only.
+ */
+final class GzipMemberSplitter {
+
+    static final long SEGMENT_SIZE = 32L * 1024L * 1024L;
+
+    private static final byte[] WARC_MAGIC = new byte[]{'W', 'A', 'R', 'C', '/'};
+    private static final int FHCRC = 2, FEXTRA = 4, FNAME = 8, FCOMMENT = 16, FRESERVED = 0xe0;
+
+    /**
+     * receives the members of a segment
+     */
+    interface MemberConsumer {
+        /**
+         * @param member the inflated content of one gzip member, starting with a WARC record
+         * @return false to stop reading the segment
+         */
+        boolean member(InputStream member) throws IOException;
+    }
+
+    private final File file;
+    private final long length;
+    private final long segmentSize;
+
+    GzipMemberSplitter(final File file) {
+        this(file, SEGMENT_SIZE);
+    }
+
+    GzipMemberSplitter(final File file, final long segmentSize) {
+        this.file = file;
+        this.length = file.length();
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * @param f a file
+     * @return true if the file starts with a gzip header
+     */
+    static boolean isGzip(final File f) {
+        try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            final ByteBuffer b = ByteBuffer.allocate(3);
+            while (b.hasRemaining() && ch.read(b) >= 0) {}
+            return b.position() == 3 && isHeader(b.get(0), b.get(1), b.get(2));
+        } catch (final IOException e) {
+            return false;
+        }
+    }
+
+    private static boolean isHeader(final byte b0, final byte b1, final byte b2) {
+        return b0 == (byte) 0x1f && b1 == (byte) 0x8b && b2 == 8;
+    }
+
+    int segments() {
+        return (int) ((this.length + this.segmentSize - 1) / this.segmentSize);
+    }
+
+    /**
+     * read all members which start in a segment
+     * @param segment the segment number, 0 &lt;= segment &lt; segments()
+     * @param consumer the consumer of the members
+     * @param consumed the compressed size of all members which have been read is added to this counter
+     * @throws IOException
+     */
+    void read(final int segment, final MemberConsumer consumer, final AtomicLong consumed) throws IOException {
+        final long start = segment * this.segmentSize;
+        final long end = Math.min(this.length, start + this.segmentSize);
+        try (FileChannel ch = FileChannel.open(this.file.toPath(), StandardOpenOption.READ)) {
+            long pos = nextHeader(ch, start, end);
+            while (pos >= 0 && pos < end) {
+                final long next = readMember(ch, pos, consumer);
+                if (next == 0) return; // the consumer has stopped reading
+                if (next < 0) {
+                    // no member at this position: the header signature was part of the compressed data
+                    pos = nextHeader(ch, pos + 1, end);
+                    continue;
+                }
+                consumed.addAndGet(next - pos);
+                pos = next;
+            }
+        }
+    }
+
+    /**
+     * search the next gzip header signature
+     * @return the position of the signature or -1 if there is no signature before the end position
+     */
+    private static long nextHeader(final FileChannel ch, long pos, final long end) throws IOException {
+        final ByteBuffer b = ByteBuffer.allocate(65536);
+        while (pos < end) {
+            b.clear();
+            final int n = ch.read(b, pos);
+            if (n < 4) return -1;
+            for (int i = 0; i <= n - 4; i++) {
+                if (pos + i >= end) return -1;
+                if (isHeader(b.get(i), b.get(i + 1), b.get(i + 2)) && (b.get(i + 3) & FRESERVED) == 0) return pos + i;
+            }
+            pos += n - 3; // the signature may start in the last bytes of the block
+        }
+        return -1;
+    }
+
+    /**
+     * inflate a member and pass it to the consumer
+     * @return the position after the member, 0 if the consumer has stopped reading, -1 if there is no member at that position
+     */
+    private long readMember(final FileChannel ch, final long pos, final MemberConsumer consumer) throws IOException {
+        final ChannelInputStream raw = new ChannelInputStream(ch, pos);
+        // read the gzip header
+        final int flags;
+        try {
+            if (raw.read() != 0x1f || raw.read() != 0x8b || raw.read() != 8) return -1;
+            flags = raw.read();
+            if (flags < 0 || (flags & FRESERVED) != 0) return -1;
+            if (raw.skip(6) != 6) return -1; // mtime, extra flags, os
+            if ((flags & FEXTRA) != 0) {
+                final int xlen = raw.read() | (raw.read() << 8);
+                if (xlen < 0 || raw.skip(xlen) != xlen) return -1;
+            }
+            if ((flags & FNAME) != 0) while (raw.read() > 0) {}
+            if ((flags & FCOMMENT) != 0) while (raw.read() > 0) {}
+            if ((flags & FHCRC) != 0 && raw.skip(2) != 2) return -1;
+        } catch (final IOException e) {
+            return -1;
+        }
+        final Inflater inflater = new Inflater(true);
+        try {
+            final BufferedInputStream member = new BufferedInputStream(new InflaterInputStream(raw, inflater, 8192), 8192);
+            // check that the member is a WARC record
+            member.mark(WARC_MAGIC.length);
+            try {
+                for (final byte m: WARC_MAGIC) if (member.read() != m) return -1;
+            } catch (final ZipException e) {
+                return -1;
+            }
+            member.reset();
+            final InputStream unclosable = new FilterInputStream(member) {
+                @Override
+                public void close() {
+                    // the end of the member is searched after the consumer has read it
+                }
+            };
+            if (!consumer.member(unclosable)) return 0;
+            // read the remaining content of the member to find its end
+            final byte[] skip = new byte[8192];
+            while (member.read(skip) >= 0) {}
+            if (!inflater.finished()) return -1; // truncated member
+            return raw.position() - inflater.getRemaining() + 8; // the trailer has 8 bytes (crc and size)
+        } catch (final ZipException e) {
+            // the member is damaged
+            return -1;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * an input stream which reads from a file channel at a given position and counts the position
+     */
+    private static final class ChannelInputStream extends InputStream {
+
+        private final FileChannel ch;
+        private long position;
+        private final ByteBuffer single = ByteBuffer.allocate(1);
+
+        private ChannelInputStream(final FileChannel ch, final long position) {
+            this.ch = ch;
+            this.position = position;
+        }
+
+        private long position() {
+            return this.position;
+        }
+
+        @Override
+        public int read() throws IOException {
+            this.single.clear();
+            final int n = this.ch.read(this.single, this.position);
+            if (n <= 0) return -1;
+            this.position++;
+            return this.single.get(0) & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) return 0;
+            final int n = this.ch.read(ByteBuffer.wrap(b, off, len), this.position);
+            if (n <= 0) return -1;
+            this.position += n;
+            return n;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            final long s = Math.max(0, Math.min(n, this.ch.size() - this.position));
+            this.position += s;
+            return s;
+        }
+    }
+
+}
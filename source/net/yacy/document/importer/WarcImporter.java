@@ -27,6 +27,9 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
 import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.document.id.DigestURL;
 import net.yacy.cora.protocol.HeaderFramework;
@@ -37,6 +40,7 @@ import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.crawler.retrieval.Request;
 import net.yacy.crawler.retrieval.Response;
 import net.yacy.document.TextParser;
+import net.yacy.kelondro.workflow.WorkflowProcessor;
 import net.yacy.search.Switchboard;
 import net.yacy.server.http.ChunkedInputStream;
 import org.jwat.common.HeaderLine;
@@ -60,19 +64,31 @@ public class WarcImporter extends Thread implements Importer {
 
     static public WarcImporter job; // static object to assure only one importer is running (if started from a servlet, this object is used to store the thread)
 
-    private final InputStream source; // current input warc archive
+    /** the default number of reader threads for gzip compressed warc files */
+    public static final int DEFAULT_READERS = Math.max(1, Math.min(4, WorkflowProcessor.availableCPU / 2));
+
+    private final InputStream source; // current input warc archive, null if a gzip file is read in parallel
+    private final File file; // the input file if it is read in parallel, otherwise null
+    private final int readers; // number of reader threads
     private String name; // file name of input source
     
-    private int recordCnt; // number of responses indexed (for statistic)
+    private final AtomicInteger recordCnt; // number of responses indexed (for statistic)
+    private final AtomicInteger readCnt; // number of warc records read (for statistic)
+    private final AtomicLong waitTime; // milliseconds the readers waited for the indexer (for statistic)
     private long startTime; // (for statistic)
     private final long sourceSize; // length of the input source (for statistic)
-    private long consumed; // bytes consumed from input source (for statistic)
-    private boolean abort = false; // flag to signal stop of import
+    private final AtomicLong consumed; // bytes consumed from input source (for statistic)
+    private volatile boolean abort = false; // flag to signal stop of import
 
     public WarcImporter(InputStream f) {
     	super("WarcImporter - from InputStream");
         source = f;
-        recordCnt = 0;
+        file = null;
+        readers = 1;
+        recordCnt = new AtomicInteger(0);
+        readCnt = new AtomicInteger(0);
+        waitTime = new AtomicLong(0);
+        consumed = new AtomicLong(0);
         sourceSize = -1;
     }
 
@@ -89,10 +105,33 @@ public class WarcImporter extends Thread implements Importer {
     }
 
     public WarcImporter(File f) throws FileNotFoundException{
+        this(f, DEFAULT_READERS);
+    }
+
+    /**
+     * Init the WarcImporter with a file. A gzip compressed file is split at the boundaries
+     * of its gzip members and read by several threads in parallel.
+     * @param f the warc file
+     * @param readers the number of reader threads for a gzip compressed file, 1 to read the file sequentially
+     * @throws FileNotFoundException
+     */
+    public WarcImporter(File f, int readers) throws FileNotFoundException{
        super("WarcImporter - from file " + f.getName());
        name = f.getName();
        sourceSize = f.length();
-       source = new FileInputStream(f);
+       recordCnt = new AtomicInteger(0);
+       readCnt = new AtomicInteger(0);
+       waitTime = new AtomicLong(0);
+       consumed = new AtomicLong(0);
+       if (readers > 1 && f.isFile() && GzipMemberSplitter.isGzip(f)) {
+           this.source = null;
+           this.file = f;
+           this.readers = readers;
+       } else {
+           this.source = new FileInputStream(f);
+           this.file = null;
+           this.readers = 1;
+       }
     }
 
     /**
@@ -104,86 +143,170 @@ public class WarcImporter extends Thread implements Importer {
      */
     public void indexWarcRecords(InputStream f) throws IOException {
 
-        byte[] content;
         job = this;
         startTime = System.currentTimeMillis();
 
         WarcReader localwarcReader = WarcReaderFactory.getReader(f);
         WarcRecord wrec = localwarcReader.getNextRecord();
         while (wrec != null && !abort) {
+            indexWarcRecord(wrec);
+            this.consumed.set(localwarcReader.getConsumed());
+            wrec = localwarcReader.getNextRecord();
+        }
+        localwarcReader.close();
+        ConcurrentLog.info("WarcImporter", "Indexed " + recordCnt + " documents");
+        job = null;
+    }
 
-            HeaderLine hl = wrec.getHeader(WarcConstants.FN_WARC_TYPE);
-            if (hl != null && hl.value.equals(WarcConstants.RT_RESPONSE)) { // filter responses
+    /**
+     * Reads a gzip compressed Warc file with several threads and adds all contained responses to the index.
+     * Each thread reads segments of the file; a segment is decompressed from the first gzip member
+     * which starts in the segment. The threads wait while the indexing queues are saturated.
+     *
+     * @param f the gzip compressed warc file
+     * @param threads number of reader threads
+     * @throws IOException
+     */
+    public void indexWarcRecords(final File f, final int threads) throws IOException {
 
-                hl = wrec.getHeader(WarcConstants.FN_WARC_TARGET_URI);
-                DigestURL location = new DigestURL(hl.value);
+        job = this;
+        startTime = System.currentTimeMillis();
 
-                HttpHeader http = wrec.getHttpHeader();
+        final GzipMemberSplitter splitter = new GzipMemberSplitter(f);
+        final int segments = splitter.segments();
+        final AtomicInteger nextSegment = new AtomicInteger(0);
+        final GzipMemberSplitter.MemberConsumer consumer = new GzipMemberSplitter.MemberConsumer() {
+            @Override
+            public boolean member(final InputStream member) throws IOException {
+                final WarcReader reader = WarcReaderFactory.getReaderUncompressed(member);
+                try {
+                    WarcRecord wrec;
+                    while (!abort && (wrec = reader.getNextRecord()) != null) {
+                        indexWarcRecord(wrec);
+                    }
+                } finally {
+                    reader.close();
+                }
+                return !abort;
+            }
+        };
+        final Thread[] readerThreads = new Thread[Math.max(1, Math.min(threads, segments))];
+        for (int i = 0; i < readerThreads.length; i++) {
+            readerThreads[i] = new Thread("WarcImporter.reader-" + i + " - " + f.getName()) {
+                @Override
+                public void run() {
+                    int segment;
+                    while (!abort && (segment = nextSegment.getAndIncrement()) < segments) {
+                        try {
+                            splitter.read(segment, consumer, consumed);
+                        } catch (final IOException e) {
+                            ConcurrentLog.warn("WarcImporter", "error in segment " + segment + " of " + f.getName() + ": " + e.getMessage());
+                        }
+                    }
+                }
+            };
+            readerThreads[i].start();
+        }
+        for (final Thread t: readerThreads) {
+            try {
+                t.join();
+            } catch (final InterruptedException e) {
+                abort = true;
+            }
+        }
+        ConcurrentLog.info("WarcImporter", "Indexed " + recordCnt + " documents with " + readerThreads.length + " reader threads");
+        job = null;
+    }
 
-                if (http != null && http.statusCode == 200) { // process http response header OK (status 200)
+    /**
+     * pass a warc record to the indexer if it is a response which can be parsed
+     * @param wrec the record
+     * @throws IOException
+     */
+    private void indexWarcRecord(final WarcRecord wrec) throws IOException {
+        this.readCnt.incrementAndGet();
+        HeaderLine hl = wrec.getHeader(WarcConstants.FN_WARC_TYPE);
+        if (hl == null || !hl.value.equals(WarcConstants.RT_RESPONSE)) return; // filter responses
 
-                    if (TextParser.supportsMime(http.contentType) == null) { // check availability of parser
+        hl = wrec.getHeader(WarcConstants.FN_WARC_TARGET_URI);
+        DigestURL location = new DigestURL(hl.value);
 
-                        InputStream istream = wrec.getPayloadContent();
-                        hl = http.getHeader(HeaderFramework.TRANSFER_ENCODING);
-                        if (hl != null && hl.value.contains("chunked")) {
-                            // because chunked stream.read doesn't read source fully, make sure all chunks are read
-                            istream = new ChunkedInputStream(istream);
-                            final ByteBuffer bbuffer = new ByteBuffer();
-                            int c;
-                            while ((c = istream.read()) >= 0) {
-                                bbuffer.append(c);
-                            }
-                            content = bbuffer.getBytes();
-                        } else {
-                            content = new byte[(int) http.getPayloadLength()];
-                            istream.read(content, 0, content.length);
-                        }
-                        istream.close();
+        HttpHeader http = wrec.getHttpHeader();
 
-                        RequestHeader requestHeader = new RequestHeader();
+        if (http == null || http.statusCode != 200) return; // process http response header OK (status 200)
 
-                        ResponseHeader responseHeader = new ResponseHeader(http.statusCode);
-                        for (HeaderLine hx : http.getHeaderList()) { // include all original response headers for parser
-                            responseHeader.put(hx.name, hx.value);
-                        }
+        if (TextParser.supportsMime(http.contentType) != null) return; // check availability of parser
 
-                        final Request request = new Request(
-                                ASCII.getBytes(Switchboard.getSwitchboard().peers.mySeed().hash),
-                                location,
-                                requestHeader.referer() == null ? null : requestHeader.referer().hash(),
-                                "warc",
-                                responseHeader.lastModified(),
-                                Switchboard.getSwitchboard().crawler.defaultSurrogateProfile.handle(),
-                                0,
-                                Switchboard.getSwitchboard().crawler.defaultSurrogateProfile.timezoneOffset());
-
-                        final Response response = new Response(
-                                request,
-                                requestHeader,
-                                responseHeader,
-                                Switchboard.getSwitchboard().crawler.defaultSurrogateProfile,
-                                false,
-                                content
-                        );
-
-                        Switchboard.getSwitchboard().toIndexer(response);
-                        recordCnt++;
-                    }
-                }
+        final byte[] content;
+        InputStream istream = wrec.getPayloadContent();
+        hl = http.getHeader(HeaderFramework.TRANSFER_ENCODING);
+        if (hl != null && hl.value.contains("chunked")) {
+            // because chunked stream.read doesn't read source fully, make sure all chunks are read
+            istream = new ChunkedInputStream(istream);
+            final ByteBuffer bbuffer = new ByteBuffer();
+            int c;
+            while ((c = istream.read()) >= 0) {
+                bbuffer.append(c);
             }
-            this.consumed = localwarcReader.getConsumed();
-            wrec = localwarcReader.getNextRecord();
+            content = bbuffer.getBytes();
+        } else {
+            content = new byte[(int) http.getPayloadLength()];
+            int p = 0, n;
+            while (p < content.length && (n = istream.read(content, p, content.length - p)) > 0) p += n;
         }
-        localwarcReader.close();
-        ConcurrentLog.info("WarcImporter", "Indexed " + recordCnt + " documents");
-        job = null;
+        istream.close();
+
+        RequestHeader requestHeader = new RequestHeader();
+
+        ResponseHeader responseHeader = new ResponseHeader(http.statusCode);
+        for (HeaderLine hx : http.getHeaderList()) { // include all original response headers for parser
+            responseHeader.put(hx.name, hx.value);
+        }
+
+        final Switchboard sb = Switchboard.getSwitchboard();
+        final Request request = new Request(
+                ASCII.getBytes(sb.peers.mySeed().hash),
+                location,
+                requestHeader.referer() == null ? null : requestHeader.referer().hash(),
+                "warc",
+                responseHeader.lastModified(),
+                sb.crawler.defaultSurrogateProfile.handle(),
+                0,
+                sb.crawler.defaultSurrogateProfile.timezoneOffset());
+
+        final Response response = new Response(
+                request,
+                requestHeader,
+                responseHeader,
+                sb.crawler.defaultSurrogateProfile,
+                false,
+                content
+        );
+
+        // backpressure: do not fill the indexing queues faster than the documents are parsed and indexed
+        final long waitStart = System.currentTimeMillis();
+        while (!this.abort && sb.indexingDocumentProcessor.isSaturated()) {
+            try {
+                Thread.sleep(100);
+            } catch (final InterruptedException e) {
+                this.abort = true;
+            }
+        }
+        this.waitTime.addAndGet(System.currentTimeMillis() - waitStart);
+        if (this.abort) return;
+
+        sb.toIndexer(response);
+        recordCnt.incrementAndGet();
     }
 
     @Override
     public void run() {
         try {
-            this.indexWarcRecords(this.source);
+            if (this.file != null) {
+                this.indexWarcRecords(this.file, this.readers);
+            } else {
+                this.indexWarcRecords(this.source);
+            }
         } catch (IOException ex) {
             ConcurrentLog.info("WarcImporter", ex.getMessage());
         }
@@ -211,7 +334,7 @@ public class WarcImporter extends Thread implements Importer {
      */
     @Override
     public int count() {
-        return this.recordCnt;
+        return this.recordCnt.get();
     }
 
     /**
@@ -220,8 +343,8 @@ public class WarcImporter extends Thread implements Importer {
      */
     @Override
     public int speed() {
-        if (this.recordCnt == 0) return 0;
-        return (int) (this.recordCnt / Math.max(0L, runningTime() ));
+        if (this.recordCnt.get() == 0) return 0;
+        return (int) (this.recordCnt.get() / Math.max(1L, runningTime() ));
     }
 
     /**
@@ -240,17 +363,25 @@ public class WarcImporter extends Thread implements Importer {
      */
     @Override
     public long remainingTime() {
-        if (this.consumed == 0) {
+        final long c = this.consumed.get();
+        if (c == 0 || this.sourceSize < 0) {
             return 0;
         } else {
-            long speed = this.consumed / runningTime();
-            return (this.sourceSize - this.consumed) / speed;
+            long speed = Math.max(1L, c / Math.max(1L, runningTime()));
+            return Math.max(0L, this.sourceSize - c) / speed;
         }
     }
 
+    /**
+     * Throughput of the import stages: reading of warc records and hand-over to the indexer
+     * @return a description of the throughput
+     */
     @Override
     public String status() {
-        return "";
+        final long rt = Math.max(1L, runningTime());
+        return "read " + this.readCnt.get() + " records with " + this.readers + (this.readers == 1 ? " thread" : " threads")
+                + " (" + (this.consumed.get() / rt / 1024L) + " KB/s), indexed " + this.recordCnt.get() + " responses (" + speed() + "/s), "
+                + (this.waitTime.get() / 1000L / this.readers) + " s waiting for the indexer";
     }
 
 }
@@ -49,6 +49,7 @@ import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import net.yacy.cora.date.GenericFormatter;
 import net.yacy.cora.document.encoding.ASCII;
@@ -87,6 +88,9 @@ public class ArrayStack implements BLOB {
     private static final long maxFileSize = Integer.MAX_VALUE;
     public  static final long oneMonth    = 1000L * 60L * 60L * 24L * 365L / 12L;
 
+    /** if true, all heap files which are not used for writing are memory-mapped for lock-free read access */
+    public  static boolean mapSealedHeaps = false;
+
     private       int            keylength;
     private       ByteOrder      ordering;
     private final File           heapLocation;
@@ -98,6 +102,7 @@ public class ArrayStack implements BLOB {
     private final String         prefix;
     private final int            buffersize;
     private final boolean        trimall;
+    private final HashSet<File>  reserved;   // names from newBLOB() which may not exist yet because their merge is still queued
 
     /** the thread pool for the keeperOf executor service */
     private final ExecutorService executor;
@@ -124,6 +129,7 @@ public class ArrayStack implements BLOB {
         this.repositoryAgeMax = Long.MAX_VALUE;
         this.repositorySizeMax = Long.MAX_VALUE;
         this.trimall = trimall;
+        this.reserved = new HashSet<File>();
 
         // init the thread pool for the keeperOf executor service
         this.executor = new ThreadPoolExecutor(
@@ -152,7 +158,7 @@ public class ArrayStack implements BLOB {
                 FileUtils.deletedelete(new File(heapLocation, file));
                 deletions = true;
             }
-            if (file.endsWith(".idx") || file.endsWith(".gap")) {
+            if (file.endsWith(".idx") || file.endsWith(".gap") || file.endsWith(".blm")) {
                 final String s = file.substring(0, file.length() - 17);
                 if (!fh.contains(s)) {
                     FileUtils.deletedelete(new File(heapLocation, file));
@@ -206,8 +212,7 @@ public class ArrayStack implements BLOB {
                        if (time == maxtime && !trimall) {
                            oneBlob = new Heap(f, keylength, ordering, buffersize);
                        } else {
-                           oneBlob = new HeapModifier(f, keylength, ordering);
-                           oneBlob.optimize(); // no writings here, can be used with minimum memory
+                           oneBlob = openSealed(f, keylength, ordering);
                        }
                        sortedItems.put(Long.valueOf(time), new blobItem(d, f, oneBlob));
                    } catch (final IOException e) {
@@ -261,12 +266,37 @@ public class ArrayStack implements BLOB {
         if (full && this.buffersize > 0 && !this.trimall) {
             oneBlob = new Heap(location, this.keylength, this.ordering, this.buffersize);
         } else {
-            oneBlob = new HeapModifier(location, this.keylength, this.ordering);
-            oneBlob.optimize();
+            oneBlob = openSealed(location, this.keylength, this.ordering);
         }
         this.blobs.add(new blobItem(d, location, oneBlob));
     }
 
+    /**
+     * open a heap file which is not used for writing any more
+     * @param location
+     * @param keylength
+     * @param ordering
+     * @return a heap which is memory-mapped if mapSealedHeaps is set
+     * @throws IOException
+     */
+    private static HeapModifier openSealed(final File location, final int keylength, final ByteOrder ordering) throws IOException {
+        final HeapModifier oneBlob = new HeapModifier(location, keylength, ordering);
+        oneBlob.optimize(); // no writings here, can be used with minimum memory
+        if (mapSealedHeaps) oneBlob.mapReadAccess();
+        oneBlob.useBloomFilter(); // sealed heaps get no new keys, so the filter stays valid
+        return oneBlob;
+    }
+
+    /**
+     * consult the bloom filter of a sealed heap before its index is touched
+     * @param b
+     * @param key
+     * @return false if the blob certainly does not contain the key
+     */
+    private static boolean mightContain(final BLOB b, final byte[] key) {
+        return !(b instanceof HeapReader) || ((HeapReader) b).mightContain(key);
+    }
+
     private synchronized void unmountBLOB(final File location, final boolean writeIDX) {
         blobItem b;
         for (int i = 0; i < this.blobs.size(); i++) {
@@ -380,13 +410,26 @@ public class ArrayStack implements BLOB {
 
     /**
      * generate a new BLOB file name with a given date.
-     * This method is needed to generate a file name that matches to the name structure that is needed for parts of the array
+     * This method is needed to generate a file name that matches to the name structure that is needed for parts of the array.
+     * Merge jobs get their file name when they are queued and may run concurrently, therefore a name is never given twice:
+     * if the name of the date is already used by a file, its temporary file or an earlier call, the date is increased by one millisecond.
      * @param creation
      * @return
      */
     public synchronized File newBLOB(final Date creation) {
         //return new File(heapLocation, DateFormatter.formatShortSecond(creation) + "." + blobSalt + ".blob");
-        return new File(this.heapLocation, this.prefix + "." + my_SHORT_MILSEC_FORMATTER.format(creation) + ".blob");
+        // forget the names which are written now
+        final Iterator<File> i = this.reserved.iterator();
+        while (i.hasNext()) if (i.next().exists()) i.remove();
+        long time = creation.getTime();
+        File f;
+        while (true) {
+            f = new File(this.heapLocation, this.prefix + "." + my_SHORT_MILSEC_FORMATTER.format(new Date(time)) + ".blob");
+            if (!f.exists() && !new File(f.getParentFile(), f.getName() + ".prt").exists() && !this.reserved.contains(f)) break;
+            time++;
+        }
+        this.reserved.add(f);
+        return f;
     }
 
     @Override
@@ -571,18 +614,18 @@ public class ArrayStack implements BLOB {
         if (this.blobs.isEmpty()) return null;
         if (this.blobs.size() == 1) {
             final blobItem bi = this.blobs.get(0);
-            if (bi.blob.containsKey(key)) return bi;
+            if (mightContain(bi.blob, key) && bi.blob.containsKey(key)) return bi;
             return null;
         }
 
         // first check the current blob only because that has most probably the key if any has that key
         int bs1 = this.blobs.size() - 1;
         blobItem bi = this.blobs.get(bs1);
-        if (bi.blob.containsKey(key)) return bi;
+        if (mightContain(bi.blob, key) && bi.blob.containsKey(key)) return bi;
         if (this.blobs.size() == 2) {
             // this should not be done concurrently
             bi = this.blobs.get(0);
-            if (bi.blob.containsKey(key)) return bi;
+            if (mightContain(bi.blob, key) && bi.blob.containsKey(key)) return bi;
             return null;
         }
 
@@ -591,6 +634,7 @@ public class ArrayStack implements BLOB {
         int accepted = 0;
         for (int i = 0; i < bs1; i++) {
             final blobItem b = this.blobs.get(i);
+            if (!mightContain(b.blob, key)) continue;
             try {
                 cs.submit(new Callable<blobItem>() {
                     @Override
@@ -696,7 +740,7 @@ public class ArrayStack implements BLOB {
         protected byte[] next0() {
             while (this.bii.hasNext()) {
                 final BLOB b = this.bii.next().blob;
-                if (b == null) continue;
+                if (b == null || !mightContain(b, this.key)) continue;
                 try {
                     final byte[] n = b.get(this.key);
                     if (n != null) return n;
@@ -712,6 +756,67 @@ public class ArrayStack implements BLOB {
         }
     }
 
+    /**
+     * get all BLOBs in the array with concurrent reads of all BLOB files.
+     * The newest BLOB file is read in the calling thread, all other files are read in the shared read executor.
+     * @param key
+     * @param maxtime the maximum time in milliseconds to wait for the BLOB files
+     * @return the BLOBs in the order of the BLOB files (oldest first). If maxtime is exceeded,
+     *   BLOBs from files which did not respond in time are missing in the result.
+     * @throws IOException
+     * @throws SpaceExceededException
+     */
+    public List<byte[]> getAllConcurrently(final byte[] key, final long maxtime) throws IOException, SpaceExceededException {
+        final long timeout = System.currentTimeMillis() + maxtime;
+        if (this.blobs == null) return new ArrayList<byte[]>(0);
+        final List<blobItem> items = new ArrayList<blobItem>(this.blobs); // a snapshot; the blob list is a CopyOnWriteArrayList
+        final List<byte[]> result = new ArrayList<byte[]>(items.size());
+        if (items.isEmpty()) return result;
+        final int last = items.size() - 1;
+        final List<FutureTask<byte[]>> futures = new ArrayList<FutureTask<byte[]>>(last);
+        for (int i = 0; i < last; i++) {
+            final BLOB b = items.get(i).blob;
+            if (b == null || !mightContain(b, key)) continue;
+            final FutureTask<byte[]> task = new FutureTask<byte[]>(new Callable<byte[]>() {
+                @Override
+                public byte[] call() throws IOException, SpaceExceededException {
+                    return b.get(key);
+                }
+            });
+            try {
+                READ_EXECUTOR.execute(task);
+            } catch (final RejectedExecutionException e) {
+                // the executor is shutting down; read the file in this thread
+                task.run();
+            }
+            futures.add(task);
+        }
+        final BLOB newest = items.get(last).blob;
+        final byte[] n = newest == null || !mightContain(newest, key) ? null : newest.get(key);
+
+        // collect the results in the order of the files
+        int missed = 0;
+        for (final FutureTask<byte[]> f: futures) {
+            try {
+                final byte[] b = f.get(Math.max(0, timeout - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                if (b != null) result.add(b);
+            } catch (final TimeoutException e) {
+                f.cancel(false);
+                missed++;
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (final ExecutionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof SpaceExceededException) throw (SpaceExceededException) cause;
+                ConcurrentLog.severe("ArrayStack", "getAllConcurrently - " + cause.getMessage(), cause);
+            }
+        }
+        if (missed > 0) ConcurrentLog.warn("ArrayStack", "timeout in getAllConcurrently(): " + missed + " of " + items.size() + " tables not searched. timeout = " + maxtime);
+        if (n != null) result.add(n);
+        return result;
+    }
+
     /**
      * retrieve the size of the BLOB
      * @param key
@@ -722,6 +827,7 @@ public class ArrayStack implements BLOB {
     public synchronized long length(final byte[] key) throws IOException {
         long l;
         for (final blobItem bi: this.blobs) {
+            if (!mightContain(bi.blob, key)) continue;
             l = bi.blob.length(key);
             if (l >= 0) return l;
         }
@@ -753,7 +859,7 @@ public class ArrayStack implements BLOB {
         protected Long next0() {
             while (this.bii.hasNext()) {
                 final BLOB b = this.bii.next().blob;
-                if (b == null) continue;
+                if (b == null || !mightContain(b, this.key)) continue;
                 try {
                     final long l = b.length(this.key);
                     if (l >= 0) return Long.valueOf(l);
@@ -833,6 +939,7 @@ public class ArrayStack implements BLOB {
     public synchronized int reduce(final byte[] key, final Reducer reduce) throws IOException, SpaceExceededException {
         int d = 0;
         for (final blobItem bi: this.blobs) {
+            if (!mightContain(bi.blob, key)) continue;
             d += bi.blob.reduce(key, reduce);
         }
         return d;
@@ -846,16 +953,18 @@ public class ArrayStack implements BLOB {
     @Override
     public synchronized void delete(final byte[] key) throws IOException {
         final long m = mem();
-        if (this.blobs.isEmpty()) {
+        final List<blobItem> candidates = new ArrayList<blobItem>(this.blobs.size());
+        for (final blobItem bi: this.blobs) if (mightContain(bi.blob, key)) candidates.add(bi);
+        if (candidates.isEmpty()) {
             // do nothing
-        } else if (this.blobs.size() == 1) {
-            final blobItem bi = this.blobs.get(0);
+        } else if (candidates.size() == 1) {
+            final blobItem bi = candidates.get(0);
             bi.blob.delete(key);
         } else {
             @SuppressWarnings("unchecked")
-            final FutureTask<Boolean>[] t = (FutureTask<Boolean>[]) Array.newInstance(FutureTask.class, this.blobs.size() - 1);
+            final FutureTask<Boolean>[] t = (FutureTask<Boolean>[]) Array.newInstance(FutureTask.class, candidates.size() - 1);
             int i = 0;
-            for (final blobItem bi: this.blobs) {
+            for (final blobItem bi: candidates) {
                 if (i < t.length) {
                     // run this in a concurrent thread
                     final blobItem bi0 = bi;
@@ -881,11 +990,24 @@ public class ArrayStack implements BLOB {
 
 	private static final ExecutorService DELETE_EXECUTOR = Executors
 			.newCachedThreadPool(new NamePrefixThreadFactory(ArrayStack.class.getSimpleName() + ".DELETE_EXECUTOR"));
+
+	/** the bounded thread pool for concurrent reads of all BLOB files of any ArrayStack instance */
+	private static final ThreadPoolExecutor READ_EXECUTOR = new ThreadPoolExecutor(
+			Runtime.getRuntime().availableProcessors() * 2,
+			Runtime.getRuntime().availableProcessors() * 2, 10,
+			TimeUnit.SECONDS,
+			new LinkedBlockingQueue<Runnable>(),
+			new NamePrefixThreadFactory(ArrayStack.class.getSimpleName() + ".READ_EXECUTOR"));
+	static {
+		READ_EXECUTOR.allowCoreThreadTimeOut(true);
+	}
 	
 	/**
 	 * Shutdown the delete executor service used to run asynchronously deletions on any ArrayStack instance
+	 * and the read executor service used for concurrent reads
 	 */
 	public static void shutdownDeleteService() {
+		READ_EXECUTOR.shutdown();
 		DELETE_EXECUTOR.shutdown();
 		final long timeout = 1; 
 		try {
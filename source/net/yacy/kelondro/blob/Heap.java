@@ -117,7 +117,25 @@ public final class Heap extends HeapModifier implements BLOB {
         return super.size() + ((this.buffer == null) ? 0 : this.buffer.size());
     }
 
-    
+
+    /**
+     * a writable heap grows with every flush of the write buffer, therefore it is never mapped
+     * @return false
+     */
+    @Override
+    public boolean mapReadAccess() {
+        return false;
+    }
+
+    /**
+     * a writable heap gets new keys with every insert, therefore it has no bloom filter
+     * @return false
+     */
+    @Override
+    public boolean useBloomFilter() {
+        return false;
+    }
+
     /**
      * test if a key is in the heap file. This does not need any IO, because it uses only the ram index
      * @param key
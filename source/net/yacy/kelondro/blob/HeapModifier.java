@@ -64,6 +64,7 @@ public class HeapModifier extends HeapReader implements BLOB {
      */
     @Override
     public synchronized void clear() throws IOException {
+        super.unmapReadAccess();
         this.index.clear();
         this.free.clear();
         this.file.close();
@@ -78,6 +79,7 @@ public class HeapModifier extends HeapReader implements BLOB {
      */
     @Override
     public synchronized void close(boolean writeIDX) {
+        super.unmapReadAccess(); // the file must not be shrinked while it is mapped
         shrinkWithGapsAtEnd();
         super.close(writeIDX);
     }
@@ -232,7 +234,8 @@ public class HeapModifier extends HeapReader implements BLOB {
                 Long seek = this.free.lastKey();
                 int size = this.free.get(seek).intValue();
                 if (seek.longValue() + size + 4 != this.file.length()) return;
-                // shrink the file
+                // shrink the file; readers of a mapping must not see the truncated pages
+                super.unmapReadAccess();
                 this.file.setLength(seek.longValue());
                 this.free.remove(seek);
             }
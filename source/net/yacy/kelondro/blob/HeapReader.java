@@ -29,12 +29,20 @@ import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
 
 import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.document.encoding.UTF8;
@@ -60,6 +68,9 @@ public class HeapReader {
 
 	private final static ConcurrentLog log = new ConcurrentLog("HeapReader");
 
+	/** the false positive probability of the bloom filters which are written next to each sealed heap file */
+	public static double bloomFilterFpp = 0.01d;
+
     // input values
     protected int                keylength;  // the length of the primary key
     protected File               heapFile;   // the file of the heap
@@ -71,6 +82,12 @@ public class HeapReader {
     protected Gap                free;       // set of {seek, size} pairs denoting space and position of free records
     private   File               fingerprintFileIdx, fingerprintFileGap; // files with dumped indexes. Will be deleted if file is written
     private   Date               closeDate;  // records a time when the file was closed; used for debugging
+    private volatile ByteBuffer  mapped;     // read-only memory map of a sealed heap file; null if the file is accessed through this.file
+    private final AtomicInteger  mappedReaders; // number of readers which currently access this.mapped
+    private final Object         mappedReleased; // monitor which is notified when the last reader of a released mapping is finished
+    private volatile boolean     unmapPending; // true while unmapReadAccess() waits for the readers of the mapping
+    private volatile BloomFilter<byte[]> bloom; // filter for the keys in the index; null if no filter is used
+    private   File               fingerprintFileBlm; // the dump of the bloom filter; will be deleted if file is written
 
     public HeapReader(
             final File heapFile,
@@ -84,10 +101,16 @@ public class HeapReader {
         this.heapFile.getParentFile().mkdirs();
         this.file = new CachedFileWriter(this.heapFile);
         this.closeDate = null;
+        this.mapped = null;
+        this.mappedReaders = new AtomicInteger(0);
+        this.mappedReleased = new Object();
+        this.unmapPending = false;
 
         // read or initialize the index
         this.fingerprintFileIdx = null;
         this.fingerprintFileGap = null;
+        this.fingerprintFileBlm = null;
+        this.bloom = null;
         if (initIndexReadDump()) {
             // verify that everything worked just fine
             // pick some elements of the index
@@ -135,6 +158,118 @@ public class HeapReader {
         this.index.optimize();
     }
 
+    /**
+     * map the heap file into memory for read access. This shall only be used for sealed heap files where no
+     * more entries are appended, because the mapping covers only the file length at the time of this call.
+     * Once the file is mapped, get(), length() and containsKey() do not lock the index or the file any more but
+     * use positional reads on the mapped buffer. Deletions and reductions are still written through the file;
+     * they are visible in the mapping because both share the page cache of the operating system.
+     * @return true if the file is mapped, false if the heap is accessed through the file as before
+     */
+    public boolean mapReadAccess() {
+        if (this.mapped != null) return true;
+        final long filelength = this.heapFile.length();
+        if (filelength == 0 || filelength > Integer.MAX_VALUE) return false;
+        try (final RandomAccessFile raf = new RandomAccessFile(this.heapFile, "r"); final FileChannel channel = raf.getChannel()) {
+            // the mapping stays valid after the channel is closed, so this does not need a file descriptor
+            this.mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, filelength);
+            return true;
+        } catch (final IOException e) {
+            log.warn("cannot map " + this.heapFile.getName() + " into memory, using file access: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * release the memory map; following read access is done through the file again.
+     * This must be called before the file is shrinked or deleted. It returns when all readers
+     * which still use the mapping are finished, because a read beyond the end of a truncated file
+     * through the mapping would crash the virtual machine.
+     */
+    protected void unmapReadAccess() {
+        if (this.mapped == null) return;
+        this.unmapPending = true;
+        this.mapped = null;
+        boolean interrupted = false;
+        synchronized (this.mappedReleased) {
+            while (this.mappedReaders.get() > 0) {
+                try {
+                    this.mappedReleased.wait();
+                } catch (final InterruptedException e) {
+                    interrupted = true; // the file must not be truncated before the readers are finished, so wait anyway
+                }
+            }
+        }
+        this.unmapPending = false;
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    /**
+     * get the memory map for a read; a non-null result must be released with releaseMapped()
+     * @return the mapping or null if the file is not mapped
+     */
+    private ByteBuffer acquireMapped() {
+        if (this.mapped == null) return null; // unmapped heaps do not touch the reader count
+        this.mappedReaders.incrementAndGet();
+        final ByteBuffer map = this.mapped; // check again: the mapping may have been released meanwhile
+        if (map == null) releaseMapped();
+        return map;
+    }
+
+    private void releaseMapped() {
+        // only the last reader of a mapping which is released by unmapReadAccess() must wake up the waiting thread
+        if (this.mappedReaders.decrementAndGet() == 0 && this.unmapPending) {
+            synchronized (this.mappedReleased) {
+                this.mappedReleased.notifyAll();
+            }
+        }
+    }
+
+    public boolean isMapped() {
+        return this.mapped != null;
+    }
+
+    /**
+     * load the bloom filter for the keys of this heap. The filter is read from the dump that was written
+     * together with the heap; if no such dump exists, the filter is computed from the index.
+     * Once loaded, mightContain() can reject keys without any access to the index.
+     * This must only be used for heaps which do not get new entries; deletions are fine.
+     * @return true if a filter is available
+     */
+    public boolean useBloomFilter() {
+        if (this.bloom != null) return true;
+        if (this.index == null) return false;
+        final String fingerprint = fingerprintFileHash(this.heapFile);
+        if (fingerprint != null) {
+            final File f = HeapWriter.fingerprintBloomFile(this.heapFile, fingerprint);
+            if (f.exists()) try {
+                try (final InputStream is = new BufferedInputStream(new FileInputStream(f), 64 * 1024)) {
+                    this.bloom = BloomFilter.readFrom(is, Funnels.byteArrayFunnel());
+                }
+                this.fingerprintFileBlm = f;
+                return true;
+            } catch (final IOException e) {
+                log.warn("cannot read bloom filter " + f.getName() + ", re-computing filter: " + e.getMessage());
+                FileUtils.deletedelete(f);
+            }
+        }
+        synchronized (this.index) {
+            this.bloom = HeapWriter.bloomFilter(this.index);
+        }
+        return true;
+    }
+
+    /**
+     * check the bloom filter for a key; this does not touch the index
+     * @param key
+     * @return false if the key is certainly not stored in this heap, true if it may be stored or if no filter is loaded
+     */
+    public boolean mightContain(final byte[] key) {
+        final BloomFilter<byte[]> filter = this.bloom;
+        if (filter == null || key == null) return true;
+        return filter.mightContain(normalizeKey(key));
+    }
+
     protected byte[] normalizeKey(byte[] key) {
         // check size of key: zero-filled keys are only possible of the ordering is
         // an instance of the natural ordering. Base64-orderings cannot use zeros in keys.
@@ -169,7 +304,7 @@ public class HeapReader {
         this.fingerprintFileGap = HeapWriter.fingerprintGapFile(this.heapFile, fingerprint);
         if (!this.fingerprintFileGap.exists()) this.fingerprintFileGap = new File(this.fingerprintFileGap.getAbsolutePath() + ".gz");
         if (!this.fingerprintFileIdx.exists() || !this.fingerprintFileGap.exists()) {
-            deleteAllFingerprints(this.heapFile, this.fingerprintFileIdx.getName(), this.fingerprintFileGap.getName());
+            deleteAllFingerprints(this.heapFile, this.fingerprintFileIdx.getName(), this.fingerprintFileGap.getName(), HeapWriter.fingerprintBloomFile(this.heapFile, fingerprint).getName());
             return false;
         }
 
@@ -220,6 +355,10 @@ public class HeapReader {
             FileUtils.deletedelete(this.fingerprintFileGap);
             this.fingerprintFileGap = null;
         }
+        if (this.fingerprintFileBlm != null) {
+            FileUtils.deletedelete(this.fingerprintFileBlm);
+            this.fingerprintFileBlm = null;
+        }
     }
 
     protected static String fingerprintFileHash(File f) {
@@ -231,7 +370,7 @@ public class HeapReader {
         return fp.substring(0, 12);
     }
 
-    private static void deleteAllFingerprints(File f, String exception1, String exception2) {
+    private static void deleteAllFingerprints(File f, String exception1, String exception2, String exception3) {
         File d = f.getParentFile();
         String n = f.getName();
         String[] l = d.list();
@@ -239,8 +378,10 @@ public class HeapReader {
             if (!l[i].startsWith(n)) continue;
             if (exception1 != null && l[i].equals(exception1)) continue;
             if (exception2 != null && l[i].equals(exception2)) continue;
+            if (exception3 != null && l[i].equals(exception3)) continue;
             if (l[i].endsWith(".idx") ||
                 l[i].endsWith(".gap") ||
+                l[i].endsWith(".blm") ||
                 l[i].endsWith(".idx.gz") ||
                 l[i].endsWith(".gap.gz")
                ) FileUtils.deletedelete(new File(d, l[i]));
@@ -388,6 +529,9 @@ public class HeapReader {
         }
         key = normalizeKey(key);
 
+        // the index is thread-safe by itself; the lock is only needed to keep index and file consistent
+        if (this.mapped != null) return this.index.get(key) >= 0;
+
         synchronized (this.index) {
             // check if the file index contains the key
             return this.index.get(key) >= 0;
@@ -489,6 +633,23 @@ public class HeapReader {
         }
         key = normalizeKey(key);
 
+        final ByteBuffer map = acquireMapped();
+        if (map != null) {
+            final byte[] blob;
+            try {
+                blob = getMapped(map, key);
+            } finally {
+                releaseMapped();
+            }
+            if (blob == MAPPED_INCONSISTENT) {
+                // a deletion fills the record with zeros before it removes the key from the index;
+                // wait for a running deletion and check the index again before the record is read from the file
+                synchronized (this) {
+                    if (this.index.get(key) < 0) return null;
+                }
+            } else if (blob != MAPPED_OUT_OF_RANGE) return blob;
+        }
+
         synchronized (this.index) {
             // check if the index contains the key
             final long pos = this.index.get(key);
@@ -549,6 +710,56 @@ public class HeapReader {
         }
     }
 
+    private static final byte[] MAPPED_OUT_OF_RANGE = new byte[0];
+    private static final byte[] MAPPED_INCONSISTENT = new byte[0];
+
+    /**
+     * lock-free variant of get() which reads the record from the memory map
+     * @param map the mapped heap file
+     * @param key the normalized key
+     * @return the blob, null if the key does not exist, MAPPED_OUT_OF_RANGE if the record is not inside the mapping
+     * or MAPPED_INCONSISTENT if the record does not match the key, which happens during a concurrent deletion
+     * @throws SpaceExceededException
+     */
+    private byte[] getMapped(final ByteBuffer map, final byte[] key) throws SpaceExceededException {
+        final HandleMap idx = this.index;
+        if (idx == null) return null;
+        final long pos = idx.get(key);
+        if (pos < 0) return null;
+        if (pos + 4 + this.keylength > map.limit()) return MAPPED_OUT_OF_RANGE;
+
+        // the absolute getInt does not change the buffer state, all other reads are done on a private view
+        final int len = map.getInt((int) pos) - this.keylength;
+        if (len < 0) return MAPPED_INCONSISTENT; // the locked access in get() decides if the file is corrupted
+        if (pos + 4 + this.keylength + len > map.limit()) return MAPPED_OUT_OF_RANGE;
+        final long memr = len + this.keylength + 64;
+        if (MemoryControl.available() < memr) {
+            if (!MemoryControl.request(memr, true)) throw new SpaceExceededException(memr, "HeapReader.getMapped()/check"); // not enough memory available for this blob
+        }
+        final ByteBuffer view = map.duplicate();
+        view.position((int) pos + 4);
+
+        // read and verify the key
+        final byte[] keyf = new byte[this.keylength];
+        view.get(keyf);
+        if (!this.ordering.equal(key, keyf)) return MAPPED_INCONSISTENT;
+
+        // read the blob
+        byte[] blob;
+        try {
+            blob = new byte[len];
+        } catch (final OutOfMemoryError e) {
+            MemoryControl.gc(1000, "HeapReader.getMapped()/blob");
+            try {
+                blob = new byte[len];
+            } catch (final OutOfMemoryError ee) {
+                throw new SpaceExceededException(len, "HeapReader.getMapped()/blob");
+            }
+        }
+        view.get(blob);
+        return blob;
+    }
+
     public byte[] get(Object key) {
         if (!(key instanceof byte[])) return null;
         try {
@@ -586,6 +797,17 @@ public class HeapReader {
         }
         key = normalizeKey(key);
 
+        final ByteBuffer map = acquireMapped();
+        if (map != null) {
+            try {
+                final long pos = this.index.get(key);
+                if (pos < 0) return -1;
+                if (pos + 4 <= map.limit()) return map.getInt((int) pos) - this.keylength;
+            } finally {
+                releaseMapped();
+            }
+        }
+
         synchronized (this.index) {
             // check if the index contains the key
             final long pos = this.index.get(key);
@@ -602,6 +824,7 @@ public class HeapReader {
      */
     public void close(boolean writeIDX) {
         if (this.index == null) return;
+        unmapReadAccess();
         synchronized (this.index) {
             try {
             if (this.file != null)
@@ -643,6 +866,10 @@ public class HeapReader {
                             this.index.dump(newFingerprintFileIdx);
                             log.info("wrote a dump for the " + this.index.size() +  " index entries of " + this.heapFile.getName()+ " in " + (System.currentTimeMillis() - start) + " milliseconds.");
                         }
+                        File newFingerprintFileBlm = HeapWriter.fingerprintBloomFile(this.heapFile, fingerprint);
+                        if (this.bloom != null && !newFingerprintFileBlm.exists()) {
+                            HeapWriter.dumpBloomFilter(this.bloom, newFingerprintFileBlm);
+                        }
                     }
                     this.index.close();
                     this.index = null;
@@ -654,6 +881,7 @@ public class HeapReader {
             this.free = null;
             if (this.index != null) this.index.close();
             this.index = null;
+            this.bloom = null;
             this.closeDate = new Date();
             } catch (Throwable e) {ConcurrentLog.logException(e);}
             log.info("close HeapFile " + this.heapFile.getName() + "; trace: " + ConcurrentLog.stackTrace());
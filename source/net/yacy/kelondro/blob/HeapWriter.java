@@ -29,6 +29,11 @@ import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
 
 import net.yacy.cora.document.encoding.UTF8;
 import net.yacy.cora.order.ByteOrder;
@@ -162,6 +167,7 @@ public final class HeapWriter {
             } else {
                 new Gap().dump(fingerprintGapFile(this.heapFileREADY, fingerprint));
                 this.index.dump(fingerprintIndexFile(this.heapFileREADY, fingerprint));
+                dumpBloomFilter(bloomFilter(this.index), fingerprintBloomFile(this.heapFileREADY, fingerprint));
                 log.info("wrote a dump for the " + this.index.size() +  " index entries of " + this.heapFileREADY.getName()+ " in " + (System.currentTimeMillis() - start) + " milliseconds.");
             }
             this.index.close();
@@ -180,7 +186,7 @@ public final class HeapWriter {
         FileUtils.deletedelete(f);
         for (String s: l) {
             if (s.startsWith(n) &&
-                (s.endsWith(".idx") || s.endsWith(".gap")))
+                (s.endsWith(".idx") || s.endsWith(".gap") || s.endsWith(".blm")))
                FileUtils.deletedelete(new File(p, s));
         }
     }
@@ -194,4 +200,36 @@ public final class HeapWriter {
         assert f != null;
         return new File(f.getParentFile(), f.getName() + "." + fingerprint + ".gap");
     }
+
+    protected static File fingerprintBloomFile(File f, String fingerprint) {
+        assert f != null;
+        return new File(f.getParentFile(), f.getName() + "." + fingerprint + ".blm");
+    }
+
+    /**
+     * create a bloom filter for all keys of an index
+     * @param index
+     * @return a filter with the false positive probability HeapReader.bloomFilterFpp
+     */
+    protected static BloomFilter<byte[]> bloomFilter(final HandleMap index) {
+        final BloomFilter<byte[]> filter = BloomFilter.create(Funnels.byteArrayFunnel(), Math.max(1, index.size()), HeapReader.bloomFilterFpp);
+        final Iterator<byte[]> keys = index.keys(true, null);
+        while (keys.hasNext()) filter.put(keys.next());
+        return filter;
+    }
+
+    /**
+     * write a bloom filter to a file. The file is first written to a temporary file which is then renamed.
+     * @param filter
+     * @param file
+     * @throws IOException
+     */
+    protected static void dumpBloomFilter(final BloomFilter<byte[]> filter, final File file) throws IOException {
+        final File tmp = new File(file.getParentFile(), file.getName() + ".prt");
+        try (final OutputStream os = new BufferedOutputStream(new FileOutputStream(tmp), 64 * 1024)) {
+            filter.writeTo(os);
+        }
+        if (file.exists()) file.delete();
+        if (!tmp.renameTo(file)) throw new IOException("cannot rename " + tmp.toString() + " to " + file.toString());
+    }
 }
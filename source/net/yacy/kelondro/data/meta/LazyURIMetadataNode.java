@@ -0,0 +1,160 @@
+/**
+ *  LazyURIMetadataNode
+ *  part of YaCy
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.kelondro.data.meta;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.solr.common.SolrDocument;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.federate.solr.connector.SolrConnector;
+import net.yacy.cora.util.ConcurrentLog;
+
+/**
+ * A search result which was retrieved without the large fields URIMetadataNode.LAZY_FIELDS. These fields
+ * are loaded from the index with one request when one of them is accessed for the first time, i.e. only
+ * for those results which need the text for a snippet or the images for an image search.
+ *
+ * The field names and the iterator of the document do not contain fields which have not been loaded,
+ * therefore such a node must never be put back into the index.
+ */
+public class LazyURIMetadataNode extends URIMetadataNode {
+
+    private static final long serialVersionUID = 4270312744623411537L;
+
+    private static final Set<String> LAZY = new HashSet<String>();
+    static {
+        for (final String f: LAZY_FIELDS) LAZY.add(f);
+    }
+
+    private transient SolrConnector connector;
+    private Set<String> pending; // the lazy fields which are not loaded yet; null during construction
+
+    /**
+     * @param doc a document from the index; the lazy fields may be missing
+     * @param connector the connector to the index which is used to load the missing lazy fields
+     * @throws MalformedURLException
+     */
+    public LazyURIMetadataNode(final SolrDocument doc, final SolrConnector connector) throws MalformedURLException {
+        super(doc);
+        this.connector = connector;
+        final Set<String> p = new HashSet<String>();
+        for (final String f: LAZY_FIELDS) if (!doc.containsKey(f)) p.add(f);
+        this.pending = p;
+    }
+
+    /**
+     * load all pending lazy fields if the given field is one of them
+     * @param name the name of the accessed field
+     */
+    private void resolve(final Object name) {
+        final Set<String> p = this.pending;
+        if (p == null || !LAZY.contains(name)) return;
+        final String[] fields;
+        synchronized (p) {
+            if (!p.contains(name)) return;
+            fields = p.toArray(new String[p.size()]);
+            p.clear();
+            if (this.connector == null) return;
+            try {
+                final SolrDocument doc = this.connector.getDocumentById(ASCII.String(hash()), fields);
+                if (doc == null) return;
+                for (final String f: fields) {
+                    final Object value = doc.getFieldValue(f);
+                    if (value != null) super.setField(f, value);
+                }
+            } catch (final IOException e) {
+                ConcurrentLog.warn("LazyURIMetadataNode", "cannot load fields of " + urlstring() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void loaded(final String name) {
+        final Set<String> p = this.pending;
+        if (p == null) return;
+        synchronized (p) {
+            p.remove(name);
+        }
+    }
+
+    /**
+     * @param name a field name
+     * @return true if the field is one of the lazy fields which has not been loaded yet
+     */
+    public boolean isPending(final String name) {
+        final Set<String> p = this.pending;
+        if (p == null) return false;
+        synchronized (p) {
+            return p.contains(name);
+        }
+    }
+
+    @Override
+    public Object getFieldValue(final String name) {
+        resolve(name);
+        return super.getFieldValue(name);
+    }
+
+    @Override
+    public Collection<Object> getFieldValues(final String name) {
+        resolve(name);
+        return super.getFieldValues(name);
+    }
+
+    @Override
+    public Object getFirstValue(final String name) {
+        resolve(name);
+        return super.getFirstValue(name);
+    }
+
+    @Override
+    public Object get(final Object key) {
+        resolve(key);
+        return super.get(key);
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        resolve(key);
+        return super.containsKey(key);
+    }
+
+    @Override
+    public void setField(final String name, final Object value) {
+        super.setField(name, value);
+        loaded(name);
+    }
+
+    @Override
+    public void addField(final String name, final Object value) {
+        resolve(name);
+        super.addField(name, value);
+    }
+
+    @Override
+    public boolean removeFields(final String name) {
+        loaded(name);
+        return super.removeFields(name);
+    }
+}
@@ -87,6 +87,42 @@ public class URIMetadataNode extends SolrDocument /* implements Comparable<URIMe
     
     private static final long serialVersionUID = -256046934741561968L;
     
+    /**
+     * large fields which are not needed to show a search result in a result list: the text, the links and the images.
+     * A LazyURIMetadataNode loads them only when they are accessed.
+     */
+    public static final String[] LAZY_FIELDS = new String[]{
+        CollectionSchema.text_t.getSolrFieldName(),
+        CollectionSchema.inboundlinks_protocol_sxt.getSolrFieldName(),
+        CollectionSchema.inboundlinks_urlstub_sxt.getSolrFieldName(),
+        CollectionSchema.inboundlinks_anchortext_txt.getSolrFieldName(),
+        CollectionSchema.outboundlinks_protocol_sxt.getSolrFieldName(),
+        CollectionSchema.outboundlinks_urlstub_sxt.getSolrFieldName(),
+        CollectionSchema.outboundlinks_anchortext_txt.getSolrFieldName(),
+        CollectionSchema.images_protocol_sxt.getSolrFieldName(),
+        CollectionSchema.images_urlstub_sxt.getSolrFieldName(),
+        CollectionSchema.images_text_t.getSolrFieldName(),
+        CollectionSchema.images_alt_sxt.getSolrFieldName(),
+        CollectionSchema.images_height_val.getSolrFieldName(),
+        CollectionSchema.images_width_val.getSolrFieldName(),
+        CollectionSchema.images_pixel_val.getSolrFieldName()
+    };
+
+    /**
+     * a field list for a solr query with all fields of the collection schema except the LAZY_FIELDS
+     */
+    public static final String[] EAGER_FIELDS;
+    static {
+        final Set<String> lazy = new HashSet<String>();
+        for (final String f: LAZY_FIELDS) lazy.add(f);
+        final List<String> eager = new ArrayList<String>();
+        for (final CollectionSchema f: CollectionSchema.values()) {
+            if (!lazy.contains(f.getSolrFieldName())) eager.add(f.getSolrFieldName());
+        }
+        eager.add(CollectionSchema.VOCABULARY_PREFIX + "*");
+        EAGER_FIELDS = eager.toArray(new String[eager.size()]);
+    }
+
     protected String keywords = null;
     protected DigestURL url;
     protected Bitfield flags = null;
@@ -172,7 +172,7 @@ public class RowCollection implements Sortable<Row.Entry>, Iterable<Row.Entry>,
 
     private static Column exportColumn0, exportColumn1, exportColumn2, exportColumn3, exportColumn4, collectionColumnProducer;
 
-    protected static final long exportOverheadSize = 14;
+    public static final long exportOverheadSize = 14;
     
     private static Row exportRow(final int chunkcachelength) {
         /*
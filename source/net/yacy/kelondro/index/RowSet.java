@@ -353,6 +353,38 @@ public class RowSet extends RowCollection implements Index, Iterable<Row.Entry>,
         return l;
     }
 
+    /**
+     * exponential search in the sorted area, starting at a given position. This is faster than a
+     * binary search if the position of the key is close to the start position, like when keys in
+     * ascending order are searched one after another.
+     * @param key an array which contains the key
+     * @param astart the offset of the key in the array
+     * @param from the first position which is tested
+     * @return the position of the first entry at or after from which is not smaller than the key,
+     *   or the size of the sorted area if all entries are smaller
+     */
+    protected final int gallopPosition(final byte[] key, final int astart, final int from) {
+        assert (this.rowdef.objectOrder != null);
+        if (from >= this.sortBound) return this.sortBound;
+        if (compare(key, astart, from) <= 0) return from;
+        // the entry at lo is smaller than the key
+        int lo = from;
+        int hi = from + 1;
+        int step = 1;
+        while (hi < this.sortBound && compare(key, astart, hi) > 0) {
+            lo = hi;
+            step <<= 1;
+            hi = from + step;
+        }
+        if (hi > this.sortBound) hi = this.sortBound;
+        int l = lo + 1;
+        while (l < hi) {
+            final int p = (l + hi) >>> 1;
+            if (compare(key, astart, p) > 0) l = p + 1; else hi = p;
+        }
+        return l;
+    }
+
     public final synchronized Iterator<byte[]> keys() {
         sort();
         return super.keys(true);
@@ -558,6 +590,125 @@ public class RowSet extends RowCollection implements Index, Iterable<Row.Entry>,
         return r;
     }
 
+    /**
+     * merge any number of row collections in one simultanous iteration of all input collections.
+     * This is the same as a chain of pairwise merge operations, but each row is copied only once:
+     * if several collections contain the same key, the row from the collection with the lowest position
+     * in the list is used, just like in a left-to-right chain of merge(). The input collections are not
+     * altered except that they are sorted; the returned collection is a new collection with copied content.
+     * @param collections the collections to be merged, all with the same row definition
+     * @return a sorted collection without doubles
+     * @throws SpaceExceededException
+     */
+    public final static RowSet mergeAll(final List<RowSet> collections) throws SpaceExceededException {
+        assert collections != null && !collections.isEmpty();
+        final int k = collections.size();
+        final RowCollection[] c = new RowCollection[k];
+        long total = 0;
+        for (int i = 0; i < k; i++) {
+            c[i] = collections.get(i);
+            assert c[0].rowdef == c[i].rowdef : c[0].rowdef.toString() + " != " + c[i].rowdef.toString();
+            try {
+                c[i].sort();
+            } catch (final Throwable e) {
+                ConcurrentLog.severe("RowSet", "collection corrupted. cleaned. " + e.getMessage(), e);
+                c[i].clear();
+            }
+            total += c[i].size();
+        }
+        if (total > Integer.MAX_VALUE) throw new SpaceExceededException(total, "RowSet.mergeAll: total > Integer.MAX_VALUE");
+        final Row rowdef = c[0].rowdef;
+        final RowSet r = new RowSet(rowdef, (int) total);
+        final int objectsize = rowdef.objectsize;
+        final MergeHeap heap = new MergeHeap(c);
+        int top, p;
+        while (!heap.isEmpty()) {
+            top = heap.top();
+            p = heap.cursor[top] * objectsize;
+            // skip the row if the key was already taken from a collection with a lower position
+            if (r.chunkcount == 0 || rowdef.objectOrder.compare(
+                    r.chunkcache, (r.chunkcount - 1) * objectsize,
+                    c[top].chunkcache, p, rowdef.primaryKeyLength) != 0) {
+                r.addSorted(c[top].chunkcache, p, objectsize);
+            }
+            heap.advance();
+        }
+        return r;
+    }
+
+    /**
+     * a binary min-heap of collection numbers, ordered by the key at the cursor position of each collection.
+     * Equal keys are ordered by collection number.
+     */
+    private final static class MergeHeap {
+
+        private final RowCollection[] c;
+        private final int[] cursor, heap;
+        private int size;
+
+        private MergeHeap(final RowCollection[] c) {
+            this.c = c;
+            this.cursor = new int[c.length];
+            this.heap = new int[c.length];
+            this.size = 0;
+            for (int i = 0; i < c.length; i++) {
+                if (c[i].size() == 0) continue;
+                this.heap[this.size] = i;
+                siftUp(this.size++);
+            }
+        }
+
+        private boolean isEmpty() {
+            return this.size == 0;
+        }
+
+        private int top() {
+            return this.heap[0];
+        }
+
+        /**
+         * move the cursor of the top collection one row forward and restore the heap order
+         */
+        private void advance() {
+            final int top = this.heap[0];
+            if (++this.cursor[top] >= this.c[top].size()) {
+                this.heap[0] = this.heap[--this.size];
+            }
+            if (this.size > 1) siftDown(0);
+        }
+
+        private boolean less(final int a, final int b) {
+            final Row rowdef = this.c[a].rowdef;
+            final int o = rowdef.objectOrder.compare(
+                    this.c[a].chunkcache, this.cursor[a] * rowdef.objectsize,
+                    this.c[b].chunkcache, this.cursor[b] * rowdef.objectsize, rowdef.primaryKeyLength);
+            return o == 0 ? a < b : o < 0;
+        }
+
+        private void siftUp(int i) {
+            final int x = this.heap[i];
+            while (i > 0) {
+                final int parent = (i - 1) >> 1;
+                if (!less(x, this.heap[parent])) break;
+                this.heap[i] = this.heap[parent];
+                i = parent;
+            }
+            this.heap[i] = x;
+        }
+
+        private void siftDown(int i) {
+            final int x = this.heap[i];
+            int child;
+            while ((child = (i << 1) + 1) < this.size) {
+                if (child + 1 < this.size && less(this.heap[child + 1], this.heap[child])) child++;
+                if (!less(this.heap[child], x)) break;
+                this.heap[i] = this.heap[child];
+                i = child;
+            }
+            this.heap[i] = x;
+        }
+    }
+
     public static void main(final String[] args) {
     	// sort/uniq-test
         /*
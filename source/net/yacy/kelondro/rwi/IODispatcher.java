@@ -27,20 +27,31 @@ package net.yacy.kelondro.rwi;
 import java.io.File;
 import java.io.IOException;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.kelondro.blob.ArrayStack;
 import net.yacy.kelondro.util.MemoryControl;
+import net.yacy.kelondro.util.NamePrefixThreadFactory;
 
 
 /**
  * this is a concurrent merger that can merge single files that are queued for merging.
  * when several ReferenceContainerArray classes host their ReferenceContainer file arrays,
  * they may share a single ReferenceContainerMerger object which does the sharing for all
- * of them. This is the best way to do the merging, because it does heavy IO access and
- * such access should not be performed concurrently, but queued. This class is the
- * manaagement class for queueing of merge jobs.
+ * of them. This class is the manaagement class for queueing of dump and merge jobs.
+ *
+ * Dump jobs are executed in the dispatcher thread itself, which is a priority lane for
+ * flushing the RAM caches to disc: a dump never waits for a running merge.
+ * Merge jobs are executed by a pool of mergeThreads worker threads. Waiting merge jobs are
+ * ordered by size tiers (each tier is four times larger than the previous one), so that many
+ * small files are compacted before large files are merged.
  *
  * to use this class, first instantiate a object and then start the concurrent execution
  * of merging with a call to the start() - method. To shut down all mergings, call terminate()
@@ -50,19 +61,36 @@ public class IODispatcher extends Thread {
 
     private static final ConcurrentLog log = new ConcurrentLog("IODispatcher");
 
-    private   Semaphore                    controlQueue; // controls that only one io job is running
+    /** the number of concurrent merge threads; the value is used when the dispatcher is created */
+    public static int mergeThreads = 1;
+
+    private   Semaphore                    controlQueue; // counts the queued dump jobs and the termination signal
     private   final Semaphore              termination; // released if thread is safe to terminate
-    private   ArrayBlockingQueue<MergeJob> mergeQueue;
+    private   ThreadPoolExecutor           mergeExecutor;
+    private   final int                    mergeQueueLength;
     private   ArrayBlockingQueue<DumpJob<? extends Reference>> dumpQueue;
     private   boolean                      terminate;
     private final int                      writeBufferSize;
 
+    // statistics
+    private final AtomicLong    mergeSequence = new AtomicLong(0); // order of merge jobs within the same tier
+    private final AtomicInteger activeMerges = new AtomicInteger(0);
+    private final AtomicLong    dumpBytes = new AtomicLong(0); // bytes written by dumps of the RAM caches
+    private final AtomicLong    mergeBytesIn = new AtomicLong(0); // bytes read by merges
+    private final AtomicLong    mergeBytesOut = new AtomicLong(0); // bytes written by merges
+    private final AtomicLong    mergeTime = new AtomicLong(0); // milliseconds spent in merges, summed over all merge threads
+    private final AtomicLong    mergeCount = new AtomicLong(0);
+
     public IODispatcher(final int dumpQueueLength, final int mergeQueueLength, final int writeBufferSize) {
     	super("IODispatcher");
         this.termination = new Semaphore(0);
         this.controlQueue = new Semaphore(0);
         this.dumpQueue = new ArrayBlockingQueue<DumpJob<? extends Reference>>(dumpQueueLength);
-        this.mergeQueue = new ArrayBlockingQueue<MergeJob>(mergeQueueLength);
+        this.mergeQueueLength = mergeQueueLength;
+        final int threads = Math.max(1, mergeThreads);
+        this.mergeExecutor = new ThreadPoolExecutor(threads, threads, 10, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(Math.max(1, mergeQueueLength)), new NamePrefixThreadFactory("IODispatcher.merge"));
+        this.mergeExecutor.allowCoreThreadTimeOut(true);
         this.writeBufferSize = writeBufferSize;
         this.terminate = false;
     }
@@ -107,12 +135,15 @@ public class IODispatcher extends Thread {
         }
     }
 
+    /**
+     * @return the number of waiting dump and merge jobs
+     */
     protected synchronized int queueLength() {
-        return (this.controlQueue == null || !isAlive()) ? 0 : this.controlQueue.availablePermits();
+        return (this.dumpQueue == null || this.mergeExecutor == null || !isAlive()) ? 0 : this.dumpQueue.size() + this.mergeExecutor.getQueue().size();
     }
 
     protected synchronized void merge(final File f1, final File f2, final ReferenceFactory<? extends Reference> factory, final ArrayStack array, final File newFile) {
-        if (this.mergeQueue == null || this.controlQueue == null || !isAlive()) {
+        if (this.mergeExecutor == null || this.controlQueue == null || !isAlive()) {
             if (f2 == null) {
                 log.warn("emergency rewrite of file " + f1.getName() + " to " + newFile.getName());
             } else {
@@ -123,19 +154,18 @@ public class IODispatcher extends Thread {
             final MergeJob job = new MergeJob(f1, f2, factory, array, newFile);
             if (isAlive()) {
                 try {
-                    this.mergeQueue.add(job);
+                    if (this.mergeExecutor.getQueue().size() >= this.mergeQueueLength) throw new RejectedExecutionException("merge queue is full");
+                    this.mergeExecutor.execute(job);
                     if (f2 == null) {
-                        log.info("appended rewrite job of file " + f1.getName() + " to " + newFile.getName());
+                        log.info("appended rewrite job of file " + f1.getName() + " to " + newFile.getName() + ", tier " + job.tier);
                     } else {
-                        log.info("appended merge job of files " + f1.getName() + ", " + f2.getName() + " to " + newFile.getName());
+                        log.info("appended merge job of files " + f1.getName() + ", " + f2.getName() + " to " + newFile.getName() + ", tier " + job.tier);
                     }
-                } catch (final IllegalStateException e) { // because mergeQueue size is 1, IllegalStateException could happen frequently (serial execution ensured in run() )
+                } catch (final RejectedExecutionException e) {
                 	log.warn("Could not add merge job to queue: " + e.getMessage());
-                } finally {
-                    this.controlQueue.release();
                 }
             } else {
-                job.merge();
+                job.run();
                 if (f2 == null) {
                     log.warn("dispatcher not running, merged files " + f1.getName() + " to " + newFile.getName());
                 } else {
@@ -145,15 +175,62 @@ public class IODispatcher extends Thread {
         }
     }
 
+    /**
+     * @return the number of dump jobs which wait for execution
+     */
+    public int dumpQueueSize() {
+        final ArrayBlockingQueue<DumpJob<? extends Reference>> q = this.dumpQueue;
+        return q == null ? 0 : q.size();
+    }
+
+    /**
+     * @return the number of merge jobs which wait for a merge thread
+     */
+    public int mergeQueueSize() {
+        final ThreadPoolExecutor e = this.mergeExecutor;
+        return e == null ? 0 : e.getQueue().size();
+    }
+
+    /**
+     * @return the number of merge jobs which are running right now
+     */
+    public int activeMerges() {
+        return this.activeMerges.get();
+    }
+
+    /**
+     * @return the number of finished merge jobs
+     */
+    public long mergeCount() {
+        return this.mergeCount.get();
+    }
+
+    /**
+     * @return the number of input bytes that one merge thread processes in a second
+     */
+    public long mergeBytesPerSecond() {
+        final long t = this.mergeTime.get();
+        return t == 0 ? 0 : this.mergeBytesIn.get() * 1000L / t;
+    }
+
+    /**
+     * the write amplification is the number of bytes written to disc for each byte that is dumped from the RAM cache.
+     * every merge writes the same data again, so this is 1.0 if no merge has been done
+     * @return all written bytes divided by the dumped bytes
+     */
+    public double writeAmplification() {
+        final long d = this.dumpBytes.get();
+        return d == 0 ? 0.0d : ((double) (d + this.mergeBytesOut.get())) / ((double) d);
+    }
+
     @Override
     public void run() {
-        MergeJob mergeJob;
         DumpJob<? extends Reference> dumpJob;
         try {
             loop: while (true) try {
                 this.controlQueue.acquire();
 
-                // prefer dump actions to flush memory to disc
+                // this thread does only dumps; merges are done in the merge executor
                 if (!this.dumpQueue.isEmpty()) {
                 	File f = null;
                     try {
@@ -171,30 +248,6 @@ public class IODispatcher extends Thread {
                     continue loop;
                 }
 
-                // otherwise do a merge operation
-                if (!this.mergeQueue.isEmpty() && !MemoryControl.shortStatus()) {
-                	File f = null, f1 = null, f2 = null;
-                    try {
-                        mergeJob = this.mergeQueue.take();
-                        f = mergeJob.newFile;
-                        f1 = mergeJob.f1;
-                        f2 = mergeJob.f2;
-                        mergeJob.merge();
-                    } catch (final InterruptedException e) {
-                        log.severe("main run job was interrupted (2)", e);
-                    } catch (final Throwable e) {
-                        if (f2 == null) {
-                            log.severe("main run job had errors (2), dump to " + f + " failed. Input file is " + f1, e);
-                        } else {
-                            log.severe("main run job had errors (2), dump to " + f + " failed. Input files are " + f1 + " and " + f2, e);
-                        }
-                    } finally {
-                        // make sure (on error) loop never hangs on controlQueue.acquire() (after/on error)
-                        if (this.terminate) this.controlQueue.release();
-                    }
-                    continue loop;
-                }
-
                 // check termination
                 if (this.terminate) {
                     log.info("caught termination signal");
@@ -209,13 +262,37 @@ public class IODispatcher extends Thread {
             log.severe("main run job failed (4)", e);
         } finally {
             log.info("terminating run job");
+            // finish all queued merges; the merged files would otherwise not be mounted
+            this.mergeExecutor.shutdown();
+            try {
+                while (!this.mergeExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+                    log.info("waiting for " + (this.activeMerges.get() + this.mergeExecutor.getQueue().size()) + " merge jobs");
+                }
+            } catch (final InterruptedException e) {
+                log.warn("interrupted while waiting for merge jobs");
+            }
             this.controlQueue = null;
             this.dumpQueue = null;
-            this.mergeQueue = null;
+            this.mergeExecutor = null;
             this.termination.release();
         }
     }
 
+    /**
+     * compute the size tier of a merge job: tier 0 holds everything below 4MB, each following tier is four times as large
+     * @param bytes the size of the input files
+     * @return the tier
+     */
+    protected static int sizeTier(final long bytes) {
+        long mb = bytes >>> 20;
+        int tier = 0;
+        while (mb >= 4) {
+            mb >>>= 2;
+            tier++;
+        }
+        return tier;
+    }
+
     private class DumpJob<ReferenceType extends Reference> {
         private final ReferenceContainerCache<ReferenceType> cache;
         private final File file;
@@ -228,6 +305,7 @@ public class IODispatcher extends Thread {
         private void dump() {
             try {
                 if (!this.cache.isEmpty()) this.cache.dump(this.file, (int) Math.min(MemoryControl.available() / 3, IODispatcher.this.writeBufferSize), true);
+                IODispatcher.this.dumpBytes.addAndGet(this.file.length());
                 this.array.mountBLOBFile(this.file);
             } catch (final IOException e) {
                 ConcurrentLog.logException(e);
@@ -235,11 +313,14 @@ public class IODispatcher extends Thread {
         }
     }
 
-    private class MergeJob {
+    private class MergeJob implements Runnable, Comparable<MergeJob> {
 
         private final File f1, f2, newFile;
         private final ArrayStack array;
         private final ReferenceFactory<? extends Reference> factory;
+        private final long inputSize;
+        private final int tier;
+        private final long sequence;
 
         private MergeJob(
                 final File f1,
@@ -252,6 +333,45 @@ public class IODispatcher extends Thread {
             this.factory = factory;
             this.newFile = newFile;
             this.array = array;
+            this.inputSize = f1.length() + (f2 == null ? 0 : f2.length());
+            this.tier = sizeTier(this.inputSize);
+            this.sequence = IODispatcher.this.mergeSequence.incrementAndGet();
+        }
+
+        /**
+         * lower tiers are merged first, within a tier the jobs are done in the order of their submission
+         */
+        @Override
+        public int compareTo(final MergeJob o) {
+            if (this.tier != o.tier) return this.tier < o.tier ? -1 : 1;
+            return this.sequence < o.sequence ? -1 : this.sequence == o.sequence ? 0 : 1;
+        }
+
+        @Override
+        public void run() {
+            // wait until there is enough memory for the write buffer; a queued job was also postponed in that case
+            while (MemoryControl.shortStatus() && !IODispatcher.this.terminate) {
+                try {Thread.sleep(1000);} catch (final InterruptedException e) {break;}
+            }
+            IODispatcher.this.activeMerges.incrementAndGet();
+            final long start = System.currentTimeMillis();
+            try {
+                final File f = merge();
+                if (f != null) {
+                    IODispatcher.this.mergeBytesIn.addAndGet(this.inputSize);
+                    IODispatcher.this.mergeBytesOut.addAndGet(f.length());
+                    IODispatcher.this.mergeTime.addAndGet(System.currentTimeMillis() - start);
+                    IODispatcher.this.mergeCount.incrementAndGet();
+                }
+            } catch (final Throwable e) {
+                if (this.f2 == null) {
+                    log.severe("merge job had errors, dump to " + this.newFile + " failed. Input file is " + this.f1, e);
+                } else {
+                    log.severe("merge job had errors, dump to " + this.newFile + " failed. Input files are " + this.f1 + " and " + this.f2, e);
+                }
+            } finally {
+                IODispatcher.this.activeMerges.decrementAndGet();
+            }
         }
 
         private File merge() {
@@ -0,0 +1,394 @@
+// OffHeapContainerMap.java
+// (C) 2026 by the YaCy contributors
+//
+// This is a part of YaCy, a peer-to-peer based web search engine
+//
+// LICENSE
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.rwi;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import net.yacy.cora.util.ByteArray;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.index.RowSet;
+
+/**
+ * A map from term hashes to reference containers which stores the containers outside of the java heap.
+ * The exported collections of the containers are written into direct ByteBuffer arenas; only the term hashes
+ * and a small slot object for each term are kept in the heap. A container is stored as a list of chunks which
+ * are merged with putAllRecent when the container is read. Appending new references writes only a new chunk;
+ * small chunks are merged with their predecessor as soon as they reach half of its size, so every reference
+ * is copied only a logarithmic number of times.
+ *
+ * Containers which are returned by get() are copies: changes to them must be written back with put().
+ * Memory of replaced chunks is reclaimed by a compaction when more than half of the arena memory is garbage.
+ * The arenas are released by the garbage collector when the map is cleared or discarded.
+ *
+ * @param <ReferenceType>
+ */
+public final class OffHeapContainerMap<ReferenceType extends Reference> extends AbstractMap<ByteArray, ReferenceContainer<ReferenceType>> implements ConcurrentMap<ByteArray, ReferenceContainer<ReferenceType>> {
+
+    private static final ConcurrentLog log = new ConcurrentLog("OffHeapContainerMap");
+
+    private static final int ARENA_SIZE = 16 * 1024 * 1024;
+
+    private final ReferenceFactory<ReferenceType> factory;
+    private final Map<ByteArray, Slot> slots;
+    private Arenas arenas;
+    private long garbage; // bytes in the arenas which are not referenced by any slot
+
+    public OffHeapContainerMap(final ReferenceFactory<ReferenceType> factory) {
+        this.factory = factory;
+        this.slots = new HashMap<ByteArray, Slot>();
+        this.arenas = new Arenas();
+        this.garbage = 0;
+    }
+
+    /**
+     * the chunks of one container, oldest first
+     */
+    private static final class Slot {
+        private long[] chunks = new long[2]; // addresses in the arenas
+        private int[] counts = new int[2];   // number of references in each chunk
+        private int n = 0;
+
+        private void add(final long address, final int count) {
+            if (this.n == this.chunks.length) {
+                final long[] c = new long[this.n * 2];
+                System.arraycopy(this.chunks, 0, c, 0, this.n);
+                this.chunks = c;
+                final int[] s = new int[this.n * 2];
+                System.arraycopy(this.counts, 0, s, 0, this.n);
+                this.counts = s;
+            }
+            this.chunks[this.n] = address;
+            this.counts[this.n] = count;
+            this.n++;
+        }
+
+        private int count() {
+            int c = 0;
+            for (int i = 0; i < this.n; i++) c += this.counts[i];
+            return c;
+        }
+    }
+
+    /**
+     * a list of direct buffers where chunks are appended. An address is the buffer index in the upper
+     * 32 bits and the offset of the chunk in the lower 32 bits. Each chunk starts with its length.
+     */
+    private static final class Arenas {
+        private final List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+        private ByteBuffer current = null;
+        private long allocated = 0;
+
+        private long write(final byte[] b) throws SpaceExceededException {
+            final int need = 4 + b.length;
+            ByteBuffer arena = this.current;
+            if (arena == null || arena.remaining() < need) {
+                try {
+                    arena = ByteBuffer.allocateDirect(Math.max(ARENA_SIZE, need));
+                } catch (final OutOfMemoryError e) {
+                    throw new SpaceExceededException(need, "off-heap arena allocation: " + e.getMessage());
+                }
+                this.buffers.add(arena);
+                this.allocated += arena.capacity();
+                if (need <= ARENA_SIZE) this.current = arena; // large chunks get a buffer of their own
+            }
+            final int offset = arena.position();
+            arena.putInt(b.length);
+            arena.put(b);
+            return (((long) (this.buffers.size() - 1)) << 32) | (offset & 0xffffffffL);
+        }
+
+        private byte[] read(final long address) {
+            final ByteBuffer arena = this.buffers.get((int) (address >>> 32)).duplicate();
+            arena.position((int) address);
+            final byte[] b = new byte[arena.getInt()];
+            arena.get(b);
+            return b;
+        }
+
+        private int length(final long address) {
+            return 4 + this.buffers.get((int) (address >>> 32)).getInt((int) address);
+        }
+    }
+
+    private ReferenceContainer<ReferenceType> chunk(final byte[] termHash, final long address) throws SpaceExceededException {
+        return new ReferenceContainer<ReferenceType>(this.factory, termHash, RowSet.importRowSet(this.arenas.read(address), this.factory.getRow()));
+    }
+
+    private ReferenceContainer<ReferenceType> materialize(final byte[] termHash, final Slot slot) throws SpaceExceededException {
+        final ReferenceContainer<ReferenceType> c = chunk(termHash, slot.chunks[0]);
+        for (int i = 1; i < slot.n; i++) c.putAllRecent(chunk(termHash, slot.chunks[i]));
+        return c;
+    }
+
+    private void free(final Slot slot) {
+        for (int i = 0; i < slot.n; i++) this.garbage += this.arenas.length(slot.chunks[i]);
+        slot.n = 0;
+    }
+
+    /**
+     * append the references of a container to the stored container of the same term.
+     * This has the same result as reading the stored container, calling putAllRecent and writing it back,
+     * but it only writes the new references.
+     * @param key the term hash
+     * @param container the new references
+     * @throws SpaceExceededException if no more direct memory can be allocated
+     */
+    public synchronized void append(final ByteArray key, final ReferenceContainer<ReferenceType> container) throws SpaceExceededException {
+        if (container == null || container.isEmpty()) return;
+        final long address = this.arenas.write(container.exportCollection());
+        Slot slot = this.slots.get(key);
+        if (slot == null) {
+            slot = new Slot();
+            this.slots.put(key, slot);
+        }
+        slot.add(address, container.size());
+
+        // merge small chunks into their predecessor
+        final byte[] termHash = key.asBytes();
+        while (slot.n >= 2 && slot.counts[slot.n - 1] * 2 >= slot.counts[slot.n - 2]) {
+            final ReferenceContainer<ReferenceType> c = chunk(termHash, slot.chunks[slot.n - 2]);
+            c.putAllRecent(chunk(termHash, slot.chunks[slot.n - 1]));
+            final long merged = this.arenas.write(c.exportCollection());
+            this.garbage += this.arenas.length(slot.chunks[slot.n - 2]) + this.arenas.length(slot.chunks[slot.n - 1]);
+            slot.n -= 2;
+            slot.add(merged, c.size());
+        }
+        compactIfNeeded();
+    }
+
+    /**
+     * the number of references for a term. If a term has several chunks, the same url may be counted more than once.
+     * @param key
+     * @return the number of references, without reading the container
+     */
+    public synchronized int count(final ByteArray key) {
+        final Slot slot = this.slots.get(key);
+        return slot == null ? 0 : slot.count();
+    }
+
+    /**
+     * @return the largest reference count of all terms
+     */
+    public synchronized int maxCount() {
+        int max = 0;
+        for (final Slot slot: this.slots.values()) max = Math.max(max, slot.count());
+        return max;
+    }
+
+    /**
+     * @return the number of bytes in the arenas which hold references
+     */
+    public synchronized long usedMemory() {
+        return this.arenas.allocated - this.garbage;
+    }
+
+    /**
+     * @return the number of bytes that are allocated outside of the heap
+     */
+    public synchronized long allocatedMemory() {
+        return this.arenas.allocated;
+    }
+
+    private void compactIfNeeded() {
+        if (this.garbage < ARENA_SIZE || this.garbage * 2 < this.arenas.allocated) return;
+        // copy all chunks into fresh arenas; on failure the old arenas are kept
+        final Arenas fresh = new Arenas();
+        final Map<Slot, long[]> addresses = new IdentityHashMap<Slot, long[]>();
+        try {
+            for (final Slot slot: this.slots.values()) {
+                final long[] a = new long[slot.chunks.length];
+                for (int i = 0; i < slot.n; i++) a[i] = fresh.write(this.arenas.read(slot.chunks[i]));
+                addresses.put(slot, a);
+            }
+        } catch (final SpaceExceededException e) {
+            log.warn("compaction of off-heap reference cache failed: " + e.getMessage());
+            return;
+        }
+        for (final Map.Entry<Slot, long[]> entry: addresses.entrySet()) entry.getKey().chunks = entry.getValue();
+        log.info("compacted off-heap reference cache from " + (this.arenas.allocated / 1024 / 1024) + " MB to " + (fresh.allocated / 1024 / 1024) + " MB");
+        this.arenas = fresh;
+        this.garbage = 0;
+    }
+
+    @Override
+    public synchronized int size() {
+        return this.slots.size();
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+        return this.slots.isEmpty();
+    }
+
+    @Override
+    public synchronized boolean containsKey(final Object key) {
+        return this.slots.containsKey(key);
+    }
+
+    @Override
+    public synchronized ReferenceContainer<ReferenceType> get(final Object key) {
+        final Slot slot = this.slots.get(key);
+        if (slot == null) return null;
+        try {
+            return materialize(((ByteArray) key).asBytes(), slot);
+        } catch (final SpaceExceededException e) {
+            ConcurrentLog.logException(e);
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized ReferenceContainer<ReferenceType> put(final ByteArray key, final ReferenceContainer<ReferenceType> container) {
+        final ReferenceContainer<ReferenceType> old = get(key);
+        final long address;
+        try {
+            address = this.arenas.write(container.exportCollection());
+        } catch (final SpaceExceededException e) {
+            log.warn("cannot store container off-heap, the previous container is kept: " + e.getMessage());
+            return old;
+        }
+        Slot slot = this.slots.get(key);
+        if (slot == null) {
+            slot = new Slot();
+            this.slots.put(key, slot);
+        } else {
+            free(slot);
+        }
+        slot.add(address, container.size());
+        compactIfNeeded();
+        return old;
+    }
+
+    @Override
+    public synchronized ReferenceContainer<ReferenceType> remove(final Object key) {
+        final ReferenceContainer<ReferenceType> old = get(key);
+        final Slot slot = this.slots.remove(key);
+        if (slot != null) free(slot);
+        return old;
+    }
+
+    @Override
+    public synchronized ReferenceContainer<ReferenceType> putIfAbsent(final ByteArray key, final ReferenceContainer<ReferenceType> value) {
+        if (this.slots.containsKey(key)) return get(key);
+        put(key, value);
+        return null;
+    }
+
+    @Override
+    public synchronized boolean remove(final Object key, final Object value) {
+        if (!this.slots.containsKey(key)) return false;
+        final ReferenceContainer<ReferenceType> c = get(key);
+        if (c == null || !c.equals(value)) return false;
+        remove(key);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean replace(final ByteArray key, final ReferenceContainer<ReferenceType> oldValue, final ReferenceContainer<ReferenceType> newValue) {
+        if (!this.slots.containsKey(key)) return false;
+        final ReferenceContainer<ReferenceType> c = get(key);
+        if (c == null || !c.equals(oldValue)) return false;
+        put(key, newValue);
+        return true;
+    }
+
+    @Override
+    public synchronized ReferenceContainer<ReferenceType> replace(final ByteArray key, final ReferenceContainer<ReferenceType> value) {
+        if (!this.slots.containsKey(key)) return null;
+        return put(key, value);
+    }
+
+    @Override
+    public synchronized void clear() {
+        this.slots.clear();
+        this.arenas = new Arenas();
+        this.garbage = 0;
+    }
+
+    /**
+     * @return a snapshot of the keys
+     */
+    @Override
+    public synchronized Set<ByteArray> keySet() {
+        return new HashSet<ByteArray>(this.slots.keySet());
+    }
+
+    /**
+     * the entry set is a snapshot of the keys; the containers are read when getValue() is called.
+     * If a term was removed in the meantime, getValue() returns null.
+     */
+    @Override
+    public Set<Map.Entry<ByteArray, ReferenceContainer<ReferenceType>>> entrySet() {
+        final Set<ByteArray> keys = keySet();
+        return new AbstractSet<Map.Entry<ByteArray, ReferenceContainer<ReferenceType>>>() {
+            @Override
+            public Iterator<Map.Entry<ByteArray, ReferenceContainer<ReferenceType>>> iterator() {
+                final Iterator<ByteArray> i = keys.iterator();
+                return new Iterator<Map.Entry<ByteArray, ReferenceContainer<ReferenceType>>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return i.hasNext();
+                    }
+                    @Override
+                    public Map.Entry<ByteArray, ReferenceContainer<ReferenceType>> next() {
+                        final ByteArray key = i.next();
+                        return new Map.Entry<ByteArray, ReferenceContainer<ReferenceType>>() {
+                            @Override
+                            public ByteArray getKey() {
+                                return key;
+                            }
+                            @Override
+                            public ReferenceContainer<ReferenceType> getValue() {
+                                return get(key);
+                            }
+                            @Override
+                            public ReferenceContainer<ReferenceType> setValue(final ReferenceContainer<ReferenceType> value) {
+                                return put(key, value);
+                            }
+                        };
+                    }
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+            @Override
+            public int size() {
+                return keys.size();
+            }
+        };
+    }
+
+}
@@ -351,25 +351,71 @@ public class ReferenceContainer<ReferenceType extends Reference> extends RowSet
         if (map.isEmpty()) return null; // no result, nothing found
 
         // the map now holds the search results in order of number of hits per word
-        // we now must pairwise build up a conjunction of these sets
-        Long k = map.firstKey(); // the smallest, which means, the one with the least entries
-        ReferenceContainer<ReferenceType> searchA, searchB, searchResult = map.remove(k);
-        while (!map.isEmpty() && !searchResult.isEmpty()) {
-            // take the first element of map which is a result and combine it with result
-            k = map.firstKey(); // the next smallest...
-            searchA = searchResult;
-            searchB = map.remove(k);
-            searchResult = ReferenceContainer.joinConstructive(factory, searchA, searchB, maxDistance);
-            // free resources
-            searchA = null;
-            searchB = null;
-        }
+        final List<ReferenceContainer<ReferenceType>> ordered = new ArrayList<ReferenceContainer<ReferenceType>>(map.values());
+        final ReferenceContainer<ReferenceType> searchResult = ordered.size() == 1 ? ordered.get(0) : joinConstructive(factory, ordered, maxDistance);
 
         // in 'searchResult' is now the combined search result
-        if (searchResult.isEmpty()) return null;
+        if (searchResult == null || searchResult.isEmpty()) return null;
         return searchResult;
     }
 
+    /**
+     * conjunction of any number of containers in one pass. The smallest container is enumerated; all other
+     * containers are searched with an exponential search starting at the position of the previous hit. The
+     * keys are compared within the container byte arrays, so references are only produced for url hashes
+     * which appear in all containers. The result is the same as a chain of pairwise joins in the order of
+     * the given list: the reference of the first container is joined with the references of the others.
+     * @param factory
+     * @param containers the containers ordered by their size, the smallest first
+     * @param maxDistance
+     * @return the joined references; an empty container if there is no common url hash
+     * @throws SpaceExceededException
+     */
+    public static <ReferenceType extends Reference> ReferenceContainer<ReferenceType> joinConstructive(
+            final ReferenceFactory<ReferenceType> factory,
+            final List<ReferenceContainer<ReferenceType>> containers,
+            final int maxDistance) throws SpaceExceededException {
+        final int n = containers.size();
+        final ReferenceContainer<ReferenceType> conj = new ReferenceContainer<ReferenceType>(factory, null, 0); // start with empty search result
+        if (n == 0) return conj;
+        final ReferenceContainer<ReferenceType> first = containers.get(0);
+        final String signature = first.rowdef.getOrdering().signature();
+        for (final ReferenceContainer<ReferenceType> c: containers) {
+            if (c.isEmpty()) return conj;
+            if (!signature.equals(c.rowdef.getOrdering().signature())) return conj; // ordering must be equal
+            assert first.rowdef.primaryKeyLength == c.rowdef.primaryKeyLength;
+            c.sort(); // the search works only on the sorted area
+        }
+        final int size = first.size();
+        final int[] pos = new int[n]; // the current position in each container
+        candidates: while (pos[0] < size) {
+            final int offset = pos[0] * first.rowdef.objectsize;
+            for (int j = 1; j < n; j++) {
+                final ReferenceContainer<ReferenceType> c = containers.get(j);
+                pos[j] = c.gallopPosition(first.chunkcache, offset, pos[j]);
+                if (pos[j] >= c.sortBound) break candidates; // all following keys of the first container are missing in c
+                if (c.compare(first.chunkcache, offset, pos[j]) != 0) {
+                    // the key in c is greater: skip all keys of the first container which are smaller
+                    pos[0] = first.gallopPosition(c.chunkcache, pos[j] * c.rowdef.objectsize, pos[0] + 1);
+                    continue candidates;
+                }
+            }
+
+            // we have found the same url in all containers
+            ReferenceType ie = factory.produceFast(factory.produceSlow(first.get(pos[0], false)), true);
+            for (int j = 1; j < n; j++) {
+                ie.join(factory.produceSlow(containers.get(j).get(pos[j], false)));
+                if (ie.distance() > maxDistance) {
+                    ie = null;
+                    break;
+                }
+            }
+            if (ie != null) conj.add(ie);
+            for (int j = 0; j < n; j++) pos[j]++;
+        }
+        return conj;
+    }
+
     public static <ReferenceType extends Reference> ReferenceContainer<ReferenceType> excludeContainers(
                             final ReferenceFactory<ReferenceType> factory,
                             ReferenceContainer<ReferenceType> pivot,
@@ -26,8 +26,10 @@ package net.yacy.kelondro.rwi;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
 
 import net.yacy.cora.order.ByteOrder;
 import net.yacy.cora.order.CloneableIterator;
@@ -45,6 +47,9 @@ public final class ReferenceContainerArray<ReferenceType extends Reference> {
 
     private final static long METHOD_MAXRUNTIME = 5000L;
 
+    /** if true, get() reads all BLOB generations concurrently and merges them in one step */
+    public static boolean parallelLookup = false;
+
     private final ReferenceFactory<ReferenceType> factory;
     private final ArrayStack array;
 
@@ -303,6 +308,7 @@ public final class ReferenceContainerArray<ReferenceType extends Reference> {
      * @throws SpaceExceededException
      */
     public ReferenceContainer<ReferenceType> get(final byte[] termHash) throws IOException, SpaceExceededException {
+        if (parallelLookup && this.array.entries() > 2) return getConcurrently(termHash);
         final long timeout = System.currentTimeMillis() + METHOD_MAXRUNTIME;
         final Iterator<byte[]> entries = this.array.getAll(termHash).iterator();
     	if (entries == null || !entries.hasNext()) return null;
@@ -324,6 +330,27 @@ public final class ReferenceContainerArray<ReferenceType extends Reference> {
     	return c;
     }
 
+    /**
+     * get a indexContainer from a heap: all BLOB files are read at the same time and
+     * the containers are merged with a single k-way merge.
+     * @param termHash
+     * @return the indexContainer if one exist, null otherwise
+     * @throws IOException
+     * @throws SpaceExceededException
+     */
+    private ReferenceContainer<ReferenceType> getConcurrently(final byte[] termHash) throws IOException, SpaceExceededException {
+        final List<byte[]> entries = this.array.getAllConcurrently(termHash, METHOD_MAXRUNTIME);
+        if (entries.isEmpty()) return null;
+        final Row row = this.factory.getRow();
+        if (entries.size() == 1) return new ReferenceContainer<ReferenceType>(this.factory, termHash, RowSet.importRowSet(entries.get(0), row));
+        final List<RowSet> collections = new ArrayList<RowSet>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            collections.add(RowSet.importRowSet(entries.get(i), row));
+            entries.set(i, null); // free the memory of the imported blob
+        }
+        return new ReferenceContainer<ReferenceType>(this.factory, termHash, RowSet.mergeAll(collections));
+    }
+
     public int count(final byte[] termHash) throws IOException {
         final long timeout = System.currentTimeMillis() + METHOD_MAXRUNTIME;
         final Iterator<Long> entries = this.array.lengthAll(termHash).iterator();
@@ -28,6 +28,7 @@ package net.yacy.kelondro.rwi;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -35,6 +36,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.order.ByteOrder;
@@ -65,7 +67,8 @@ public final class ReferenceContainerCache<ReferenceType extends Reference> exte
     private final int termSize;
     private final ByteOrder termOrder;
     private final ContainerOrder<ReferenceType> containerOrder;
-    private ConcurrentHashMap<ByteArray, ReferenceContainer<ReferenceType>> cache;
+    private ConcurrentMap<ByteArray, ReferenceContainer<ReferenceType>> cache;
+    private final OffHeapContainerMap<ReferenceType> offHeap; // the cache if it is stored outside of the heap, otherwise null
 
     
     /**
@@ -77,12 +80,31 @@ public final class ReferenceContainerCache<ReferenceType extends Reference> exte
      * @param termSize the fixed size of search terms
      */
     public ReferenceContainerCache(final ReferenceFactory<ReferenceType> factory, final ByteOrder termOrder, final int termSize) {
+        this(factory, termOrder, termSize, false);
+    }
+
+    /**
+     * create a cache which optionally keeps the references outside of the java heap
+     * @param factory the factory for payload reference objects
+     * @param termOrder the order on search terms for the cache
+     * @param termSize the fixed size of search terms
+     * @param offHeap if true, the containers are stored in direct memory, see OffHeapContainerMap
+     */
+    public ReferenceContainerCache(final ReferenceFactory<ReferenceType> factory, final ByteOrder termOrder, final int termSize, final boolean offHeap) {
         super(factory);
         assert termOrder != null;
         this.termOrder = termOrder;
         this.termSize = termSize;
         this.containerOrder = new ContainerOrder<ReferenceType>(this.termOrder);
-        this.cache = new ConcurrentHashMap<ByteArray, ReferenceContainer<ReferenceType>>();
+        this.offHeap = offHeap ? new OffHeapContainerMap<ReferenceType>(factory) : null;
+        this.cache = offHeap ? this.offHeap : new ConcurrentHashMap<ByteArray, ReferenceContainer<ReferenceType>>();
+    }
+
+    /**
+     * @return true if the references are stored outside of the java heap
+     */
+    public boolean isOffHeap() {
+        return this.offHeap != null;
     }
 
     public Row rowdef() {
@@ -106,6 +128,7 @@ public final class ReferenceContainerCache<ReferenceType extends Reference> exte
 
     @Override
     public synchronized void close() {
+        if (this.offHeap != null) this.offHeap.clear(); // release the arenas even if this object is still referenced
     	this.cache = null;
     }
     
@@ -154,7 +177,7 @@ public final class ReferenceContainerCache<ReferenceType extends Reference> exte
             assert (lwh == null || this.termKeyOrdering().compare(term, lwh) > 0);
 
             // put entries on heap
-            if (container != null && term.length == this.termSize) {
+            if (container != null && term.length == this.termSize && !container.isEmpty()) {
                 //System.out.println("Dump: " + wordHash);
                 try {
                     dump.add(term, container.exportCollection());
@@ -170,6 +193,7 @@ public final class ReferenceContainerCache<ReferenceType extends Reference> exte
         }
         try {
             dump.close(true);
+            if (destructive && this.offHeap != null) this.offHeap.clear();
             log.info("finished rwi heap dump: " + wordcount + " terms, " + urlcount + " term/data relations in " + (System.currentTimeMillis() - startTime) + " milliseconds");
         } catch (final IOException e) {
             log.severe("failed rwi heap dump: " + e.getMessage(), e);
@@ -183,6 +207,7 @@ public final class ReferenceContainerCache<ReferenceType extends Reference> exte
      * @return the sorted ReferenceContainer[]
      */
     private List<ReferenceContainer<ReferenceType>> sortedClone() {
+        if (this.offHeap != null) return sortedOffHeapView();
         final List<ReferenceContainer<ReferenceType>> cachecopy = new ArrayList<ReferenceContainer<ReferenceType>>(this.cache.size());
         synchronized (this.cache) {
             for (final Map.Entry<ByteArray, ReferenceContainer<ReferenceType>> entry: this.cache.entrySet()) {
@@ -193,8 +218,49 @@ public final class ReferenceContainerCache<ReferenceType extends Reference> exte
         return cachecopy;
     }
 
+    /**
+     * an off-heap cache must not be copied into the heap as a whole; this returns a list of the sorted
+     * terms where a container is only read when it is accessed. Containers which have been removed
+     * after the creation of the list appear as empty containers.
+     * @return a sorted list view of the cache content
+     */
+    private List<ReferenceContainer<ReferenceType>> sortedOffHeapView() {
+        final List<ByteArray> keys = new ArrayList<ByteArray>(this.offHeap.keySet());
+        Collections.sort(keys, new Comparator<ByteArray>() {
+            @Override
+            public int compare(final ByteArray o1, final ByteArray o2) {
+                return ReferenceContainerCache.this.termOrder.compare(o1.asBytes(), o2.asBytes());
+            }
+        });
+        return new AbstractList<ReferenceContainer<ReferenceType>>() {
+            private int lastIndex = -1;
+            private ReferenceContainer<ReferenceType> last = null;
+            @Override
+            public ReferenceContainer<ReferenceType> get(final int index) {
+                if (index == this.lastIndex) return this.last;
+                final ByteArray key = keys.get(index);
+                ReferenceContainer<ReferenceType> c = ReferenceContainerCache.this.offHeap.get(key);
+                if (c == null) c = new ReferenceContainer<ReferenceType>(ReferenceContainerCache.this.factory, key.asBytes());
+                this.lastIndex = index;
+                this.last = c;
+                return c;
+            }
+            @Override
+            public int size() {
+                return keys.size();
+            }
+        };
+    }
+
     private List<Rating<ByteArray>> ratingList() {
         final List<Rating<ByteArray>> list = new ArrayList<Rating<ByteArray>>(this.cache.size());
+        if (this.offHeap != null) {
+            for (final ByteArray key: this.offHeap.keySet()) {
+                final int count = this.offHeap.count(key);
+                if (count > 0) list.add(new Rating<ByteArray>(key, count));
+            }
+            return list;
+        }
         synchronized (this.cache) {
             for (final Map.Entry<ByteArray, ReferenceContainer<ReferenceType>> entry: this.cache.entrySet()) {
                 if (entry.getValue() != null && entry.getValue().getTermHash() != null) list.add(new Rating<ByteArray>(entry.getKey(), entry.getValue().size()));
@@ -210,6 +276,7 @@ public final class ReferenceContainerCache<ReferenceType extends Reference> exte
     
     public long usedMemory() {
         if (this.cache == null) return 0;
+        if (this.offHeap != null) return this.offHeap.usedMemory();
         long b = 0L;
         for (Map.Entry<ByteArray, ReferenceContainer<ReferenceType>> e: this.cache.entrySet()) {
             b += e.getKey().usedMemory();
@@ -225,6 +292,7 @@ public final class ReferenceContainerCache<ReferenceType extends Reference> exte
 
     public int maxReferences() {
         // iterate to find the max score
+        if (this.offHeap != null) return this.offHeap.maxCount();
         int max = 0;
         for (final ReferenceContainer<ReferenceType> container : this.cache.values()) {
             if (container.size() > max) max = container.size();
@@ -475,6 +543,7 @@ public final class ReferenceContainerCache<ReferenceType extends Reference> exte
      */
     @Override
     public int count(final byte[] key) {
+        if (this.offHeap != null) return this.offHeap.count(new ByteArray(key));
         final ReferenceContainer<ReferenceType> c = this.cache.get(new ByteArray(key));
         if (c == null) return 0;
         return c.size();
@@ -558,6 +627,10 @@ public final class ReferenceContainerCache<ReferenceType extends Reference> exte
 
         // put new words into cache
         final ByteArray tha = new ByteArray(container.getTermHash());
+        if (this.offHeap != null) {
+            this.offHeap.append(tha, container);
+            return;
+        }
         int added = 0;
         synchronized (this.cache) {
             ReferenceContainer<ReferenceType> entries = this.cache.get(tha); // null pointer exception? wordhash != null! must be cache==null
@@ -580,6 +653,12 @@ public final class ReferenceContainerCache<ReferenceType extends Reference> exte
         assert this.cache != null;
         if (this.cache == null) return;
         final ByteArray tha = new ByteArray(termHash);
+        if (this.offHeap != null) {
+            final ReferenceContainer<ReferenceType> container = new ReferenceContainer<ReferenceType>(this.factory, termHash, 1);
+            container.put(newEntry);
+            this.offHeap.append(tha, container);
+            return;
+        }
 
         // first access the cache without synchronization
         ReferenceContainer<ReferenceType> container = this.cache.remove(tha);
@@ -54,9 +54,16 @@ public abstract class AbstractBlockingThread<J extends WorkflowJob> extends Abst
         long timestamp;
         long memstamp0, memstamp1;
         long busyCycles = 0;
+        boolean retired = false;
 
         while (this.running) {
             try {
+                // terminate if the processor has reduced its thread limit
+                if (this.manager.retire()) {
+                    retired = true;
+                    this.running = false;
+                    break;
+                }
                 // check memory status
                 if (!shutdownInProgress() && MemoryControl.shortStatus()) {
                     // try to idle a bit to get out of that problem somehow without making it worse
@@ -108,7 +115,7 @@ public abstract class AbstractBlockingThread<J extends WorkflowJob> extends Abst
                 busyCycles++;
             }
         }
-        this.manager.decExecutors();
+        if (!retired) this.manager.decExecutors();
         this.close();
         logSystem("thread '" + this.getName() + "' terminated.");
     }
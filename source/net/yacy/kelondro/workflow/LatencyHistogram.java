@@ -0,0 +1,104 @@
+// LatencyHistogram.java
+// -----------------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.workflow;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of latency values in milliseconds with logarithmic buckets.
+ * Each power of two is split into four buckets, so a percentile is reported with an error
+ * of less than 25%. Values above 2^24 ms (about 4.6 hours) fall into the last bucket. The histogram can be
+ * decayed to give recent values more weight than old values.
+ */
+public class LatencyHistogram {
+
+    private static final int SUBBUCKETS = 4; // buckets per power of two
+    private static final int BUCKETS = 4 + 22 * SUBBUCKETS; // 0..3 ms exact, then up to 2^24 ms
+
+    private final AtomicLongArray counts;
+
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKETS);
+    }
+
+    private static int bucket(final long ms) {
+        if (ms < 4) return ms < 0 ? 0 : (int) ms;
+        final int exp = 63 - Long.numberOfLeadingZeros(ms); // >= 2
+        final int sub = (int) ((ms >>> (exp - 2)) & 3);
+        final int b = 4 + (exp - 2) * SUBBUCKETS + sub;
+        return b >= BUCKETS ? BUCKETS - 1 : b;
+    }
+
+    /**
+     * @param b a bucket index
+     * @return the largest value that falls into that bucket
+     */
+    private static long upperBound(final int b) {
+        if (b < 4) return b;
+        final int exp = (b - 4) / SUBBUCKETS + 2;
+        final int sub = (b - 4) % SUBBUCKETS;
+        return ((4L + sub + 1) << (exp - 2)) - 1;
+    }
+
+    public void add(final long ms) {
+        this.counts.incrementAndGet(bucket(ms));
+    }
+
+    public long count() {
+        long c = 0;
+        for (int i = 0; i < BUCKETS; i++) c += this.counts.get(i);
+        return c;
+    }
+
+    /**
+     * compute a percentile of the recorded values
+     * @param p the percentile in the range 0.0 .. 1.0, i.e. 0.99 for the 99th percentile
+     * @return the upper bound of the bucket which contains the percentile, 0 if no value was recorded
+     */
+    public long percentile(final double p) {
+        final long[] c = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) total += (c[i] = this.counts.get(i));
+        if (total == 0) return 0;
+        final long rank = Math.max(1, (long) Math.ceil(p * total));
+        long sum = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            sum += c[i];
+            if (sum >= rank) return upperBound(i);
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    /**
+     * halve all counts; values recorded before the decay have then half the weight of new values
+     */
+    public void decay() {
+        for (int i = 0; i < BUCKETS; i++) {
+            long v;
+            do {
+                v = this.counts.get(i);
+            } while (v > 0 && !this.counts.compareAndSet(i, v, v >> 1));
+        }
+    }
+
+    public void clear() {
+        for (int i = 0; i < BUCKETS; i++) this.counts.set(i, 0);
+    }
+
+}
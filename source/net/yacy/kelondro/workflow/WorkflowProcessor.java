@@ -25,13 +25,16 @@
 package net.yacy.kelondro.workflow;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.kelondro.util.NamePrefixThreadFactory;
@@ -42,28 +45,52 @@ public class WorkflowProcessor<J extends WorkflowJob> {
     public static final int availableCPU = Runtime.getRuntime().availableProcessors();
     private static final ArrayList<WorkflowProcessor<?>> processMonitor = new ArrayList<WorkflowProcessor<?>>();
 
+    // the thread limits of the processors in a balance group are re-balanced in this interval
+    public static long rebalanceInterval = 1000;
+    private static final long decayInterval = 60000;
+    private static final AtomicLong lastRebalance = new AtomicLong(0);
+    private static long lastDecay = 0;
+
     private ExecutorService executor;
     private AtomicInteger executorRunning;
     private BlockingQueue<J> input;
     private final WorkflowProcessor<J> output;
     private final int maxpoolsize;
+    private volatile int concurrency; // current thread limit; moves around maxpoolsize if the processor is adaptive
+    private final String balanceGroup; // processors with the same group share their threads; null if the thread limit is fixed
     private final WorkflowTask<J> task;
     private final String processName, description;
     private final String[] childs;
     private long blockTime, execTime, passOnTime;
     private long execCount;
+    private final LatencyHistogram execHistogram;
+    private volatile double execTimeAvg; // exponential moving average of the exec time
 
     public WorkflowProcessor(
             final String name, final String description, final String[] childnames,
             final WorkflowTask<J> task,
             final int inputQueueSize, final WorkflowProcessor<J> output,
             final int maxpoolsize) {
+        this(name, description, childnames, task, inputQueueSize, output, maxpoolsize, null);
+    }
+
+    /**
+     * create a processor which shares its threads with the other processors of the same balance group, see rebalance()
+     * @param balanceGroup the name of the group or null if the processor shall always use maxpoolsize threads
+     */
+    public WorkflowProcessor(
+            final String name, final String description, final String[] childnames,
+            final WorkflowTask<J> task,
+            final int inputQueueSize, final WorkflowProcessor<J> output,
+            final int maxpoolsize, final String balanceGroup) {
         // start a fixed number of executors that handle entries in the process queue
         this.processName = name;
         this.description = description;
         this.task = task;
         this.childs = childnames;
         this.maxpoolsize = maxpoolsize;
+        this.concurrency = maxpoolsize;
+        this.balanceGroup = balanceGroup;
         this.input = new LinkedBlockingQueue<J>(Math.max(maxpoolsize + 1, inputQueueSize));
         this.output = output;
         this.executor = Executors.newCachedThreadPool(new NamePrefixThreadFactory(name));
@@ -79,9 +106,13 @@ public class WorkflowProcessor<J extends WorkflowJob> {
         this.execTime = 0;
         this.passOnTime = 0;
         this.execCount = 0;
+        this.execHistogram = new LatencyHistogram();
+        this.execTimeAvg = 0.0d;
 
         // store this object for easy monitoring
-        processMonitor.add(this);
+        synchronized (processMonitor) {
+            processMonitor.add(this);
+        }
     }
 
     public WorkflowTask<J> getTask() {
@@ -105,6 +136,38 @@ public class WorkflowProcessor<J extends WorkflowJob> {
     public int getMaxConcurrency() {
         return this.maxpoolsize;
     }
+
+    /**
+     * the current concurrency is the number of threads that the processor may use at this time.
+     * Processors of a balance group share the sum of their maximum concurrency; the share
+     * of each processor is adapted to its backlog, see rebalance()
+     * @return the current thread limit
+     */
+    public int getConcurrency() {
+        return this.concurrency;
+    }
+
+    private boolean isAdaptive() {
+        return this.balanceGroup != null && this.maxpoolsize > 1;
+    }
+
+    /**
+     * check if this processor or one of the processors it passes its results on is (almost) full.
+     * Producers which feed the workflow should not start new work while the workflow is saturated.
+     * @return true if a queue in the chain beginning at this processor is filled to more than 80%
+     */
+    public boolean isSaturated() {
+        WorkflowProcessor<J> p = this;
+        while (p != null) {
+            final BlockingQueue<J> q = p.input;
+            if (q != null) {
+                final int size = q.size();
+                if (q.remainingCapacity() == 0 || size * 10 > (size + q.remainingCapacity()) * 8) return true;
+            }
+            p = p.output;
+        }
+        return false;
+    }
     
     public int getExecutors() {
         return this.executorRunning.get();
@@ -117,6 +180,21 @@ public class WorkflowProcessor<J extends WorkflowJob> {
         this.executorRunning.decrementAndGet();
     }
 
+    /**
+     * check if the calling thread shall terminate because more threads are running than
+     * the current concurrency allows. If true is returned, the executor count is already
+     * decreased and the thread must not call decExecutors().
+     * The retire method may only be called within the AbstractBlockingThread while loop!!
+     * @return true if the thread shall terminate
+     */
+    public boolean retire() {
+        while (true) {
+            final int running = this.executorRunning.get();
+            if (running <= this.concurrency) return false;
+            if (this.executorRunning.compareAndSet(running, running - 1)) return true;
+        }
+    }
+
     public J take() throws InterruptedException {
         // read from the input queue
         if (this.input == null) {
@@ -183,8 +261,9 @@ public class WorkflowProcessor<J extends WorkflowJob> {
         while (this.input != null) {
             try {
                 this.input.put(in);
-                if (this.input.size() > this.executorRunning.get() && this.executorRunning.get() < this.maxpoolsize) synchronized (executor) {
-                    if (this.input.size() > this.executorRunning.get() && this.executorRunning.get() < this.maxpoolsize) {
+                if (this.isAdaptive()) rebalanceIfDue();
+                if (this.input.size() > this.executorRunning.get() && this.executorRunning.get() < this.concurrency) synchronized (executor) {
+                    if (this.input.size() > this.executorRunning.get() && this.executorRunning.get() < this.concurrency) {
                         this.executorRunning.incrementAndGet();
                         this.executor.submit(new InstantBlockingThread<J>(this));
                     }
@@ -238,24 +317,92 @@ public class WorkflowProcessor<J extends WorkflowJob> {
         this.executor = null;
         this.input = null;
         // remove entry from monitor
-        final Iterator<WorkflowProcessor<?>> i = processes();
-        WorkflowProcessor<?> p;
-        while (i.hasNext()) {
-            p = i.next();
-            if (p == this) {
-                i.remove();
-                break;
-            }
+        synchronized (processMonitor) {
+            processMonitor.remove(this);
         }
     }
 
+    /**
+     * @return an iterator over a copy of the list of all running processors
+     */
     public static Iterator<WorkflowProcessor<?>> processes() {
-        return processMonitor.iterator();
+        synchronized (processMonitor) {
+            return new ArrayList<WorkflowProcessor<?>>(processMonitor).iterator();
+        }
+    }
+
+    private static void rebalanceIfDue() {
+        final long now = System.currentTimeMillis();
+        final long last = lastRebalance.get();
+        if (now - last < rebalanceInterval || !lastRebalance.compareAndSet(last, now)) return;
+        rebalance();
+    }
+
+    /**
+     * distribute the threads of the processors in each balance group according to their backlog.
+     * The sum of the maximum concurrency of the processors in a group is a budget which is shared: a processor
+     * gets a part of the budget which is proportional to the work waiting in its queue, that is the
+     * queue size times the average exec time. Threads not needed by an idle stage are used by a busy
+     * stage, i.e. the parser may use more threads if the condenser has nothing to do. Every processor
+     * keeps at least one thread; if all queues of a group are empty the configured maximum is restored.
+     * Processors without a group or with a single thread (like the index storage) are not changed,
+     * so the backlog of an unrelated queue never takes threads away from a group.
+     * Threads above the new limit terminate after they finished their current job.
+     */
+    public static void rebalance() {
+        final Map<String, ArrayList<WorkflowProcessor<?>>> groups = new HashMap<String, ArrayList<WorkflowProcessor<?>>>();
+        final ArrayList<WorkflowProcessor<?>> all;
+        synchronized (processMonitor) {
+            all = new ArrayList<WorkflowProcessor<?>>(processMonitor);
+            for (final WorkflowProcessor<?> p: processMonitor) {
+                if (!p.isAdaptive() || p.input == null) continue;
+                ArrayList<WorkflowProcessor<?>> group = groups.get(p.balanceGroup);
+                if (group == null) {
+                    group = new ArrayList<WorkflowProcessor<?>>();
+                    groups.put(p.balanceGroup, group);
+                }
+                group.add(p);
+            }
+        }
+        final long now = System.currentTimeMillis();
+        boolean decay = false;
+        synchronized (processMonitor) {
+            if (now - lastDecay > decayInterval) {
+                lastDecay = now;
+                decay = true;
+            }
+        }
+        if (decay) for (final WorkflowProcessor<?> p: all) p.execHistogram.decay();
+        for (final ArrayList<WorkflowProcessor<?>> group: groups.values()) rebalance(group);
+    }
+
+    private static void rebalance(final ArrayList<WorkflowProcessor<?>> adaptive) {
+        int budget = 0;
+        double totalWork = 0.0d;
+        final double[] work = new double[adaptive.size()];
+        for (int i = 0; i < work.length; i++) {
+            final WorkflowProcessor<?> p = adaptive.get(i);
+            budget += p.maxpoolsize;
+            work[i] = p.getQueueSize() * Math.max(1.0d, p.execTimeAvg);
+            totalWork += work[i];
+        }
+        final int maxShare = budget - adaptive.size() + 1;
+        for (int i = 0; i < work.length; i++) {
+            final WorkflowProcessor<?> p = adaptive.get(i);
+            if (totalWork == 0.0d) {
+                p.concurrency = p.maxpoolsize;
+            } else {
+                final int share = (int) Math.round(budget * work[i] / totalWork);
+                p.concurrency = Math.max(1, Math.min(maxShare, share));
+            }
+        }
     }
 
     protected void increaseJobTime(final long time) {
         this.execTime += time;
         this.execCount++;
+        this.execHistogram.add(time);
+        this.execTimeAvg = this.execCount == 1 ? time : 0.9d * this.execTimeAvg + 0.1d * time;
     }
 
     public String getName() {
@@ -294,6 +441,16 @@ public class WorkflowProcessor<J extends WorkflowJob> {
         return this.execCount;
     }
 
+    /**
+     * the exec time percentile is computed over the recent executions; older values are decayed
+     * every minute as long as the processor is in use
+     * @param p the percentile in the range 0.0 .. 1.0, i.e. 0.99 for the 99th percentile
+     * @return the exec time in milliseconds which is not exceeded by the given share of executions
+     */
+    public long getExecTimePercentile(final double p) {
+        return this.execHistogram.percentile(p);
+    }
+
     /**
      * the passOn time is the time that a put() takes to enqueue a result value to the next queue
      * in case that the target queue is limited and may be full, this value may increase
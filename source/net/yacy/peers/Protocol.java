@@ -89,6 +89,7 @@ import net.yacy.cora.federate.solr.connector.SolrConnector;
 import net.yacy.cora.federate.solr.instance.RemoteInstance;
 import net.yacy.cora.order.Base64Order;
 import net.yacy.cora.order.Digest;
+import net.yacy.cora.protocol.ByteArrayBody;
 import net.yacy.cora.protocol.ClientIdentification;
 import net.yacy.cora.protocol.Domains;
 import net.yacy.cora.protocol.http.HTTPClient;
@@ -105,6 +106,7 @@ import net.yacy.cora.util.JSONTokener;
 import net.yacy.cora.util.SpaceExceededException;
 import net.yacy.crawler.data.ResultURLs;
 import net.yacy.crawler.data.ResultURLs.EventOrigin;
+import net.yacy.kelondro.data.meta.LazyURIMetadataNode;
 import net.yacy.kelondro.data.meta.URIMetadataNode;
 import net.yacy.kelondro.data.word.Word;
 import net.yacy.kelondro.data.word.WordReference;
@@ -124,6 +126,7 @@ import net.yacy.search.EventTracker;
 import net.yacy.search.Switchboard;
 import net.yacy.search.SwitchboardConstants;
 import net.yacy.search.index.Segment;
+import net.yacy.search.query.QueryResultCache;
 import net.yacy.search.query.SearchEvent;
 import net.yacy.search.query.SecondarySearchSuperviser;
 import net.yacy.search.schema.CollectionSchema;
@@ -1175,6 +1178,20 @@ public final class Protocol {
 		
     }
     
+    /**
+     * Projects a query to the fields which are loaded for all results of the local index: the text, links
+     * and images are loaded for the few results which need them. The given query is shared with the
+     * remote searches and is therefore not changed.
+     * @param solrQuery the query of the search event
+     * @return a copy of the query which selects only the eagerly loaded fields and the score
+     */
+    static SolrQuery localQuery(final SolrQuery solrQuery) {
+        final SolrQuery localQuery = solrQuery.getCopy();
+        localQuery.setFields(URIMetadataNode.EAGER_FIELDS);
+        localQuery.addField("score");
+        return localQuery;
+    }
+
     /**
      * Execute solr query against specified target.
      * @param event search event ot feed with results
@@ -1215,14 +1232,33 @@ public final class Protocol {
         Map<String, LinkedHashSet<String>> snippets = new HashMap<String, LinkedHashSet<String>>(); // this will be a list of urlhash-snippet entries
         final QueryResponse[] rsp = new QueryResponse[]{null};
         final SolrDocumentList[] docList = new SolrDocumentList[]{null};
+        QueryResultCache resultCache = null;
+        QueryResultCache.Entry cached = null;
+        byte[] cacheKey = null;
+        long generation = -1;
+        SolrConnector localConnector = null; // the connector which loads the large fields of local results when they are accessed
         {// encapsulate expensive solr QueryResponse object
             if (localsearch && !Switchboard.getSwitchboard().getConfigBool(SwitchboardConstants.DEBUG_SEARCH_REMOTE_SOLR_TESTLOCAL, false)) {
                 // search the local index
                 try {
-                    SolrConnector sc = event.getQuery().getSegment().fulltext().getDefaultConnector();
+                    final Segment segment = event.getQuery().getSegment();
+                    SolrConnector sc = segment.fulltext().getDefaultConnector();
                     if (!sc.isClosed()) {
-                        rsp[0] = sc.getResponseByParams(solrQuery);
-                        docList[0] = rsp[0].getResults();
+                        final SolrQuery localQuery = localQuery(solrQuery);
+                        localConnector = sc;
+                        // use a cached result if the index has not changed since the result was computed
+                        resultCache = segment.queryResultCache();
+                        if (resultCache != null) {
+                            generation = segment.fulltext().generation();
+                            cacheKey = QueryResultCache.key(localQuery);
+                            cached = resultCache.get(cacheKey, generation);
+                        }
+                        if (cached != null) {
+                            docList[0] = cached.documents(sc, localQuery);
+                        } else {
+                            rsp[0] = sc.getResponseByParams(localQuery);
+                            docList[0] = rsp[0].getResults();
+                        }
                     }
                 } catch (final Throwable e) {
                     Network.log.info("SEARCH failed (solr), localpeer (" + e.getMessage() + ")", e);
@@ -1294,51 +1330,61 @@ public final class Protocol {
                 }
             }
 
-            // evaluate facets
-            if(useSolrFacets) {
-            	for (String field: event.query.facetfields) {
-            		FacetField facet = rsp[0].getFacetField(field);
-            		ReversibleScoreMap<String> result = new ClusteredScoreMap<String>(UTF8.insensitiveUTF8Comparator);
-            		List<Count> values = facet == null ? null : facet.getValues();
-            		if (values == null) {
-            			continue;
-            		}
-            		for (Count ff: values) {
-            			int c = (int) ff.getCount();
-            			if (c == 0) {
-            				continue;
-            			}
-            			if (ff.getName().length() == 0) {
-            				continue; // facet entry without text is not useful
-            			}
-            			result.set(ff.getName(), c);
-            		}
-            		if (result.size() > 0) {
-            			facets.put(field, result);
-            		}
-            	}
-            }
+            if (cached != null) {
+                if (useSolrFacets) facets.putAll(cached.facets());
+                snippets.putAll(cached.snippets());
+            } else {
+                // evaluate facets
+                if(useSolrFacets) {
+                	for (String field: event.query.facetfields) {
+                		FacetField facet = rsp[0].getFacetField(field);
+                		ReversibleScoreMap<String> result = new ClusteredScoreMap<String>(UTF8.insensitiveUTF8Comparator);
+                		List<Count> values = facet == null ? null : facet.getValues();
+                		if (values == null) {
+                			continue;
+                		}
+                		for (Count ff: values) {
+                			int c = (int) ff.getCount();
+                			if (c == 0) {
+                				continue;
+                			}
+                			if (ff.getName().length() == 0) {
+                				continue; // facet entry without text is not useful
+                			}
+                			result.set(ff.getName(), c);
+                		}
+                		if (result.size() > 0) {
+                			facets.put(field, result);
+                		}
+                	}
+                }
             
-            // evaluate snippets
-            final Map<String, Map<String, List<String>>> rawsnippets = rsp[0].getHighlighting(); // a map from the urlhash to a map with key=field and value = list of snippets
-            if (rawsnippets != null) {
-                nextsnippet: for (final Map.Entry<String, Map<String, List<String>>> re: rawsnippets.entrySet()) {
-                    final Map<String, List<String>> rs = re.getValue();
-                    for (final String field: solrQuery.getHighlightFields()) {
-                        if (rs.containsKey(field)) {
-                            final List<String> s = rs.get(field);
-                            if (s.size() > 0) {
-                                final LinkedHashSet<String> ls = new LinkedHashSet<String>();
-                                ls.addAll(s);
-                                snippets.put(re.getKey(), ls);
-                                continue nextsnippet;
+                // evaluate snippets
+                final Map<String, Map<String, List<String>>> rawsnippets = rsp[0].getHighlighting(); // a map from the urlhash to a map with key=field and value = list of snippets
+                if (rawsnippets != null) {
+                    nextsnippet: for (final Map.Entry<String, Map<String, List<String>>> re: rawsnippets.entrySet()) {
+                        final Map<String, List<String>> rs = re.getValue();
+                        for (final String field: solrQuery.getHighlightFields()) {
+                            if (rs.containsKey(field)) {
+                                final List<String> s = rs.get(field);
+                                if (s.size() > 0) {
+                                    final LinkedHashSet<String> ls = new LinkedHashSet<String>();
+                                    ls.addAll(s);
+                                    snippets.put(re.getKey(), ls);
+                                    continue nextsnippet;
+                                }
                             }
                         }
+                        // no snippet found :( --we don't assign a value here by default; that can be done as an evaluation outside this method
                     }
-                    // no snippet found :( --we don't assign a value here by default; that can be done as an evaluation outside this method
+                }
+                rsp[0] = null;
+
+                // store the result if the index has not changed during the search
+                if (cacheKey != null && docList[0] != null && generation >= 0 && generation == event.getQuery().getSegment().fulltext().generation()) {
+                    resultCache.put(cacheKey, generation, docList[0], facets, snippets);
                 }
             }
-            rsp[0] = null;
         }
         
         // evaluate result
@@ -1365,7 +1411,7 @@ public final class Protocol {
             }
             URIMetadataNode urlEntry;
             try {
-                urlEntry = new URIMetadataNode(tmpdoc);
+                urlEntry = localConnector == null ? new URIMetadataNode(tmpdoc) : new LazyURIMetadataNode(tmpdoc, localConnector);
             } catch (MalformedURLException ex) {
                 continue;
             }
@@ -1772,7 +1818,8 @@ public final class Protocol {
     /**
 	 * Transfer Reverse Word Index entries to remote peer. If the used IP is not
 	 * responding, this IP (interface) is removed from targtSeed IP list. Remote
-	 * peer responds with list of unknown url hashes
+	 * peer responds with list of unknown url hashes. The entries are sent in the
+	 * RWIBinaryFormat if the remote peer supports it, otherwise in their property form.
 	 *
 	 * @param targetSeed
 	 *            the target peer
@@ -1816,20 +1863,11 @@ public final class Protocol {
                 gzipBody = false;
             }
 
+            final boolean binary = targetSeed.getFlagBinaryRWI();
+
             int indexcount = 0;
-            final StringBuilder entrypost = new StringBuilder(indexes.size() * 73);
-            Iterator<WordReference> eenum;
-            Reference entry;
             for ( final ReferenceContainer<WordReference> ic : indexes ) {
-                eenum = ic.entries();
-                while ( eenum.hasNext() ) {
-                    entry = eenum.next();
-                    entrypost
-                            .append(ASCII.String(ic.getTermHash()))
-                            .append(entry.toPropertyForm())
-                            .append(serverCore.CRLF_STRING);
-                    indexcount++;
-                }
+                indexcount += ic.size();
             }
 
             if ( indexcount == 0 ) {
@@ -1843,18 +1881,40 @@ public final class Protocol {
                 final Map<String, ContentBody> parts = basicRequestParts(Switchboard.getSwitchboard(), targetSeed.hash, salt);
                 parts.put("wordc", UTF8.StringBody(Integer.toString(indexes.size())));
                 parts.put("entryc", UTF8.StringBody(Integer.toString(indexcount)));
-                parts.put("indexes", UTF8.StringBody(entrypost.toString()));
+                final int payloadSize;
+                if (binary) {
+                    // the exported collections of the containers, already compressed
+                    final byte[] payload = RWIBinaryFormat.encode(indexes);
+                    parts.put(RWIBinaryFormat.PART_NAME, new ByteArrayBody(payload, RWIBinaryFormat.PART_FILENAME));
+                    payloadSize = payload.length;
+                } else {
+                    final StringBuilder entrypost = new StringBuilder(indexcount * 73);
+                    Iterator<WordReference> eenum;
+                    Reference entry;
+                    for ( final ReferenceContainer<WordReference> ic : indexes ) {
+                        eenum = ic.entries();
+                        while ( eenum.hasNext() ) {
+                            entry = eenum.next();
+                            entrypost
+                                    .append(ASCII.String(ic.getTermHash()))
+                                    .append(entry.toPropertyForm())
+                                    .append(serverCore.CRLF_STRING);
+                        }
+                    }
+                    parts.put("indexes", UTF8.StringBody(entrypost.toString()));
+                    payloadSize = entrypost.length();
+                }
                 final HTTPClient httpClient = new HTTPClient(ClientIdentification.yacyInternetCrawlerAgent, timeout);
                 byte[] content = null;
                 try {
 					content = httpClient.POSTbytes(new MultiProtocolURL(targetBaseURL, "/yacy/transferRWI.html"),
-							targetSeed.getHexHash() + ".yacyh", parts, gzipBody, true);
+							targetSeed.getHexHash() + ".yacyh", parts, gzipBody && !binary, true);
                 } catch(final IOException e) {
                     if(targetBaseURL.isHTTPS()) {
                     	targetBaseURL = targetSeed.getPublicMultiprotocolURL(ip, false);
                     	/* Failed with https : retry with http on the same address */
 						content = httpClient.POSTbytes(new MultiProtocolURL(targetBaseURL, "/yacy/transferRWI.html"),
-								targetSeed.getHexHash() + ".yacyh", parts, gzipBody, true);
+								targetSeed.getHexHash() + ".yacyh", parts, gzipBody && !binary, true);
 						if(content != null) {
 							/* Success with http : mark SSL as unavailable on the target peer */
             				markSSLUnavailableOnPeer(Switchboard.getSwitchboard().peers, targetSeed, ip, "yacyClient.transferRWI");
@@ -1867,8 +1927,13 @@ public final class Protocol {
                 // this should return a list of urlhashes that are unknown
 
                 final Map<String, String> result = FileUtils.table(v);
+                if (binary && "missing indexes".equals(result.get("result"))) {
+                    // the peer does not know the binary format: fall back to the text format
+                    targetSeed.setFlagBinaryRWI(false);
+                    return transferRWI(targetSeed, indexes, gzipBody, timeout, preferHttps);
+                }
                 // return the transfered index data in bytes (for debugging only)
-                result.put("indexPayloadSize", Integer.toString(entrypost.length()));
+                result.put("indexPayloadSize", Integer.toString(payloadSize));
                 result.put(Seed.IP, ip); // add used ip to result for error handling (in case no "result" key was received)
                 return result;
             } catch (final Exception e ) {
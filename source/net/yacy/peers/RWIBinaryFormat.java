@@ -0,0 +1,150 @@
+// RWIBinaryFormat.java
+// -----------------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.peers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import net.yacy.cora.order.NaturalOrder;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.data.word.WordReference;
+import net.yacy.kelondro.data.word.WordReferenceRow;
+import net.yacy.kelondro.index.RowCollection;
+import net.yacy.kelondro.index.RowSet;
+import net.yacy.kelondro.rwi.ReferenceContainer;
+import net.yacy.search.index.Segment;
+
+/**
+ * The binary format of a RWI transfer to another peer. Instead of the property form of every
+ * single entry, the exported collection of each reference container is transmitted as it is
+ * stored in the index, so the receiving peer can use the rows without parsing them.
+ *
+ * The format is gzip compressed (with the fastest compression level) and contains
+ * a header with a magic number, the format version and the size of one row, followed by the
+ * number of containers and for each container its term hash, the length of the exported
+ * collection and the exported collection.
+ */
+public final class RWIBinaryFormat {
+
+    /** the name of the post part which contains the binary transfer */
+    public static final String PART_NAME = "rwi";
+    /** the file name of the post part; the ending .gz makes the http server keep the bytes */
+    public static final String PART_FILENAME = "rwi.gz";
+
+    private static final byte[] MAGIC = new byte[]{'Y', 'R', 'W', 'I'};
+    private static final int VERSION = 1;
+
+    private RWIBinaryFormat() {
+    }
+
+    /**
+     * encode reference containers in the binary transfer format
+     * @param containers the containers; the collections are sorted as a side effect
+     * @return the compressed transfer
+     * @throws IOException
+     */
+    public static byte[] encode(final Iterable<ReferenceContainer<WordReference>> containers) throws IOException {
+        final List<ReferenceContainer<WordReference>> list = new ArrayList<ReferenceContainer<WordReference>>();
+        for (final ReferenceContainer<WordReference> container: containers) list.add(container);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024 + list.size() * 256);
+        final GZIPOutputStream gzip = new GZIPOutputStream(bytes, 65536) {{
+            this.def.setLevel(Deflater.BEST_SPEED);
+        }};
+        try (DataOutputStream out = new DataOutputStream(gzip)) {
+            out.write(MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(WordReferenceRow.urlEntryRow.objectsize);
+            out.writeInt(list.size());
+            for (final ReferenceContainer<WordReference> container: list) {
+                final byte[] collection = container.exportCollection();
+                out.write(container.getTermHash());
+                out.writeInt(collection.length);
+                out.write(collection);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * decode a binary transfer. The transfer comes from another peer, therefore the rows are
+     * counted before they are allocated and the decoding stops after the given number of rows;
+     * the container which passes the limit is truncated.
+     * @param b the compressed transfer
+     * @param maxEntries the maximum number of rows which are decoded
+     * @return the reference containers
+     * @throws IOException if the transfer is not in the binary format or broken
+     */
+    public static List<ReferenceContainer<WordReference>> decode(final byte[] b, final int maxEntries) throws IOException {
+        final int objectsize = WordReferenceRow.urlEntryRow.objectsize;
+        final int overhead = (int) RowCollection.exportOverheadSize;
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(b), 65536))) {
+            final byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(MAGIC, magic)) throw new IOException("not a binary rwi transfer");
+            final int version = in.readUnsignedByte();
+            if (version != VERSION) throw new IOException("unsupported binary rwi transfer version " + version);
+            final int rowsize = in.readInt();
+            if (rowsize != objectsize) throw new IOException("wrong row size " + rowsize + ", expected " + objectsize);
+            final int count = in.readInt();
+            if (count < 0) throw new IOException("wrong container count " + count);
+            // every container has a header, so the number of decompressed bytes is bounded by the row limit
+            long remainingBytes = (long) Math.min(count, maxEntries) * (Word.commonHashLength + 4 + overhead) + (long) maxEntries * objectsize;
+            int remainingRows = maxEntries;
+            final List<ReferenceContainer<WordReference>> containers = new ArrayList<ReferenceContainer<WordReference>>(Math.min(count, 1000));
+            for (int i = 0; i < count && remainingRows > 0; i++) {
+                final byte[] termHash = new byte[Word.commonHashLength];
+                in.readFully(termHash);
+                final int length = in.readInt();
+                if (length < overhead || (length - overhead) % objectsize != 0) throw new IOException("wrong collection length " + length);
+                final int rows = (length - overhead) / objectsize;
+                final int accepted = Math.min(rows, remainingRows);
+                final int acceptedLength = overhead + accepted * objectsize;
+                remainingBytes -= Word.commonHashLength + 4 + acceptedLength;
+                if (remainingBytes < 0) throw new IOException("transfer exceeds " + maxEntries + " rows");
+                final byte[] collection = new byte[acceptedLength];
+                in.readFully(collection);
+                if (NaturalOrder.decodeLong(collection, 0, 4) != rows) throw new IOException("wrong row count for term " + i);
+                final long orderbound = NaturalOrder.decodeLong(collection, 10, 4);
+                if (orderbound > rows) throw new IOException("wrong order bound " + orderbound + " for " + rows + " rows of term " + i);
+                if (accepted < rows) {
+                    // truncate the collection; the sorted part ends at the truncation at the latest
+                    NaturalOrder.encodeLong(accepted, collection, 0, 4);
+                    NaturalOrder.encodeLong(Math.min(orderbound, accepted), collection, 10, 4);
+                }
+                remainingRows -= accepted;
+                try {
+                    containers.add(new ReferenceContainer<WordReference>(Segment.wordReferenceFactory, termHash, RowSet.importRowSet(collection, WordReferenceRow.urlEntryRow)));
+                } catch (final SpaceExceededException e) {
+                    throw new IOException("broken collection for term " + i + ": " + e.getMessage());
+                }
+            }
+            return containers;
+        }
+    }
+}
@@ -44,6 +44,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -106,6 +107,8 @@ public class Blacklist {
     private final ConcurrentMap<BlacklistType, HandleSet> cachedUrlHashs;
     private final ConcurrentMap<BlacklistType, Map<String, Set<Pattern>>> hostpaths_matchable; // key=host, value=path; mapped url is http://host/path; path does not start with '/' here
     private final ConcurrentMap<BlacklistType, Map<String, Set<Pattern>>> hostpaths_notmatchable; // key=host, value=path; mapped url is http://host/path; path does not start with '/' here
+    private final ConcurrentMap<BlacklistType, BlacklistMatcher> matchers; // compiled form of the host/path maps; removed when the maps change
+    private final AtomicInteger modifications; // counts changes of the host/path maps to detect matchers which were built from an old state
 
     public Blacklist(final File rootPath) {
 
@@ -115,6 +118,8 @@ public class Blacklist {
         this.hostpaths_matchable = new ConcurrentHashMap<BlacklistType, Map<String, Set<Pattern>>>();
         this.hostpaths_notmatchable = new ConcurrentHashMap<BlacklistType, Map<String, Set<Pattern>>>();
         this.cachedUrlHashs = new ConcurrentHashMap<BlacklistType, HandleSet>();
+        this.matchers = new ConcurrentHashMap<BlacklistType, BlacklistMatcher>();
+        this.modifications = new AtomicInteger(0);
 
         for (final BlacklistType blacklistType : BlacklistType.values()) {
             this.hostpaths_matchable.put(blacklistType, new ConcurrentHashMap<String, Set<Pattern>>());
@@ -159,6 +164,37 @@ public class Blacklist {
         return this.cachedUrlHashs.get(blacklistType);
     }
 
+    /**
+     * get the compiled matcher for a blacklist type. The matcher is created when it is needed for the first time
+     * after a change of the lists.
+     * @param blacklistType
+     * @return the matcher
+     */
+    private BlacklistMatcher getMatcher(final BlacklistType blacklistType) {
+        BlacklistMatcher matcher = this.matchers.get(blacklistType);
+        if (matcher == null) {
+            final int version = this.modifications.get();
+            matcher = new BlacklistMatcher(getBlacklistMap(blacklistType, true), getBlacklistMap(blacklistType, false));
+            // do not keep a matcher if the lists were changed while it was created. invalidateMatcher() counts
+            // the modification before it removes the matcher, so either the check after the put sees the change
+            // or the removal of invalidateMatcher() comes after the put
+            if (version == this.modifications.get()) {
+                this.matchers.put(blacklistType, matcher);
+                if (version != this.modifications.get()) this.matchers.remove(blacklistType, matcher);
+            }
+        }
+        return matcher;
+    }
+
+    /**
+     * must be called after every change of the host/path maps of a blacklist type
+     * @param blacklistType the changed type or null if all types have changed
+     */
+    private void invalidateMatcher(final BlacklistType blacklistType) {
+        this.modifications.incrementAndGet();
+        if (blacklistType == null) this.matchers.clear(); else this.matchers.remove(blacklistType);
+    }
+
     public final File getRootPath() {
     	return blacklistRootPath;
     }
@@ -173,6 +209,7 @@ public class Blacklist {
         for (final HandleSet entry : this.cachedUrlHashs.values()) {
             entry.clear();
         }
+        invalidateMatcher(null);
     }
 
     public final int size() {
@@ -256,6 +293,7 @@ public class Blacklist {
                 }
             }
         }
+        invalidateMatcher(blFile.getType());
     }
 
     public final void loadList(final BlacklistType blacklistType, final String fileNames, final String sep) {
@@ -279,6 +317,7 @@ public class Blacklist {
 
         final Map<String, Set<Pattern>> blacklistMapNotMatch = getBlacklistMap(blacklistType, false);
         removePatternFromMap(host, path, blacklistMapNotMatch);
+        invalidateMatcher(blacklistType);
 
         //TODO: check if delete from blacklist is desired, on reload entry will not be available in any blacklist
         //      even if remove (above) from internal maps (at runtime) is only done for given blacklistType
@@ -424,6 +463,7 @@ public class Blacklist {
 			} catch (final IOException e) {
 				ConcurrentLog.logException(e);
 			} finally {
+				invalidateMatcher(blacklistType);
 				if (pw != null) {
 					pw.close();
 					if (pw.checkError()) {
@@ -489,6 +529,7 @@ public class Blacklist {
                     blacklistMap.put(h, (hostList = new HashSet<Pattern>()));
                 }
                 hostList.add(pattern);
+                invalidateMatcher(supportedBlacklistType);
             }
         }
 
@@ -633,16 +674,14 @@ public class Blacklist {
             throw new IllegalArgumentException("path may not be null");
         }
 
-        // getting the proper blacklists
-        final Map<String, Set<Pattern>> blacklistMapMatched = getBlacklistMap(blacklistType, true);
-        
-        final Map<String, Set<Pattern>> blacklistMapNotMatched = getBlacklistMap(blacklistType, false);
-
-        return Blacklist.isListed(hostlow, path, blacklistMapMatched, blacklistMapNotMatched);
+        // the compiled form of the proper blacklists
+        return getMatcher(blacklistType).isListed(hostlow, path);
     }
 
     /**
      * Check if the URL made of the specified host and path is blacklisted. All parameters must not be null.
+     * This evaluates the maps directly; the blacklist itself uses a BlacklistMatcher compiled from the maps
+     * which gives the same results.
      * @param hostlow host part
      * @param path path on the host
      * @param blacklistMapMatched blacklist patterns indexed by matched hosts
@@ -0,0 +1,243 @@
+// BlacklistMatcher.java
+// -----------------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A compiled form of the host/path maps of one blacklist type. It gives the same answers as
+ * Blacklist.isListed(hostlow, path, blacklistMapMatched, blacklistMapNotMatched), but does not create
+ * substrings of the host (the labels are compared in place), does not copy pattern sets and does not
+ * compile host regular expressions during a check.
+ *
+ * The matchable host keys are stored in two label tries:
+ * <ul>
+ * <li>a trie of the reversed host labels for keys which match a host and all of its sub domains
+ * (plain hosts like 'example.com', matched as 'example.com' or '*.example.com') and for keys which match only
+ * sub domains ('*.example.com')</li>
+ * <li>a trie of the host labels for keys which match hosts beginning with the key ('www.example.*', and also plain
+ * hosts like 'www.example' which are matched as 'www.example.*' by the legacy implementation)</li>
+ * </ul>
+ * The not matchable host keys are regular expressions which are compiled once.
+ * A matcher is immutable; the blacklist creates a new one when its lists are changed.
+ */
+final class BlacklistMatcher {
+
+    private static final Pattern[] NO_PATTERNS = new Pattern[0];
+
+    private static final class Node {
+        // the children are stored in an open addressing table which is looked up with a region of the host
+        private String[] labels = null;
+        private Node[] nodes = null;
+        private int size = 0;
+        private Pattern[] whole = NO_PATTERNS;   // patterns for a host which ends here (reversed trie) or for a plain key equal to the host
+        private Pattern[] deeper = NO_PATTERNS;  // patterns for a host which has more labels after this node
+
+        private Node child(final String label) {
+            if (this.labels == null) {
+                this.labels = new String[4];
+                this.nodes = new Node[4];
+            }
+            int i = index(label, 0, label.length());
+            if (i >= 0) return this.nodes[i];
+            if ((this.size + 1) * 2 > this.labels.length) grow();
+            i = slot(hash(label, 0, label.length()), this.labels.length);
+            while (this.labels[i] != null) i = (i + 1) & (this.labels.length - 1);
+            final Node n = new Node();
+            this.labels[i] = label;
+            this.nodes[i] = n;
+            this.size++;
+            return n;
+        }
+
+        private void grow() {
+            final String[] oldLabels = this.labels;
+            final Node[] oldNodes = this.nodes;
+            this.labels = new String[oldLabels.length * 2];
+            this.nodes = new Node[oldLabels.length * 2];
+            for (int j = 0; j < oldLabels.length; j++) {
+                if (oldLabels[j] == null) continue;
+                int i = slot(hash(oldLabels[j], 0, oldLabels[j].length()), this.labels.length);
+                while (this.labels[i] != null) i = (i + 1) & (this.labels.length - 1);
+                this.labels[i] = oldLabels[j];
+                this.nodes[i] = oldNodes[j];
+            }
+        }
+
+        /**
+         * @return the position of the child with the label host[from, to) or -1 if there is no such child
+         */
+        private int index(final String host, final int from, final int to) {
+            final int len = to - from;
+            int i = slot(hash(host, from, to), this.labels.length);
+            String label;
+            while ((label = this.labels[i]) != null) {
+                if (label.length() == len && host.regionMatches(from, label, 0, len)) return i;
+                i = (i + 1) & (this.labels.length - 1);
+            }
+            return -1;
+        }
+
+        private Node get(final String host, final int from, final int to) {
+            if (this.labels == null) return null;
+            final int i = index(host, from, to);
+            return i < 0 ? null : this.nodes[i];
+        }
+
+        private static int hash(final String s, final int from, final int to) {
+            int h = 0;
+            for (int i = from; i < to; i++) h = 31 * h + s.charAt(i);
+            return h;
+        }
+
+        private static int slot(final int hash, final int length) {
+            return (hash ^ (hash >>> 16)) & (length - 1);
+        }
+    }
+
+    private final Node reversed = new Node();  // labels from the top level domain to the left
+    private final Node forward = new Node();   // labels from the left to the top level domain
+    private final Pattern[] hostPatterns;      // compiled keys of the not matchable map
+    private final Pattern[][] hostPathPatterns;
+
+    BlacklistMatcher(final Map<String, Set<Pattern>> blacklistMapMatched, final Map<String, Set<Pattern>> blacklistMapNotMatched) {
+        for (final Map.Entry<String, Set<Pattern>> entry: blacklistMapMatched.entrySet()) {
+            final Set<Pattern> set = entry.getValue();
+            if (set == null || set.isEmpty()) continue;
+            final Pattern[] patterns = set.toArray(new Pattern[set.size()]);
+            final String key = entry.getKey();
+            if (key.startsWith("*.")) {
+                // matches all sub domains of the rest of the key
+                final Node n = insertReversed(key.substring(2));
+                n.deeper = join(n.deeper, patterns);
+            } else if (key.endsWith(".*")) {
+                // matches all hosts which start with the key
+                final Node n = insertForward(key.substring(0, key.length() - 2));
+                n.deeper = join(n.deeper, patterns);
+            } else {
+                // a plain host matches itself, its sub domains and (as in the legacy implementation) hosts starting with it
+                final Node r = insertReversed(key);
+                r.whole = join(r.whole, patterns);
+                r.deeper = join(r.deeper, patterns);
+                final Node f = insertForward(key);
+                f.deeper = join(f.deeper, patterns);
+            }
+        }
+        final List<Pattern> hp = new ArrayList<Pattern>(blacklistMapNotMatched.size());
+        final List<Pattern[]> hpp = new ArrayList<Pattern[]>(blacklistMapNotMatched.size());
+        for (final Map.Entry<String, Set<Pattern>> entry: blacklistMapNotMatched.entrySet()) {
+            final Set<Pattern> set = entry.getValue();
+            if (set == null || set.isEmpty()) continue;
+            try {
+                hp.add(Pattern.compile(entry.getKey()));
+                hpp.add(set.toArray(new Pattern[set.size()]));
+            } catch (final PatternSyntaxException e) {
+                // the legacy implementation ignores such entries as well
+            }
+        }
+        this.hostPatterns = hp.toArray(new Pattern[hp.size()]);
+        this.hostPathPatterns = hpp.toArray(new Pattern[hpp.size()][]);
+    }
+
+    private Node insertReversed(final String host) {
+        Node n = this.reversed;
+        int end = host.length();
+        int dot;
+        while ((dot = host.lastIndexOf('.', end - 1)) >= 0) {
+            n = n.child(host.substring(dot + 1, end));
+            end = dot;
+        }
+        return n.child(host.substring(0, end));
+    }
+
+    private Node insertForward(final String host) {
+        Node n = this.forward;
+        int start = 0;
+        int dot;
+        while ((dot = host.indexOf('.', start)) >= 0) {
+            n = n.child(host.substring(start, dot));
+            start = dot + 1;
+        }
+        return n.child(host.substring(start));
+    }
+
+    private static Pattern[] join(final Pattern[] a, final Pattern[] b) {
+        if (a.length == 0) return b;
+        final Pattern[] c = new Pattern[a.length + b.length];
+        System.arraycopy(a, 0, c, 0, a.length);
+        System.arraycopy(b, 0, c, a.length, b.length);
+        return c;
+    }
+
+    private static boolean matches(final Pattern[] patterns, final String path) {
+        for (int i = patterns.length - 1; i >= 0; i--) {
+            if (patterns[i].matcher(path).matches()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Check if the URL made of the specified host and path is blacklisted.
+     * @param hostlow the host in lower case
+     * @param path path on the host
+     * @return true when host/path is blacklisted
+     */
+    boolean isListed(final String hostlow, final String path) {
+        final String p = (!path.isEmpty() && path.charAt(0) == '/') ? path.substring(1) : path;
+
+        // walk the reversed labels: the host and all its parent domains
+        Node n = this.reversed;
+        int end = hostlow.length();
+        while (n != null) {
+            final int dot = hostlow.lastIndexOf('.', end - 1);
+            n = n.get(hostlow, dot + 1, end);
+            if (n == null) break;
+            if (dot < 0) {
+                // the complete host
+                if (matches(n.whole, p)) return true;
+                break;
+            }
+            if (matches(n.deeper, p)) return true;
+            end = dot;
+        }
+
+        // walk the labels from the left: all hosts which are a prefix of the host
+        n = this.forward;
+        int start = 0;
+        int dot;
+        while ((dot = hostlow.indexOf('.', start)) >= 0) {
+            n = n.get(hostlow, start, dot);
+            if (n == null) break;
+            if (dot > 0 && matches(n.deeper, p)) return true;
+            start = dot + 1;
+        }
+
+        // the regular expressions for hosts
+        for (int i = 0; i < this.hostPatterns.length; i++) {
+            if (this.hostPatterns[i].matcher(hostlow).matches() && matches(this.hostPathPatterns[i], p)) return true;
+        }
+        return false;
+    }
+
+}
@@ -29,6 +29,7 @@ package net.yacy.repository;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.MalformedURLException;
 import java.util.Arrays;
 import java.util.Date;
@@ -36,9 +37,13 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.document.encoding.UTF8;
@@ -70,6 +75,7 @@ import net.yacy.search.Switchboard;
 public final class LoaderDispatcher {
 
     private final static int accessTimeMaxsize = 1000;
+    private final static long defaultMaxFlightWait = 120000; // the maximum time to wait for a concurrent load of the same url
     private final static ConcurrentLog log = new ConcurrentLog("LOADER");
     private static final ConcurrentHashMap<String, Long> accessTime = new ConcurrentHashMap<String, Long>(); // to protect targets from DDoS
 
@@ -79,7 +85,48 @@ public final class LoaderDispatcher {
     private final FTPLoader ftpLoader;
     private final SMBLoader smbLoader;
     private final FileLoader fileLoader;
-    private final ConcurrentHashMap<DigestURL, Semaphore> loaderSteering; // a map that delivers a 'finish' semaphore for urls
+    private final ConcurrentHashMap<DigestURL, Flight> flights; // the running loads; concurrent loads of the same url share their result
+    private final AtomicLong flightCount, coalescedCount, coalescedFailCount, coalescedTimeoutCount;
+    private final Fetcher fetcher; // the load of a single flight
+    private final long maxFlightWait;
+
+    /**
+     * The load of a resource which is done once for all concurrent callers of a flight.
+     */
+    interface Fetcher {
+        public Response load(Request request, CacheStrategy cacheStrategy, int maxFileSize, BlacklistType blacklistType, ClientIdentification.Agent agent) throws IOException;
+    }
+
+    /**
+     * A running load of an url. Concurrent callers which ask for the same url wait for the result of
+     * the flight instead of loading the url again.
+     */
+    private static final class Flight {
+        private final CompletableFuture<Response> result;
+        private final CacheStrategy cacheStrategy;
+        private final int maxFileSize;
+        private final BlacklistType blacklistType;
+        private final Thread leader; // the thread which loads the url
+        private final AtomicBoolean shared; // true if a concurrent caller joined the flight
+
+        private Flight(final CacheStrategy cacheStrategy, final int maxFileSize, final BlacklistType blacklistType) {
+            this.result = new CompletableFuture<Response>();
+            this.cacheStrategy = cacheStrategy;
+            this.maxFileSize = maxFileSize;
+            this.blacklistType = blacklistType;
+            this.leader = Thread.currentThread();
+            this.shared = new AtomicBoolean(false);
+        }
+
+        /**
+         * @return true if the result of this flight can be given to a caller with the given parameters: the flight
+         * must use the same limits and a cache strategy which is at least as strict regarding freshness
+         */
+        private boolean serves(final CacheStrategy cacheStrategy, final int maxFileSize, final BlacklistType blacklistType) {
+            return this.maxFileSize == maxFileSize && this.blacklistType == blacklistType &&
+                   this.cacheStrategy != null && cacheStrategy != null && this.cacheStrategy.code <= cacheStrategy.code;
+        }
+    }
 
     public LoaderDispatcher(final Switchboard sb) {
         this.sb = sb;
@@ -90,7 +137,39 @@ public final class LoaderDispatcher {
         this.ftpLoader = new FTPLoader(sb, LoaderDispatcher.log);
         this.smbLoader = new SMBLoader(sb, LoaderDispatcher.log);
         this.fileLoader = new FileLoader(sb, LoaderDispatcher.log);
-        this.loaderSteering = new ConcurrentHashMap<DigestURL, Semaphore>();
+        this.flights = new ConcurrentHashMap<DigestURL, Flight>();
+        this.flightCount = new AtomicLong(0);
+        this.coalescedCount = new AtomicLong(0);
+        this.coalescedFailCount = new AtomicLong(0);
+        this.coalescedTimeoutCount = new AtomicLong(0);
+        this.fetcher = new Fetcher() {
+            @Override
+            public Response load(final Request request, final CacheStrategy cacheStrategy, final int maxFileSize, final BlacklistType blacklistType, final ClientIdentification.Agent agent) throws IOException {
+                return loadInternal(request, cacheStrategy, maxFileSize, blacklistType, agent);
+            }
+        };
+        this.maxFlightWait = defaultMaxFlightWait;
+    }
+
+    /**
+     * create a dispatcher without protocol loaders which loads all resources with the given fetcher; used to test the sharing of loads
+     * @param fetcher the load of a flight
+     * @param maxFlightWait the maximum time in milliseconds to wait for a concurrent load of the same url
+     */
+    LoaderDispatcher(final Fetcher fetcher, final long maxFlightWait) {
+        this.sb = null;
+        this.supportedProtocols = new HashSet<String>(Arrays.asList(new String[]{"http","https","ftp","smb","file"}));
+        this.httpLoader = null;
+        this.ftpLoader = null;
+        this.smbLoader = null;
+        this.fileLoader = null;
+        this.flights = new ConcurrentHashMap<DigestURL, Flight>();
+        this.flightCount = new AtomicLong(0);
+        this.coalescedCount = new AtomicLong(0);
+        this.coalescedFailCount = new AtomicLong(0);
+        this.coalescedTimeoutCount = new AtomicLong(0);
+        this.fetcher = fetcher;
+        this.maxFlightWait = maxFlightWait;
     }
 
     public boolean isSupportedProtocol(final String protocol) {
@@ -154,7 +233,10 @@ public final class LoaderDispatcher {
 
     /**
      * loads a resource from cache or web/ftp/smb/file
-     * on concurrent execution waits max 5 sec for the prev. loader to fill the cache (except for CacheStrategy.NOCACHE)
+     * concurrent calls for the same url share one load: the first caller loads the resource and all callers
+     * which arrive before the load is finished get the same content or the same failure. A caller only joins
+     * a load with the same file size limit and blacklist and a cache strategy which is at least as strict
+     * regarding freshness; otherwise it loads the resource itself.
      * 
      * @param request the request essentials
      * @param cacheStrategy strategy according to NOCACHE, IFFRESH, IFEXIST, CACHEONLY
@@ -165,34 +247,97 @@ public final class LoaderDispatcher {
      * @throws IOException
      */
     public Response load(final Request request, final CacheStrategy cacheStrategy, final int maxFileSize, final BlacklistType blacklistType, ClientIdentification.Agent agent) throws IOException {
-        Semaphore check = this.loaderSteering.get(request.url());
-        if (check != null && cacheStrategy != CacheStrategy.NOCACHE) {
+        final DigestURL url = request.url();
+        if (cacheStrategy == null) return loadFlight(null, request, cacheStrategy, maxFileSize, blacklistType, agent); // no other caller can join such a load
+        final Flight flight = new Flight(cacheStrategy, maxFileSize, blacklistType);
+        final Flight running = this.flights.putIfAbsent(url, flight);
+        if (running != null) {
             // a loading process is going on for that url
-            //ConcurrentLog.info("LoaderDispatcher", "waiting for " + request.url().toNormalform(true));
-            long t = System.currentTimeMillis();
-            try { check.tryAcquire(5, TimeUnit.SECONDS);} catch (final InterruptedException e) {}
-            ConcurrentLog.info("LoaderDispatcher", "waited " + (System.currentTimeMillis() - t) + " ms for " + request.url().toNormalform(true));
-            // now the process may have terminated and we run a normal loading
-            // which may be successful faster because of a cache hit
+            if (running.leader != Thread.currentThread() && running.serves(cacheStrategy, maxFileSize, blacklistType)) return join(running, request);
+            return loadFlight(null, request, cacheStrategy, maxFileSize, blacklistType, agent);
         }
+        try {
+            return loadFlight(flight, request, cacheStrategy, maxFileSize, blacklistType, agent);
+        } finally {
+            this.flights.remove(url, flight);
+        }
+    }
 
-        this.loaderSteering.put(request.url(), new Semaphore(0));
+    private Response loadFlight(final Flight flight, final Request request, final CacheStrategy cacheStrategy, final int maxFileSize, final BlacklistType blacklistType, ClientIdentification.Agent agent) throws IOException {
         try {
-            final Response response = loadInternal(request, cacheStrategy, maxFileSize, blacklistType, agent);
-            // finally block cleans up loaderSteering and semaphore
+            final Response response = this.fetcher.load(request, cacheStrategy, maxFileSize, blacklistType, agent);
+            if (flight != null) flight.result.complete(response);
             return response;
         } catch (final IOException e) {
         	/* Do not wrap an IOException in an unnecessary supplementary IOException */
+            if (flight != null) flight.result.completeExceptionally(e);
             throw e;
         } catch (final Throwable e) {
-            throw new IOException(e);
-        } finally {
-            // release the semaphore anyway
-            check = this.loaderSteering.remove(request.url()); // = next caller goes directly to loadInternal (is ok we just wanted to fill cash)
-            if (check != null) check.release(1000); // don't block any other
+            final IOException ee = new IOException(e);
+            if (flight != null) flight.result.completeExceptionally(ee);
+            throw ee;
         }
     }
 
+    /**
+     * wait for the result of a concurrent load of the same url
+     * @param flight the running load
+     * @param request the request of the waiting caller
+     * @return a response for the request of the caller with the content of the concurrent load
+     * @throws IOException the failure of the concurrent load or a timeout
+     */
+    private Response join(final Flight flight, final Request request) throws IOException {
+        this.coalescedCount.incrementAndGet();
+        if (flight.shared.compareAndSet(false, true)) this.flightCount.incrementAndGet();
+        final Response shared;
+        try {
+            shared = flight.result.get(this.maxFlightWait, TimeUnit.MILLISECONDS);
+        } catch (final ExecutionException e) {
+            this.coalescedFailCount.incrementAndGet();
+            final Throwable cause = e.getCause();
+            throw new IOException(cause == null ? "concurrent load failed" : cause.getMessage(), cause);
+        } catch (final TimeoutException e) {
+            this.coalescedTimeoutCount.incrementAndGet();
+            throw new IOException("timeout after " + this.maxFlightWait + " ms waiting for a concurrent load of " + request.url().toNormalform(true));
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for a concurrent load of " + request.url().toNormalform(true));
+        }
+        if (shared == null) return null;
+        if (shared.getRequest() == request) return shared;
+        // the response object is not shared because it carries the request, the profile and the status of one caller
+        final CrawlProfile profile = request.profileHandle() == null || this.sb == null ? null : this.sb.crawler.get(UTF8.getBytes(request.profileHandle()));
+        return new Response(request, shared.getRequestHeader(), shared.getResponseHeader(), profile == null ? shared.profile() : profile, shared.fromCache(), shared.getContent());
+    }
+
+    /**
+     * @return the number of loads which were shared with at least one concurrent caller of the same url
+     */
+    public long flightCount() {
+        return this.flightCount.get();
+    }
+
+    /**
+     * @return the number of loads which were answered with the result of a concurrent load of the same url
+     */
+    public long coalescedCount() {
+        return this.coalescedCount.get();
+    }
+
+    /**
+     * @return the number of coalesced loads which got the failure of the concurrent load
+     */
+    public long coalescedFailCount() {
+        return this.coalescedFailCount.get();
+    }
+
+    /**
+     * @return the number of coalesced loads which did not get a result in time
+     */
+    public long coalescedTimeoutCount() {
+        return this.coalescedTimeoutCount.get();
+    }
+
     /**
      * load a resource from the web, from ftp, from smb or a file
      * @param request the request essentials
@@ -495,13 +640,15 @@ public final class LoaderDispatcher {
 			BlacklistType blacklistType, final ClientIdentification.Agent agent, final int maxFileSize) throws IOException {
 		StreamResponse response;
 
-		Semaphore check = this.loaderSteering.get(request.url());
-		if (check != null && cacheStrategy != CacheStrategy.NOCACHE) {
-			// a loading process is going on for that url
+		final Flight running = this.flights.get(request.url());
+		if (running != null && cacheStrategy != CacheStrategy.NOCACHE) {
+			// a loading process is going on for that url; a stream cannot be shared, but the load may fill the cache
 			long t = System.currentTimeMillis();
 			try {
-				check.tryAcquire(5, TimeUnit.SECONDS);
+				running.result.get(5, TimeUnit.SECONDS);
 			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (final ExecutionException | TimeoutException e) {
 			}
 			ConcurrentLog.info("LoaderDispatcher",
 					"waited " + (System.currentTimeMillis() - t) + " ms for " + request.url().toNormalform(true));
@@ -509,7 +656,6 @@ public final class LoaderDispatcher {
 			// which may be successful faster because of a cache hit
 		}
 
-		this.loaderSteering.put(request.url(), new Semaphore(0));
 		try {
 			response = openInputStreamInternal(request, cacheStrategy, maxFileSize, blacklistType, agent);
 		} catch(IOException ioe) {
@@ -517,12 +663,6 @@ public final class LoaderDispatcher {
 			throw ioe;
 		} catch (final Throwable e) {
 			throw new IOException(e);
-		} finally {
-			// release the semaphore anyway
-			check = this.loaderSteering.remove(request.url());
-			if (check != null) {
-				check.release(1000); // don't block any other
-			}
 		}
 
 		return response;
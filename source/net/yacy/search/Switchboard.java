@@ -144,6 +144,7 @@ import net.yacy.crawler.data.Cache;
 import net.yacy.crawler.data.CrawlProfile;
 import net.yacy.crawler.data.CrawlProfile.CrawlAttribute;
 import net.yacy.crawler.data.CrawlQueues;
+import net.yacy.crawler.data.Latency;
 import net.yacy.crawler.data.NoticedURL;
 import net.yacy.crawler.data.NoticedURL.StackType;
 import net.yacy.crawler.data.ResultImages;
@@ -192,7 +193,10 @@ import net.yacy.kelondro.blob.Tables.SortDirection;
 import net.yacy.kelondro.data.meta.URIMetadataNode;
 import net.yacy.kelondro.data.word.Word;
 import net.yacy.kelondro.logging.GuiHandler;
+import net.yacy.kelondro.rwi.IODispatcher;
+import net.yacy.kelondro.rwi.IndexCell;
 import net.yacy.kelondro.rwi.ReferenceContainer;
+import net.yacy.kelondro.rwi.ReferenceContainerArray;
 import net.yacy.kelondro.util.FileUtils;
 import net.yacy.kelondro.util.MemoryControl;
 import net.yacy.kelondro.util.OS;
@@ -250,6 +254,7 @@ public final class Switchboard extends serverSwitch {
     
     public static long lastPPMUpdate = System.currentTimeMillis() - 30000;
     private static final int dhtMaxContainerCount = 500;
+    private static final String INDEXING_BALANCE_GROUP = "indexing"; // the balance group of the indexing chain processors
     private int dhtMaxReferenceCount = 1000;
 
     // colored list management
@@ -463,7 +468,8 @@ public final class Switchboard extends serverSwitch {
 		}
 
         // init global host name cache
-        Domains.init(new File(this.workPath, "globalhosts.list"));
+        Domains.init(new File(this.workPath, "globalhosts.list"), new File(this.workPath, "dnscache.list"));
+        Latency.init(new File(this.workPath, "hostlatency.stats"));
 
         // init sessionid name file
         final String sessionidNamesFile = getConfig("sessionidNamesFile", "defaults/sessionid.names");
@@ -576,6 +582,10 @@ public final class Switchboard extends serverSwitch {
 
         // initialize index
         ReferenceContainer.maxReferences = getConfigInt("index.maxReferences", 0);
+        ArrayStack.mapSealedHeaps = getConfigBool("index.mapSealedHeaps", true) && !OS.isWindows;
+        ReferenceContainerArray.parallelLookup = getConfigBool("index.parallelLookup", true);
+        IODispatcher.mergeThreads = getConfigInt("index.mergeThreads", 1);
+        IndexCell.offHeapBuffer = getConfigBool("index.offHeapBuffer", false);
         final File segmentsPath = new File(new File(indexPath, networkName), "SEGMENTS");
         try {this.index = new Segment(this.log, segmentsPath, archivePath, solrCollectionConfigurationWork, solrWebgraphConfigurationWork);} catch (IOException e) {ConcurrentLog.logException(e);}
         if (this.getConfigBool(SwitchboardConstants.CORE_SERVICE_RWI, true)) try {
@@ -589,6 +599,10 @@ public final class Switchboard extends serverSwitch {
             try {this.index.fulltext().connectLocalSolr();} catch (final IOException e) {ConcurrentLog.logException(e);}
         }
         this.index.fulltext().setUseWebgraph(this.getConfigBool(SwitchboardConstants.CORE_SERVICE_WEBGRAPH, false));
+        final int resultCacheSize = this.getConfigInt(SwitchboardConstants.SEARCH_RESULTCACHE_SIZE, SwitchboardConstants.SEARCH_RESULTCACHE_SIZE_DEFAULT);
+        if (resultCacheSize > 0) try {
+            this.index.connectQueryResultCache(resultCacheSize);
+        } catch (final IOException e) {ConcurrentLog.logException(e);}
 
         // set up the solr interface
         final String solrurls = getConfig(SwitchboardConstants.FEDERATED_SERVICE_SOLR_INDEXING_URL, "http://127.0.0.1:8983/solr");
@@ -1024,7 +1038,7 @@ public final class Switchboard extends serverSwitch {
         // before we do that, we wait some time until the seed list is loaded.
         this.clusterhashes = this.peers.clusterHashes(getConfig("cluster.peers.yacydomain", ""));
 
-        // deploy blocking threads
+        // deploy blocking threads; the parser, condenser and structure analysis share their threads, see WorkflowProcessor.rebalance()
         this.indexingStorageProcessor =
             new WorkflowProcessor<IndexingQueueEntry>(
                 "storeDocumentIndex",
@@ -1059,7 +1073,7 @@ public final class Switchboard extends serverSwitch {
 				},
                 WorkflowProcessor.availableCPU + 1,
                 this.indexingStorageProcessor,
-                WorkflowProcessor.availableCPU);
+                WorkflowProcessor.availableCPU, INDEXING_BALANCE_GROUP);
         this.indexingCondensementProcessor =
             new WorkflowProcessor<IndexingQueueEntry>(
                 "condenseDocument",
@@ -1076,7 +1090,7 @@ public final class Switchboard extends serverSwitch {
 				},
                 WorkflowProcessor.availableCPU + 1,
                 this.indexingAnalysisProcessor,
-                WorkflowProcessor.availableCPU);
+                WorkflowProcessor.availableCPU, INDEXING_BALANCE_GROUP);
         this.indexingDocumentProcessor =
             new WorkflowProcessor<IndexingQueueEntry>(
                 "parseDocument",
@@ -1093,7 +1107,7 @@ public final class Switchboard extends serverSwitch {
 				},
                 Math.max(20, WorkflowProcessor.availableCPU * 2), // it may happen that this is filled with new files from the search process. That means there should be enough place for two result pages
                 this.indexingCondensementProcessor,
-                WorkflowProcessor.availableCPU);
+                WorkflowProcessor.availableCPU, INDEXING_BALANCE_GROUP);
 
         // deploy busy threads
         this.log.config("Starting Threads");
@@ -1517,6 +1531,8 @@ public final class Switchboard extends serverSwitch {
                 this.index.fulltext().connectLocalSolr();
             }
             this.index.fulltext().setUseWebgraph(this.getConfigBool(SwitchboardConstants.CORE_SERVICE_WEBGRAPH, false));
+            final int resultCacheSize = this.getConfigInt(SwitchboardConstants.SEARCH_RESULTCACHE_SIZE, SwitchboardConstants.SEARCH_RESULTCACHE_SIZE_DEFAULT);
+            if (resultCacheSize > 0) this.index.connectQueryResultCache(resultCacheSize);
 
             // set up the solr interface
             final String solrurls = getConfig(SwitchboardConstants.FEDERATED_SERVICE_SOLR_INDEXING_URL, "http://127.0.0.1:8983/solr");
@@ -2021,6 +2037,7 @@ public final class Switchboard extends serverSwitch {
         Cache.close();
         this.tables.close();
         Domains.close();
+        Latency.close();
         AccessTracker.dumpLog();
         Switchboard.urlBlacklist.close();
         ArrayStack.shutdownDeleteService();
@@ -2845,7 +2862,7 @@ public final class Switchboard extends serverSwitch {
                     if (postprocessing) {
                         // run postprocessing on all profiles
                         ReferenceReportCache rrCache = index.getReferenceReportCache();
-                        proccount += collection1Configuration.postprocessing(index, rrCache, null, getConfigBool("postprocessing.partialUpdate", true));
+                        proccount += collection1Configuration.postprocessing(index, rrCache, null, getConfigBool("postprocessing.partialUpdate", true), getConfigBool("postprocessing.incremental", true));
                         this.index.fulltext().commit(true); // without a commit the success is not visible in the monitoring
                     }
                     this.crawler.cleanProfiles(this.crawler.getActiveProfiles());
@@ -2858,7 +2875,7 @@ public final class Switchboard extends serverSwitch {
                         if (postprocessing) {
                             // run postprocessing on these profiles
                             ReferenceReportCache rrCache = index.getReferenceReportCache();
-                            for (String profileHash: deletionCandidates) proccount += collection1Configuration.postprocessing(index, rrCache, profileHash, getConfigBool("postprocessing.partialUpdate", true));
+                            for (String profileHash: deletionCandidates) proccount += collection1Configuration.postprocessing(index, rrCache, profileHash, getConfigBool("postprocessing.partialUpdate", true), getConfigBool("postprocessing.incremental", true));
                             this.index.fulltext().commit(true); // without a commit the success is not visible in the monitoring
                         }
                         this.crawler.cleanProfiles(deletionCandidates);
@@ -3130,6 +3147,7 @@ public final class Switchboard extends serverSwitch {
 			}
             
             // insert those hyperlinks to the crawler
+            final List<Request> requests = new ArrayList<Request>(hl.size());
             MultiProtocolURL nextUrl;
             for ( final Map.Entry<AnchorURL, String> nextEntry : hl.entrySet() ) {
                 // check for interruption
@@ -3157,7 +3175,7 @@ public final class Switchboard extends serverSwitch {
                 // enqueue the hyperlink into the pre-notice-url db
                 int nextdepth = nextEntry.getValue() != null && nextEntry.getValue().equals(Document.CANONICAL_MARKER) ? response.depth() : response.depth() + 1; // canonical documents are on the same depth
                 try {
-                    this.crawlStacker.enqueueEntry(new Request(
+                    requests.add(new Request(
                         response.initiator(),
                         new DigestURL(u),
                         response.url().hash(),
@@ -3170,6 +3188,7 @@ public final class Switchboard extends serverSwitch {
                     ConcurrentLog.logException(e);
                 }
             }
+            this.crawlStacker.enqueueEntries(requests, response.profile());
             final long stackEndTime = System.currentTimeMillis();
             if ( this.log.isInfo() ) {
                 this.log.info("CRAWL: ADDED "
@@ -4386,6 +4405,7 @@ public final class Switchboard extends serverSwitch {
         mySeed.setFlagAcceptRemoteCrawl(getConfigBool(SwitchboardConstants.CRAWLJOB_REMOTE, false));
         mySeed.setFlagAcceptRemoteIndex(getConfigBool(SwitchboardConstants.INDEX_RECEIVE_ALLOW, true));
         mySeed.setFlagSSLAvailable(this.getHttpServer() != null && this.getHttpServer().withSSL() && getConfigBool("server.https", false));
+        mySeed.setFlagBinaryRWI(true);
         if (mySeed.getFlagSSLAvailable()) mySeed.put(Seed.PORTSSL, Integer.toString(getPublicPort(SwitchboardConstants.SERVER_SSLPORT, 8443)));
 
         // set local ips
@@ -348,6 +348,9 @@ public final class SwitchboardConstants {
     public static final String CRAWLER_MAX_SAME_HOST_IN_QUEUE   = "crawler.MaxSameHostInQueue";
     public static final String CRAWLER_FOLLOW_REDIRECTS         = "crawler.http.FollowRedirects"; // ignore the target url and follow to the redirect
     public static final String CRAWLER_RECORD_REDIRECTS         = "crawler.http.RecordRedirects"; // record the ignored redirected page to the index store
+    public static final String CRAWLER_ASYNC                    = "crawler.async"; // load http crawl requests with the asynchronous loader instead of a thread per request
+    public static final String CRAWLER_ASYNC_MAX_ACTIVE         = "crawler.async.maxActive"; // maximum number of concurrent asynchronous loads
+    public static final String CRAWLER_ASYNC_THREADS            = "crawler.async.threads"; // number of threads which handle all asynchronous connections
     
     public static final String CRAWLER_USER_AGENT_NAME          = "crawler.userAgent.name";
     public static final String CRAWLER_USER_AGENT_STRING        = "crawler.userAgent.string";
@@ -609,6 +612,12 @@ public final class SwitchboardConstants {
     public static final String SEARCH_TARGET_SPECIAL_PATTERN  = "search.target.special.pattern"; // ie 'own' addresses in topframe, 'other' in iframe
     public static final String SEARCH_VERIFY  = "search.verify";
     public static final String SEARCH_VERIFY_DELETE = "search.verify.delete";
+
+    /** Key of the setting controlling the maximum number of local search results in the persistent query result cache, 0 disables the cache */
+    public static final String SEARCH_RESULTCACHE_SIZE = "search.resultcache.size";
+
+    /** Default maximum number of local search results in the persistent query result cache */
+    public static final int SEARCH_RESULTCACHE_SIZE_DEFAULT = 5000;
     
 	/**
 	 * Key of the setting controlling whether content domain filtering is strict :
@@ -64,7 +64,7 @@ public class ErrorCache {
 
     public void clear() throws IOException {
         clearCache();
-        this.sb.index.fulltext().getDefaultConnector().deleteByQuery(CollectionSchema.failreason_s.getSolrFieldName() + AbstractSolrConnector.CATCHALL_DTERM);
+        this.sb.index.fulltext().deleteByQuery(CollectionSchema.failreason_s.getSolrFieldName() + AbstractSolrConnector.CATCHALL_DTERM);
     }
 
     public void removeHosts(final Set<String> hosthashes) {
@@ -118,8 +118,9 @@ public class ErrorCache {
                     if (olddoc == null ||
                         olddoc.getFieldValue(CollectionSchema.httpstatus_i.getSolrFieldName()) == null ||
                         ((Integer) olddoc.getFieldValue(CollectionSchema.httpstatus_i.getSolrFieldName())) == 200) {
+                        // written through the pipeline of the fulltext, so it is ordered with the documents and deletions
                         SolrInputDocument errorDoc = failDoc.toSolr(this.sb.index.fulltext().getDefaultConfiguration());
-                        this.sb.index.fulltext().getDefaultConnector().add(errorDoc);
+                        this.sb.index.fulltext().putDocument(errorDoc);
                     }
                 } catch (final IOException e) {
                     ConcurrentLog.warn("SOLR", "failed to send error " + url.toNormalform(true) + " to solr: " + e.getMessage());
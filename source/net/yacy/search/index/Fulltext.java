@@ -104,6 +104,9 @@ public final class Fulltext {
     private final CollectionConfiguration collectionConfiguration;
     private final WebgraphConfiguration   webgraphConfiguration;
     private       boolean                 writeWebgraph;
+    private final LoadDateIndex           loadDates;
+    private final SolrWritePipeline       collectionWriter;
+    private final SolrWritePipeline       webgraphWriter;
 
     protected Fulltext(final File segmentPath, final File archivePath,
             final CollectionConfiguration collectionConfiguration, final WebgraphConfiguration webgraphConfiguration) {
@@ -115,6 +118,42 @@ public final class Fulltext {
         this.collectionConfiguration = collectionConfiguration;
         this.webgraphConfiguration = webgraphConfiguration;
         this.writeWebgraph = false;
+        this.loadDates = new LoadDateIndex();
+        this.collectionWriter = new SolrWritePipeline(CollectionSchema.CORE_NAME, new SolrWritePipeline.Target() {
+            @Override
+            public void add(final Collection<SolrInputDocument> docs) throws IOException {
+                final SolrConnector connector = Fulltext.this.getDefaultConnector();
+                if (connector == null) return;
+                try {
+                    connector.add(docs);
+                } catch (final SolrException e) {
+                    throw new IOException(e.getMessage(), e);
+                }
+                if (MemoryControl.shortStatus()) clearCaches();
+            }
+        }, 1000, 100, 1000);
+        this.collectionWriter.setFailureHandler(new SolrWritePipeline.FailureHandler() {
+            @Override
+            public void failed(final SolrInputDocument doc, final Throwable e) {
+                // the document is not in the index, so the crawler must not treat its url as known
+                final String id = (String) doc.getFieldValue(CollectionSchema.id.getSolrFieldName());
+                if (id != null) Fulltext.this.loadDates.remove(id);
+                ConcurrentLog.warn("Fulltext", "document " + id + " " + doc.getFieldValue(CollectionSchema.sku.getSolrFieldName()) + " was not indexed: " + e.getMessage());
+            }
+        });
+        this.webgraphWriter = new SolrWritePipeline(WebgraphSchema.CORE_NAME, new SolrWritePipeline.Target() {
+            @Override
+            public void add(final Collection<SolrInputDocument> docs) throws IOException {
+                final SolrConnector connector = Fulltext.this.getWebgraphConnector();
+                if (connector == null) return;
+                try {
+                    connector.add(docs);
+                } catch (final SolrException e) {
+                    throw new IOException(e.getMessage(), e);
+                }
+                if (MemoryControl.shortStatus()) clearCaches();
+            }
+        }, 20000, 2000, 1000);
     }
     
     public void setUseWebgraph(boolean check) {
@@ -156,11 +195,22 @@ public final class Fulltext {
         ConcurrentLog.info("Fulltext", "using lucene version " + lvn);
         assert SOLR_PATH.endsWith(lvn) : "luceneVersion = " + lvn + ", solrPath = " + SOLR_PATH + ", check defaults/solr/solrconfig.xml";
         ConcurrentLog.info("Fulltext", "connected solr in " + solrLocation.toString() + ", lucene version " + lvn);
+        connectLocalSolr(localCollectionInstance);
+    }
+
+    /**
+     * connect an embedded instance as the local index
+     * @param localCollectionInstance the instance
+     */
+    void connectLocalSolr(final EmbeddedInstance localCollectionInstance) {
         this.solrInstances.connectEmbedded(localCollectionInstance);
+        bootstrapLoadDates();
     }
 
     public void disconnectLocalSolr() {
+        flush();
         this.solrInstances.disconnectEmbedded();
+        bootstrapLoadDates();
     }
 
     public boolean connectedRemoteSolr() {
@@ -168,11 +218,63 @@ public final class Fulltext {
     }
 
     public void connectRemoteSolr(final ArrayList<RemoteInstance> instances, final ShardSelection.Method shardMethod, final boolean writeEnabled) {
+        flush();
         this.solrInstances.connectRemote(new ShardInstance(instances, shardMethod, writeEnabled));
+        bootstrapLoadDates();
     }
 
     public void disconnectRemoteSolr() {
+        flush();
         this.solrInstances.disconnectRemote();
+        bootstrapLoadDates();
+    }
+
+    /**
+     * the index of the load dates of all documents in the local index
+     * @return the index; it is only ready if no remote index is connected, because a remote index may be changed by others
+     */
+    public LoadDateIndex loadDates() {
+        return this.loadDates;
+    }
+
+    private void bootstrapLoadDates() {
+        final EmbeddedSolrConnector connector = this.getDefaultEmbeddedConnector();
+        if (connector == null || this.solrInstances.isConnectedRemote()) {
+            this.loadDates.invalidate();
+        } else {
+            this.loadDates.bootstrap(connector);
+        }
+    }
+
+    /**
+     * remove all documents which match the query from the index of load dates, this must be done before the documents are deleted
+     * @param query a query to the default index
+     */
+    private void removeLoadDates(final String query) {
+        if (!this.loadDates.isReady()) return;
+        // documents which are not committed are deleted by the query but would not be found by it
+        this.getDefaultConnector().commit(true);
+        final BlockingQueue<SolrDocument> docs = this.getDefaultConnector().concurrentDocumentsByQuery(query, null, 0, Integer.MAX_VALUE, Long.MAX_VALUE, 1000, 1, false, CollectionSchema.id.getSolrFieldName());
+        try {
+            SolrDocument doc;
+            while ((doc = docs.take()) != AbstractSolrConnector.POISON_DOCUMENT) {
+                this.loadDates.remove((String) doc.getFieldValue(CollectionSchema.id.getSolrFieldName()));
+            }
+        } catch (final InterruptedException e) {
+            // we do not know which documents are deleted
+            bootstrapLoadDates();
+        }
+    }
+
+    /**
+     * delete all documents from the default index which match the query
+     * @param query the query
+     * @throws IOException
+     */
+    public void deleteByQuery(final String query) throws IOException {
+        flush();
+        removeLoadDates(query);
+        this.getDefaultConnector().deleteByQuery(query);
     }
 
     public EmbeddedSolrConnector getDefaultEmbeddedConnector() {
@@ -243,7 +345,29 @@ public final class Fulltext {
     }
     
     public int bufferSize() {
-        return this.solrInstances.bufferSize();
+        return this.solrInstances.bufferSize() + this.collectionWriter.size() + this.webgraphWriter.size();
+    }
+
+    /**
+     * wait until all documents which have been put to the write pipelines are written to the index
+     */
+    public void flush() {
+        this.collectionWriter.flush();
+        this.webgraphWriter.flush();
+    }
+
+    /**
+     * @return the write pipeline of the collection index
+     */
+    public SolrWritePipeline collectionWriter() {
+        return this.collectionWriter;
+    }
+
+    /**
+     * @return the write pipeline of the webgraph index
+     */
+    public SolrWritePipeline webgraphWriter() {
+        return this.webgraphWriter;
     }
     
     public void clearCaches() {
@@ -254,6 +378,7 @@ public final class Fulltext {
         if (this.exportthread != null) {
         	this.exportthread.interrupt();
         }
+        flush();
     	this.solrInstancesLock.lock();
         try {
             EmbeddedInstance instance = this.solrInstances.getEmbedded();
@@ -267,9 +392,11 @@ public final class Fulltext {
         } finally {
         	this.solrInstancesLock.unlock();
         }
+        bootstrapLoadDates();
     }
 
     public void clearRemoteSolr() throws IOException {
+        flush();
     	this.solrInstancesLock.lock();
         try {
             ShardInstance instance = this.solrInstances.getRemote();
@@ -308,7 +435,21 @@ public final class Fulltext {
         return this.writeWebgraph ? this.getWebgraphConnector().getSize() : 0;
     }
 
+    /**
+     * get the generation of the index which is visible to searches. Search results which had been computed
+     * with the same generation are still valid.
+     * @return the generation of the embedded index or -1 if the generation is unknown because a remote index is connected
+     */
+    public long generation() {
+        if (this.solrInstances.isConnectedRemote()) return -1;
+        EmbeddedSolrConnector esc = this.getDefaultEmbeddedConnector();
+        if (esc == null || esc.isClosed()) return -1;
+        return esc.getIndexVersion();
+    }
+
     public void close() {
+        this.collectionWriter.close();
+        this.webgraphWriter.close();
         try {
             this.solrInstances.close();
         } catch (Throwable e) {
@@ -321,6 +462,8 @@ public final class Fulltext {
         long t = System.currentTimeMillis();
         if (lastCommit + 10000 > t) return;
         lastCommit = t;
+        // the commit must contain all documents which have been put before; the writers need the instances lock
+        if (!this.solrInstancesLock.isHeldByCurrentThread()) flush();
         getDefaultConnector().commit(softCommit);
         if (this.writeWebgraph) getWebgraphConnector().commit(softCommit);
     }
@@ -372,24 +515,15 @@ public final class Fulltext {
         String id = (String) doc.getFieldValue(CollectionSchema.id.getSolrFieldName());
         String url = (String) doc.getFieldValue(CollectionSchema.sku.getSolrFieldName());
         assert url != null && url.length() < 30000;
-        ConcurrentLog.info("Fulltext", "indexing: " + id + " " + url);
-        try {
-            connector.add(doc);
-        } catch (final SolrException e) {
-            throw new IOException(e.getMessage(), e);
-        }
-        if (MemoryControl.shortStatus()) clearCaches();
+        if (ConcurrentLog.isFine("Fulltext")) ConcurrentLog.fine("Fulltext", "indexing: " + id + " " + url);
+        this.loadDates.put(doc);
+        this.collectionWriter.put(doc);
     }
 
     public void putEdges(final Collection<SolrInputDocument> edges) throws IOException {
         if (!this.useWebgraph()) return;
         if (edges == null || edges.size() == 0) return;
-        try {
-            this.getWebgraphConnector().add(edges);
-        } catch (final SolrException e) {
-            throw new IOException(e.getMessage(), e);
-        }
-        if (MemoryControl.shortStatus()) clearCaches();
+        this.webgraphWriter.putAll(edges);
     }
 
     /**
@@ -463,8 +597,9 @@ public final class Fulltext {
         deleteDomainWithConstraint(this.getDefaultConnector(), CollectionSchema.host_id_s.getSolrFieldName(), hosthashes, CollectionSchema.failreason_s.getSolrFieldName() + AbstractSolrConnector.CATCHALL_DTERM);
     }
     
-    private static void deleteDomainWithConstraint(SolrConnector connector, String fieldname, final Set<String> hosthashes, String constraintQuery) {
+    private void deleteDomainWithConstraint(SolrConnector connector, String fieldname, final Set<String> hosthashes, String constraintQuery) {
         if (hosthashes == null || hosthashes.size() == 0) return;
+        flush();
         int subsetscount = 1 + (hosthashes.size() / 255); // if the list is too large, we get a "too many boolean clauses" exception
         int c = 0;
         @SuppressWarnings("unchecked")
@@ -479,7 +614,9 @@ public final class Fulltext {
                     //query.append(CollectionSchema.host_id_s.getSolrFieldName()).append(":\"").append(hosthash).append(":\"");
                     query.append("({!cache=false raw f=").append(fieldname).append('}').append(hosthash).append(")");
                 }
-                if (constraintQuery == null) connector.deleteByQuery(query.toString()); else connector.deleteByQuery("(" + query.toString() + ") AND " + constraintQuery);
+                final String q = constraintQuery == null ? query.toString() : "(" + query.toString() + ") AND " + constraintQuery;
+                if (connector == this.getDefaultConnector()) removeLoadDates(q);
+                connector.deleteByQuery(q);
             } catch (final IOException e) {
             }
         }
@@ -490,7 +627,7 @@ public final class Fulltext {
         final String collection1Query = (loaddate ? CollectionSchema.load_date_dt : CollectionSchema.last_modified).getSolrFieldName() + ":[* TO " + ISO8601Formatter.FORMATTER.format(deleteageDate) + "]";
         final String webgraphQuery = (loaddate ? WebgraphSchema.load_date_dt : WebgraphSchema.last_modified).getSolrFieldName() + ":[* TO " + ISO8601Formatter.FORMATTER.format(deleteageDate) + "]";
         try {
-            this.getDefaultConnector().deleteByQuery(collection1Query);
+            deleteByQuery(collection1Query);
             if (this.getWebgraphConnector() != null) this.getWebgraphConnector().deleteByQuery(webgraphQuery);
         } catch (final IOException e) {
         }
@@ -532,7 +669,9 @@ public final class Fulltext {
      */
     public void remove(final Collection<String> deleteIDs) {
         if (deleteIDs == null || deleteIDs.size() == 0) return;
+        flush();
         try {
+            for (String id : deleteIDs) this.loadDates.remove(id);
             this.getDefaultConnector().deleteByIds(deleteIDs);
             if (this.writeWebgraph) { // Webgraph.id is combination of sourceHash+targetHash+hexCounter, to be successful use source_id_s and/or target_id_s
                 for (String id : deleteIDs) {
@@ -553,8 +692,10 @@ public final class Fulltext {
      */
     public boolean remove(final byte[] urlHash) {
         if (urlHash == null) return false;
+        flush();
         try {
             String id = ASCII.String(urlHash);
+            this.loadDates.remove(id);
             this.getDefaultConnector().deleteById(id);
             if (this.writeWebgraph) { // Webgraph.id is combination of sourceHash+targetHash+hexCounter, to be successful use source_id_s and/or target_id_s
             	/* Add quotes around the url hash to prevent Solr logging a ParseException stack trace when the hash start with a '-' character */
@@ -581,6 +722,7 @@ public final class Fulltext {
      */
     public long getLoadTime(final String urlHash) throws IOException {
         if (urlHash == null) return -1l;
+        if (this.loadDates.getLoadDay(ASCII.getBytes(urlHash)) == -1) return -1l; // the exact date is only in solr, but we know it does not exist
         SolrConnector.LoadTimeURL md = this.getDefaultConnector().getLoadTimeURL(urlHash);
         if (md == null) return -1l;
         return md.date;
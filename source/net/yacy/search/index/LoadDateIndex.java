@@ -0,0 +1,252 @@
+/**
+ *  LoadDateIndex
+ *  part of YaCy
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.search.index;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrInputDocument;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.federate.solr.connector.AbstractSolrConnector;
+import net.yacy.cora.federate.solr.connector.SolrConnector;
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.index.RowHandleMap;
+import net.yacy.kelondro.util.MemoryControl;
+import net.yacy.search.schema.CollectionSchema;
+
+/**
+ * An in-memory index of the url hashes of all documents in the local fulltext index together with the
+ * day of their load date. It answers the question whether an url is known (and since when) without a
+ * search in the Solr index, which is the most frequent question of the crawl stacker.
+ *
+ * The index is filled from the Solr index with a concurrent thread after the local index is connected and
+ * it is updated with every document which is stored or removed through the Fulltext. Until the index is
+ * complete, or if the index was invalidated by a deletion which cannot be traced to single documents,
+ * the index is not ready and all questions must be asked to Solr.
+ */
+public final class LoadDateIndex {
+
+    /** the value of getLoadDay if the index is not ready; the Solr index must be asked instead */
+    public static final long UNKNOWN = -2;
+    /** the length of one day in milliseconds; load dates are stored with this granularity */
+    public static final long DAY = 24L * 60L * 60L * 1000L;
+
+    private static final int DAYBYTES = 4; // 4 bytes are enough for more than 10 million years
+    private static final int ROWBYTES = Word.commonHashLength + DAYBYTES;
+
+    private final RowHandleMap map;
+    private final Set<String> removedDuringLoad; // ids which had been removed while the index is loaded
+    private final AtomicInteger generation; // incremented with each new start of a loading process
+    private volatile boolean ready, loading;
+
+    public LoadDateIndex() {
+        this.map = new RowHandleMap(Word.commonHashLength, Base64Order.enhancedCoder, DAYBYTES, 1000, "LoadDateIndex");
+        this.removedDuringLoad = ConcurrentHashMap.newKeySet();
+        this.generation = new AtomicInteger(0);
+        this.ready = false;
+        this.loading = false;
+    }
+
+    /**
+     * @return true if the index contains all documents of the local index
+     */
+    public boolean isReady() {
+        return this.ready;
+    }
+
+    public int size() {
+        return this.map.size();
+    }
+
+    /**
+     * start a new concurrent loading of the index from the given connector. The index is not ready until the
+     * load is finished. A running load is abandoned.
+     * @param connector the connector of the local collection index
+     */
+    public void bootstrap(final SolrConnector connector) {
+        final int gen = startLoad();
+        final long size = connector.getSize();
+        if (!MemoryControl.request(size * ROWBYTES * 2, false)) {
+            ConcurrentLog.warn("LoadDateIndex", "not enough memory for an index of " + size + " documents; the index is not used");
+            this.loading = false;
+            return;
+        }
+        final Thread loader = new Thread("LoadDateIndex.bootstrap") {
+            @Override
+            public void run() {
+                final long start = System.currentTimeMillis();
+                final BlockingQueue<SolrDocument> docs = connector.concurrentDocumentsByQuery(
+                        AbstractSolrConnector.CATCHALL_QUERY, null, 0, Integer.MAX_VALUE, Long.MAX_VALUE, 1000, 1, false,
+                        CollectionSchema.id.getSolrFieldName(), CollectionSchema.load_date_dt.getSolrFieldName());
+                if (load(docs, gen)) ConcurrentLog.info("LoadDateIndex", "loaded " + LoadDateIndex.this.map.size() + " url hashes in " + (System.currentTimeMillis() - start) + " milliseconds");
+            }
+        };
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * set the index to not ready until the next bootstrap; a running load is abandoned.
+     */
+    public synchronized void invalidate() {
+        startLoad();
+        this.loading = false;
+    }
+
+    /**
+     * clear the index and set it to loading; documents must be given to load with the returned generation
+     * @return the generation of the new load process
+     */
+    synchronized int startLoad() {
+        this.ready = false;
+        this.loading = true;
+        this.map.clear();
+        this.removedDuringLoad.clear();
+        return this.generation.incrementAndGet();
+    }
+
+    /**
+     * read all documents from the queue into the index and set the index to ready
+     * @param docs a queue of documents with id and load date, terminated with the poison document
+     * @param gen the generation of the load process
+     * @return true if the load was completed; false if it was abandoned
+     */
+    boolean load(final BlockingQueue<SolrDocument> docs, final int gen) {
+        SolrDocument doc;
+        try {
+            while ((doc = docs.take()) != AbstractSolrConnector.POISON_DOCUMENT) {
+                // an abandoned load must still consume the queue, otherwise the producer would block forever
+                if (gen != this.generation.get()) continue;
+                final String id = (String) doc.getFieldValue(CollectionSchema.id.getSolrFieldName());
+                final Date date = (Date) doc.getFieldValue(CollectionSchema.load_date_dt.getSolrFieldName());
+                if (id == null || date == null) continue;
+                synchronized (this) {
+                    if (gen != this.generation.get() || this.removedDuringLoad.contains(id)) continue;
+                    final byte[] key = ASCII.getBytes(id);
+                    final long day = day(date.getTime());
+                    // a document which was stored during the load may be newer than the one from the index
+                    if (this.map.get(key) < day) putDay(key, day);
+                }
+            }
+        } catch (final InterruptedException e) {
+            return false;
+        }
+        synchronized (this) {
+            if (gen != this.generation.get()) return false;
+            this.ready = true;
+            this.loading = false;
+            this.removedDuringLoad.clear();
+        }
+        return true;
+    }
+
+    /**
+     * register a document which is stored in the local index
+     * @param doc the document, must contain the id and the load date
+     */
+    public void put(final SolrInputDocument doc) {
+        final String id = (String) doc.getFieldValue(CollectionSchema.id.getSolrFieldName());
+        final Object date = doc.getFieldValue(CollectionSchema.load_date_dt.getSolrFieldName());
+        if (id == null) return;
+        if (date instanceof Date) {
+            put(id, ((Date) date).getTime());
+        } else {
+            // we do not know the date of the document; the index would give a wrong answer
+            remove(id);
+        }
+    }
+
+    /**
+     * register the load date of a document which is stored in the local index
+     * @param id the url hash of the document
+     * @param loadtime the load date in milliseconds since epoch
+     */
+    public synchronized void put(final String id, final long loadtime) {
+        if (!this.loading && !this.ready) return;
+        this.removedDuringLoad.remove(id);
+        putDay(ASCII.getBytes(id), day(loadtime));
+    }
+
+    private boolean putDay(final byte[] key, final long day) {
+        try {
+            this.map.put(key, day);
+            return true;
+        } catch (final SpaceExceededException e) {
+            ConcurrentLog.warn("LoadDateIndex", "not enough memory to extend the index; the index is not used: " + e.getMessage());
+            invalidate();
+            return false;
+        }
+    }
+
+    /**
+     * remove a document from the index
+     * @param id the url hash of the document
+     */
+    public synchronized void remove(final String id) {
+        if (!this.loading && !this.ready) return;
+        if (this.loading) this.removedDuringLoad.add(id);
+        this.map.remove(ASCII.getBytes(id));
+    }
+
+    /**
+     * get the day of the load date of a document
+     * @param urlhash the url hash of the document
+     * @return the load date, rounded down to the start of the day in milliseconds since epoch; -1 if the url is not in
+     * the local index or UNKNOWN if the index is not ready and the Solr index must be asked
+     */
+    public long getLoadDay(final byte[] urlhash) {
+        if (!this.ready) return UNKNOWN;
+        final long day = this.map.get(urlhash);
+        return day < 0 ? -1 : day * DAY;
+    }
+
+    /**
+     * get the days of the load dates of many documents at once.
+     * @param urlhashes the url hashes of the documents
+     * @return an array with the result of getLoadDay for each url hash
+     */
+    public long[] getLoadDays(final List<byte[]> urlhashes) {
+        final long[] days = new long[urlhashes.size()];
+        final boolean r = this.ready;
+        for (int i = 0; i < days.length; i++) {
+            if (r) {
+                final long day = this.map.get(urlhashes.get(i));
+                days[i] = day < 0 ? -1 : day * DAY;
+            } else {
+                days[i] = UNKNOWN;
+            }
+        }
+        return days;
+    }
+
+    private static long day(final long time) {
+        return Math.max(0, time / DAY);
+    }
+
+}
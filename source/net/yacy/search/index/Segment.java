@@ -85,6 +85,7 @@ import net.yacy.kelondro.util.Bitfield;
 import net.yacy.kelondro.util.ISO639;
 import net.yacy.kelondro.util.MemoryControl;
 import net.yacy.repository.LoaderDispatcher;
+import net.yacy.search.query.QueryResultCache;
 import net.yacy.search.query.SearchEvent;
 import net.yacy.search.schema.CollectionConfiguration;
 import net.yacy.search.schema.CollectionSchema;
@@ -112,6 +113,7 @@ public class Segment {
     public static final String termIndexName = "text.index";
     public static final String citationIndexName = "citation.index";
     public static final String firstseenIndexName = "firstseen.index";
+    public static final String queryResultCacheName = "queryresults.heap";
 
     // the reference factory
     public static final ReferenceFactory<WordReference> wordReferenceFactory = new WordReferenceFactory();
@@ -125,6 +127,7 @@ public class Segment {
     protected       IndexCell<CitationReference>   urlCitationIndex;
     protected       IndexTable                     firstSeenIndex;
     protected       IODispatcher                   merger = null; // shared iodispatcher for kelondro indexes
+    protected       QueryResultCache               queryResultCache;
 
     /**
      * create a new Segment
@@ -142,6 +145,7 @@ public class Segment {
         this.fulltext = new Fulltext(segmentPath, archivePath, collectionConfiguration, webgraphConfiguration);
         this.termIndex = null;
         this.urlCitationIndex = null;
+        this.queryResultCache = null;
         this.firstSeenIndex = new IndexTable(new File(segmentPath, firstseenIndexName), 12, 8, false, false);
     }
     
@@ -205,6 +209,33 @@ public class Segment {
         this.urlCitationIndex = null;
     }
 
+    public boolean connectedQueryResultCache() {
+        return this.queryResultCache != null;
+    }
+
+    /**
+     * open the persistent cache of local search results
+     * @param maxsize the maximum number of cached results
+     * @throws IOException
+     */
+    public void connectQueryResultCache(final int maxsize) throws IOException {
+        if (this.queryResultCache != null) return;
+        this.queryResultCache = new QueryResultCache(new File(this.segmentPath, queryResultCacheName), maxsize);
+    }
+
+    public void disconnectQueryResultCache() {
+        if (this.queryResultCache == null) return;
+        this.queryResultCache.close();
+        this.queryResultCache = null;
+    }
+
+    /**
+     * @return the persistent cache of local search results or null if the cache is not connected
+     */
+    public QueryResultCache queryResultCache() {
+        return this.queryResultCache;
+    }
+
     public int citationCount() {
         return this.urlCitationIndex == null ? 0 : this.urlCitationIndex.sizesMax();
     }
@@ -221,6 +252,13 @@ public class Segment {
         return this.termIndex;
     }
 
+    /**
+     * @return the dispatcher for dumps and merges of the RWI BLOB files or null if no RWI index is connected
+     */
+    public IODispatcher merger() {
+        return this.merger;
+    }
+
     public IndexCell<CitationReference> urlCitation() {
         return this.urlCitationIndex;
     }
@@ -483,6 +521,7 @@ public class Segment {
         if (this.fulltext != null) this.fulltext.close();
         if (this.urlCitationIndex != null) this.urlCitationIndex.close();
         if (this.firstSeenIndex != null) this.firstSeenIndex.close();
+        if (this.queryResultCache != null) this.queryResultCache.close();
         if (this.merger != null) {
             this.merger.terminate();
             this.merger = null;
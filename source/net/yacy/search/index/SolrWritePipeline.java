@@ -0,0 +1,320 @@
+/**
+ *  SolrWritePipeline
+ *  part of YaCy
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.search.index;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.solr.common.SolrInputDocument;
+
+import net.yacy.cora.util.ConcurrentLog;
+
+/**
+ * An asynchronous writer of documents to one Solr core. Documents are put into a bounded queue and
+ * a writer thread sends them to the target in batches: a batch is sent when it has reached the batch
+ * size or when its first document has waited for the maximum delay. A producer is only blocked if
+ * the queue is full.
+ *
+ * Every document which was put before flush() was called is written before flush() returns, therefore
+ * a commit or a deletion must flush the pipeline first; otherwise a queued document could appear after
+ * the commit or survive the deletion. The documents are numbered in the order of the queue, so flush()
+ * waits only for the documents which were queued before and not for those which are put meanwhile.
+ */
+public final class SolrWritePipeline {
+
+    /**
+     * the receiver of the document batches
+     */
+    public interface Target {
+        /**
+         * write a batch of documents
+         * @param docs the documents
+         * @throws IOException if the batch could not be written
+         */
+        public void add(Collection<SolrInputDocument> docs) throws IOException;
+    }
+
+    /**
+     * the receiver of documents which could not be written
+     */
+    public interface FailureHandler {
+        /**
+         * called by the writer thread for each document which could not be written
+         * @param doc the document
+         * @param e the cause
+         */
+        public void failed(SolrInputDocument doc, Throwable e);
+    }
+
+    private final String name;
+    private final Target target;
+    private final BlockingQueue<SolrInputDocument> queue;
+    private final int batchSize;
+    private final long maxDelay;
+    private final AtomicInteger pending; // documents which have been put and are not yet written
+    private final Object putLock; // keeps the numbering of the documents in the order of the queue
+    private final AtomicLong queued; // the number of documents which have been queued
+    private final AtomicLong done; // the number of queued documents which have been written or have failed
+    private final Object flushLock;
+    private final Thread writer;
+    private volatile int flushing; // number of threads waiting in flush()
+    private volatile boolean running;
+    private volatile FailureHandler failureHandler;
+    private final AtomicLong written, failed, batches, writeTime;
+
+    /**
+     * create a pipeline and start its writer thread
+     * @param name the name of the pipeline, used for the thread and the log
+     * @param target the receiver of the batches
+     * @param capacity the maximum number of queued documents
+     * @param batchSize the maximum number of documents in one batch
+     * @param maxDelay the maximum time in milliseconds a document waits for a batch to be filled
+     */
+    public SolrWritePipeline(final String name, final Target target, final int capacity, final int batchSize, final long maxDelay) {
+        this.name = name;
+        this.target = target;
+        this.queue = new ArrayBlockingQueue<SolrInputDocument>(capacity);
+        this.batchSize = batchSize;
+        this.maxDelay = maxDelay;
+        this.pending = new AtomicInteger(0);
+        this.putLock = new Object();
+        this.queued = new AtomicLong(0);
+        this.done = new AtomicLong(0);
+        this.flushLock = new Object();
+        this.flushing = 0;
+        this.running = true;
+        this.written = new AtomicLong(0);
+        this.failed = new AtomicLong(0);
+        this.failureHandler = null;
+        this.batches = new AtomicLong(0);
+        this.writeTime = new AtomicLong(0);
+        this.writer = new Thread("SolrWritePipeline." + name) {
+            @Override
+            public void run() {
+                SolrWritePipeline.this.write();
+            }
+        };
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * set the receiver of documents which could not be written; the writing of a pipeline cannot report
+     * a failure to the producer of the document
+     * @param failureHandler the handler
+     */
+    public void setFailureHandler(final FailureHandler failureHandler) {
+        this.failureHandler = failureHandler;
+    }
+
+    /**
+     * put a document into the pipeline; if the pipeline is closed, the document is written at once
+     * @param doc the document
+     * @throws IOException if the pipeline is closed and the document could not be written or if the thread was interrupted
+     */
+    public void put(final SolrInputDocument doc) throws IOException {
+        if (!this.running) {
+            this.target.add(Collections.singletonList(doc));
+            return;
+        }
+        this.pending.incrementAndGet();
+        synchronized (this.putLock) {
+            try {
+                this.queue.put(doc);
+            } catch (final InterruptedException e) {
+                decrementPending(1);
+                throw new InterruptedIOException("interrupted while waiting for the " + this.name + " write queue");
+            }
+            this.queued.incrementAndGet();
+        }
+        // the writer may have terminated after the running flag was read
+        if (!this.writer.isAlive()) writeRemaining();
+    }
+
+    /**
+     * put a number of documents into the pipeline
+     * @param docs the documents
+     * @throws IOException if the pipeline is closed and the documents could not be written or if the thread was interrupted
+     */
+    public void putAll(final Collection<SolrInputDocument> docs) throws IOException {
+        if (!this.running) {
+            this.target.add(docs);
+            return;
+        }
+        for (final SolrInputDocument doc: docs) put(doc);
+    }
+
+    /**
+     * wait until all documents which have been put before are written
+     */
+    public void flush() {
+        if (Thread.currentThread() == this.writer) return;
+        final long ticket = this.queued.get();
+        if (this.done.get() >= ticket) return;
+        synchronized (this.flushLock) {
+            this.flushing++;
+            try {
+                while (this.done.get() < ticket && this.writer.isAlive()) this.flushLock.wait(100);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                this.flushing--;
+            }
+        }
+        if (!this.writer.isAlive()) writeRemaining();
+    }
+
+    /**
+     * write all queued documents and stop the writer thread. Documents which are put after the
+     * pipeline is closed are written synchronously.
+     */
+    public void close() {
+        this.running = false;
+        try {
+            this.writer.join(60000);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (this.writer.isAlive()) ConcurrentLog.warn("SolrWritePipeline", this.name + ": " + this.pending.get() + " documents were not written at close");
+    }
+
+    /**
+     * @return the number of documents which have been put and are not yet written
+     */
+    public int size() {
+        return this.pending.get();
+    }
+
+    /**
+     * @return the number of written documents
+     */
+    public long written() {
+        return this.written.get();
+    }
+
+    /**
+     * @return the number of documents which could not be written
+     */
+    public long failed() {
+        return this.failed.get();
+    }
+
+    /**
+     * @return the number of written batches
+     */
+    public long batches() {
+        return this.batches.get();
+    }
+
+    /**
+     * @return the average time in milliseconds to write one batch
+     */
+    public long averageBatchTime() {
+        final long b = this.batches.get();
+        return b == 0 ? 0 : this.writeTime.get() / b;
+    }
+
+    private void finished(final int count) {
+        this.done.addAndGet(count);
+        decrementPending(count);
+    }
+
+    private void decrementPending(final int count) {
+        if (this.pending.addAndGet(-count) == 0 || this.flushing > 0) {
+            synchronized (this.flushLock) {
+                this.flushLock.notifyAll();
+            }
+        }
+    }
+
+    private void write() {
+        final List<SolrInputDocument> batch = new ArrayList<SolrInputDocument>(this.batchSize);
+        while (this.running || this.pending.get() > 0) {
+            try {
+                final SolrInputDocument first = this.queue.poll(1000, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                // fill the batch until it is full, it has waited long enough or somebody waits for it
+                final long deadline = System.currentTimeMillis() + this.maxDelay;
+                while (batch.size() < this.batchSize && this.running && this.flushing == 0) {
+                    this.queue.drainTo(batch, this.batchSize - batch.size());
+                    final long wait = deadline - System.currentTimeMillis();
+                    if (batch.size() >= this.batchSize || wait <= 0) break;
+                    final SolrInputDocument doc = this.queue.poll(Math.min(wait, 50), TimeUnit.MILLISECONDS);
+                    if (doc != null) batch.add(doc);
+                }
+            } catch (final InterruptedException e) {
+                // the thread is stopped only with the running flag; the queue must be emptied anyway
+            }
+            if (batch.isEmpty()) continue;
+            writeBatch(batch);
+            final int count = batch.size();
+            batch.clear();
+            finished(count);
+        }
+    }
+
+    private synchronized void writeRemaining() {
+        final List<SolrInputDocument> batch = new ArrayList<SolrInputDocument>();
+        this.queue.drainTo(batch);
+        if (batch.isEmpty()) return;
+        writeBatch(batch);
+        finished(batch.size());
+    }
+
+    private void writeBatch(final List<SolrInputDocument> batch) {
+        final long start = System.currentTimeMillis();
+        try {
+            this.target.add(batch);
+            this.written.addAndGet(batch.size());
+        } catch (final Throwable e) {
+            ConcurrentLog.warn("SolrWritePipeline", this.name + ": failed to write a batch of " + batch.size() + " documents, writing them one by one: " + e.getMessage());
+            // a single broken document must not discard the whole batch
+            for (final SolrInputDocument doc: batch) {
+                try {
+                    this.target.add(Collections.singletonList(doc));
+                    this.written.incrementAndGet();
+                } catch (final Throwable ee) {
+                    this.failed.incrementAndGet();
+                    ConcurrentLog.warn("SolrWritePipeline", this.name + ": failed to write document " + doc.getFieldValue("id") + ": " + ee.getMessage());
+                    final FailureHandler handler = this.failureHandler;
+                    if (handler != null) try {
+                        handler.failed(doc, ee);
+                    } catch (final Throwable eee) {
+                        ConcurrentLog.logException(eee);
+                    }
+                }
+            }
+        }
+        final long time = System.currentTimeMillis() - start;
+        this.batches.incrementAndGet();
+        this.writeTime.addAndGet(time);
+        ConcurrentLog.info("SolrWritePipeline", this.name + ": wrote " + batch.size() + " documents in " + time + " milliseconds, " + this.queue.size() + " queued");
+    }
+}
@@ -0,0 +1,377 @@
+/**
+ *  QueryResultCache
+ *  part of YaCy
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.search.query;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.params.SolrParams;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.cora.federate.solr.connector.SolrConnector;
+import net.yacy.cora.order.CloneableIterator;
+import net.yacy.cora.order.Digest;
+import net.yacy.cora.order.NaturalOrder;
+import net.yacy.cora.sorting.ClusteredScoreMap;
+import net.yacy.cora.sorting.ReversibleScoreMap;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.blob.Heap;
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.search.schema.CollectionSchema;
+
+/**
+ * A persistent cache of local Solr search results, below the SearchEventCache which holds only the live search events.
+ * An entry is identified by the Solr query which a search event sends to the local index; that query is computed from
+ * the query goal, the modifiers, the navigators, the content domain, the language and the result page of the QueryParams.
+ * An entry stores the ranked url hashes with their scores, the number of found documents, the facets and the snippets.
+ * Every entry carries the generation of the index which answered the query and is only valid as long as the index has
+ * the same generation. When a new search event finds a valid entry, the documents are loaded by their ids, which is much
+ * cheaper than a ranked search with facets and highlighting.
+ * The number of entries is bounded; the least recently used entries are removed first.
+ */
+public class QueryResultCache {
+
+    private final static ConcurrentLog log = new ConcurrentLog("QueryResultCache");
+
+    private static final int FORMAT = 1;
+
+    private final Heap heap;
+    private final int maxsize;
+    private final LinkedHashMap<String, Boolean> keys; // all keys of the heap in order of their last access
+    private long hit = 0, miss = 0, stale = 0;
+
+    /**
+     * open or create a query result cache
+     * @param file the heap file
+     * @param maxsize the maximum number of entries
+     * @throws IOException
+     */
+    public QueryResultCache(final File file, final int maxsize) throws IOException {
+        this.heap = new Heap(file, Word.commonHashLength, NaturalOrder.naturalOrder, 1024 * 64);
+        this.maxsize = maxsize;
+        this.keys = new LinkedHashMap<String, Boolean>(16, 0.75f, true);
+        final CloneableIterator<byte[]> i = this.heap.keys(true, false);
+        while (i.hasNext()) this.keys.put(ASCII.String(i.next()), Boolean.TRUE);
+        i.close();
+        shrink();
+    }
+
+    /**
+     * compute the key of a Solr query
+     * @param query the query with all parameters
+     * @return the key of the query in the cache
+     */
+    public static byte[] key(final SolrParams query) {
+        return Word.commonHashOrder.encodeSubstring(Digest.encodeMD5Raw(query.toString()), Word.commonHashLength);
+    }
+
+    public synchronized int size() {
+        return this.keys.size();
+    }
+
+    public synchronized long hits() {
+        return this.hit;
+    }
+
+    public synchronized long misses() {
+        return this.miss;
+    }
+
+    /**
+     * @return the number of entries which had been found but were computed with another index generation
+     */
+    public synchronized long stales() {
+        return this.stale;
+    }
+
+    /**
+     * get an entry
+     * @param key the key of the query
+     * @param generation the current generation of the index, negative if the generation is unknown
+     * @return the entry or null if there is no entry which was computed with the given generation
+     */
+    public Entry get(final byte[] key, final long generation) {
+        if (generation < 0) return null;
+        final byte[] b;
+        synchronized (this) {
+            if (this.keys.get(ASCII.String(key)) == null) {
+                this.miss++;
+                return null;
+            }
+            try {
+                b = this.heap.get(key);
+            } catch (final IOException | SpaceExceededException e) {
+                log.warn("cannot read entry: " + e.getMessage());
+                return null;
+            }
+        }
+        Entry entry = null;
+        if (b != null) try {
+            entry = Entry.read(b);
+        } catch (final IOException e) {
+            log.warn("damaged entry: " + e.getMessage());
+        }
+        synchronized (this) {
+            if (entry != null && entry.generation == generation) {
+                this.hit++;
+                return entry;
+            }
+            if (entry == null) this.miss++; else this.stale++;
+            remove(key);
+            return null;
+        }
+    }
+
+    /**
+     * put the result of a query to the cache
+     * @param key the key of the query
+     * @param generation the generation of the index which answered the query
+     * @param docs the documents of the result with their scores, in ranking order
+     * @param facets the facets of the result
+     * @param snippets the snippets of the result
+     */
+    public void put(final byte[] key, final long generation, final SolrDocumentList docs,
+            final Map<String, ReversibleScoreMap<String>> facets, final Map<String, LinkedHashSet<String>> snippets) {
+        if (generation < 0) return;
+        final byte[] b;
+        try {
+            b = new Entry(generation, docs, facets, snippets).write();
+        } catch (final IOException e) {
+            return; // i.e. a snippet too long for the cache
+        }
+        synchronized (this) {
+            try {
+                this.heap.insert(key, b);
+                this.keys.put(ASCII.String(key), Boolean.TRUE);
+            } catch (final IOException e) {
+                log.warn("cannot write entry: " + e.getMessage());
+            }
+            shrink();
+        }
+    }
+
+    private void remove(final byte[] key) {
+        this.keys.remove(ASCII.String(key));
+        try {
+            this.heap.delete(key);
+        } catch (final IOException e) {
+            log.warn("cannot delete entry: " + e.getMessage());
+        }
+    }
+
+    /**
+     * remove the least recently used entries until the cache has no more than maxsize entries
+     */
+    private void shrink() {
+        final Iterator<String> i = this.keys.keySet().iterator();
+        while (this.keys.size() > this.maxsize && i.hasNext()) {
+            final byte[] key = ASCII.getBytes(i.next());
+            i.remove();
+            try {
+                this.heap.delete(key);
+            } catch (final IOException e) {
+                log.warn("cannot delete entry: " + e.getMessage());
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        this.keys.clear();
+        try {
+            this.heap.clear();
+        } catch (final IOException e) {
+            log.warn("cannot clear cache: " + e.getMessage());
+        }
+    }
+
+    public synchronized void close() {
+        this.heap.close(true);
+    }
+
+    /**
+     * the cached result of one query
+     */
+    public static class Entry {
+
+        private final long generation;
+        private final long numFound;
+        private final String[] ids;
+        private final float[] scores;
+        private final Map<String, ReversibleScoreMap<String>> facets;
+        private final Map<String, LinkedHashSet<String>> snippets;
+
+        private Entry(final long generation, final SolrDocumentList docs,
+                final Map<String, ReversibleScoreMap<String>> facets, final Map<String, LinkedHashSet<String>> snippets) {
+            this.generation = generation;
+            this.numFound = docs.getNumFound();
+            this.ids = new String[docs.size()];
+            this.scores = new float[docs.size()];
+            for (int i = 0; i < docs.size(); i++) {
+                final SolrDocument doc = docs.get(i);
+                this.ids[i] = (String) doc.getFieldValue(CollectionSchema.id.getSolrFieldName());
+                final Object score = doc.getFieldValue("score");
+                this.scores[i] = score instanceof Float ? ((Float) score).floatValue() : Float.NaN;
+            }
+            this.facets = facets;
+            this.snippets = snippets;
+        }
+
+        private Entry(final long generation, final long numFound, final String[] ids, final float[] scores,
+                final Map<String, ReversibleScoreMap<String>> facets, final Map<String, LinkedHashSet<String>> snippets) {
+            this.generation = generation;
+            this.numFound = numFound;
+            this.ids = ids;
+            this.scores = scores;
+            this.facets = facets;
+            this.snippets = snippets;
+        }
+
+        public Map<String, ReversibleScoreMap<String>> facets() {
+            return this.facets;
+        }
+
+        public Map<String, LinkedHashSet<String>> snippets() {
+            return this.snippets;
+        }
+
+        /**
+         * load the documents of the cached result
+         * @param connector the connector of the index which computed the result
+         * @param query the query which computed the result; the same fields are loaded
+         * @return the documents in the order of the cached result, with the cached scores and number of found documents
+         * @throws IOException
+         */
+        public SolrDocumentList documents(final SolrConnector connector, final SolrParams query) throws IOException {
+            final SolrDocumentList result = new SolrDocumentList();
+            result.setNumFound(this.numFound);
+            result.setStart(query.getInt(CommonParams.START, 0));
+            if (this.ids.length == 0) return result;
+            final StringBuilder q = new StringBuilder(this.ids.length * 16 + 8);
+            q.append(CollectionSchema.id.getSolrFieldName()).append(":(");
+            for (int i = 0; i < this.ids.length; i++) {
+                if (i > 0) q.append(" OR ");
+                q.append('"').append(this.ids[i]).append('"');
+            }
+            q.append(')');
+            final ModifiableSolrParams params = new ModifiableSolrParams();
+            params.set(CommonParams.Q, q.toString());
+            params.set(CommonParams.START, 0);
+            params.set(CommonParams.ROWS, this.ids.length);
+            final String fl = query.get(CommonParams.FL);
+            if (fl != null) params.set(CommonParams.FL, fl);
+            final Map<String, SolrDocument> docs = new HashMap<String, SolrDocument>();
+            for (final SolrDocument doc: connector.getDocumentListByParams(params)) {
+                docs.put((String) doc.getFieldValue(CollectionSchema.id.getSolrFieldName()), doc);
+            }
+            for (int i = 0; i < this.ids.length; i++) {
+                final SolrDocument doc = docs.get(this.ids[i]);
+                if (doc == null) continue;
+                if (Float.isNaN(this.scores[i])) doc.removeFields("score"); else doc.setField("score", this.scores[i]);
+                result.add(doc);
+            }
+            return result;
+        }
+
+        private byte[] write() throws IOException {
+            final ByteArrayOutputStream b = new ByteArrayOutputStream(256 + this.ids.length * 32);
+            final DataOutputStream out = new DataOutputStream(b);
+            out.writeInt(FORMAT);
+            out.writeLong(this.generation);
+            out.writeLong(this.numFound);
+            out.writeInt(this.ids.length);
+            for (int i = 0; i < this.ids.length; i++) {
+                out.writeUTF(this.ids[i]);
+                out.writeFloat(this.scores[i]);
+            }
+            out.writeInt(this.facets.size());
+            for (final Map.Entry<String, ReversibleScoreMap<String>> facet: this.facets.entrySet()) {
+                out.writeUTF(facet.getKey());
+                final ReversibleScoreMap<String> counts = facet.getValue();
+                out.writeInt(counts.size());
+                final Iterator<String> i = counts.keys(false);
+                while (i.hasNext()) {
+                    final String name = i.next();
+                    out.writeUTF(name);
+                    out.writeInt(counts.get(name));
+                }
+            }
+            out.writeInt(this.snippets.size());
+            for (final Map.Entry<String, LinkedHashSet<String>> snippet: this.snippets.entrySet()) {
+                out.writeUTF(snippet.getKey());
+                out.writeInt(snippet.getValue().size());
+                for (final String s: snippet.getValue()) out.writeUTF(s);
+            }
+            out.close();
+            return b.toByteArray();
+        }
+
+        private static Entry read(final byte[] b) throws IOException {
+            final DataInputStream in = new DataInputStream(new ByteArrayInputStream(b));
+            if (in.readInt() != FORMAT) throw new IOException("unknown format");
+            final long generation = in.readLong();
+            final long numFound = in.readLong();
+            final int n = in.readInt();
+            final String[] ids = new String[n];
+            final float[] scores = new float[n];
+            for (int i = 0; i < n; i++) {
+                ids[i] = in.readUTF();
+                scores[i] = in.readFloat();
+            }
+            int size = in.readInt();
+            final Map<String, ReversibleScoreMap<String>> facets = new HashMap<String, ReversibleScoreMap<String>>(size);
+            for (int f = 0; f < size; f++) {
+                final String field = in.readUTF();
+                final int c = in.readInt();
+                final ReversibleScoreMap<String> counts = new ClusteredScoreMap<String>(UTF8.insensitiveUTF8Comparator);
+                for (int i = 0; i < c; i++) {
+                    final String name = in.readUTF();
+                    counts.set(name, in.readInt());
+                }
+                facets.put(field, counts);
+            }
+            size = in.readInt();
+            final Map<String, LinkedHashSet<String>> snippets = new HashMap<String, LinkedHashSet<String>>(size);
+            for (int s = 0; s < size; s++) {
+                final String id = in.readUTF();
+                final int c = in.readInt();
+                final LinkedHashSet<String> texts = new LinkedHashSet<String>();
+                for (int i = 0; i < c; i++) texts.add(in.readUTF());
+                snippets.put(id, texts);
+            }
+            return new Entry(generation, numFound, ids, scores, facets, snippets);
+        }
+    }
+
+}
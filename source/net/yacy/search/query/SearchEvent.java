@@ -41,10 +41,8 @@ import java.util.Set;
 import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeMap;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Semaphore;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
@@ -675,7 +673,7 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
         long timer = System.currentTimeMillis();
 
         // normalize entries
-        final BlockingQueue<WordReferenceVars> decodedEntries = this.order.normalizeWith(index, maxtime, local);
+        final List<WordReferenceVars> decodedEntries = this.order.normalizeWith(index, maxtime, local);
         int is = index.size();
         EventTracker.update(EventTracker.EClass.SEARCH, new ProfilingGraph.EventSearch(
             this.query.id(true),
@@ -692,32 +690,22 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
         long timeout = maxtime == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + maxtime;
         int successcounter = 0;
         try {
-            WordReferenceVars iEntry;
-            long remaining;
             String acceptableAlternativeSitehash = null;
             if (this.query.modifier.sitehost != null && this.query.modifier.sitehost.length() > 0) try {
                 acceptableAlternativeSitehash = DigestURL.hosthash(this.query.modifier.sitehost.startsWith("www.") ? this.query.modifier.sitehost.substring(4) : "www." + this.query.modifier.sitehost, 80);
             } catch (MalformedURLException e1) {}
-            pollloop: while ( true ) {
-                remaining = timeout - System.currentTimeMillis();
-                if (remaining <= 0) {
-                    ConcurrentLog.warn("SearchEvent", "terminated 'add' loop before poll time-out = " + remaining + ", decodedEntries.size = " + decodedEntries.size());
-                    break;
-                }
-                iEntry = decodedEntries.poll(remaining, TimeUnit.MILLISECONDS);
-                if (iEntry == null) {
-                    ConcurrentLog.warn("SearchEvent", "terminated 'add' loop after poll time-out = " + remaining + ", decodedEntries.size = " + decodedEntries.size());
-                    break pollloop;
-                }
-                if (iEntry == WordReferenceVars.poison) {
-                    break pollloop;
+            int p = 0;
+            entryloop: for (final WordReferenceVars iEntry: decodedEntries) {
+                if ((p++ & 0xff) == 0 && System.currentTimeMillis() > timeout) {
+                    ConcurrentLog.warn("SearchEvent", "terminated 'add' loop after time-out, remaining decodedEntries = " + (decodedEntries.size() - p + 1));
+                    break entryloop;
                 }
                 assert (iEntry.urlhash().length == index.row().primaryKeyLength);
 
                 // doublecheck for urls
                 if (this.urlhashes.has(iEntry.urlhash())) {
                     if (log.isFine()) log.fine("dropped RWI: doublecheck");
-                    continue pollloop;
+                    continue entryloop;
                 }
                 
                 // increase flag counts
@@ -729,7 +717,7 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
                 // check constraints
                 if (!this.testFlags(flags)) {
                     if (log.isFine()) log.fine("dropped RWI: flag test failed");
-                    continue pollloop;
+                    continue entryloop;
                 }
 
                 // check document domain
@@ -752,7 +740,7 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
                 		if (log.isFine()) {
                 			log.fine("dropped RWI: contentdom fail");
                 		}
-                		continue pollloop;
+                		continue entryloop;
                 	}
                 }
                 
@@ -762,7 +750,7 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
                 	if (log.isFine()) {
                 		log.fine("dropped RWI: language constraint = " + this.query.modifier.language);
                 	}
-                	continue pollloop;
+                	continue entryloop;
                 }
                 
                 // count domZones
@@ -773,13 +761,13 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
                 if ( this.query.modifier.sitehash == null ) {
                     if (this.query.siteexcludes != null && this.query.siteexcludes.contains(hosthash)) {
                         if (log.isFine()) log.fine("dropped RWI: siteexcludes");
-                        continue pollloop;
+                        continue entryloop;
                     }
                 } else {
                     // filter out all domains that do not match with the site constraint
                     if (!hosthash.equals(this.query.modifier.sitehash) && (acceptableAlternativeSitehash == null || !hosthash.equals(acceptableAlternativeSitehash))) {
                         if (log.isFine()) log.fine("dropped RWI: modifier.sitehash");
-                        continue pollloop;
+                        continue entryloop;
                     }
                 }
 
@@ -802,7 +790,6 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
             }
             if (System.currentTimeMillis() >= timeout) ConcurrentLog.warn("SearchEvent", "rwi normalization ended with timeout = " + maxtime);
 
-        } catch (final InterruptedException e ) {
         } catch (final SpaceExceededException e ) {
         }
 
@@ -26,13 +26,14 @@
 
 package net.yacy.search.ranking;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
 
 import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.document.id.DigestURL;
@@ -46,12 +47,26 @@ import net.yacy.kelondro.data.word.WordReferenceRow;
 import net.yacy.kelondro.data.word.WordReferenceVars;
 import net.yacy.kelondro.rwi.ReferenceContainer;
 import net.yacy.kelondro.util.Bitfield;
+import net.yacy.search.index.Segment;
 
 
 public class ReferenceOrder {
 
     private static int cores = Runtime.getRuntime().availableProcessors();
 
+    /** containers up to this size are normalized in the calling thread, larger containers are split into chunks of this size */
+    private static final int CHUNKSIZE = 256;
+
+    /** shared pool for all searches; a search event does not start own threads to decode and normalize its references */
+    private static final ForkJoinPool normalizePool = new ForkJoinPool(cores, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+        @Override
+        public ForkJoinWorkerThread newThread(final ForkJoinPool pool) {
+            final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("ReferenceOrder.normalizePool-" + thread.getPoolIndex());
+            return thread;
+        }
+    }, null, false);
+
     private       int maxdomcount;
     private       WordReferenceVars min, max;
     private final ConcurrentScoreMap<String> doms; // collected for "authority" heuristic
@@ -67,146 +82,111 @@ public class ReferenceOrder {
         this.language = language;
     }
 
-    public BlockingQueue<WordReferenceVars> normalizeWith(final ReferenceContainer<WordReference> container, long maxtime, final boolean local) {
-        final LinkedBlockingQueue<WordReferenceVars> out = new LinkedBlockingQueue<WordReferenceVars>();
-        int threads = cores;
-        if (container.size() < 100) threads = 2;
-        final Thread distributor = new NormalizeDistributor(container, out, threads, maxtime, local);
-        distributor.start();
-
-        // return the resulting queue while the processing queues are still working
-        return out;
+    /**
+     * decode all entries of a reference container and collect the minimum and maximum of the ranking criteria
+     * and the domain counts for the authority heuristic. Large containers are processed in chunks by a pool
+     * which is shared by all search events. When this method returns, the normalization values include all
+     * returned entries, so cardinal() can be computed for them right away.
+     * @param container the references of a local or remote search
+     * @param maxtime the maximum time to spend; entries which could not be decoded in time are omitted
+     * @param local true if the references are from the local index
+     * @return the decoded entries
+     */
+    public List<WordReferenceVars> normalizeWith(final ReferenceContainer<WordReference> container, final long maxtime, final boolean local) {
+        final int size = container.size();
+        if (size == 0) return new ArrayList<WordReferenceVars>(0);
+        final long timeout = maxtime == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + maxtime;
+        final WordReferenceVars[] decoded = new WordReferenceVars[size];
+        final NormalizeTask task = new NormalizeTask(container, decoded, 0, size, timeout, local);
+        // small containers are transformed without concurrency to omit the hand-over to the pool
+        final Normalization n = size <= CHUNKSIZE ? task.compute() : normalizePool.invoke(task);
+        synchronized (this) {
+            if (n.min != null) {
+                if (this.min == null) this.min = n.min; else this.min.min(n.min);
+                if (this.max == null) this.max = n.max; else this.max.max(n.max);
+            }
+            for (final Map.Entry<String, Integer> entry: n.doms.entrySet()) {
+                this.doms.inc(entry.getKey(), entry.getValue().intValue());
+            }
+            if (!this.doms.isEmpty()) this.maxdomcount = this.doms.getMaxScore();
+        }
+        if (n.count < size) ConcurrentLog.warn("ReferenceOrder", "normalization of " + size + " references ended with timeout = " + maxtime + ", decoded " + n.count);
+        final List<WordReferenceVars> result = new ArrayList<WordReferenceVars>(n.count);
+        for (final WordReferenceVars entry: decoded) if (entry != null) result.add(entry);
+        return result;
     }
 
-    private final class NormalizeDistributor extends Thread {
+    /**
+     * the result of the normalization of a part of a reference container
+     */
+    private static final class Normalization {
+        private WordReferenceVars min = null, max = null;
+        private final Map<String, Integer> doms = new HashMap<String, Integer>();
+        private int count = 0;
 
-        ReferenceContainer<WordReference> container;
-        LinkedBlockingQueue<WordReferenceVars> out;
-        private final int threads;
-        private final long maxtime;
-        private final boolean local;
-        
-        public NormalizeDistributor(final ReferenceContainer<WordReference> container, final LinkedBlockingQueue<WordReferenceVars> out, final int threads, final long maxtime, final boolean local) {
-        	super("ReferenceOrder.NormalizeDistributor");
-            this.container = container;
-            this.out = out;
-            this.threads = threads;
-            this.maxtime = maxtime;
-            this.local = local;
+        private void add(final WordReferenceVars entry) {
+            if (this.min == null) this.min = entry.clone(); else this.min.min(entry);
+            if (this.max == null) this.max = entry.clone(); else this.max.max(entry);
+            final String dom = entry.hosthash();
+            final Integer c = this.doms.get(dom);
+            this.doms.put(dom, c == null ? LargeNumberCache.valueOf(1) : LargeNumberCache.valueOf(c.intValue() + 1));
+            this.count++;
         }
 
-        @Override
-        public void run() {
-            // transform the reference container into a stream of parsed entries
-            final BlockingQueue<WordReferenceVars> vars = WordReferenceVars.transform(this.container, this.maxtime, this.local);
-
-            // start the transformation threads
-            final Semaphore termination = new Semaphore(this.threads);
-            final NormalizeWorker[] worker = new NormalizeWorker[this.threads];
-            for (int i = 0; i < this.threads; i++) {
-                worker[i] = new NormalizeWorker(this.out, termination, this.maxtime);
-                worker[i].start();
+        private void merge(final Normalization other) {
+            if (other.min != null) {
+                if (this.min == null) this.min = other.min; else this.min.min(other.min);
+                if (this.max == null) this.max = other.max; else this.max.max(other.max);
             }
-
-            // fill the queue
-            WordReferenceVars iEntry;
-            int p = 0;
-            long timeout = this.maxtime == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + this.maxtime;
-            try {
-                while ((iEntry = vars.take()) != WordReferenceVars.poison) {
-                    worker[p % this.threads].add(iEntry);
-                    p++;
-                    if (System.currentTimeMillis() > timeout) {
-                        ConcurrentLog.warn("NormalizeDistributor", "adding of decoded rows to workers ended with timeout = " + this.maxtime);
-                        break;
-                    }
-                }
-            } catch (final InterruptedException e) {
+            for (final Map.Entry<String, Integer> entry: other.doms.entrySet()) {
+                final Integer c = this.doms.get(entry.getKey());
+                this.doms.put(entry.getKey(), c == null ? entry.getValue() : LargeNumberCache.valueOf(c.intValue() + entry.getValue().intValue()));
             }
-
-            // insert poison to stop the queues
-            for (int i = 0; i < this.threads; i++) worker[i].add(WordReferenceVars.poison);
-
-            // wait for termination but not too long to make it possible that this
-            // is called from outside with a join to get some normalization results
-            // before going on
-            for (int i = 0; i < this.threads; i++) try {worker[i].join(100);} catch (final InterruptedException e) {}
+            this.count += other.count;
         }
     }
 
     /**
-     * normalize ranking: find minimum and maximum of separate ranking criteria
+     * decode the entries [from, to) of a container into the decoded array and normalize them;
+     * ranges larger than the chunk size are split and processed in parallel
      */
-    private class NormalizeWorker extends Thread {
+    private static final class NormalizeTask extends RecursiveTask<Normalization> {
 
-        private final BlockingQueue<WordReferenceVars> out;
-        private final Semaphore termination;
-        private final BlockingQueue<WordReferenceVars> decodedEntries;
-        private final long maxtime;
+        private static final long serialVersionUID = 3407312434568311307L;
 
-        public NormalizeWorker(final BlockingQueue<WordReferenceVars> out, final Semaphore termination, long maxtime) {
-        	super("ReferenceOrder.NormalizeWorker");
-            this.out = out;
-            this.termination = termination;
-            this.decodedEntries = new LinkedBlockingQueue<WordReferenceVars>();
-            this.maxtime = maxtime;
-        }
+        private final ReferenceContainer<WordReference> container;
+        private final WordReferenceVars[] decoded;
+        private final int from, to;
+        private final long timeout;
+        private final boolean local;
 
-        public void add(final WordReferenceVars entry) {
-            try {
-                this.decodedEntries.put(entry);
-            } catch (final InterruptedException e) {
-            }
+        private NormalizeTask(final ReferenceContainer<WordReference> container, final WordReferenceVars[] decoded, final int from, final int to, final long timeout, final boolean local) {
+            this.container = container;
+            this.decoded = decoded;
+            this.from = from;
+            this.to = to;
+            this.timeout = timeout;
+            this.local = local;
         }
 
         @Override
-        public void run() {
-            try {
-                WordReferenceVars iEntry;
-                final Map<String, Integer> doms0 = new HashMap<String, Integer>();
-                String dom;
-                Integer count;
-                final Integer int1 = 1;
-                long timeout = this.maxtime == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + this.maxtime;
-                while ((iEntry = this.decodedEntries.take()) != WordReferenceVars.poison) {
-                    // find min/max
-                    if (ReferenceOrder.this.min == null) ReferenceOrder.this.min = iEntry.clone(); else ReferenceOrder.this.min.min(iEntry);
-                    if (ReferenceOrder.this.max == null) ReferenceOrder.this.max = iEntry.clone(); else ReferenceOrder.this.max.max(iEntry);
-                    this.out.put(iEntry); // must be after the min/max check to prevent that min/max is null in cardinal()
-                    // update domcount
-                    dom = iEntry.hosthash();
-                    count = doms0.get(dom);
-                    if (count == null) {
-                        doms0.put(dom, int1);
-                    } else {
-                        doms0.put(dom, LargeNumberCache.valueOf(count.intValue() + 1));
-                    }
-
-                    if (System.currentTimeMillis() > timeout) {
-                        ConcurrentLog.warn("NormalizeWorker", "normlization of decoded rows ended with timeout = " + this.maxtime);
-                        break;
-                    }
-                }
-
-                // update domain score
-                Map.Entry<String, Integer> entry;
-                final Iterator<Map.Entry<String, Integer>> di = doms0.entrySet().iterator();
-                while (di.hasNext()) {
-                    entry = di.next();
-                    ReferenceOrder.this.doms.inc(entry.getKey(), (entry.getValue()).intValue());
-                }
-                if (!ReferenceOrder.this.doms.isEmpty()) ReferenceOrder.this.maxdomcount = ReferenceOrder.this.doms.getMaxScore();
-            } catch (final InterruptedException e) {
-                ConcurrentLog.logException(e);
-            } catch (final Exception e) {
-                ConcurrentLog.logException(e);
-            } finally {
-                // insert poison to signal the termination to next queue
-                try {
-                    this.termination.acquire();
-                    if (this.termination.availablePermits() == 0) this.out.put(WordReferenceVars.poison);
-                } catch (final InterruptedException e) {}
+        protected Normalization compute() {
+            if (this.to - this.from > CHUNKSIZE) {
+                final int mid = (this.from + this.to) >>> 1;
+                final NormalizeTask right = new NormalizeTask(this.container, this.decoded, mid, this.to, this.timeout, this.local);
+                right.fork();
+                final Normalization n = new NormalizeTask(this.container, this.decoded, this.from, mid, this.timeout, this.local).compute();
+                n.merge(right.join());
+                return n;
+            }
+            final Normalization n = new Normalization();
+            for (int p = this.from; p < this.to; p++) {
+                if ((p & 0x3f) == 0 && System.currentTimeMillis() > this.timeout) break;
+                final WordReferenceVars entry = new WordReferenceVars(Segment.wordReferenceFactory.produceSlow(this.container.get(p, false)), this.local);
+                this.decoded[p] = entry;
+                n.add(entry);
             }
+            return n;
         }
     }
 
@@ -45,7 +45,12 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
@@ -105,6 +110,7 @@ import net.yacy.kelondro.util.MemoryControl;
 import net.yacy.search.index.Segment;
 import net.yacy.search.index.Segment.ReferenceReport;
 import net.yacy.search.index.Segment.ReferenceReportCache;
+import net.yacy.search.index.SolrWritePipeline;
 import net.yacy.search.query.QueryParams;
 
 
@@ -1239,9 +1245,26 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
      * @return the number of post processed documents
      */
     public int postprocessing(final Segment segment, final ReferenceReportCache rrCache, final String harvestkey, final boolean byPartialUpdate) {
+        return postprocessing(segment, rrCache, harvestkey, byPartialUpdate, false);
+    }
+
+    /**
+     * Performs post-processing steps for all entries that have a process tag assigned.
+     * The citation rank is computed only for hosts which have documents with a citation process tag,
+     * because only the link graph of these hosts has changed since the last postprocessing.
+     * @param segment Solr segment. Must not be null.
+     * @param rrCache reference report cache for the segment.
+     * @param harvestkey key from a harvest process, used to mark documents needing post-processing
+     * @param byPartialUpdate when true, perform partial updates on documents
+     * @param incremental when true, the citation rank iteration of a host starts with the stored ranking values and
+     *        all documents of that host with a changed ranking are updated, not only the documents with a process tag
+     * @return the number of post processed documents
+     */
+    public int postprocessing(final Segment segment, final ReferenceReportCache rrCache, final String harvestkey, final boolean byPartialUpdate, final boolean incremental) {
         if (!this.contains(CollectionSchema.process_sxt)) return 0;
         if (!segment.connectedCitation() && !segment.fulltext().useWebgraph()) return 0;
         final SolrConnector collectionConnector = segment.fulltext().getDefaultConnector();
+        segment.fulltext().flush(); // the documents which are queued for writing must be found, too
         collectionConnector.commit(false); // make sure that we have latest information that can be found
         if (segment.fulltext().useWebgraph()) segment.fulltext().getWebgraphConnector().commit(false);
         final CollectionConfiguration collection = segment.fulltext().getDefaultConfiguration();
@@ -1270,22 +1293,29 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
                       (collection.contains(CollectionSchema.cr_host_count_i) &&
                        collection.contains(CollectionSchema.cr_host_chance_d) &&
                        collection.contains(CollectionSchema.cr_host_norm_i)));
+        final boolean collectionCR = collection.contains(CollectionSchema.cr_host_count_i) &&
+                collection.contains(CollectionSchema.cr_host_chance_d) &&
+                collection.contains(CollectionSchema.cr_host_norm_i);
         // create the ranking map
         final Map<String, CRV> rankings;
         if(shallComputeCR) {
-            // collect hosts from index which shall take part in citation computation
+            // collect hosts from index which shall take part in citation computation;
+            // in incremental mode with citation fields in the collection, only hosts with documents tagged for citation have a changed link graph
             postprocessingActivity = "collecting host facets for collection";
             ConcurrentLog.info("CollectionConfiguration", postprocessingActivity);
             ReversibleScoreMap<String> collection1hosts;
             try {
-                Map<String, ReversibleScoreMap<String>> hostfacet = collectionConnector.getFacets("{!cache=false}" + collection1query, 10000000, CollectionSchema.host_s.getSolrFieldName());
+                final String hostquery = incremental && collectionCR ?
+                        CollectionSchema.process_sxt.getSolrFieldName() + ":" + ProcessType.CITATION.name() + " AND (" + collection1query + ")" :
+                        collection1query;
+                Map<String, ReversibleScoreMap<String>> hostfacet = collectionConnector.getFacets("{!cache=false}" + hostquery, 10000000, CollectionSchema.host_s.getSolrFieldName());
                 collection1hosts = hostfacet.get(CollectionSchema.host_s.getSolrFieldName());
             } catch (final IOException e2) {
                 ConcurrentLog.logException(e2);
                 collection1hosts = new ClusteredScoreMap<String>(true);
             }
         	
-        	rankings = createRankingMap(segment, rrCache, collectionConnector, collection1hosts);
+        	rankings = createRankingMap(segment, rrCache, collectionConnector, collection1hosts, incremental);
         } else {
         	rankings = new ConcurrentHashMap<String, CRV>();
         }
@@ -1300,6 +1330,17 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
         postprocessDocuments(segment, rrCache, harvestkey, byPartialUpdate, collectionConnector, collection,
 				collection1query, rankings, allcount);
         
+        // the rankings of the recomputed hosts which are left over belong to documents without a process tag
+        if (incremental && byPartialUpdate && collectionCR && rankings.size() > 0) {
+            allcount.addAndGet(updateChangedRankings(new SolrWritePipeline.Target() {
+                @Override
+                public void add(final Collection<SolrInputDocument> sids) throws IOException {
+                    collectionConnector.update(sids);
+                }
+            }, rankings));
+            collectionConnector.commit(true);
+        }
+        
         
         postprocessingCollection1Count = 0;
         postprocessingWebgraphCount = 0;
@@ -1325,7 +1366,7 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
 			final String harvestkey, final boolean byPartialUpdate, final SolrConnector collectionConnector,
 			final CollectionConfiguration collection, final String collection1query, final Map<String, CRV> rankings,
 			final AtomicInteger allcount) {
-		final Map<String, Long> hostExtentCache = new HashMap<String, Long>(); // a mapping from the host id to the number of documents which contain this host-id
+		final Map<String, Long> hostExtentCache = new ConcurrentHashMap<String, Long>(); // a mapping from the host id to the number of documents which contain this host-id
         final Set<String> uniqueURLs = ConcurrentHashMap.newKeySet(); // will be used in a concurrent environment
         final Set<String> localOmitFields = new HashSet<String>();
         localOmitFields.add(CollectionSchema.process_sxt.getSolrFieldName());
@@ -1392,6 +1433,17 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
                         CollectionSchema.inboundlinkscount_i.getSolrFieldName(),
                         CollectionSchema.robots_i.getSolrFieldName()} :
                         this.allFields());
+                // the processed documents are sent back to the index in batches
+                final SolrWritePipeline writer = new SolrWritePipeline("postprocessing", new SolrWritePipeline.Target() {
+                    @Override
+                    public void add(final Collection<SolrInputDocument> sids) throws IOException {
+                        if (byPartialUpdate) {
+                            collectionConnector.update(sids);
+                        } else {
+                            collectionConnector.add(sids);
+                        }
+                    }
+                }, 1000, 100, 1000);
                 final Thread rewriteThread[] = new Thread[concurrency];
                 for (int rewrite_start = 0; rewrite_start < concurrency; rewrite_start++) {
                     rewriteThread[rewrite_start] = new Thread("CollectionConfiguration.postprocessing.rewriteThread-" + rewrite_start) {
@@ -1466,11 +1518,7 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
                                         
                                         // send back to index
                                         //collectionConnector.deleteById(i);
-                                        if (byPartialUpdate) {
-                                            collectionConnector.update(sid);
-                                        } else {
-                                            collectionConnector.add(sid);
-                                        }
+                                        writer.put(sid);
                                         long thiscount = proccount.incrementAndGet(); allcount.incrementAndGet();
                                         if (thiscount % 100 == 0) {
                                             postprocessingActivity = "postprocessed " + thiscount + " from " + count + " collection documents; " +
@@ -1493,10 +1541,12 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
                 }
                 // wait for termination
                 for (int rewrite_start = 0; rewrite_start < concurrency; rewrite_start++) rewriteThread[rewrite_start].join();
+                writer.close();
+                if (writer.failed() > 0) ConcurrentLog.warn("CollectionConfiguration", "cleanup_processing: " + writer.failed() + " documents could not be written");
                 
                 if (failids.size() > 0) {
                     ConcurrentLog.info("CollectionConfiguration", "cleanup_processing: deleting " + failids.size() + " documents which have permanent execution fails");
-                    collectionConnector.deleteByIds(failids);
+                    segment.fulltext().remove(failids);
                 }
                 if (count != countcheck.get()) ConcurrentLog.warn("CollectionConfiguration", "ambiguous collection document count for harvestkey " + harvestkey + ": expected=" + count + ", counted=" + countcheck + "; countquery=" + collection1query); // big gap for harvestkey = null
                 ConcurrentLog.info("CollectionConfiguration", "cleanup_processing: re-calculated " + proccount + " new documents, " +
@@ -1638,94 +1688,179 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
 	}
 
 	/**
-	 * Patches the citation index for links with canonical tags and perform the citation rank computation
+	 * Patches the citation index for links with canonical tags and perform the citation rank computation.
+	 * The hosts are processed in two phases on a work-stealing pool: first the canonical patches of all hosts,
+	 * because a patch may change the references to documents of another host, then the citation rank of all hosts.
+	 * Large hosts are submitted first, small hosts fill the gaps.
 	 * @param segment Solr segment
 	 * @param rrCache reference report cache for the segment
 	 * @param collectionConnector default connector to the Solr segment
 	 * @param collection1hosts hosts from index which shall take part in citation computation
+	 * @param incremental when true, the citation rank iteration starts with the stored ranking values
 	 * @return the ranking map 
 	 */
 	private Map<String, CRV> createRankingMap(final Segment segment, final ReferenceReportCache rrCache,
-			final SolrConnector collectionConnector, ReversibleScoreMap<String> collection1hosts) {
+			final SolrConnector collectionConnector, final ReversibleScoreMap<String> collection1hosts, final boolean incremental) {
 		final Map<String, CRV> rankings = new ConcurrentHashMap<String, CRV>();
+        final int concurrency = Math.max(1, Math.min(collection1hosts.size(), Runtime.getRuntime().availableProcessors()));
+        postprocessingActivity = "collecting cr for " + collection1hosts.size() + " hosts, concurrency = " + concurrency;
+        ConcurrentLog.info("CollectionConfiguration", postprocessingActivity);
+        final Collection<String> hosts = collection1hosts.keyList(false); // largest first
+        final AtomicBoolean shortMemory = new AtomicBoolean(false);
+        final AtomicInteger countcheck = new AtomicInteger(0);
+        final ForkJoinPool pool = new ForkJoinPool(concurrency);
         try {
-            int concurrency = Math.min(collection1hosts.size(), Runtime.getRuntime().availableProcessors());
-            postprocessingActivity = "collecting cr for " + collection1hosts.size() + " hosts, concurrency = " + concurrency;
-            ConcurrentLog.info("CollectionConfiguration", postprocessingActivity);
-            int countcheck = 0;
-            for (String host: collection1hosts.keyList(true)) {
-                // Patch the citation index for links with canonical tags.
-                // This shall fulfill the following requirement:
-                // If a document A links to B and B contains a 'canonical C', then the citation rank computation shall consider that A links to C and B does not link to C.
-                // To do so, we first must collect all canonical links, find all references to them, get the anchor list of the documents and patch the citation reference of these links
-                String patchquery = CollectionSchema.host_s.getSolrFieldName() + ":" + host + " AND " + CollectionSchema.canonical_s.getSolrFieldName() + AbstractSolrConnector.CATCHALL_DTERM;
-                long patchquerycount = collectionConnector.getCountByQuery("{!cache=false}" + patchquery);
-                BlockingQueue<SolrDocument> documents_with_canonical_tag = collectionConnector.concurrentDocumentsByQuery(patchquery, CollectionSchema.url_chars_i.getSolrFieldName() + " asc", 0, 100000000, Long.MAX_VALUE, 20, 1, true,
-                        CollectionSchema.id.getSolrFieldName(), CollectionSchema.sku.getSolrFieldName(), CollectionSchema.canonical_s.getSolrFieldName());
-                SolrDocument doc_B;
-                int patchquerycountcheck = 0;
-                try {
-                    while ((doc_B = documents_with_canonical_tag.take()) != AbstractSolrConnector.POISON_DOCUMENT) {
-                        // find all documents which link to the canonical doc
-                        DigestURL doc_C_url = new DigestURL((String) doc_B.getFieldValue(CollectionSchema.canonical_s.getSolrFieldName()));
-                        byte[] doc_B_id = ASCII.getBytes(((String) doc_B.getFieldValue(CollectionSchema.id.getSolrFieldName())));
-                        // we remove all references to B, because these become references to C
-                        if (segment.connectedCitation()) {
-                            ReferenceContainer<CitationReference> doc_A_ids = segment.urlCitation().remove(doc_B_id);
-                            if (doc_A_ids == null) {
-                                //System.out.println("*** document with canonical but no referrer: " + doc_B.getFieldValue(CollectionSchema.sku.getSolrFieldName()));
-                                continue; // the document has a canonical tag but no referrer?
-                            }
-                            Iterator<CitationReference> doc_A_ids_iterator = doc_A_ids.entries();
-                            // for each of the referrer A of B, set A as a referrer of C
-                            while (doc_A_ids_iterator.hasNext()) {
-                                CitationReference doc_A_citation = doc_A_ids_iterator.next();
-                                segment.urlCitation().add(doc_C_url.hash(), doc_A_citation);
+            final List<Callable<Void>> patches = new ArrayList<Callable<Void>>(hosts.size());
+            for (final String host: hosts) {
+                patches.add(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        if (!shortMemory.get()) patchCanonicals(segment, collectionConnector, host, shortMemory);
+                        return null;
+                    }
+                });
+            }
+            invokeAll(pool, patches);
+            
+            final List<Callable<Void>> computations = new ArrayList<Callable<Void>>(hosts.size());
+            for (final String host: hosts) {
+                computations.add(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        if (shortMemory.get() || collection1hosts.get(host) <= 0) return null;
+                        // select all documents for each host
+                        CRHost crh = new CRHost(segment, rrCache, host, 0.85d, 6, incremental);
+                        int convergence_attempts = 0;
+                        while (convergence_attempts++ < 30) {
+                            if (ConcurrentLog.isFine("CollectionConfiguration")) ConcurrentLog.fine("CollectionConfiguration", "convergence step " + convergence_attempts + " for host " + host + " ...");
+                            if (crh.convergenceStep()) break;
+                            if (MemoryControl.shortStatus()) {
+                                ConcurrentLog.warn("CollectionConfiguration", "terminated convergenceStep during postprocessing because of short memory");
+                                break;
                             }
                         }
-                        patchquerycountcheck++;
+                        ConcurrentLog.info("CollectionConfiguration", "convergence for host " + host + " after " + convergence_attempts + " steps");
+                        // we have now the cr for all documents of a specific host; we store them for later use
+                        Map<String, CRV> crn = crh.normalize();
+                        //crh.log(crn);
+                        rankings.putAll(crn); // accumulate this here for usage in document update later
                         if (MemoryControl.shortStatus()) {
-                            ConcurrentLog.warn("CollectionConfiguration", "terminated canonical collection during postprocessing because of short memory");
-                            break;
+                            ConcurrentLog.warn("CollectionConfiguration", "terminated crn akkumulation during postprocessing because of short memory");
+                            shortMemory.set(true);
                         }
+                        countcheck.incrementAndGet();
+                        return null;
                     }
-                } catch (InterruptedException e) {
-                    ConcurrentLog.logException(e);
-                } catch (SpaceExceededException e) {
-                    ConcurrentLog.logException(e);
+                });
+            }
+            invokeAll(pool, computations);
+        } finally {
+            pool.shutdown();
+        }
+        if (collection1hosts.size() != countcheck.get()) ConcurrentLog.warn("CollectionConfiguration", "ambiguous host count: expected=" + collection1hosts.size() + ", counted=" + countcheck);
+		return rankings;
+	}
+
+	/**
+	 * run tasks on a pool and wait for their termination
+	 * @param pool the pool
+	 * @param tasks the tasks
+	 */
+	private static void invokeAll(final ForkJoinPool pool, final List<Callable<Void>> tasks) {
+        try {
+            for (Future<Void> f: pool.invokeAll(tasks)) {
+                try {
+                    f.get();
+                } catch (final ExecutionException e) {
+                    ConcurrentLog.logException(e.getCause());
                 }
-                if (patchquerycount != patchquerycountcheck) ConcurrentLog.warn("CollectionConfiguration", "ambiguous patchquery count for host " + host + ": expected=" + patchquerycount + ", counted=" + patchquerycountcheck);
-                
-                // do the citation rank computation
-                if (collection1hosts.get(host) <= 0) continue;
-                // select all documents for each host
-                CRHost crh = new CRHost(segment, rrCache, host, 0.85d, 6);
-                int convergence_attempts = 0;
-                while (convergence_attempts++ < 30) {
-                    ConcurrentLog.info("CollectionConfiguration", "convergence step " + convergence_attempts + " for host " + host + " ...");
-                    if (crh.convergenceStep()) break;
-                    if (MemoryControl.shortStatus()) {
-                        ConcurrentLog.warn("CollectionConfiguration", "terminated convergenceStep during postprocessing because of short memory");
-                        break;
-                    }
+            }
+        } catch (final InterruptedException e) {
+            ConcurrentLog.logException(e);
+        }
+	}
+
+	/**
+	 * Patch the citation index for links with canonical tags.
+	 * This shall fulfill the following requirement:
+	 * If a document A links to B and B contains a 'canonical C', then the citation rank computation shall consider that A links to C and B does not link to C.
+	 * To do so, we first must collect all canonical links, find all references to them, get the anchor list of the documents and patch the citation reference of these links
+	 * @param segment Solr segment
+	 * @param collectionConnector default connector to the Solr segment
+	 * @param host the host of the documents with canonical tags
+	 * @param shortMemory set to true if the patch was terminated because of short memory
+	 */
+	private static void patchCanonicals(final Segment segment, final SolrConnector collectionConnector, final String host, final AtomicBoolean shortMemory) {
+        String patchquery = CollectionSchema.host_s.getSolrFieldName() + ":" + host + " AND " + CollectionSchema.canonical_s.getSolrFieldName() + AbstractSolrConnector.CATCHALL_DTERM;
+        BlockingQueue<SolrDocument> documents_with_canonical_tag = collectionConnector.concurrentDocumentsByQuery(patchquery, CollectionSchema.url_chars_i.getSolrFieldName() + " asc", 0, 100000000, Long.MAX_VALUE, 20, 1, true,
+                CollectionSchema.id.getSolrFieldName(), CollectionSchema.sku.getSolrFieldName(), CollectionSchema.canonical_s.getSolrFieldName());
+        SolrDocument doc_B;
+        try {
+            while ((doc_B = documents_with_canonical_tag.take()) != AbstractSolrConnector.POISON_DOCUMENT) {
+                // the queue must be emptied even if we cannot use the documents, otherwise the producer blocks
+                if (shortMemory.get() || !segment.connectedCitation()) continue;
+                // find all documents which link to the canonical doc
+                DigestURL doc_C_url = new DigestURL((String) doc_B.getFieldValue(CollectionSchema.canonical_s.getSolrFieldName()));
+                byte[] doc_B_id = ASCII.getBytes(((String) doc_B.getFieldValue(CollectionSchema.id.getSolrFieldName())));
+                // we remove all references to B, because these become references to C
+                ReferenceContainer<CitationReference> doc_A_ids = segment.urlCitation().remove(doc_B_id);
+                if (doc_A_ids == null) {
+                    //System.out.println("*** document with canonical but no referrer: " + doc_B.getFieldValue(CollectionSchema.sku.getSolrFieldName()));
+                    continue; // the document has a canonical tag but no referrer?
+                }
+                Iterator<CitationReference> doc_A_ids_iterator = doc_A_ids.entries();
+                // for each of the referrer A of B, set A as a referrer of C
+                while (doc_A_ids_iterator.hasNext()) {
+                    CitationReference doc_A_citation = doc_A_ids_iterator.next();
+                    segment.urlCitation().add(doc_C_url.hash(), doc_A_citation);
                 }
-                ConcurrentLog.info("CollectionConfiguration", "convergence for host " + host + " after " + convergence_attempts + " steps");
-                // we have now the cr for all documents of a specific host; we store them for later use
-                Map<String, CRV> crn = crh.normalize();
-                //crh.log(crn);
-                rankings.putAll(crn); // accumulate this here for usage in document update later
                 if (MemoryControl.shortStatus()) {
-                    ConcurrentLog.warn("CollectionConfiguration", "terminated crn akkumulation during postprocessing because of short memory");
-                    break;
+                    ConcurrentLog.warn("CollectionConfiguration", "terminated canonical collection during postprocessing because of short memory");
+                    shortMemory.set(true);
                 }
-                countcheck++;
             }
-            if (collection1hosts.size() != countcheck) ConcurrentLog.warn("CollectionConfiguration", "ambiguous host count: expected=" + collection1hosts.size() + ", counted=" + countcheck);
-        } catch (final IOException e2) {
-            ConcurrentLog.logException(e2);
-            collection1hosts = new ClusteredScoreMap<String>(true);
+        } catch (InterruptedException e) {
+            ConcurrentLog.logException(e);
+        } catch (SpaceExceededException e) {
+            ConcurrentLog.logException(e);
+        } catch (IOException e) {
+            ConcurrentLog.logException(e);
         }
-		return rankings;
+	}
+
+	/**
+	 * Write the citation rankings which are left over after the postprocessing of the tagged documents with batched
+	 * partial updates. These are the documents of recomputed hosts without a process tag; only documents with
+	 * changed ranking values are written.
+	 * @param target the writer of the partial updates to the Solr segment
+	 * @param rankings the remaining rankings; the map is cleared
+	 * @return the number of updated documents
+	 */
+	static int updateChangedRankings(final SolrWritePipeline.Target target, final Map<String, CRV> rankings) {
+        postprocessingActivity = "updating changed citation rankings of " + rankings.size() + " untagged documents";
+        ConcurrentLog.info("CollectionConfiguration", postprocessingActivity);
+        final SolrWritePipeline writer = new SolrWritePipeline("postprocessing.citation", target, 1000, 100, 1000);
+        int count = 0;
+        try {
+            for (Map.Entry<String, CRV> entry: rankings.entrySet()) {
+                CRV crv = entry.getValue();
+                if (!crv.changed) continue;
+                SolrInputDocument sid = new SolrInputDocument();
+                sid.setField(CollectionSchema.id.getSolrFieldName(), entry.getKey());
+                sid.setField(CollectionSchema.cr_host_count_i.getSolrFieldName(), crv.count);
+                sid.setField(CollectionSchema.cr_host_chance_d.getSolrFieldName(), crv.cr);
+                sid.setField(CollectionSchema.cr_host_norm_i.getSolrFieldName(), crv.crn);
+                writer.put(sid);
+                count++;
+            }
+        } catch (final IOException e) {
+            ConcurrentLog.warn("CollectionConfiguration", "terminated update of citation rankings: " + e.getMessage());
+        } finally {
+            writer.close();
+        }
+        ConcurrentLog.info("CollectionConfiguration", "updated the citation ranking of " + count + " untagged documents, " + (rankings.size() - count) + " rankings unchanged");
+        rankings.clear();
+        return count;
 	}
 
 	/**
@@ -1936,9 +2071,10 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
     
     
     
-    private static final class CRV {
+    static final class CRV {
         public double cr;
         public int crn, count;
+        public boolean changed = true; // false if the values are equal to the stored values of the document
         public CRV(final int count, final double cr, final int crn) {this.count = count; this.cr = cr; this.crn = crn;}
         @Override
         public String toString() {
@@ -1946,6 +2082,42 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
         }
     }
     
+    /**
+     * Set the start values of the citation rank iteration of a host. Documents without a stored ranking start with
+     * an equal share of the host; the stored values were computed for a different number of documents, therefore
+     * all start values are scaled to a sum of 1.
+     * @param crt the ranking values of the documents of the host; the first value of each entry is set
+     * @param stored the stored ranking values; null if the iteration does not start with the stored values
+     */
+    static void seedRankings(final Map<String, double[]> crt, final Map<String, CRV> stored) {
+        final double initval = 1.0d / crt.size();
+        double sum = 0.0d;
+        for (Map.Entry<String, double[]> entry: crt.entrySet()) {
+            CRV s = stored == null ? null : stored.get(entry.getKey());
+            double v = s == null || s.cr <= 0.0d ? initval : s.cr;
+            entry.getValue()[0] = v;
+            sum += v;
+        }
+        if (stored != null && sum > 0.0d) {
+            for (Map.Entry<String, double[]> entry: crt.entrySet()) entry.getValue()[0] /= sum;
+        }
+    }
+
+    /**
+     * Mark the computed rankings which differ from the stored values of the documents; only these must be written.
+     * @param rankings the computed rankings
+     * @param stored the stored ranking values
+     * @param converge_eq_factor the factor which defines the digits of two equal chance values
+     */
+    static void markChangedRankings(final Map<String, CRV> rankings, final Map<String, CRV> stored, final int converge_eq_factor) {
+        for (Map.Entry<String, CRV> entry: rankings.entrySet()) {
+            CRV s = stored.get(entry.getKey());
+            CRV c = entry.getValue();
+            c.changed = s == null || s.count != c.count || s.crn != c.crn ||
+                    ((int) (s.cr * converge_eq_factor)) != ((int) (c.cr * converge_eq_factor));
+        }
+    }
+
     /**
      * The CRHost class is a container for all ranking values of a specific host.
      * Objects of that class are needed as an environment for repeated convergenceStep() computations,
@@ -1953,38 +2125,64 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
      * converge to stable values.
      * The class also contains normalization methods to compute simple integer ranking values out of the
      * double relevance values.
+     * In incremental mode the iteration starts with the stored relevance values of the documents, which
+     * are close to the result if only a part of the link graph of the host has changed.
      */
     private static final class CRHost {
         private final Segment segment;
         private final Map<String, double[]> crt;
+        private final Map<String, CRV> stored; // the stored ranking values; null if not incremental
         private final int cr_host_count;
         private final RowHandleMap internal_links_counter;
         private double damping;
         private int converge_eq_factor;
         private ReferenceReportCache rrCache;
-        public CRHost(final Segment segment, final ReferenceReportCache rrCache, final String host, final double damping, final int converge_digits) {
+        public CRHost(final Segment segment, final ReferenceReportCache rrCache, final String host, final double damping, final int converge_digits, final boolean incremental) {
             this.segment = segment;
             this.damping = damping;
             this.rrCache = rrCache;
             this.converge_eq_factor = (int) Math.pow(10.0d, converge_digits);
             SolrConnector connector = segment.fulltext().getDefaultConnector();
             this.crt = new ConcurrentHashMap<String, double[]>();
+            this.stored = incremental ? new HashMap<String, CRV>() : null;
+            final String hostquery = "{!cache=false raw f=" + CollectionSchema.host_s.getSolrFieldName() + "}" + host;
             try {
                 // select all documents for each host
-                BlockingQueue<String> ids = connector.concurrentIDsByQuery("{!cache=false raw f=" + CollectionSchema.host_s.getSolrFieldName() + "}" + host, CollectionSchema.url_chars_i.getSolrFieldName() + " asc", 0, 100000000, 86400000, 200, 1);
-                String id;
-                while ((id = ids.take()) != AbstractSolrConnector.POISON_ID) {
-                    this.crt.put(id, new double[]{0.0d,0.0d}); //{old value, new value}
-                    if (MemoryControl.shortStatus()) {
-                        ConcurrentLog.warn("CollectionConfiguration", "terminated CRHost collection during postprocessing because of short memory");
-                        break;
+                if (incremental) {
+                    BlockingQueue<SolrDocument> docs = connector.concurrentDocumentsByQuery(hostquery, CollectionSchema.url_chars_i.getSolrFieldName() + " asc", 0, 100000000, 86400000, 200, 1, false,
+                            CollectionSchema.id.getSolrFieldName(), CollectionSchema.cr_host_count_i.getSolrFieldName(), CollectionSchema.cr_host_chance_d.getSolrFieldName(), CollectionSchema.cr_host_norm_i.getSolrFieldName());
+                    SolrDocument doc;
+                    boolean terminated = false;
+                    while ((doc = docs.take()) != AbstractSolrConnector.POISON_DOCUMENT) {
+                        if (terminated) continue; // the queue must be emptied, otherwise the producer blocks
+                        String id = (String) doc.getFieldValue(CollectionSchema.id.getSolrFieldName());
+                        this.crt.put(id, new double[]{0.0d,0.0d}); //{old value, new value}
+                        Object count = doc.getFieldValue(CollectionSchema.cr_host_count_i.getSolrFieldName());
+                        Object cr = doc.getFieldValue(CollectionSchema.cr_host_chance_d.getSolrFieldName());
+                        Object crn = doc.getFieldValue(CollectionSchema.cr_host_norm_i.getSolrFieldName());
+                        if (count instanceof Number && cr instanceof Number && crn instanceof Number) {
+                            this.stored.put(id, new CRV(((Number) count).intValue(), ((Number) cr).doubleValue(), ((Number) crn).intValue()));
+                        }
+                        if (MemoryControl.shortStatus()) {
+                            ConcurrentLog.warn("CollectionConfiguration", "terminated CRHost collection during postprocessing because of short memory");
+                            terminated = true;
+                        }
+                    }
+                } else {
+                    BlockingQueue<String> ids = connector.concurrentIDsByQuery(hostquery, CollectionSchema.url_chars_i.getSolrFieldName() + " asc", 0, 100000000, 86400000, 200, 1);
+                    String id;
+                    while ((id = ids.take()) != AbstractSolrConnector.POISON_ID) {
+                        this.crt.put(id, new double[]{0.0d,0.0d}); //{old value, new value}
+                        if (MemoryControl.shortStatus()) {
+                            ConcurrentLog.warn("CollectionConfiguration", "terminated CRHost collection during postprocessing because of short memory");
+                            break;
+                        }
                     }
                 }
             } catch (final InterruptedException e2) {
             }
             this.cr_host_count = this.crt.size();
-            double initval = 1.0d / cr_host_count;
-            for (Map.Entry<String, double[]> entry: this.crt.entrySet()) entry.getValue()[0] = initval;
+            seedRankings(this.crt, this.stored);
             this.internal_links_counter = new RowHandleMap(12, Base64Order.enhancedCoder, 8, 100, "internal_links_counter");
         }
         /**
@@ -2017,6 +2215,8 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
             // finally, increase the crn number in such a way that the maximum is always 10
             int inc = 11 - nextcrn; // nextcrn is +1
             for (Map.Entry<String, CRV> entry: r.entrySet()) entry.getValue().crn += inc;
+            // compare with the stored values; only changed rankings must be written
+            if (this.stored != null) markChangedRankings(r, this.stored, this.converge_eq_factor);
             return r;
         }
         /**
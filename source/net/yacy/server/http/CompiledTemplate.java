@@ -0,0 +1,417 @@
+// CompiledTemplate.java
+// -----------------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.server.http;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.kelondro.util.FileUtils;
+import net.yacy.server.serverObjects;
+
+/**
+ * A template which is parsed once into a tree of nodes and rendered from that tree for each request.
+ * The syntax is the same as for the streaming TemplateEngine.writeTemplate(): static text is kept as
+ * byte arrays which are written unchanged, patterns are looked up in the serverObjects with the same
+ * key prefixes for multi templates and alternatives, and include files are compiled and cached as well.
+ * Compiled template files are cached and compiled again if the file is changed.
+ * The output is the same as the output of the TemplateEngine, with these exceptions for malformed or
+ * unusual templates where the TemplateEngine writes a stray byte:
+ * <ul>
+ * <li>a single '#' at the end of a template or an alternative is written as '#' only</li>
+ * <li>the close tag of a multi template at the end of an alternative is not followed by an additional byte</li>
+ * <li>an alternative which is selected by name is searched within the body of the alternative only,
+ * not in the text after its close tag</li>
+ * </ul>
+ */
+final class CompiledTemplate {
+
+    private static final ConcurrentHashMap<String, CompiledTemplate> cache = new ConcurrentHashMap<String, CompiledTemplate>();
+
+    private static final byte[] PP = "%%".getBytes();
+    private static final byte[] DPDP = "::".getBytes();
+
+    private final String name;
+    private final long lastModified, length;
+    private final Node[] nodes;
+
+    private CompiledTemplate(final String name, final long lastModified, final long length, final byte[] template) {
+        this.name = name;
+        this.lastModified = lastModified;
+        this.length = length;
+        this.nodes = parse(name, template);
+    }
+
+    /**
+     * get a compiled template for a file from the cache; the file is compiled if it is not in the cache or changed
+     * @param file the template file
+     * @param include if true, the file is read as an include file: lines are terminated with CRLF
+     * @return the compiled template
+     * @throws IOException if the file cannot be read
+     */
+    static CompiledTemplate get(final File file, final boolean include) throws IOException {
+        final String key = (include ? "include:" : "") + file.getAbsolutePath();
+        final CompiledTemplate t = cache.get(key);
+        final long lastModified = file.lastModified();
+        final long length = file.length();
+        if (t != null && t.lastModified == lastModified && t.length == length) return t;
+        final CompiledTemplate compiled = new CompiledTemplate(file.getName(), lastModified, length, include ? readInclude(file) : FileUtils.read(file));
+        cache.put(key, compiled);
+        return compiled;
+    }
+
+    static void clearCache() {
+        cache.clear();
+    }
+
+    /**
+     * compile a template which is not cached
+     * @param name the name of the template, used for log messages
+     * @param template the template content
+     */
+    static CompiledTemplate fromBytes(final String name, final byte[] template) {
+        return new CompiledTemplate(name, 0, template.length, template);
+    }
+
+    /**
+     * read an include file the same way as the TemplateEngine reads it: every line is terminated by CRLF
+     */
+    private static byte[] readInclude(final File file) throws IOException {
+        final ByteArrayOutputStream include = new ByteArrayOutputStream((int) file.length() + 256);
+        try (final BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                include.write(UTF8.getBytes(line));
+                include.write(ASCII.getBytes(net.yacy.server.serverCore.CRLF_STRING));
+            }
+        }
+        return include.toByteArray();
+    }
+
+    /**
+     * render the template
+     * @param out the target stream
+     * @param pattern the values of the patterns
+     * @throws IOException if writing to the stream fails
+     */
+    void write(final OutputStream out, final serverObjects pattern) throws IOException {
+        writeNodes(this.name, this.nodes, new Context(out, pattern), "");
+    }
+
+    private static final class Context {
+        private final OutputStream out;
+        private final serverObjects pattern;
+        private final String clientbrowserlang;
+        private Context(final OutputStream out, final serverObjects pattern) {
+            this.out = out;
+            this.pattern = pattern;
+            this.clientbrowserlang = pattern.get("clientlanguage"); // preferred language or null (used for include files)
+        }
+    }
+
+    private static abstract class Node {
+        /**
+         * @return false if rendering of the remaining nodes of this level shall be stopped
+         */
+        abstract boolean write(String name, Context c, String prefix) throws IOException;
+    }
+
+    private static void writeNodes(final String name, final Node[] nodes, final Context c, final String prefix) throws IOException {
+        for (final Node node: nodes) {
+            if (!node.write(name, c, prefix)) break;
+        }
+    }
+
+    /** static text */
+    private static final class Text extends Node {
+        private final byte[] text;
+        private Text(final byte[] text) {
+            this.text = text;
+        }
+        @Override
+        boolean write(final String name, final Context c, final String prefix) throws IOException {
+            c.out.write(this.text);
+            return true;
+        }
+    }
+
+    /** #[key]# */
+    private static final class Normal extends Node {
+        private final String key;
+        private Normal(final String key) {
+            this.key = key;
+        }
+        @Override
+        boolean write(final String name, final Context c, final String prefix) throws IOException {
+            c.out.write(TemplateEngine.replacePattern(prefix + this.key, c.pattern));
+            return true;
+        }
+    }
+
+    /** #{key}#...#{/key}# */
+    private static final class Multi extends Node {
+        private final String key;
+        private final Node[] body;
+        private Multi(final String key, final Node[] body) {
+            this.key = key;
+            this.body = body;
+        }
+        @Override
+        boolean write(final String name, final Context c, final String prefix) throws IOException {
+            final String patternKey = prefix + this.key;
+            final String value = c.pattern.get(patternKey);
+            int num = 0;
+            if (value != null && !value.isEmpty()) {
+                try {
+                    num = Integer.parseInt(value); // Key contains the iteration number as string
+                } catch (final NumberFormatException e) {
+                    ConcurrentLog.logException(e);
+                    num = 0;
+                }
+            }
+            for (int i = 0; i < num; i++) {
+                writeNodes(name, this.body, c, prefix + this.key + "_" + i + "_");
+            }
+            return true;
+        }
+    }
+
+    /** #(key)#...::...#(/key)# */
+    private static final class Alternative extends Node {
+        private final String key;
+        private final Node[][] alternatives;
+        private final byte[] body; // the raw body for alternatives selected by name; null if there is no name
+        private Alternative(final String key, final Node[][] alternatives, final byte[] body) {
+            this.key = key;
+            this.alternatives = alternatives;
+            this.body = body;
+        }
+        @Override
+        boolean write(final String name, final Context c, final String prefix) throws IOException {
+            final String patternKey = prefix + this.key;
+            final String patternId = c.pattern.get(patternKey);
+            // lazy parsing of pattern value; numeric values, "true", "false" and no value allowed
+            int whichPattern = 0;
+            if (patternId != null) {
+                if ("true".equals(patternId)) {
+                    whichPattern = 1;
+                } else if ("false".equals(patternId)) {
+                    whichPattern = 0;
+                } else try {
+                    whichPattern = Integer.parseInt(patternId); //index
+                } catch (final NumberFormatException e) {
+                    return writeByName(name, c, prefix, patternKey, patternId);
+                }
+            }
+            // an index which does not exist selects the last alternative
+            final Node[] selected = this.alternatives[whichPattern >= 0 && whichPattern < this.alternatives.length ? whichPattern : this.alternatives.length - 1];
+            writeNodes(name, selected, c, prefix + this.key + "_");
+            return true;
+        }
+        private boolean writeByName(final String name, final Context c, final String prefix, final String patternKey, final String patternName) throws IOException {
+            final byte[] start = appendBytes(PP, UTF8.getBytes(patternName));
+            final int p = this.body == null ? -1 : indexOf(this.body, start, 0);
+            if (p < 0) {
+                ConcurrentLog.severe("TEMPLATE", "Bad Key-Value pair in #()# construct: key=\"" + patternKey + "\", value=\"" + patternName + "\" in " + name);
+                return false;
+            }
+            int e = indexOf(this.body, DPDP, p + start.length);
+            if (e < 0) e = this.body.length;
+            // alternatives selected by name are rarely used, so they are compiled when they are needed
+            writeNodes(name, parse(name, Arrays.copyOfRange(this.body, p + start.length, e)), c, prefix + this.key + "_");
+            return true;
+        }
+    }
+
+    /** #%file%# or #%[key]%# */
+    private static final class Include extends Node {
+        private final byte[] filename;
+        private Include(final byte[] filename) {
+            this.filename = filename;
+        }
+        @Override
+        boolean write(final String name, final Context c, final String prefix) throws IOException {
+            byte[] file = this.filename;
+            if (file[0] == '[' && file[file.length - 1] == ']') { //simple pattern for filename
+                file = TemplateEngine.replacePattern(prefix + UTF8.String(Arrays.copyOfRange(file, 1, file.length - 1)), c.pattern);
+            }
+            if (file.length == 0 || Arrays.equals(file, TemplateEngine.UNRESOLVED_PATTERN)) return true;
+            final CompiledTemplate include;
+            try {
+                include = get(HTTPDFileHandler.getLocalizedFile(UTF8.String(file), c.clientbrowserlang), true);
+            } catch (final IOException e) {
+                //file not found?
+                ConcurrentLog.severe("FILEHANDLER", "Include Error with file " + UTF8.String(file) + ": " + e.getMessage());
+                return true;
+            }
+            writeNodes(include.name, include.nodes, c, ""); //clear pattern prefix for include
+            return true;
+        }
+    }
+
+    private static Node[] parse(final String name, byte[] b) {
+        // the TemplateEngine stops reading at a zero byte
+        for (int i = 0; i < b.length; i++) if (b[i] == 0) {
+            b = Arrays.copyOf(b, i);
+            break;
+        }
+        final List<Node> nodes = new ArrayList<Node>();
+        final ByteArrayOutputStream text = new ByteArrayOutputStream();
+        final int n = b.length;
+        int p = 0;
+        parse: while (p < n) {
+            final int h = indexOf(b, (byte) '#', p);
+            if (h < 0) {
+                text.write(b, p, n - p);
+                break;
+            }
+            text.write(b, p, h - p);
+            p = h + 1;
+            if (p >= n) {
+                text.write('#');
+                break;
+            }
+            final byte bb = b[p++];
+            if (bb == '{') { // multi
+                final int c = indexOf(b, new byte[]{'}', '#'}, p);
+                if (c < 0) break parse;
+                final byte[] key = Arrays.copyOfRange(b, p, c);
+                p = c + 2;
+                if (p < n && b[p] == '\n') p++; //kill newline
+                final byte[] close = appendBytes(appendBytes(new byte[]{'#', '{', '/'}, key), new byte[]{'}', '#'});
+                final int e = indexOf(b, close, p);
+                if (e < 0) {
+                    ConcurrentLog.severe("TEMPLATE", "No Close Key found for #{" + UTF8.String(key) + "}# in " + name);
+                    break parse;
+                }
+                final byte[] body = Arrays.copyOfRange(b, p, e);
+                p = e + close.length;
+                if (p < n && b[p] == '\n') p++; //kill newline
+                flush(nodes, text);
+                nodes.add(new Multi(UTF8.String(key), parse(name, body)));
+            } else if (bb == '(') { // alternative
+                int c = indexOf(b, new byte[]{')', '#'}, p);
+                if (c < 0) c = n;
+                final byte[] key = Arrays.copyOfRange(b, p, c);
+                p = Math.min(n, c + 2);
+                final int bodyStart = p;
+                // find the alternatives the same way as the TemplateEngine does it; nested alternatives are counted
+                final byte[] close = appendBytes(new byte[]{'/'}, key);
+                final List<Node[]> alternatives = new ArrayList<Node[]>();
+                final ByteArrayOutputStream alt = new ByteArrayOutputStream();
+                int others = 0;
+                int bodyEnd = n;
+                scan: while (true) {
+                    if (p >= n) {
+                        ConcurrentLog.severe("TEMPLATE", "No Close Key found for #(" + UTF8.String(key) + ")# in " + name);
+                        alternatives.add(parse(name, alt.toByteArray()));
+                        break scan;
+                    }
+                    byte ab = b[p++];
+                    if (ab == '#' && p < n && b[p] == '(') {
+                        p++;
+                        int kc = indexOf(b, new byte[]{')', '#'}, p);
+                        final int ke = kc < 0 ? n : kc;
+                        final byte[] k = Arrays.copyOfRange(b, p, ke);
+                        if (Arrays.equals(k, close)) { //reached the end
+                            bodyEnd = p - 2;
+                            p = Math.min(n, ke + 2);
+                            alternatives.add(parse(name, alt.toByteArray()));
+                            break scan;
+                        }
+                        if (others > 0 && k.length > 0 && k[0] == '/') others--; else others++; // close nested or nested
+                        alt.write(b, p - 2, Math.min(n, ke + 2) - (p - 2));
+                        p = Math.min(n, ke + 2);
+                        continue scan;
+                    } else if (ab == ':' && others == 0 && p < n) { //ignore :: in nested Expressions
+                        ab = b[p++];
+                        if (ab == ':') {
+                            alternatives.add(parse(name, alt.toByteArray()));
+                            alt.reset();
+                            continue scan;
+                        }
+                        alt.write(':');
+                    }
+                    alt.write(ab);
+                }
+                flush(nodes, text);
+                final byte[] body = Arrays.copyOfRange(b, bodyStart, Math.max(bodyStart, bodyEnd));
+                nodes.add(new Alternative(UTF8.String(key), alternatives.toArray(new Node[alternatives.size()][]), indexOf(body, PP, 0) >= 0 ? body : null));
+            } else if (bb == '[') { // normal
+                final int c = indexOf(b, new byte[]{']', '#'}, p);
+                if (c < 0) break parse; // inconsistency, simply finalize this
+                flush(nodes, text);
+                nodes.add(new Normal(UTF8.String(Arrays.copyOfRange(b, p, c))));
+                p = c + 2;
+            } else if (bb == '%') { // include
+                final int c = indexOf(b, new byte[]{'%', '#'}, p);
+                if (c < 0) break parse;
+                if (c > p) {
+                    flush(nodes, text);
+                    nodes.add(new Include(Arrays.copyOfRange(b, p, c)));
+                }
+                p = c + 2;
+            } else { // no match, but a single hash
+                text.write('#');
+                text.write(bb);
+            }
+        }
+        flush(nodes, text);
+        return nodes.toArray(new Node[nodes.size()]);
+    }
+
+    private static void flush(final List<Node> nodes, final ByteArrayOutputStream text) {
+        if (text.size() == 0) return;
+        nodes.add(new Text(text.toByteArray()));
+        text.reset();
+    }
+
+    private static int indexOf(final byte[] b, final byte c, final int from) {
+        for (int i = from; i < b.length; i++) if (b[i] == c) return i;
+        return -1;
+    }
+
+    private static int indexOf(final byte[] b, final byte[] pattern, final int from) {
+        final int last = b.length - pattern.length;
+        search: for (int i = from; i <= last; i++) {
+            for (int j = 0; j < pattern.length; j++) if (b[i + j] != pattern[j]) continue search;
+            return i;
+        }
+        return -1;
+    }
+
+    private static byte[] appendBytes(final byte[] a, final byte[] b) {
+        final byte[] r = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, r, a.length, b.length);
+        return r;
+    }
+
+}
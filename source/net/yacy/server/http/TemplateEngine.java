@@ -49,6 +49,7 @@ package net.yacy.server.http;
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -156,7 +157,7 @@ public final class TemplateEngine {
     private final static byte[] hash_brackopen_slash = "#(/".getBytes();
     private final static byte[] brackclose_hash = ")#".getBytes();
 
-    private final static byte[] UNRESOLVED_PATTERN = "-UNRESOLVED_PATTERN-".getBytes();
+    final static byte[] UNRESOLVED_PATTERN = "-UNRESOLVED_PATTERN-".getBytes();
 
     /**
      * transfer until a specified pattern is found; everything but the pattern is transfered so far
@@ -202,6 +203,22 @@ public final class TemplateEngine {
         }
     }
 
+    /**
+     * Writes a template file with replaced templates on a output stream. The file is parsed only once
+     * and kept in a cache as compiled template; it is parsed again if the file has been changed.
+     * @param file the (localized) template file
+     * @param out the target stream
+     * @param pattern the pattern values; if null, the file is copied without any replacement
+     * @throws IOException
+     */
+    public final static void writeTemplate(final File file, final OutputStream out, final serverObjects pattern) throws IOException {
+        if (pattern == null) {
+            FileUtils.copy(file, out);
+        } else {
+            CompiledTemplate.get(file, false).write(out, pattern);
+        }
+    }
+
     /**
      * Reads a input stream, and writes the data with replaced templates on a output stream
      */
@@ -449,7 +466,7 @@ public final class TemplateEngine {
         return sb;
     }
 
-    private final static byte[] replacePattern(final String key, final serverObjects pattern) {
+    final static byte[] replacePattern(final String key, final serverObjects pattern) {
         byte[] replacement;
         Object value;
         if (pattern.containsKey(key)) {
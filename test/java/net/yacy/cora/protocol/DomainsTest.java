@@ -19,8 +19,18 @@
  */
 package net.yacy.cora.protocol;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -86,4 +96,121 @@ public class DomainsTest {
             assertEquals(teststr, expectedHost, host);
         }
     }
+
+    /**
+     * a resolver which counts the lookups and takes some time for each lookup
+     */
+    private static class CountingResolver implements Domains.Resolver {
+        private final AtomicInteger lookups = new AtomicInteger(0);
+
+        @Override
+        public InetAddress resolve(final String host) throws UnknownHostException {
+            this.lookups.incrementAndGet();
+            try {
+                Thread.sleep(200);
+            } catch (final InterruptedException e) {}
+            if (host.startsWith("unknown")) throw new UnknownHostException(host);
+            return InetAddress.getByAddress(host, new byte[]{93, (byte) 184, (byte) 216, 34});
+        }
+    }
+
+    /**
+     * Test of dnsResolve method, of class Domains: concurrent requests for the same host
+     * share one lookup and the result is cached.
+     */
+    @Test
+    public void testDnsResolveCoalescing() throws InterruptedException {
+        final CountingResolver resolver = new CountingResolver();
+        Domains.setResolver(resolver);
+        try {
+            final InetAddress[] results = new InetAddress[8];
+            final List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < results.length; i++) {
+                final int n = i;
+                final Thread t = new Thread() {
+                    @Override
+                    public void run() {
+                        results[n] = Domains.dnsResolve("coalescing.yacy.invalid");
+                    }
+                };
+                threads.add(t);
+                t.start();
+            }
+            for (final Thread t: threads) t.join();
+            for (final InetAddress ip: results) assertEquals("93.184.216.34", ip.getHostAddress());
+            assertEquals(1, resolver.lookups.get());
+            assertNotNull(Domains.dnsResolve("coalescing.yacy.invalid"));
+            assertEquals(1, resolver.lookups.get());
+
+            // unknown hosts are cached as well
+            assertNull(Domains.dnsResolve("unknown.yacy.invalid"));
+            assertNull(Domains.dnsResolve("unknown.yacy.invalid"));
+            assertEquals(2, resolver.lookups.get());
+        } finally {
+            Domains.setResolver(null);
+        }
+    }
+
+    /**
+     * wait until an asynchronous lookup has put the address of a host into the cache
+     * @param host the host
+     * @param timeout the maximum time to wait in milliseconds
+     * @return the cached address
+     */
+    private static InetAddress awaitCached(final String host, final long timeout) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + timeout;
+        while (true) {
+            try {
+                final InetAddress address = Domains.dnsResolveFromCache(host);
+                if (address != null) return address;
+            } catch (final UnknownHostException e) {
+                // not yet in the cache
+            }
+            if (System.currentTimeMillis() > deadline) fail("no address of " + host + " in the cache after " + timeout + " ms");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Test of prefetch method, of class Domains: the address is in the cache without a request.
+     */
+    @Test
+    public void testPrefetch() throws InterruptedException, UnknownHostException {
+        final CountingResolver resolver = new CountingResolver();
+        Domains.setResolver(resolver);
+        try {
+            Domains.prefetch("prefetch.yacy.invalid");
+            assertEquals("93.184.216.34", awaitCached("prefetch.yacy.invalid", 10000).getHostAddress());
+            assertEquals(1, resolver.lookups.get());
+        } finally {
+            Domains.setResolver(null);
+        }
+    }
+
+    /**
+     * Test of saveNameCache and loadNameCache methods, of class Domains.
+     */
+    @Test
+    public void testNameCachePersistence() throws IOException {
+        final CountingResolver resolver = new CountingResolver();
+        Domains.setResolver(resolver);
+        final File file = File.createTempFile("DomainsTest", ".list");
+        try {
+            assertNotNull(Domains.dnsResolve("persistent.yacy.invalid"));
+            Domains.saveNameCache(file);
+            final String saved = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+            assertTrue(saved.contains("persistent.yacy.invalid\t93.184.216.34\t"));
+
+            // an expired entry is used, a new lookup is started in the background
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                out.write(("restored.yacy.invalid\t10.1.2.3\t" + (System.currentTimeMillis() - 1000) + "\nbroken line\n").getBytes(StandardCharsets.UTF_8));
+            }
+            Domains.loadNameCache(file);
+            assertEquals("10.1.2.3", Domains.dnsResolveFromCache("restored.yacy.invalid").getHostAddress());
+            assertEquals("10.1.2.3", Domains.dnsResolve("restored.yacy.invalid").getHostAddress());
+        } finally {
+            Domains.setResolver(null);
+            file.delete();
+        }
+    }
 }
@@ -0,0 +1,107 @@
+package net.yacy.cora.sorting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import net.yacy.cora.sorting.WeakPriorityBlockingQueue.Element;
+import net.yacy.cora.sorting.WeakPriorityBlockingQueue.ReverseElement;
+
+public class WeakPriorityBlockingQueueTest {
+
+    /**
+     * the queue keeps the elements with the highest weight if it exceeds the maxsize
+     */
+    @Test
+    public void testTopK() {
+        final WeakPriorityBlockingQueue<Integer> queue = new WeakPriorityBlockingQueue<Integer>(10, true);
+        for (int i = 0; i < 100; i++) queue.put(new ReverseElement<Integer>(i, (i * 37) % 100));
+        assertEquals(10, queue.sizeQueue());
+        assertEquals(10, queue.sizeAvailable());
+        assertEquals(99, queue.peek().getWeight());
+        assertEquals(90, queue.getLastInQueue().getWeight());
+        for (int i = 0; i < 10; i++) assertEquals(99 - i, queue.element(i).getWeight());
+        assertNull(queue.poll());
+        assertEquals(10, queue.sizeDrained());
+        // drained elements are not put again
+        queue.put(queue.element(0));
+        assertEquals(0, queue.sizeQueue());
+    }
+
+    /**
+     * many producers fill the queue while a consumer takes elements; every permit of the queue belongs to an element
+     */
+    @Test
+    public void testConcurrentProducers() throws InterruptedException {
+        final int producers = 8, count = 10000, maxsize = 100;
+        final WeakPriorityBlockingQueue<Integer> queue = new WeakPriorityBlockingQueue<Integer>(maxsize, true);
+        final List<Thread> threads = new ArrayList<Thread>();
+        for (int p = 0; p < producers; p++) {
+            final int offset = p * count;
+            final Thread t = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < count; i++) queue.put(new ReverseElement<Integer>(offset + i, offset + i));
+                }
+            };
+            threads.add(t);
+            t.start();
+        }
+        final List<Element<Integer>> taken = new ArrayList<Element<Integer>>();
+        Element<Integer> e;
+        while (taken.size() < maxsize / 2 && (e = queue.poll(1000)) != null) taken.add(e);
+        for (final Thread t: threads) t.join();
+        final int size = queue.sizeQueue();
+        assertTrue(size <= maxsize);
+        // every element in the queue can be taken, in the order of its weight
+        long last = Long.MAX_VALUE;
+        int polled = 0;
+        while ((e = queue.poll()) != null) {
+            assertTrue(e.getWeight() < last);
+            last = e.getWeight();
+            taken.add(e);
+            polled++;
+        }
+        assertEquals(size, polled);
+        assertEquals(0, queue.sizeQueue());
+        // the element with the highest weight was never removed
+        long max = -1;
+        for (final Element<Integer> t: taken) max = Math.max(max, t.getWeight());
+        assertEquals(producers * count - 1, max);
+    }
+
+    /**
+     * producers which put the same elements again while a consumer takes them never make an element drained twice
+     */
+    @Test
+    public void testNoDoubleDrain() throws InterruptedException {
+        final int producers = 4, count = 2000;
+        final WeakPriorityBlockingQueue<Integer> queue = new WeakPriorityBlockingQueue<Integer>(-1, true);
+        final List<Thread> threads = new ArrayList<Thread>();
+        for (int p = 0; p < producers; p++) {
+            final Thread t = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < count; i++) queue.put(new ReverseElement<Integer>(i, i));
+                }
+            };
+            threads.add(t);
+            t.start();
+        }
+        final Set<Integer> taken = new HashSet<Integer>();
+        Element<Integer> e;
+        while ((e = queue.poll(200)) != null) assertTrue("drained twice: " + e.getElement(), taken.add(e.getElement()));
+        for (final Thread t: threads) t.join();
+        while ((e = queue.poll()) != null) assertTrue("drained twice: " + e.getElement(), taken.add(e.getElement()));
+        assertEquals(count, taken.size());
+        assertEquals(count, queue.sizeDrained());
+    }
+
+}
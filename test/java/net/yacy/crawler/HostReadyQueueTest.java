@@ -0,0 +1,87 @@
+package net.yacy.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class HostReadyQueueTest {
+
+    /**
+     * hosts are polled in the order of their ready time, and in scheduling order for equal times
+     */
+    @Test
+    public void testOrder() {
+        final HostReadyQueue q = new HostReadyQueue();
+        q.schedule("c", 300);
+        q.schedule("a", 100);
+        q.schedule("b", 200);
+        q.schedule("d", 100);
+        assertEquals(4, q.size());
+        assertEquals("a", q.poll());
+        assertEquals("d", q.poll());
+        assertEquals("b", q.poll());
+        assertEquals("c", q.poll());
+        assertNull(q.poll());
+    }
+
+    /**
+     * moving a host replaces its old position; reschedule does not add hosts which are not queued
+     */
+    @Test
+    public void testReschedule() {
+        final HostReadyQueue q = new HostReadyQueue();
+        q.schedule("a", 100);
+        q.schedule("b", 200);
+        q.schedule("a", 300);
+        assertEquals(2, q.size());
+        assertTrue(q.reschedule("b", 400));
+        assertFalse(q.reschedule("x", 0));
+        assertFalse(q.contains("x"));
+        assertEquals("a", q.poll());
+        assertFalse(q.reschedule("a", 0)); // polled hosts are not queued
+        assertEquals("b", q.poll());
+        assertNull(q.poll());
+        q.schedule("c", 0);
+        q.remove("c");
+        assertNull(q.poll());
+    }
+
+    /**
+     * concurrent pollers never get the same host twice while it is not scheduled again
+     */
+    @Test
+    public void testConcurrentPoll() throws InterruptedException {
+        final HostReadyQueue q = new HostReadyQueue();
+        final int hosts = 10000;
+        for (int i = 0; i < hosts; i++) q.schedule("h" + i, i % 100);
+        final Set<String> polled = Collections.synchronizedSet(new HashSet<String>());
+        final AtomicInteger doubles = new AtomicInteger(0);
+        final Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    String h;
+                    while ((h = q.poll()) != null) {
+                        if (!polled.add(h)) doubles.incrementAndGet();
+                        q.reschedule(h, 0); // must have no effect
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (final Thread t: threads) t.join();
+        assertEquals(0, doubles.get());
+        assertEquals(hosts, polled.size());
+        assertEquals(0, q.size());
+    }
+
+}
@@ -0,0 +1,103 @@
+package net.yacy.crawler.data;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import net.yacy.cora.document.id.DigestURL;
+import net.yacy.cora.protocol.Domains;
+
+public class LatencyTest {
+
+    @BeforeClass
+    public static void setUp() {
+        // the url hashes need the addresses of the hosts; do not ask a dns server
+        Domains.setResolver(new Domains.Resolver() {
+            @Override
+            public InetAddress resolve(final String host) throws UnknownHostException {
+                return InetAddress.getByAddress(host, new byte[]{93, (byte) 184, (byte) 216, 34});
+            }
+        });
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        Domains.setResolver(null);
+    }
+
+    private static Latency.Host host(final DigestURL url) {
+        final Iterator<Map.Entry<String, Latency.Host>> i = Latency.iterator();
+        while (i.hasNext()) {
+            final Map.Entry<String, Latency.Host> entry = i.next();
+            if (entry.getKey().equals(url.hosthash())) return entry.getValue();
+        }
+        return null;
+    }
+
+    /**
+     * errors double the adaptive delay, successful loads decrease it step by step
+     */
+    @Test
+    public void testAdaptiveDelay() throws IOException {
+        final File file = File.createTempFile("LatencyTest", ".stats");
+        file.delete();
+        try {
+            Latency.init(file);
+            final DigestURL url = new DigestURL("http://adaptive.yacy.invalid/");
+            Latency.updateAfterLoad(url, 100);
+            assertEquals(0, host(url).adaptiveDelay());
+            Latency.updateAfterError(url);
+            assertEquals(1000, host(url).adaptiveDelay());
+            Latency.updateAfterError(url);
+            assertEquals(2000, host(url).adaptiveDelay());
+            Latency.updateAfterLoad(url, 100);
+            assertEquals(1900, host(url).adaptiveDelay());
+            // a very slow response is a sign of overload
+            Latency.updateAfterLoad(url, 10000);
+            assertEquals(3800, host(url).adaptiveDelay());
+            assertEquals(2, host(url).errors());
+            assertEquals(3, host(url).count());
+        } finally {
+            Latency.init(null);
+            file.delete();
+        }
+    }
+
+    /**
+     * the statistics of a host are available after a restart
+     */
+    @Test
+    public void testPersistence() throws IOException {
+        final File file = File.createTempFile("LatencyTest", ".stats");
+        file.delete();
+        try {
+            Latency.init(file);
+            final DigestURL url = new DigestURL("http://persistent.yacy.invalid/");
+            Latency.updateAfterLoad(url, 800);
+            Latency.updateAfterError(url);
+            Latency.close();
+
+            Latency.init(file);
+            assertEquals(null, host(url));
+            // the host is loaded when it is needed
+            Latency.updateBeforeLoad(url);
+            final Latency.Host host = host(url);
+            assertEquals("persistent.yacy.invalid", host.host());
+            assertEquals(800, host.average());
+            assertEquals(1, host.errors());
+            assertEquals(1000, host.adaptiveDelay());
+        } finally {
+            Latency.init(null);
+            file.delete();
+        }
+    }
+}
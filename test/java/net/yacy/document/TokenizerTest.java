@@ -2,6 +2,7 @@
 package net.yacy.document;
 
 import java.util.HashSet;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import net.yacy.cora.document.WordCache;
@@ -56,4 +57,17 @@ public class TokenizerTest {
             assertEquals("Tokenizer.RESULT_NUMB_SENTENCES", 5, t.RESULT_NUMB_SENTENCES);
         }
     }
+
+    /**
+     * Test of toLowerCase method, of class Tokenizer.
+     */
+    @Test
+    public void testToLowerCase() {
+        String[] testWords = new String[]{"Word", "STRASSE", "\u00c4\u00d6\u00dc", "\u0130stanbul", "\u039f\u0394\u039f\u03a3", "\ud801\udc00\ud801\udc01", "a1B2"};
+        for (String word : testWords) {
+            StringBuilder sb = new StringBuilder(word);
+            Tokenizer.toLowerCase(sb);
+            assertEquals(word, word.toLowerCase(Locale.ENGLISH), sb.toString());
+        }
+    }
 }
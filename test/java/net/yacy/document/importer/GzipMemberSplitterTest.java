@@ -0,0 +1,119 @@
+package net.yacy.document.importer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+import org.jwat.common.HeaderLine;
+import org.jwat.warc.WarcReader;
+import org.jwat.warc.WarcReaderFactory;
+import org.jwat.warc.WarcRecord;
+
+public class GzipMemberSplitterTest {
+
+    private static final int RECORDS = 200;
+
+    /**
+     * write a warc file with records of random (incompressible) content; the content contains gzip header signatures
+     * @param file the target file
+     * @param members true if every record is a gzip member, false if the file is compressed as one member
+     */
+    private static void writeWarc(final File file, final boolean members) throws IOException {
+        final Random random = new Random(42);
+        try (OutputStream out = new FileOutputStream(file)) {
+            OutputStream gz = members ? null : new GZIPOutputStream(out);
+            for (int i = 0; i < RECORDS; i++) {
+                final byte[] payload = new byte[500 + random.nextInt(3000)];
+                random.nextBytes(payload);
+                // a gzip header inside the compressed data
+                payload[100] = 0x1f; payload[101] = (byte) 0x8b; payload[102] = 8; payload[103] = 0;
+                final ByteArrayOutputStream record = new ByteArrayOutputStream();
+                record.write(("WARC/1.0\r\nWARC-Type: resource\r\nWARC-Target-URI: http://example.org/" + i
+                        + "\r\nWARC-Record-ID: <urn:uuid:" + i + ">\r\nContent-Length: " + payload.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+                record.write(payload);
+                record.write("\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+                if (members) {
+                    gz = new GZIPOutputStream(out);
+                    record.writeTo(gz);
+                    ((GZIPOutputStream) gz).finish();
+                } else {
+                    record.writeTo(gz);
+                }
+            }
+            if (!members) gz.close();
+        }
+    }
+
+    /**
+     * read all segments of a file and count how often each record is read
+     */
+    private static int[] readSegments(final File file, final long segmentSize, final AtomicLong consumed) throws IOException {
+        final int[] seen = new int[RECORDS];
+        final GzipMemberSplitter splitter = new GzipMemberSplitter(file, segmentSize);
+        final GzipMemberSplitter.MemberConsumer consumer = new GzipMemberSplitter.MemberConsumer() {
+            @Override
+            public boolean member(final InputStream member) throws IOException {
+                final WarcReader reader = WarcReaderFactory.getReaderUncompressed(member);
+                WarcRecord record;
+                while ((record = reader.getNextRecord()) != null) {
+                    final HeaderLine uri = record.getHeader("WARC-Target-URI");
+                    seen[Integer.parseInt(uri.value.substring("http://example.org/".length()))]++;
+                    final InputStream payload = record.getPayloadContent();
+                    while (payload.read() >= 0) {}
+                }
+                reader.close();
+                return true;
+            }
+        };
+        for (int segment = 0; segment < splitter.segments(); segment++) {
+            splitter.read(segment, consumer, consumed);
+        }
+        return seen;
+    }
+
+    /**
+     * every record of a file with one gzip member per record is read exactly once, regardless of the segment size
+     */
+    @Test
+    public void testMembers() throws IOException {
+        final File file = File.createTempFile("GzipMemberSplitterTest", ".warc.gz");
+        try {
+            writeWarc(file, true);
+            assertTrue(GzipMemberSplitter.isGzip(file));
+            for (final long segmentSize: new long[]{1000, 4096, 65536, file.length()}) {
+                final AtomicLong consumed = new AtomicLong(0);
+                final int[] seen = readSegments(file, segmentSize, consumed);
+                for (int i = 0; i < RECORDS; i++) assertEquals("record " + i + ", segment size " + segmentSize, 1, seen[i]);
+                assertEquals(file.length(), consumed.get());
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * a file which is compressed as a whole is read by the first segment
+     */
+    @Test
+    public void testSingleMember() throws IOException {
+        final File file = File.createTempFile("GzipMemberSplitterTest", ".warc.gz");
+        try {
+            writeWarc(file, false);
+            final int[] seen = readSegments(file, 4096, new AtomicLong(0));
+            for (int i = 0; i < RECORDS; i++) assertEquals("record " + i, 1, seen[i]);
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package net.yacy.kelondro.blob;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.order.NaturalOrder;
+import net.yacy.kelondro.util.FileUtils;
+
+public class HeapReaderTest {
+
+    private File heapFile;
+
+    @Before
+    public void setUp() throws Exception {
+        this.heapFile = new File(System.getProperty("java.io.tmpdir"), "HeapReaderTest.blob");
+        HeapWriter.delete(this.heapFile);
+        final Heap heap = new Heap(this.heapFile, 12, NaturalOrder.naturalOrder, 1024);
+        heap.insert(ASCII.getBytes("aaaaaaaaaaaa"), ASCII.getBytes("eins zwei drei"));
+        heap.insert(ASCII.getBytes("aaaaaaaaaaab"), ASCII.getBytes("vier fuenf sechs"));
+        heap.insert(ASCII.getBytes("aaaaaaaaaaac"), ASCII.getBytes("sieben acht neun"));
+        heap.close(false);
+    }
+
+    @After
+    public void tearDown() {
+        HeapWriter.delete(this.heapFile);
+        FileUtils.deletedelete(this.heapFile);
+    }
+
+    /**
+     * mapped read access must return the same content as file access
+     */
+    @Test
+    public void testMappedGet() throws Exception {
+        final HeapModifier heap = new HeapModifier(this.heapFile, 12, NaturalOrder.naturalOrder);
+        try {
+            assertTrue(heap.mapReadAccess());
+            assertTrue(heap.isMapped());
+            assertTrue(heap.containsKey(ASCII.getBytes("aaaaaaaaaaab")));
+            assertFalse(heap.containsKey(ASCII.getBytes("aaaaaaaaaaax")));
+            assertArrayEquals(ASCII.getBytes("vier fuenf sechs"), heap.get(ASCII.getBytes("aaaaaaaaaaab")));
+            assertEquals("sieben acht neun".length(), heap.length(ASCII.getBytes("aaaaaaaaaaac")));
+            assertEquals(-1, heap.length(ASCII.getBytes("aaaaaaaaaaax")));
+            assertNull(heap.get(ASCII.getBytes("aaaaaaaaaaax")));
+        } finally {
+            heap.close(false);
+        }
+    }
+
+    /**
+     * deletions on a mapped heap are written through the file and must be visible to mapped reads
+     */
+    @Test
+    public void testMappedDelete() throws Exception {
+        final HeapModifier heap = new HeapModifier(this.heapFile, 12, NaturalOrder.naturalOrder);
+        try {
+            assertTrue(heap.mapReadAccess());
+            heap.delete(ASCII.getBytes("aaaaaaaaaaab"));
+            assertFalse(heap.containsKey(ASCII.getBytes("aaaaaaaaaaab")));
+            assertNull(heap.get(ASCII.getBytes("aaaaaaaaaaab")));
+            assertArrayEquals(ASCII.getBytes("eins zwei drei"), heap.get(ASCII.getBytes("aaaaaaaaaaaa")));
+            assertEquals(2, heap.size());
+        } finally {
+            heap.close(false);
+        }
+    }
+
+    /**
+     * readers of a mapped heap see a record which is deleted concurrently either complete or not at all
+     * and must not remove other keys from the index as corrupted
+     */
+    @Test
+    public void testMappedConcurrentDelete() throws Exception {
+        final HeapModifier heap = new HeapModifier(this.heapFile, 12, NaturalOrder.naturalOrder);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        try {
+            assertTrue(heap.mapReadAccess());
+            final byte[] deleted = ASCII.getBytes("aaaaaaaaaaab");
+            final Thread reader = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 10000; i++) {
+                            final byte[] b = heap.get(deleted);
+                            if (b != null) assertArrayEquals(ASCII.getBytes("vier fuenf sechs"), b);
+                            assertArrayEquals(ASCII.getBytes("sieben acht neun"), heap.get(ASCII.getBytes("aaaaaaaaaaac")));
+                        }
+                    } catch (final Throwable e) {
+                        failure.set(e);
+                    }
+                }
+            };
+            reader.start();
+            heap.delete(deleted);
+            reader.join();
+            assertNull(failure.get());
+            assertNull(heap.get(deleted));
+            assertEquals(2, heap.size());
+        } finally {
+            heap.close(false);
+        }
+        assertFalse(heap.isMapped());
+    }
+
+    /**
+     * the bloom filter of a heap accepts all stored keys, also after it was written to a dump and read again
+     */
+    @Test
+    public void testBloomFilter() throws Exception {
+        final HeapModifier heap = new HeapModifier(this.heapFile, 12, NaturalOrder.naturalOrder);
+        final File dump = new File(System.getProperty("java.io.tmpdir"), "HeapReaderTest.blm");
+        try {
+            assertTrue(heap.useBloomFilter());
+            assertTrue(heap.mightContain(ASCII.getBytes("aaaaaaaaaaaa")));
+            assertTrue(heap.mightContain(ASCII.getBytes("aaaaaaaaaaac")));
+            final BloomFilter<byte[]> filter = HeapWriter.bloomFilter(heap.index);
+            HeapWriter.dumpBloomFilter(filter, dump);
+            try (final InputStream is = new FileInputStream(dump)) {
+                final BloomFilter<byte[]> loaded = BloomFilter.readFrom(is, Funnels.byteArrayFunnel());
+                assertEquals(filter, loaded);
+                assertTrue(loaded.mightContain(ASCII.getBytes("aaaaaaaaaaab")));
+            }
+        } finally {
+            heap.close(false);
+            FileUtils.deletedelete(dump);
+        }
+    }
+
+    /**
+     * a writable heap must never be mapped
+     */
+    @Test
+    public void testWritableHeapIsNotMapped() throws Exception {
+        final Heap heap = new Heap(this.heapFile, 12, NaturalOrder.naturalOrder, 1024);
+        try {
+            assertFalse(heap.mapReadAccess());
+            assertFalse(heap.isMapped());
+        } finally {
+            heap.close(false);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package net.yacy.kelondro.data.meta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.solr.common.SolrDocument;
+import org.junit.Test;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.document.id.DigestURL;
+import net.yacy.cora.federate.solr.connector.SolrConnector;
+import net.yacy.search.schema.CollectionSchema;
+
+public class LazyURIMetadataNodeTest {
+
+    /**
+     * a connector which answers getDocumentById with the requested fields of one document and counts the requests
+     */
+    private static SolrConnector connector(final SolrDocument stored, final AtomicInteger requests) {
+        return (SolrConnector) Proxy.newProxyInstance(SolrConnector.class.getClassLoader(), new Class<?>[]{SolrConnector.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                if (!method.getName().equals("getDocumentById")) throw new UnsupportedOperationException(method.getName());
+                requests.incrementAndGet();
+                if (!stored.getFieldValue(CollectionSchema.id.getSolrFieldName()).equals(args[0])) return null;
+                final SolrDocument doc = new SolrDocument();
+                for (final String f: (String[]) args[1]) if (stored.containsKey(f)) doc.setField(f, stored.getFieldValue(f));
+                return doc;
+            }
+        });
+    }
+
+    /**
+     * the large fields are loaded with one request when the first of them is accessed
+     */
+    @Test
+    public void testLazyFields() throws MalformedURLException {
+        final DigestURL url = new DigestURL("http://yacy.net/en/index.html");
+        final SolrDocument stored = new SolrDocument();
+        stored.setField(CollectionSchema.id.getSolrFieldName(), ASCII.String(url.hash()));
+        stored.setField(CollectionSchema.sku.getSolrFieldName(), url.toNormalform(true));
+        stored.setField(CollectionSchema.title.getSolrFieldName(), new ArrayList<String>(Arrays.asList("YaCy")));
+        stored.setField(CollectionSchema.text_t.getSolrFieldName(), "the text of the document");
+        final List<String> stubs = new ArrayList<String>(Arrays.asList("yacy.net/images/yacy.png"));
+        stored.setField(CollectionSchema.images_urlstub_sxt.getSolrFieldName(), stubs);
+
+        // the search result contains only the eager fields
+        final SolrDocument result = new SolrDocument();
+        for (final String f: URIMetadataNode.EAGER_FIELDS) if (stored.containsKey(f)) result.setField(f, stored.getFieldValue(f));
+        assertFalse(result.containsKey(CollectionSchema.text_t.getSolrFieldName()));
+
+        final AtomicInteger requests = new AtomicInteger(0);
+        final LazyURIMetadataNode node = new LazyURIMetadataNode(result, connector(stored, requests));
+        assertEquals("YaCy", node.dc_title());
+        assertEquals(0, requests.get());
+        assertTrue(node.isPending(CollectionSchema.text_t.getSolrFieldName()));
+
+        assertEquals("the text of the document", node.getText());
+        assertEquals(1, requests.get());
+        assertEquals(stubs, node.getFieldValues(CollectionSchema.images_urlstub_sxt.getSolrFieldName()));
+        assertNull(node.getFieldValue(CollectionSchema.outboundlinks_urlstub_sxt.getSolrFieldName()));
+        assertEquals(1, requests.get());
+    }
+
+    /**
+     * a removed lazy field is not loaded again
+     */
+    @Test
+    public void testRemovedField() throws MalformedURLException {
+        final DigestURL url = new DigestURL("http://yacy.net/en/index.html");
+        final SolrDocument stored = new SolrDocument();
+        stored.setField(CollectionSchema.id.getSolrFieldName(), ASCII.String(url.hash()));
+        stored.setField(CollectionSchema.sku.getSolrFieldName(), url.toNormalform(true));
+        stored.setField(CollectionSchema.text_t.getSolrFieldName(), "the text of the document");
+        final SolrDocument result = new SolrDocument();
+        result.setField(CollectionSchema.id.getSolrFieldName(), ASCII.String(url.hash()));
+        result.setField(CollectionSchema.sku.getSolrFieldName(), url.toNormalform(true));
+
+        final AtomicInteger requests = new AtomicInteger(0);
+        final LazyURIMetadataNode node = new LazyURIMetadataNode(result, connector(stored, requests));
+        node.removeFields(CollectionSchema.text_t.getSolrFieldName());
+        assertEquals("", node.getText());
+        assertEquals(0, requests.get());
+    }
+
+}
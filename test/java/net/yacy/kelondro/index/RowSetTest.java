@@ -0,0 +1,63 @@
+package net.yacy.kelondro.index;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.yacy.cora.order.NaturalOrder;
+
+/**
+ * Unit tests for RowSet class.
+ */
+public class RowSetTest {
+
+    private static final Row ROW = new Row("byte[] key-10, Cardinal x-4 {b256}", NaturalOrder.naturalOrder);
+
+    private static RowSet randomSet(final Random r, final int size, final int value) throws Exception {
+        final RowSet set = new RowSet(ROW, size);
+        for (int i = 0; i < size; i++) {
+            final byte[] key = new byte[10];
+            for (int j = 0; j < key.length; j++) key[j] = (byte) ('a' + r.nextInt(3)); // small alphabet to produce doubles
+            set.put(ROW.newEntry(new byte[][]{key, NaturalOrder.encodeLong(value, 4)}));
+        }
+        return set;
+    }
+
+    /**
+     * mergeAll must produce the same result as a left-to-right chain of pairwise merges
+     */
+    @Test
+    public void testMergeAll() throws Exception {
+        final Random r = new Random(4711);
+        final List<RowSet> a = new ArrayList<RowSet>();
+        final List<RowSet> b = new ArrayList<RowSet>();
+        for (int i = 0; i < 12; i++) {
+            final RowSet s = randomSet(r, 1 + r.nextInt(300), i);
+            a.add(s);
+            b.add(new RowSet(s));
+        }
+        final RowSet merged = RowSet.mergeAll(a);
+        RowSet chained = b.get(0);
+        for (int i = 1; i < b.size(); i++) chained = chained.merge(b.get(i));
+
+        assertEquals(chained.size(), merged.size());
+        for (int i = 0; i < merged.size(); i++) {
+            assertArrayEquals(chained.get(i, false).bytes(), merged.get(i, false).bytes());
+        }
+    }
+
+    @Test
+    public void testMergeAllWithEmptyCollections() throws Exception {
+        final List<RowSet> a = new ArrayList<RowSet>();
+        a.add(new RowSet(ROW, 0));
+        a.add(randomSet(new Random(1), 20, 1));
+        a.add(new RowSet(ROW, 0));
+        final RowSet merged = RowSet.mergeAll(a);
+        assertEquals(a.get(1).size(), merged.size());
+    }
+}
@@ -0,0 +1,92 @@
+package net.yacy.kelondro.rwi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Date;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.order.Base64Order;
+import net.yacy.kelondro.blob.ArrayStack;
+import net.yacy.kelondro.data.citation.CitationReference;
+import net.yacy.kelondro.data.citation.CitationReferenceFactory;
+import net.yacy.kelondro.util.FileUtils;
+
+public class IODispatcherTest {
+
+    private static final int FILES = 4, TERMS = 50, REFERENCES = 20;
+
+    private File dir;
+
+    private static byte[] hash(final int i) {
+        return ASCII.getBytes(Base64Order.enhancedCoder.encodeLongSB(i, 12).toString());
+    }
+
+    @Before
+    public void setUp() {
+        this.dir = new File(System.getProperty("java.io.tmpdir"), "IODispatcherTest");
+        FileUtils.deletedelete(this.dir);
+        this.dir.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deletedelete(this.dir);
+    }
+
+    /**
+     * two merges which are queued in the same millisecond and run at the same time by two merge threads
+     * must write to different files and keep all references
+     */
+    @Test
+    public void testConcurrentMergesOfSameMillisecond() throws Exception {
+        final CitationReferenceFactory factory = new CitationReferenceFactory();
+        final ArrayStack array = new ArrayStack(this.dir, "text.index", Base64Order.enhancedCoder, 12, 0, true, true);
+        final int threads = IODispatcher.mergeThreads;
+        IODispatcher.mergeThreads = 2;
+        final IODispatcher dispatcher = new IODispatcher(1, 10, 1024 * 1024);
+        IODispatcher.mergeThreads = threads;
+        try {
+            final long base = System.currentTimeMillis() - 60000;
+            for (int f = 0; f < FILES; f++) {
+                final ReferenceContainerCache<CitationReference> cache = new ReferenceContainerCache<CitationReference>(factory, Base64Order.enhancedCoder, 12);
+                for (int t = 0; t < TERMS; t++) {
+                    for (int u = 0; u < REFERENCES; u++) cache.add(hash(f * TERMS + t), new CitationReference(hash(100000 + u), 1000000L * u));
+                }
+                final File file = array.newBLOB(new Date(base + f * 1000));
+                cache.dump(file, 1024 * 1024, true);
+                array.mountBLOB(file, false);
+            }
+            assertEquals(FILES, array.entries());
+            final File[] unmounted = new File[FILES];
+            for (int f = 0; f < FILES; f++) unmounted[f] = array.unmountOldestBLOB(false);
+
+            final Date now = new Date();
+            final File target1 = array.newBLOB(now);
+            final File target2 = array.newBLOB(now);
+            assertFalse(target1.equals(target2));
+
+            dispatcher.start();
+            dispatcher.merge(unmounted[0], unmounted[1], factory, array, target1);
+            dispatcher.merge(unmounted[2], unmounted[3], factory, array, target2);
+            final long timeout = System.currentTimeMillis() + 60000;
+            while ((dispatcher.mergeCount() < 2 || dispatcher.activeMerges() > 0) && System.currentTimeMillis() < timeout) Thread.sleep(10);
+            assertEquals(2, dispatcher.mergeCount());
+
+            assertEquals(2, array.entries());
+            assertTrue(target1.exists());
+            assertTrue(target2.exists());
+            for (int t = 0; t < FILES * TERMS; t++) assertTrue("term " + t, array.containsKey(hash(t)));
+        } finally {
+            dispatcher.terminate();
+            array.close(false);
+        }
+    }
+
+}
@@ -0,0 +1,77 @@
+package net.yacy.kelondro.rwi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.order.Base64Order;
+import net.yacy.kelondro.data.citation.CitationReference;
+import net.yacy.kelondro.data.citation.CitationReferenceFactory;
+
+public class OffHeapContainerMapTest {
+
+    private static byte[] hash(final int i) {
+        return ASCII.getBytes(Base64Order.enhancedCoder.encodeLongSB(i, 12).toString());
+    }
+
+    /**
+     * an off-heap cache must return the same containers as the heap cache after many single appends
+     */
+    @Test
+    public void testAddAndGet() throws Exception {
+        final CitationReferenceFactory factory = new CitationReferenceFactory();
+        final ReferenceContainerCache<CitationReference> heap = new ReferenceContainerCache<CitationReference>(factory, Base64Order.enhancedCoder, 12, false);
+        final ReferenceContainerCache<CitationReference> offheap = new ReferenceContainerCache<CitationReference>(factory, Base64Order.enhancedCoder, 12, true);
+        assertTrue(offheap.isOffHeap());
+        for (int t = 0; t < 20; t++) {
+            for (int u = 0; u < 50 + t * 10; u++) {
+                final CitationReference r = new CitationReference(hash(u), 1000000L * u);
+                heap.add(hash(1000 + t), r);
+                offheap.add(hash(1000 + t), r);
+            }
+        }
+        assertEquals(heap.size(), offheap.size());
+        for (int t = 0; t < 20; t++) {
+            final ReferenceContainer<CitationReference> a = heap.get(hash(1000 + t), null);
+            final ReferenceContainer<CitationReference> b = offheap.get(hash(1000 + t), null);
+            assertNotNull(b);
+            assertEquals(a.size(), b.size());
+            assertEquals(a.size(), offheap.count(hash(1000 + t)));
+            for (int u = 0; u < a.size(); u++) assertNotNull(b.getReference(hash(u)));
+        }
+        assertEquals(240, offheap.maxReferences());
+        assertTrue(offheap.usedMemory() > 0);
+    }
+
+    /**
+     * removal of references and containers
+     */
+    @Test
+    public void testRemove() throws Exception {
+        final CitationReferenceFactory factory = new CitationReferenceFactory();
+        final ReferenceContainerCache<CitationReference> offheap = new ReferenceContainerCache<CitationReference>(factory, Base64Order.enhancedCoder, 12, true);
+        for (int u = 0; u < 10; u++) offheap.add(hash(1), new CitationReference(hash(u), 0));
+        offheap.add(hash(2), new CitationReference(hash(0), 0));
+        assertTrue(offheap.remove(hash(1), hash(3)));
+        assertFalse(offheap.remove(hash(1), hash(3)));
+        assertEquals(9, offheap.get(hash(1), null).size());
+        assertNull(offheap.get(hash(1), null).getReference(hash(3)));
+        offheap.delete(hash(2));
+        assertFalse(offheap.has(hash(2)));
+        assertEquals(1, offheap.size());
+        int c = 0;
+        for (final ReferenceContainer<CitationReference> container: offheap) {
+            assertEquals(9, container.size());
+            c++;
+        }
+        assertEquals(1, c);
+        offheap.clear();
+        assertTrue(offheap.isEmpty());
+    }
+
+}
@@ -23,18 +23,25 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Queue;
+import java.util.Random;
 import java.util.concurrent.LinkedBlockingQueue;
 
 import org.junit.Test;
 
+import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.document.id.DigestURL;
 import net.yacy.cora.document.id.MultiProtocolURL;
 import net.yacy.crawler.retrieval.Response;
 import net.yacy.kelondro.data.word.Word;
 import net.yacy.kelondro.data.word.WordReference;
 import net.yacy.kelondro.data.word.WordReferenceFactory;
+import net.yacy.kelondro.data.word.WordReferenceRow;
 import net.yacy.kelondro.data.word.WordReferenceVars;
+import net.yacy.kelondro.index.RowSet;
 import net.yacy.kelondro.util.Bitfield;
 
 /**
@@ -99,4 +106,49 @@ public class ReferenceContainerTest {
         assertEquals("distance()", wentry.distance(), wc.distance());
     }
 
+    private static ReferenceContainer<WordReference> randomContainer(final ReferenceFactory<WordReference> factory, final Random r, final List<byte[]> common, final int size) throws Exception {
+        final ReferenceContainer<WordReference> rc = new ReferenceContainer<WordReference>(factory, RowSet.randomHash(r));
+        for (final byte[] urlHash: common) rc.add(new WordReferenceRow(urlHash, 30, 3, 2, 100, 10, 0, 0, null, 'h', 0, 0));
+        for (int i = 0; i < size; i++) {
+            // every third hash starts with 'A' to get dense areas where the containers overlap
+            final byte[] urlHash = RowSet.randomHash(r);
+            if (i % 3 == 0) urlHash[0] = 'A';
+            rc.add(new WordReferenceRow(urlHash, 30, 3, 2, 100, 10, 0, 0, null, 'h', 0, 0));
+        }
+        return rc;
+    }
+
+    /**
+     * the n-way join must find the same urls as a chain of pairwise joins
+     */
+    @Test
+    public void testJoinConstructiveMany() throws Exception {
+        final ReferenceFactory<WordReference> factory = new WordReferenceFactory();
+        final Random r = new Random(0);
+        final List<byte[]> common = new ArrayList<byte[]>();
+        for (int i = 0; i < 50; i++) common.add(RowSet.randomHash(r));
+        final int[] sizes = new int[] {10, 200, 1000, 5000, 20000};
+        final List<ReferenceContainer<WordReference>> containers = new ArrayList<ReferenceContainer<WordReference>>();
+        for (final int size: sizes) containers.add(randomContainer(factory, r, common, size));
+
+        for (int n = 1; n <= containers.size(); n++) {
+            final List<ReferenceContainer<WordReference>> join = containers.subList(0, n);
+            ReferenceContainer<WordReference> expected = join.get(0);
+            for (int i = 1; i < n; i++) expected = ReferenceContainer.joinConstructive(factory, expected, join.get(i), Integer.MAX_VALUE);
+            final ReferenceContainer<WordReference> result = ReferenceContainer.joinConstructive(factory, join, Integer.MAX_VALUE);
+            assertEquals("n = " + n, expected.size(), result.size());
+            assertTrue(result.size() >= common.size());
+            final Iterator<WordReference> i = result.entries();
+            while (i.hasNext()) {
+                final byte[] urlHash = i.next().urlhash();
+                assertNotNull(ASCII.String(urlHash), expected.getReference(urlHash));
+            }
+        }
+
+        // a container without any common url gives an empty result
+        final List<ReferenceContainer<WordReference>> disjoint = new ArrayList<ReferenceContainer<WordReference>>(containers);
+        disjoint.add(randomContainer(factory, r, new ArrayList<byte[]>(), 100));
+        assertTrue(ReferenceContainer.joinConstructive(factory, disjoint, Integer.MAX_VALUE).isEmpty());
+    }
+
 }
@@ -0,0 +1,47 @@
+package net.yacy.kelondro.workflow;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    /**
+     * percentiles are reported as bucket upper bounds within 25% of the true value
+     */
+    @Test
+    public void testPercentile() {
+        final LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.percentile(0.5d));
+        for (int i = 1; i <= 1000; i++) h.add(i);
+        assertEquals(1000, h.count());
+        final double[] ps = new double[] {0.01d, 0.5d, 0.9d, 0.99d, 1.0d};
+        for (final double p: ps) {
+            final long expected = Math.round(p * 1000);
+            final long v = h.percentile(p);
+            assertTrue(p + ": " + v, v >= expected && v <= expected * 5 / 4);
+        }
+        h.add(-1);
+        h.add(Long.MAX_VALUE);
+        assertEquals(0, h.percentile(0.0d));
+        assertTrue(h.percentile(1.0d) > 1000);
+    }
+
+    /**
+     * decay halves the weight of old values; small values are exact
+     */
+    @Test
+    public void testDecay() {
+        final LatencyHistogram h = new LatencyHistogram();
+        for (int i = 0; i < 8; i++) h.add(2);
+        h.decay();
+        assertEquals(4, h.count());
+        for (int i = 0; i < 12; i++) h.add(3);
+        assertEquals(3, h.percentile(0.5d));
+        assertEquals(2, h.percentile(0.25d));
+        h.clear();
+        assertEquals(0, h.count());
+    }
+
+}
@@ -0,0 +1,53 @@
+package net.yacy.kelondro.workflow;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+public class WorkflowProcessorTest {
+
+    private static WorkflowProcessor<WorkflowJob> processor(final String name, final CountDownLatch release, final String balanceGroup) {
+        return new WorkflowProcessor<WorkflowJob>(name, name, new String[0], new WorkflowTask<WorkflowJob>() {
+            @Override
+            public WorkflowJob process(final WorkflowJob in) throws Exception {
+                release.await();
+                return null;
+            }
+        }, 100, null, 4, balanceGroup);
+    }
+
+    /**
+     * the backlog of a processor outside of a balance group does not take threads away from the group,
+     * while the backlog inside the group moves threads to the busy processor
+     */
+    @Test
+    public void testRebalanceGroup() {
+        final CountDownLatch release = new CountDownLatch(1);
+        final WorkflowProcessor<WorkflowJob> other = processor("testOther", release, null);
+        final WorkflowProcessor<WorkflowJob> parser = processor("testParser", release, "test");
+        final WorkflowProcessor<WorkflowJob> condenser = processor("testCondenser", release, "test");
+        try {
+            for (int i = 0; i < 50; i++) other.enQueue(new WorkflowJob());
+            assertTrue(other.getQueueSize() > 0);
+            WorkflowProcessor.rebalance();
+            assertEquals(4, other.getConcurrency());
+            assertEquals(4, parser.getConcurrency());
+            assertEquals(4, condenser.getConcurrency());
+
+            for (int i = 0; i < 50; i++) parser.enQueue(new WorkflowJob());
+            WorkflowProcessor.rebalance();
+            assertEquals(7, parser.getConcurrency());
+            assertEquals(1, condenser.getConcurrency());
+            assertEquals(4, other.getConcurrency());
+        } finally {
+            release.countDown();
+            other.shutdown();
+            parser.shutdown();
+            condenser.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,34 @@
+package net.yacy.peers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.junit.Test;
+
+import net.yacy.kelondro.data.meta.URIMetadataNode;
+
+public class ProtocolTest {
+
+    /**
+     * the query of a search event is shared with the remote searches: projecting it for the local search must not change its field list
+     */
+    @Test
+    public void testLocalQueryKeepsFieldList() {
+        final SolrQuery solrQuery = new SolrQuery("yacy");
+        solrQuery.setFields("*", "score");
+        final String fl = solrQuery.getFields();
+
+        final SolrQuery localQuery = Protocol.localQuery(solrQuery);
+
+        assertEquals(fl, solrQuery.getFields());
+        final List<String> localFields = Arrays.asList(localQuery.getFields().split(","));
+        assertEquals(URIMetadataNode.EAGER_FIELDS.length + 1, localFields.size());
+        assertTrue(localFields.containsAll(Arrays.asList(URIMetadataNode.EAGER_FIELDS)));
+        assertTrue(localFields.contains("score"));
+        assertEquals(solrQuery.getQuery(), localQuery.getQuery());
+    }
+}
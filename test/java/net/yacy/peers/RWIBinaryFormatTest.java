@@ -0,0 +1,133 @@
+package net.yacy.peers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.order.NaturalOrder;
+import net.yacy.kelondro.data.word.WordReference;
+import net.yacy.kelondro.data.word.WordReferenceRow;
+import net.yacy.kelondro.index.RowSet;
+import net.yacy.kelondro.rwi.ReferenceContainer;
+import net.yacy.search.index.Segment;
+
+public class RWIBinaryFormatTest {
+
+    private static List<ReferenceContainer<WordReference>> containers(final int count, final int size) throws Exception {
+        final Random r = new Random(42);
+        final List<ReferenceContainer<WordReference>> containers = new ArrayList<ReferenceContainer<WordReference>>();
+        for (int c = 0; c < count; c++) {
+            final ReferenceContainer<WordReference> rc = new ReferenceContainer<WordReference>(Segment.wordReferenceFactory, RowSet.randomHash(r));
+            for (int i = 0; i < size; i++) {
+                rc.add(new WordReferenceRow(RowSet.randomHash(r), 30 + i, 3, 2, 100 + c, 10, 0, 0, ASCII.getBytes("en"), 'h', i, 0));
+            }
+            containers.add(rc);
+        }
+        return containers;
+    }
+
+    /**
+     * decoded containers contain the same entries as the property form of the text transfer
+     */
+    @Test
+    public void testRoundtrip() throws Exception {
+        final List<ReferenceContainer<WordReference>> containers = containers(20, 50);
+        final List<ReferenceContainer<WordReference>> decoded = RWIBinaryFormat.decode(RWIBinaryFormat.encode(containers), 1000);
+        assertEquals(containers.size(), decoded.size());
+        for (int c = 0; c < containers.size(); c++) {
+            assertArrayEquals(containers.get(c).getTermHash(), decoded.get(c).getTermHash());
+            assertEquals(containers.get(c).size(), decoded.get(c).size());
+            final Iterator<WordReference> i = containers.get(c).entries();
+            final Iterator<WordReference> j = decoded.get(c).entries();
+            while (i.hasNext()) {
+                assertTrue(j.hasNext());
+                assertEquals(i.next().toPropertyForm(), j.next().toPropertyForm());
+            }
+        }
+    }
+
+    /**
+     * a transfer which is not in the binary format is rejected
+     */
+    @Test
+    public void testReject() throws Exception {
+        try {
+            RWIBinaryFormat.decode(ASCII.getBytes("AAAAAAAAAAAA{x=1}"), 1000);
+            fail("text transfer decoded");
+        } catch (final IOException e) {
+        }
+        final byte[] b = RWIBinaryFormat.encode(containers(1, 10));
+        final byte[] truncated = new byte[b.length / 2];
+        System.arraycopy(b, 0, truncated, 0, truncated.length);
+        try {
+            RWIBinaryFormat.decode(truncated, 1000);
+            fail("truncated transfer decoded");
+        } catch (final IOException e) {
+        }
+    }
+
+    /**
+     * the decoding stops at the row limit, the container which passes the limit is truncated
+     */
+    @Test
+    public void testLimit() throws Exception {
+        final List<ReferenceContainer<WordReference>> decoded = RWIBinaryFormat.decode(RWIBinaryFormat.encode(containers(30, 50)), 1000);
+        assertEquals(20, decoded.size());
+        int rows = 0;
+        for (final ReferenceContainer<WordReference> container: decoded) rows += container.size();
+        assertEquals(1000, rows);
+        final List<ReferenceContainer<WordReference>> truncated = RWIBinaryFormat.decode(RWIBinaryFormat.encode(containers(2, 50)), 75);
+        assertEquals(2, truncated.size());
+        assertEquals(25, truncated.get(1).size());
+        assertTrue(truncated.get(1).getReference(truncated.get(1).entries().next().urlhash()) != null);
+    }
+
+    /**
+     * collections with a length which is not a multiple of the row size or an order bound above the row count are rejected
+     */
+    @Test
+    public void testRejectBrokenCollection() throws Exception {
+        final ReferenceContainer<WordReference> container = containers(1, 10).get(0);
+        final byte[] collection = container.exportCollection();
+        NaturalOrder.encodeLong(11, collection, 10, 4);
+        try {
+            RWIBinaryFormat.decode(transfer(container.getTermHash(), collection), 1000);
+            fail("order bound above the row count decoded");
+        } catch (final IOException e) {
+        }
+        final byte[] shortened = new byte[collection.length - 1];
+        System.arraycopy(container.exportCollection(), 0, shortened, 0, shortened.length);
+        try {
+            RWIBinaryFormat.decode(transfer(container.getTermHash(), shortened), 1000);
+            fail("partial row decoded");
+        } catch (final IOException e) {
+        }
+    }
+
+    private static byte[] transfer(final byte[] termHash, final byte[] collection) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes))) {
+            out.write(new byte[]{'Y', 'R', 'W', 'I'});
+            out.writeByte(1);
+            out.writeInt(WordReferenceRow.urlEntryRow.objectsize);
+            out.writeInt(1);
+            out.write(termHash);
+            out.writeInt(collection.length);
+            out.write(collection);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,74 @@
+package net.yacy.repository;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class BlacklistMatcherTest {
+
+    private static void put(final Map<String, Set<Pattern>> map, final String host, final String... paths) {
+        final Set<Pattern> patterns = new HashSet<Pattern>();
+        for (final String path: paths) patterns.add(Pattern.compile(path, Pattern.CASE_INSENSITIVE));
+        map.put(host, patterns);
+    }
+
+    /**
+     * the compiled matcher must give the same results as the static Blacklist.isListed() on the same maps
+     */
+    @Test
+    public void testSameAsBlacklistMaps() {
+        final Map<String, Set<Pattern>> matched = new HashMap<String, Set<Pattern>>();
+        put(matched, "stats.example.com", ".*");
+        put(matched, "*.blacklisted.net", ".*");
+        put(matched, "js.blacklisted.org", "data/js/\\d*\\.js");
+        put(matched, "ftp.*", ".*");
+        put(matched, "www.shop.*", "cart/.*");
+        put(matched, "esample.de", "bestenlisten/.*", "produkte/.*");
+        put(matched, "localhost", "private/.*");
+        put(matched, "*.de", "spam\\.html");
+
+        final Map<String, Set<Pattern>> notMatched = new HashMap<String, Set<Pattern>>();
+        put(notMatched, "mobil\\..*", ".*");
+        put(notMatched, ".*samples.fr", "counter\\?.*");
+        put(notMatched, ".*.*", ".*\\.jpg", "(.*/|)search.*");
+        put(notMatched, "[invalid", ".*");
+
+        final BlacklistMatcher matcher = new BlacklistMatcher(matched, notMatched);
+
+        final String[] hosts = new String[] {
+            "stats.example.com", "a.stats.example.com", "example.com", "xstats.example.com",
+            "blacklisted.net", "site.blacklisted.net", "a.b.blacklisted.net",
+            "js.blacklisted.org", "x.js.blacklisted.org", "js.blacklisted.org.evil.com",
+            "ftp.gnu.org", "ftp", "ftpx.gnu.org", "www.shop.de", "www.shop", "www.shopping.de",
+            "esample.de", "esample.de.example.com", "www.esample.de", "localhost", "localhost.localdomain",
+            "mobil.news.fr", "news.samples.fr", "fr.notblacklisted.org", "de", "foo.de", ".de", "", "."
+        };
+        final String[] paths = new String[] {
+            "", "/", "/index.html", "/data/js/12.js", "/cart/item", "/bestenlisten/a", "/produkte/b",
+            "/private/x", "/spam.html", "/counter?id=1", "/image.jpg", "/aa/search.html", "/thesearch.html"
+        };
+        for (final String host: hosts) {
+            for (final String path: paths) {
+                assertEquals(host + path, Blacklist.isListed(host, path, matched, notMatched), matcher.isListed(host, path));
+            }
+        }
+    }
+
+    /**
+     * an empty matcher does not list anything
+     */
+    @Test
+    public void testEmpty() {
+        final Map<String, Set<Pattern>> empty = new HashMap<String, Set<Pattern>>();
+        final BlacklistMatcher matcher = new BlacklistMatcher(empty, empty);
+        assertEquals(false, matcher.isListed("www.example.com", "/index.html"));
+        assertEquals(false, matcher.isListed("", ""));
+    }
+
+}
@@ -0,0 +1,201 @@
+package net.yacy.repository;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.cora.document.id.DigestURL;
+import net.yacy.cora.federate.yacy.CacheStrategy;
+import net.yacy.cora.protocol.ClientIdentification;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.crawler.retrieval.Request;
+import net.yacy.crawler.retrieval.Response;
+import net.yacy.repository.Blacklist.BlacklistType;
+
+public class LoaderDispatcherTest {
+
+    /**
+     * a fetcher which counts its loads and blocks each load until it is released
+     */
+    private static class BlockingFetcher implements LoaderDispatcher.Fetcher {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger loads = new AtomicInteger(0);
+        volatile IOException failure = null;
+        @Override
+        public Response load(final Request request, final CacheStrategy cacheStrategy, final int maxFileSize, final BlacklistType blacklistType, final ClientIdentification.Agent agent) throws IOException {
+            this.loads.incrementAndGet();
+            this.started.countDown();
+            try {
+                this.release.await();
+            } catch (final InterruptedException e) {
+                throw new IOException(e);
+            }
+            if (this.failure != null) throw this.failure;
+            return new Response(request, null, null, null, false, UTF8.getBytes("content of " + request.url().toNormalform(true)));
+        }
+    }
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        this.executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() {
+        this.executor.shutdownNow();
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        ConcurrentLog.shutdown();
+    }
+
+    private static Request request(final String url) throws MalformedURLException {
+        return new Request(new DigestURL(url), null);
+    }
+
+    private Future<Response> load(final LoaderDispatcher loader, final Request request) {
+        return this.executor.submit(new Callable<Response>() {
+            @Override
+            public Response call() throws IOException {
+                return loader.load(request, CacheStrategy.IFEXIST, 1000, BlacklistType.CRAWLER, ClientIdentification.yacyInternetCrawlerAgent);
+            }
+        });
+    }
+
+    /**
+     * wait until the given number of callers joined a running load
+     */
+    private static void awaitCoalesced(final LoaderDispatcher loader, final long count) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (loader.coalescedCount() < count) {
+            if (System.currentTimeMillis() > deadline) fail("caller did not join the running load");
+            Thread.sleep(5);
+        }
+    }
+
+    private static void assertFailure(final Future<Response> caller, final String message) throws Exception {
+        try {
+            caller.get(10, TimeUnit.SECONDS);
+            fail("the failure of the load must reach every caller");
+        } catch (final ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+            assertEquals(message, e.getCause().getMessage());
+        }
+    }
+
+    /**
+     * two concurrent callers of the same url share one load and get the same content in their own responses
+     */
+    @Test
+    public void testConcurrentCallersShareOneLoad() throws Exception {
+        final BlockingFetcher fetcher = new BlockingFetcher();
+        final LoaderDispatcher loader = new LoaderDispatcher(fetcher, 10000);
+        final Request leaderRequest = request("http://example.com/shared.html");
+        final Request joinerRequest = request("http://example.com/shared.html");
+
+        final Future<Response> leader = load(loader, leaderRequest);
+        assertTrue(fetcher.started.await(10, TimeUnit.SECONDS));
+        final Future<Response> joiner = load(loader, joinerRequest);
+        awaitCoalesced(loader, 1);
+        fetcher.release.countDown();
+
+        final Response leaderResponse = leader.get(10, TimeUnit.SECONDS);
+        final Response joinerResponse = joiner.get(10, TimeUnit.SECONDS);
+        assertEquals(1, fetcher.loads.get());
+        assertSame(leaderRequest, leaderResponse.getRequest());
+        assertSame(joinerRequest, joinerResponse.getRequest());
+        assertNotSame(leaderResponse, joinerResponse);
+        assertArrayEquals(leaderResponse.getContent(), joinerResponse.getContent());
+        assertEquals(1, loader.flightCount());
+        assertEquals(1, loader.coalescedCount());
+    }
+
+    /**
+     * the failure of a shared load reaches all callers which joined it
+     */
+    @Test
+    public void testFailureReachesAllJoiners() throws Exception {
+        final BlockingFetcher fetcher = new BlockingFetcher();
+        fetcher.failure = new IOException("connection refused");
+        final LoaderDispatcher loader = new LoaderDispatcher(fetcher, 10000);
+
+        final Future<Response> leader = load(loader, request("http://example.com/failing.html"));
+        assertTrue(fetcher.started.await(10, TimeUnit.SECONDS));
+        final Future<Response> joiner1 = load(loader, request("http://example.com/failing.html"));
+        final Future<Response> joiner2 = load(loader, request("http://example.com/failing.html"));
+        awaitCoalesced(loader, 2);
+        fetcher.release.countDown();
+
+        assertFailure(leader, "connection refused");
+        assertFailure(joiner1, "connection refused");
+        assertFailure(joiner2, "connection refused");
+        assertEquals(1, fetcher.loads.get());
+        assertEquals(2, loader.coalescedFailCount());
+    }
+
+    /**
+     * a joining caller gives up after the maximum wait time while the load goes on and succeeds for its leader
+     */
+    @Test
+    public void testJoinerTimesOutWhileLeaderRuns() throws Exception {
+        final BlockingFetcher fetcher = new BlockingFetcher();
+        final LoaderDispatcher loader = new LoaderDispatcher(fetcher, 100);
+
+        final Future<Response> leader = load(loader, request("http://example.com/slow.html"));
+        assertTrue(fetcher.started.await(10, TimeUnit.SECONDS));
+        final Future<Response> joiner = load(loader, request("http://example.com/slow.html"));
+        try {
+            joiner.get(10, TimeUnit.SECONDS);
+            fail("the joining caller must time out");
+        } catch (final ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertEquals(1, loader.coalescedTimeoutCount());
+        assertFalse(leader.isDone());
+
+        fetcher.release.countDown();
+        assertTrue(leader.get(10, TimeUnit.SECONDS).getContent().length > 0);
+        assertEquals(1, fetcher.loads.get());
+    }
+
+    /**
+     * loads which no other caller joined are not counted as shared flights
+     */
+    @Test
+    public void testUnsharedLoadsAreNotCounted() throws Exception {
+        final BlockingFetcher fetcher = new BlockingFetcher();
+        fetcher.release.countDown();
+        final LoaderDispatcher loader = new LoaderDispatcher(fetcher, 10000);
+        load(loader, request("http://example.com/a.html")).get(10, TimeUnit.SECONDS);
+        load(loader, request("http://example.com/b.html")).get(10, TimeUnit.SECONDS);
+        loader.load(request("http://example.com/c.html"), null, 1000, BlacklistType.CRAWLER, ClientIdentification.yacyInternetCrawlerAgent);
+        assertEquals(3, fetcher.loads.get());
+        assertEquals(0, loader.flightCount());
+        assertEquals(0, loader.coalescedCount());
+    }
+}
@@ -0,0 +1,102 @@
+package net.yacy.search.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.document.id.DigestURL;
+import net.yacy.cora.federate.solr.instance.EmbeddedInstance;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.search.schema.CollectionConfiguration;
+import net.yacy.search.schema.CollectionSchema;
+import net.yacy.search.schema.WebgraphSchema;
+
+/**
+ * Deletions through the Fulltext must be visible to the crawl stacker, which asks the index of load dates
+ * whether an url is already known.
+ */
+public class FulltextDeletionTest {
+
+    private Fulltext fulltext;
+    private CollectionConfiguration config;
+
+    @Before
+    public void setUp() throws IOException {
+        final File segmentPath = new File("test/DATA/INDEX/webportal/SEGMENTS");
+        final File storage = new File(segmentPath, "text/solr.deletion/");
+        storage.mkdirs();
+        this.config = new CollectionConfiguration(new File("defaults/solr.collection.schema"), true);
+        this.fulltext = new Fulltext(segmentPath, new File("test/DATA/INDEX/webportal/ARCHIVE"), this.config, null);
+        this.fulltext.connectLocalSolr(new EmbeddedInstance(new File("defaults/solr"), storage, CollectionSchema.CORE_NAME, new String[]{CollectionSchema.CORE_NAME, WebgraphSchema.CORE_NAME}));
+        waitForLoadDates();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        this.fulltext.clearLocalSolr();
+        this.fulltext.close();
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        ConcurrentLog.shutdown();
+    }
+
+    private void waitForLoadDates() {
+        final long timeout = System.currentTimeMillis() + 10000;
+        while (!this.fulltext.loadDates().isReady() && System.currentTimeMillis() < timeout) {
+            try {
+                Thread.sleep(10);
+            } catch (final InterruptedException e) {
+                break;
+            }
+        }
+        assertTrue(this.fulltext.loadDates().isReady());
+    }
+
+    private byte[] put(final String url, final String collection) throws IOException {
+        final DigestURL u = new DigestURL(url);
+        final SolrInputDocument doc = new SolrInputDocument();
+        this.config.add(doc, CollectionSchema.id, ASCII.String(u.hash()));
+        this.config.add(doc, CollectionSchema.sku, u.toNormalform(true));
+        this.config.add(doc, CollectionSchema.host_s, u.getHost());
+        this.config.add(doc, CollectionSchema.load_date_dt, new Date());
+        this.config.add(doc, CollectionSchema.collection_sxt, new String[]{collection});
+        this.fulltext.putDocument(doc);
+        return u.hash();
+    }
+
+    /**
+     * urls which are deleted by a query are not reported as known any more
+     */
+    @Test
+    public void testDeleteByQuery() throws IOException {
+        final byte[] kept = put("http://example.com/kept.html", "user");
+        final byte[] deleted = put("http://example.com/deleted.html", "deletion");
+        assertTrue(this.fulltext.loadDates().getLoadDay(kept) >= 0);
+        assertTrue(this.fulltext.loadDates().getLoadDay(deleted) >= 0);
+
+        // as the collection deletion of IndexDeletion_p
+        this.fulltext.deleteByQuery(CollectionSchema.collection_sxt.getSolrFieldName() + ":\"deletion\"");
+        assertTrue(this.fulltext.loadDates().getLoadDay(kept) >= 0);
+        assertEquals(-1, this.fulltext.loadDates().getLoadDay(deleted));
+        assertEquals(-1, this.fulltext.getLoadTime(ASCII.String(deleted)));
+
+        // as the regular expression deletion of IndexDeletion_p
+        this.fulltext.deleteByQuery(CollectionSchema.sku.getSolrFieldName() + ":/.*kept.*/");
+        assertEquals(-1, this.fulltext.loadDates().getLoadDay(kept));
+        this.fulltext.getDefaultConnector().commit(true);
+        assertEquals(0, this.fulltext.getDefaultConnector().getCountByQuery(CollectionSchema.host_s.getSolrFieldName() + ":\"example.com\""));
+    }
+
+}
@@ -0,0 +1,96 @@
+package net.yacy.search.index;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.Test;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.federate.solr.connector.AbstractSolrConnector;
+import net.yacy.search.schema.CollectionSchema;
+
+public class LoadDateIndexTest {
+
+    private static final long DAY = LoadDateIndex.DAY;
+
+    private static SolrDocument doc(final String id, final long time) {
+        final SolrDocument doc = new SolrDocument();
+        doc.setField(CollectionSchema.id.getSolrFieldName(), id);
+        doc.setField(CollectionSchema.load_date_dt.getSolrFieldName(), new Date(time));
+        return doc;
+    }
+
+    /**
+     * documents which are stored or removed while the index is loaded are not overwritten by the load
+     */
+    @Test
+    public void testLoad() throws InterruptedException {
+        final LoadDateIndex index = new LoadDateIndex();
+        assertEquals(LoadDateIndex.UNKNOWN, index.getLoadDay(ASCII.getBytes("AAAAAAAAAAAA")));
+        final int gen = index.startLoad();
+        assertFalse(index.isReady());
+
+        // concurrent changes of the index during the load
+        index.put("BBBBBBBBBBBB", 20 * DAY + 5000);
+        index.remove("CCCCCCCCCCCC");
+        final SolrInputDocument stored = new SolrInputDocument();
+        stored.setField(CollectionSchema.id.getSolrFieldName(), "DDDDDDDDDDDD");
+        stored.setField(CollectionSchema.load_date_dt.getSolrFieldName(), new Date(30 * DAY));
+        index.put(stored);
+
+        final BlockingQueue<SolrDocument> docs = new LinkedBlockingQueue<SolrDocument>();
+        docs.put(doc("AAAAAAAAAAAA", 10 * DAY + 1000));
+        docs.put(doc("BBBBBBBBBBBB", 10 * DAY));
+        docs.put(doc("CCCCCCCCCCCC", 10 * DAY));
+        docs.put(AbstractSolrConnector.POISON_DOCUMENT);
+        assertTrue(index.load(docs, gen));
+        assertTrue(index.isReady());
+
+        assertEquals(10 * DAY, index.getLoadDay(ASCII.getBytes("AAAAAAAAAAAA")));
+        assertEquals(20 * DAY, index.getLoadDay(ASCII.getBytes("BBBBBBBBBBBB")));
+        assertEquals(-1, index.getLoadDay(ASCII.getBytes("CCCCCCCCCCCC")));
+        assertEquals(30 * DAY, index.getLoadDay(ASCII.getBytes("DDDDDDDDDDDD")));
+
+        final List<byte[]> hashes = new ArrayList<byte[]>();
+        hashes.add(ASCII.getBytes("DDDDDDDDDDDD"));
+        hashes.add(ASCII.getBytes("EEEEEEEEEEEE"));
+        hashes.add(ASCII.getBytes("AAAAAAAAAAAA"));
+        assertArrayEquals(new long[]{30 * DAY, -1, 10 * DAY}, index.getLoadDays(hashes));
+
+        index.remove("AAAAAAAAAAAA");
+        assertEquals(-1, index.getLoadDay(ASCII.getBytes("AAAAAAAAAAAA")));
+        assertEquals(2, index.size());
+
+        index.invalidate();
+        assertFalse(index.isReady());
+        assertEquals(LoadDateIndex.UNKNOWN, index.getLoadDays(hashes)[0]);
+    }
+
+    /**
+     * an abandoned load consumes the queue but does not change the index
+     */
+    @Test
+    public void testAbandonedLoad() throws InterruptedException {
+        final LoadDateIndex index = new LoadDateIndex();
+        final int gen = index.startLoad();
+        index.invalidate();
+        final BlockingQueue<SolrDocument> docs = new LinkedBlockingQueue<SolrDocument>();
+        docs.put(doc("AAAAAAAAAAAA", 10 * DAY));
+        docs.put(AbstractSolrConnector.POISON_DOCUMENT);
+        assertFalse(index.load(docs, gen));
+        assertTrue(docs.isEmpty());
+        assertFalse(index.isReady());
+        assertEquals(0, index.size());
+    }
+
+}
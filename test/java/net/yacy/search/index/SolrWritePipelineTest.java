@@ -0,0 +1,175 @@
+package net.yacy.search.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.Test;
+
+public class SolrWritePipelineTest {
+
+    /**
+     * a target which records the batches and rejects batches containing the document with the id "broken"
+     */
+    private static class RecordingTarget implements SolrWritePipeline.Target {
+        final List<Integer> batches = new ArrayList<Integer>();
+        final List<String> ids = new ArrayList<String>();
+        @Override
+        public synchronized void add(final Collection<SolrInputDocument> docs) throws IOException {
+            for (final SolrInputDocument doc: docs) {
+                if ("broken".equals(doc.getFieldValue("id"))) throw new IOException("broken document");
+            }
+            this.batches.add(docs.size());
+            for (final SolrInputDocument doc: docs) this.ids.add((String) doc.getFieldValue("id"));
+        }
+    }
+
+    private static SolrInputDocument doc(final String id) {
+        final SolrInputDocument doc = new SolrInputDocument();
+        doc.setField("id", id);
+        return doc;
+    }
+
+    /**
+     * documents are written in batches of at most the batch size and all of them are written after a flush
+     */
+    @Test
+    public void testBatches() throws IOException {
+        final RecordingTarget target = new RecordingTarget();
+        final SolrWritePipeline pipeline = new SolrWritePipeline("test", target, 100, 10, 60000);
+        try {
+            for (int i = 0; i < 25; i++) pipeline.put(doc("doc" + i));
+            pipeline.flush();
+            assertEquals(0, pipeline.size());
+            assertEquals(25, pipeline.written());
+            synchronized (target) {
+                assertEquals(25, target.ids.size());
+                for (int i = 0; i < 25; i++) assertEquals("doc" + i, target.ids.get(i));
+                for (final int size: target.batches) assertTrue(size <= 10);
+                assertTrue(target.batches.size() >= 3);
+            }
+        } finally {
+            pipeline.close();
+        }
+    }
+
+    /**
+     * a broken document does not discard the other documents of its batch
+     */
+    @Test
+    public void testBrokenDocument() throws IOException {
+        final RecordingTarget target = new RecordingTarget();
+        final SolrWritePipeline pipeline = new SolrWritePipeline("test", target, 100, 10, 60000);
+        try {
+            pipeline.put(doc("a"));
+            pipeline.put(doc("broken"));
+            pipeline.put(doc("b"));
+            pipeline.flush();
+            assertEquals(2, pipeline.written());
+            assertEquals(1, pipeline.failed());
+            synchronized (target) {
+                assertEquals(2, target.ids.size());
+                assertTrue(target.ids.contains("a"));
+                assertTrue(target.ids.contains("b"));
+            }
+        } finally {
+            pipeline.close();
+        }
+    }
+
+    /**
+     * close writes the queued documents; later documents are written synchronously
+     */
+    @Test
+    public void testClose() throws IOException {
+        final RecordingTarget target = new RecordingTarget();
+        final SolrWritePipeline pipeline = new SolrWritePipeline("test", target, 100, 10, 60000);
+        for (int i = 0; i < 5; i++) pipeline.put(doc("doc" + i));
+        pipeline.close();
+        assertEquals(0, pipeline.size());
+        assertEquals(5, target.ids.size());
+        pipeline.put(doc("late"));
+        assertEquals(6, target.ids.size());
+    }
+
+    /**
+     * flush waits for the documents which were put before, not for the documents which other producers put meanwhile
+     */
+    @Test
+    public void testFlushWithConcurrentProducer() throws Exception {
+        final RecordingTarget target = new RecordingTarget() {
+            @Override
+            public synchronized void add(final Collection<SolrInputDocument> docs) throws IOException {
+                super.add(docs);
+                try {
+                    Thread.sleep(5);
+                } catch (final InterruptedException e) {
+                }
+            }
+        };
+        final SolrWritePipeline pipeline = new SolrWritePipeline("test", target, 100, 10, 60000);
+        final AtomicBoolean stop = new AtomicBoolean(false);
+        final Thread producer = new Thread() {
+            @Override
+            public void run() {
+                int i = 0;
+                try {
+                    while (!stop.get()) pipeline.put(doc("p" + i++));
+                } catch (final IOException e) {
+                }
+            }
+        };
+        producer.start();
+        try {
+            Thread.sleep(100);
+            pipeline.put(doc("mine"));
+            final long start = System.currentTimeMillis();
+            pipeline.flush();
+            assertTrue(System.currentTimeMillis() - start < 10000);
+            synchronized (target) {
+                assertTrue(target.ids.contains("mine"));
+            }
+            assertTrue(pipeline.size() > 0);
+        } finally {
+            stop.set(true);
+            producer.join();
+            pipeline.close();
+        }
+    }
+
+    /**
+     * documents which could not be written are given to the failure handler
+     */
+    @Test
+    public void testFailureHandler() throws IOException {
+        final RecordingTarget target = new RecordingTarget();
+        final SolrWritePipeline pipeline = new SolrWritePipeline("test", target, 100, 10, 60000);
+        final List<Object> failed = new ArrayList<Object>();
+        pipeline.setFailureHandler(new SolrWritePipeline.FailureHandler() {
+            @Override
+            public void failed(final SolrInputDocument doc, final Throwable e) {
+                synchronized (failed) {
+                    failed.add(doc.getFieldValue("id"));
+                }
+            }
+        });
+        try {
+            pipeline.put(doc("a"));
+            pipeline.put(doc("broken"));
+            pipeline.flush();
+            synchronized (failed) {
+                assertEquals(1, failed.size());
+                assertEquals("broken", failed.get(0));
+            }
+        } finally {
+            pipeline.close();
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+package net.yacy.search.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.junit.Test;
+
+import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.cora.sorting.ClusteredScoreMap;
+import net.yacy.cora.sorting.ReversibleScoreMap;
+import net.yacy.search.schema.CollectionSchema;
+
+public class QueryResultCacheTest {
+
+    private static byte[] key(final String q) {
+        final ModifiableSolrParams params = new ModifiableSolrParams();
+        params.set("q", q);
+        return QueryResultCache.key(params);
+    }
+
+    private static SolrDocumentList docs(final int n) {
+        final SolrDocumentList docs = new SolrDocumentList();
+        for (int i = 0; i < n; i++) {
+            final SolrDocument doc = new SolrDocument();
+            doc.setField(CollectionSchema.id.getSolrFieldName(), "AAAAAAAAAAA" + i);
+            doc.setField("score", 1.0f / (i + 1));
+            docs.add(doc);
+        }
+        docs.setNumFound(1000);
+        return docs;
+    }
+
+    private static void put(final QueryResultCache cache, final String q, final long generation) {
+        final Map<String, ReversibleScoreMap<String>> facets = new HashMap<String, ReversibleScoreMap<String>>();
+        final ReversibleScoreMap<String> hosts = new ClusteredScoreMap<String>(UTF8.insensitiveUTF8Comparator);
+        hosts.set("yacy.net", 7);
+        hosts.set("example.org", 3);
+        facets.put(CollectionSchema.host_s.getSolrFieldName(), hosts);
+        final Map<String, LinkedHashSet<String>> snippets = new HashMap<String, LinkedHashSet<String>>();
+        final LinkedHashSet<String> s = new LinkedHashSet<String>();
+        s.add("a <b>snippet</b>\nwith two lines");
+        snippets.put("AAAAAAAAAAA0", s);
+        cache.put(key(q), generation, docs(5), facets, snippets);
+    }
+
+    /**
+     * an entry is only valid for the index generation which computed it and survives a restart
+     */
+    @Test
+    public void testGeneration() throws IOException {
+        final File file = File.createTempFile("QueryResultCacheTest", ".heap");
+        file.delete();
+        try {
+            QueryResultCache cache = new QueryResultCache(file, 10);
+            put(cache, "yacy", 42);
+            cache.close();
+            cache = new QueryResultCache(file, 10);
+            final QueryResultCache.Entry entry = cache.get(key("yacy"), 42);
+            assertNotNull(entry);
+            assertEquals(7, entry.facets().get(CollectionSchema.host_s.getSolrFieldName()).get("yacy.net"));
+            assertEquals("a <b>snippet</b>\nwith two lines", entry.snippets().get("AAAAAAAAAAA0").iterator().next());
+            assertNull(cache.get(key("other"), 42));
+            // the index has changed: the entry is removed
+            assertNull(cache.get(key("yacy"), 43));
+            assertNull(cache.get(key("yacy"), 42));
+            assertEquals(0, cache.size());
+            cache.close();
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * the least recently used entries are removed if the cache exceeds its size
+     */
+    @Test
+    public void testMaxsize() throws IOException {
+        final File file = File.createTempFile("QueryResultCacheTest", ".heap");
+        file.delete();
+        try {
+            final QueryResultCache cache = new QueryResultCache(file, 3);
+            put(cache, "a", 1);
+            put(cache, "b", 1);
+            put(cache, "c", 1);
+            assertNotNull(cache.get(key("a"), 1));
+            put(cache, "d", 1);
+            assertEquals(3, cache.size());
+            assertNull(cache.get(key("b"), 1));
+            assertNotNull(cache.get(key("a"), 1));
+            assertNotNull(cache.get(key("c"), 1));
+            assertNotNull(cache.get(key("d"), 1));
+            cache.close();
+        } finally {
+            file.delete();
+        }
+    }
+
+}
@@ -0,0 +1,120 @@
+package net.yacy.search.schema;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.search.index.SolrWritePipeline;
+import net.yacy.search.schema.CollectionConfiguration.CRV;
+
+public class CollectionConfigurationTest {
+
+    @AfterClass
+    public static void tearDownClass() {
+        ConcurrentLog.shutdown();
+    }
+
+    private static Map<String, double[]> crt(final String... ids) {
+        final Map<String, double[]> crt = new HashMap<String, double[]>();
+        for (final String id: ids) crt.put(id, new double[]{0.0d, 0.0d});
+        return crt;
+    }
+
+    /**
+     * without stored values all documents of a host start with an equal share
+     */
+    @Test
+    public void testSeedWithoutStoredRankings() {
+        final Map<String, double[]> crt = crt("a", "b", "c", "d");
+        CollectionConfiguration.seedRankings(crt, null);
+        for (final double[] v: crt.values()) assertEquals(0.25d, v[0], 1e-9);
+    }
+
+    /**
+     * stored values are the start values, new documents get an equal share and all values are scaled to a sum of 1
+     */
+    @Test
+    public void testSeedWithStoredRankings() {
+        final Map<String, double[]> crt = crt("a", "b", "c", "d");
+        final Map<String, CRV> stored = new HashMap<String, CRV>();
+        stored.put("a", new CRV(3, 0.5d, 10));
+        stored.put("b", new CRV(3, 0.25d, 9));
+        stored.put("c", new CRV(3, 0.0d, 1)); // no usable value: treated as new document
+        CollectionConfiguration.seedRankings(crt, stored);
+
+        final double sum = 0.5d + 0.25d + 0.25d + 0.25d;
+        assertEquals(0.5d / sum, crt.get("a")[0], 1e-9);
+        assertEquals(0.25d / sum, crt.get("b")[0], 1e-9);
+        assertEquals(0.25d / sum, crt.get("c")[0], 1e-9);
+        assertEquals(0.25d / sum, crt.get("d")[0], 1e-9);
+        double total = 0.0d;
+        for (final double[] v: crt.values()) total += v[0];
+        assertEquals(1.0d, total, 1e-9);
+    }
+
+    /**
+     * only rankings which differ from the stored values in count, norm or chance are marked as changed
+     */
+    @Test
+    public void testMarkChangedRankings() {
+        final Map<String, CRV> stored = new HashMap<String, CRV>();
+        stored.put("same", new CRV(4, 0.3d, 7));
+        stored.put("count", new CRV(3, 0.3d, 7));
+        stored.put("norm", new CRV(4, 0.3d, 6));
+        stored.put("chance", new CRV(4, 0.2d, 7));
+        stored.put("digits", new CRV(4, 0.30000001d, 7));
+        final Map<String, CRV> rankings = new HashMap<String, CRV>();
+        for (final String id: new String[]{"same", "count", "norm", "chance", "digits", "new"}) rankings.put(id, new CRV(4, 0.3d, 7));
+        CollectionConfiguration.markChangedRankings(rankings, stored, 1000000);
+
+        assertFalse(rankings.get("same").changed);
+        assertFalse(rankings.get("digits").changed);
+        assertTrue(rankings.get("count").changed);
+        assertTrue(rankings.get("norm").changed);
+        assertTrue(rankings.get("chance").changed);
+        assertTrue(rankings.get("new").changed);
+    }
+
+    /**
+     * only changed rankings are written, with the ranking fields only, and the rankings are consumed
+     */
+    @Test
+    public void testUpdateChangedRankings() {
+        final List<SolrInputDocument> written = new ArrayList<SolrInputDocument>();
+        final SolrWritePipeline.Target target = new SolrWritePipeline.Target() {
+            @Override
+            public synchronized void add(final Collection<SolrInputDocument> sids) throws IOException {
+                written.addAll(sids);
+            }
+        };
+        final Map<String, CRV> rankings = new HashMap<String, CRV>();
+        final CRV changed = new CRV(2, 0.75d, 10);
+        rankings.put("changed", changed);
+        final CRV unchanged = new CRV(2, 0.25d, 9);
+        unchanged.changed = false;
+        rankings.put("unchanged", unchanged);
+
+        assertEquals(1, CollectionConfiguration.updateChangedRankings(target, rankings));
+
+        assertTrue(rankings.isEmpty());
+        assertEquals(1, written.size());
+        final SolrInputDocument sid = written.get(0);
+        assertEquals("changed", sid.getFieldValue(CollectionSchema.id.getSolrFieldName()));
+        assertEquals(2, sid.getFieldValue(CollectionSchema.cr_host_count_i.getSolrFieldName()));
+        assertEquals(0.75d, (Double) sid.getFieldValue(CollectionSchema.cr_host_chance_d.getSolrFieldName()), 1e-9);
+        assertEquals(10, sid.getFieldValue(CollectionSchema.cr_host_norm_i.getSolrFieldName()));
+        assertEquals(4, sid.getFieldNames().size());
+    }
+}
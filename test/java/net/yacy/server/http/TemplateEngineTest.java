@@ -0,0 +1,133 @@
+package net.yacy.server.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.kelondro.util.FileUtils;
+import net.yacy.server.serverObjects;
+
+public class TemplateEngineTest {
+
+    private static String legacy(final byte[] template, final serverObjects pattern) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TemplateEngine.writeTemplate("test", new ByteArrayInputStream(template), out, pattern);
+        return UTF8.String(out.toByteArray());
+    }
+
+    private static String compiled(final byte[] template, final serverObjects pattern) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompiledTemplate.fromBytes("test", template).write(out, pattern);
+        return UTF8.String(out.toByteArray());
+    }
+
+    private static void assertSame(final String template, final serverObjects pattern) throws IOException {
+        final byte[] t = UTF8.getBytes(template);
+        assertEquals(template, legacy(t, pattern), compiled(t, pattern));
+    }
+
+    /**
+     * the compiled template gives the same output as the streaming engine for all template constructs
+     */
+    @Test
+    public void testConstructs() throws IOException {
+        final serverObjects p = new serverObjects();
+        p.put("name", "John");
+        p.put("times", 3);
+        p.put("times_0_daytime", 0);
+        p.put("times_1_daytime", 1);
+        p.put("times_2_daytime", "true");
+        p.put("times_1_daytime_x", "inner");
+        p.put("many", 7);
+        p.put("bad", "x");
+        p.put("flag", "false");
+        p.put("empty", "");
+        final String[] templates = new String[] {
+            "plain text without patterns",
+            "Hello #[name]#, #[unknown]#!",
+            "#{times}#\nGood #(daytime)#morning::evening #[x]#::night#(/daytime)#, #[name]#\n#{/times}#\nend",
+            "#(many)#zero::one::two#(/many)#",
+            "#(flag)#a::b#(/flag)# #(missing)#a::b#(/missing)#",
+            "#(flag)#outer #(inner)#x::y#(/inner)# a:b::second#(/flag)#",
+            "#(flag)#a:#(b)#c#(/b)#::d#(/flag)#",
+            "#{bad}#x#{/bad}# #{empty}#y#{/empty}# #{unclosed}#z",
+            "a # b ## c #x #[ d",
+            "#(flag)#a::b",
+            "#(bad)#a::%%x b::%%y c#(/bad)# after",
+            "#(bad)#a::%%z b#(/bad)# after",
+            "tail #",
+        };
+        for (final String t: templates) {
+            if (t.equals("tail #")) {
+                // the streaming engine writes a garbage byte after a trailing single hash
+                assertEquals("tail #", compiled(UTF8.getBytes(t), p));
+                continue;
+            }
+            assertSame(t, p);
+        }
+    }
+
+    private static final Pattern KEYS = Pattern.compile("#([\\[\\{\\(])([^\\]\\}\\)#/%]+)[\\]\\}\\)]#");
+
+    /**
+     * render all templates in htroot which do not include other files with generated pattern values
+     * and compare the output with the output of the streaming engine
+     */
+    @Test
+    public void testHtrootTemplates() throws IOException {
+        final List<File> files = new ArrayList<File>();
+        collect(new File("htroot"), files);
+        int count = 0;
+        for (final File f: files) {
+            final byte[] template = FileUtils.read(f);
+            final String s = UTF8.String(template);
+            if (s.contains("#%")) continue; // includes need a running peer to find the localized files
+            final Set<String> normal = new LinkedHashSet<String>(), multi = new LinkedHashSet<String>(), alt = new LinkedHashSet<String>();
+            final Matcher m = KEYS.matcher(s);
+            while (m.find()) {
+                final char type = m.group(1).charAt(0);
+                (type == '[' ? normal : type == '{' ? multi : alt).add(m.group(2));
+            }
+            final List<String> prefixes = new ArrayList<String>();
+            prefixes.add("");
+            for (final String k: multi) for (int i = 0; i < 2; i++) prefixes.add(k + "_" + i + "_");
+            for (final String k: alt) prefixes.add(k + "_");
+            for (int variant = 0; variant < 3; variant++) {
+                final serverObjects p = new serverObjects();
+                int v = variant;
+                for (final String prefix: prefixes) {
+                    for (final String k: normal) p.put(prefix + k, "v<" + k + ">&");
+                    for (final String k: multi) p.put(prefix + k, (v++ % 3));
+                    for (final String k: alt) p.put(prefix + k, (v++ % 4) == 3 ? "true" : Integer.toString(v % 4));
+                }
+                assertEquals(f.getPath() + ", variant " + variant, legacy(template, p), compiled(template, p));
+            }
+            count++;
+        }
+        // htroot contains more than a hundred templates without includes; fewer means that templates were skipped or not found
+        assertTrue("compared only " + count + " templates", count >= 100);
+    }
+
+    private static void collect(final File dir, final List<File> files) {
+        final File[] list = dir.listFiles();
+        if (list == null) return;
+        for (final File f: list) {
+            if (f.isDirectory()) collect(f, files);
+            else if (f.getName().endsWith(".html") || f.getName().endsWith(".xml") || f.getName().endsWith(".json") || f.getName().endsWith(".rss")) files.add(f);
+        }
+    }
+
+}
@@ -0,0 +1,99 @@
+// Base64OrderBenchmark.java
+// -----------------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+package net.yacy.cora.order;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.yacy.kelondro.index.BenchmarkData;
+
+/**
+ * Base64Order comparisons of url hashes. Random pairs differ in the first character in most
+ * cases; pairs with a common prefix and pairs of identical hashes compare (almost) the whole key.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class Base64OrderBenchmark {
+
+    private static final int PAIRS = 4096;
+
+    private byte[][] a, b, prefixA, prefixB, equal;
+    private int next;
+
+    @Setup
+    public void setup() {
+        final BenchmarkData data = new BenchmarkData(0);
+        this.a = data.urlHashes(PAIRS);
+        this.b = data.urlHashes(PAIRS);
+        this.prefixA = new byte[PAIRS][];
+        this.prefixB = new byte[PAIRS][];
+        this.equal = new byte[PAIRS][];
+        for (int i = 0; i < PAIRS; i++) {
+            // same url hash except the last character of the path hash: a long common prefix
+            this.prefixA[i] = this.a[i].clone();
+            this.prefixB[i] = this.a[i].clone();
+            this.prefixB[i][4] = this.b[i][4];
+            this.equal[i] = this.a[i].clone();
+        }
+        this.next = 0;
+    }
+
+    @Benchmark
+    public int compareRandom() {
+        final int i = this.next++ & (PAIRS - 1);
+        return Base64Order.enhancedCoder.compare(this.a[i], this.b[i]);
+    }
+
+    @Benchmark
+    public int compareSamePrefix() {
+        final int i = this.next++ & (PAIRS - 1);
+        return Base64Order.enhancedCoder.compare(this.prefixA[i], this.prefixB[i]);
+    }
+
+    @Benchmark
+    public int compareEqual() {
+        final int i = this.next++ & (PAIRS - 1);
+        return Base64Order.enhancedCoder.compare(this.a[i], this.equal[i]);
+    }
+
+    @Benchmark
+    public boolean equal() {
+        final int i = this.next++ & (PAIRS - 1);
+        return Base64Order.enhancedCoder.equal(this.a[i], this.equal[i]);
+    }
+
+    @Benchmark
+    public long cardinal() {
+        return Base64Order.enhancedCoder.cardinal(this.a[this.next++ & (PAIRS - 1)]);
+    }
+
+}
@@ -0,0 +1,165 @@
+// WeakPriorityBlockingQueueBenchmark.java
+// -----------------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+package net.yacy.cora.sorting;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.yacy.cora.sorting.WeakPriorityBlockingQueue.Element;
+import net.yacy.cora.sorting.WeakPriorityBlockingQueue.ReverseElement;
+
+/**
+ * Result collection of a search event: many search threads put ranked results into one bounded
+ * queue while the servlet takes the best results. The queue is compared with a queue which
+ * synchronizes all methods on one monitor, as the WeakPriorityBlockingQueue did before.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class WeakPriorityBlockingQueueBenchmark {
+
+    /**
+     * the common methods of both queue implementations
+     */
+    private interface ResultQueue {
+        void put(Element<Integer> element);
+        Element<Integer> poll();
+    }
+
+    /**
+     * the former implementation: a tree set, guarded by the monitor of the queue
+     */
+    private static final class SynchronizedQueue implements ResultQueue {
+
+        private final TreeSet<Element<Integer>> queue = new TreeSet<Element<Integer>>();
+        private final Semaphore enqueued = new Semaphore(0);
+        private final ArrayList<Element<Integer>> drained = new ArrayList<Element<Integer>>();
+        private final int maxsize;
+
+        private SynchronizedQueue(final int maxsize) {
+            this.maxsize = maxsize;
+        }
+
+        @Override
+        public synchronized void put(final Element<Integer> element) {
+            if (this.drained.contains(element)) return;
+            if (this.queue.size() == this.maxsize) {
+                if (this.queue.add(element)) this.queue.remove(this.queue.last());
+            } else {
+                if (this.queue.add(element)) this.enqueued.release();
+            }
+        }
+
+        @Override
+        public Element<Integer> poll() {
+            if (!this.enqueued.tryAcquire()) return null;
+            synchronized (this) {
+                final Element<Integer> element = this.queue.pollFirst();
+                if (this.drained.size() < this.maxsize) this.drained.add(element);
+                return element;
+            }
+        }
+    }
+
+    /**
+     * one queue for all threads of a group
+     */
+    @State(Scope.Group)
+    public static class Queue {
+
+        @Param({"concurrent", "synchronized"})
+        public String implementation;
+
+        @Param({"1000"})
+        public int maxsize;
+
+        private ResultQueue queue;
+
+        @Setup
+        public void setup() {
+            if ("synchronized".equals(this.implementation)) {
+                this.queue = new SynchronizedQueue(this.maxsize);
+            } else {
+                final WeakPriorityBlockingQueue<Integer> q = new WeakPriorityBlockingQueue<Integer>(this.maxsize, true);
+                this.queue = new ResultQueue() {
+                    @Override
+                    public void put(final Element<Integer> element) {
+                        q.put(element);
+                    }
+                    @Override
+                    public Element<Integer> poll() {
+                        return q.poll();
+                    }
+                };
+            }
+        }
+    }
+
+    /**
+     * the results of one search thread
+     */
+    @State(Scope.Thread)
+    public static class Producer {
+
+        private final Random random = new Random(System.nanoTime());
+
+        private Element<Integer> nextElement() {
+            return new ReverseElement<Integer>(this.random.nextInt(), this.random.nextInt(1000000));
+        }
+    }
+
+    /**
+     * 16 search threads put results
+     */
+    @Benchmark
+    @Group("fanIn")
+    @GroupThreads(16)
+    public void put(final Queue queue, final Producer producer) {
+        queue.queue.put(producer.nextElement());
+    }
+
+    /**
+     * the servlet takes results
+     */
+    @Benchmark
+    @Group("fanIn")
+    @GroupThreads(1)
+    public Element<Integer> poll(final Queue queue) {
+        return queue.queue.poll();
+    }
+
+}
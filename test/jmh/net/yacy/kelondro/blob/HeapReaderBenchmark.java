@@ -0,0 +1,109 @@
+// HeapReaderBenchmark.java
+// -----------------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+package net.yacy.kelondro.blob;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.index.BenchmarkData;
+import net.yacy.kelondro.util.FileUtils;
+
+/**
+ * HeapReader.get on a sealed heap file with blobs of the size of compressed RWI containers,
+ * read through the file or through the memory map. The heap is shared by all benchmark threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class HeapReaderBenchmark {
+
+    @Param({"20000"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean mapped;
+
+    private File dir;
+    private byte[][] lookups;
+    private HeapReader reader;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next = 0;
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        final BenchmarkData data = new BenchmarkData(0);
+        final byte[][] keys = data.urlHashes(this.size);
+        this.dir = File.createTempFile("HeapReaderBenchmark", "");
+        this.dir.delete();
+        this.dir.mkdirs();
+        final File heapFile = new File(this.dir, "benchmark.blob");
+        final Heap heap = new Heap(heapFile, 12, Base64Order.enhancedCoder, 1024 * 1024);
+        for (final byte[] key: keys) heap.insert(key, data.blob(100, 4000));
+        heap.close(true);
+        this.reader = new HeapReader(heapFile, 12, Base64Order.enhancedCoder);
+        if (this.mapped && !this.reader.mapReadAccess()) throw new IOException("cannot map " + heapFile);
+        this.lookups = data.lookupKeys(keys, 0.9d, 4096);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.reader.close(false);
+        FileUtils.deletedelete(this.dir);
+    }
+
+    /**
+     * lookup, 90% hits
+     */
+    @Benchmark
+    public byte[] get(final Cursor c) throws IOException, SpaceExceededException {
+        return this.reader.get(this.lookups[c.next++ & 4095]);
+    }
+
+    /**
+     * the same lookups with four concurrent threads
+     */
+    @Benchmark
+    @Threads(4)
+    public byte[] getConcurrent(final Cursor c) throws IOException, SpaceExceededException {
+        return this.reader.get(this.lookups[c.next++ & 4095]);
+    }
+
+}
@@ -0,0 +1,128 @@
+// BenchmarkData.java
+// -----------------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.index;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import net.yacy.cora.document.encoding.ASCII;
+
+/**
+ * Generator for benchmark data which looks like the data in a running peer.
+ * URL hashes have the YaCy layout: five characters path hash, one flag character and
+ * six characters host hash. The hosts follow a Zipf distribution, so few hosts have many
+ * URLs like in a real index, which gives long common suffixes and clustered keys.
+ * All generators are deterministic for a given seed.
+ */
+public class BenchmarkData {
+
+    private static final String ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_"; // the enhancedCoder alphabet
+    private static final String FLAGS = "AAAAAAAEIQ"; // mostly http on default port
+
+    private final Random random;
+    private final byte[][] hosts;
+    private final double[] hostWeights; // cumulative Zipf weights of the hosts
+
+    public BenchmarkData(final long seed, final int hostCount) {
+        this.random = new Random(seed);
+        this.hosts = new byte[hostCount][];
+        this.hostWeights = new double[hostCount];
+        double sum = 0.0d;
+        for (int i = 0; i < hostCount; i++) {
+            this.hosts[i] = randomChars(6);
+            sum += 1.0d / (i + 1);
+            this.hostWeights[i] = sum;
+        }
+        for (int i = 0; i < hostCount; i++) this.hostWeights[i] /= sum;
+    }
+
+    public BenchmarkData(final long seed) {
+        this(seed, 10000);
+    }
+
+    public Random random() {
+        return this.random;
+    }
+
+    private byte[] randomChars(final int length) {
+        final byte[] b = new byte[length];
+        for (int i = 0; i < length; i++) b[i] = (byte) ALPHABET.charAt(this.random.nextInt(ALPHABET.length()));
+        return b;
+    }
+
+    private byte[] host() {
+        int h = Arrays.binarySearch(this.hostWeights, this.random.nextDouble());
+        if (h < 0) h = -h - 1;
+        return this.hosts[Math.min(h, this.hosts.length - 1)];
+    }
+
+    /**
+     * @return a random url hash with a host hash from the Zipf distributed host list
+     */
+    public byte[] urlHash() {
+        final byte[] hash = new byte[12];
+        System.arraycopy(randomChars(5), 0, hash, 0, 5);
+        hash[5] = (byte) FLAGS.charAt(this.random.nextInt(FLAGS.length()));
+        System.arraycopy(host(), 0, hash, 6, 6);
+        return hash;
+    }
+
+    /**
+     * @param count
+     * @return count distinct url hashes in random order
+     */
+    public byte[][] urlHashes(final int count) {
+        final Set<String> seen = new HashSet<String>(count * 2);
+        final byte[][] hashes = new byte[count][];
+        int c = 0;
+        while (c < count) {
+            final byte[] h = urlHash();
+            if (seen.add(ASCII.String(h))) hashes[c++] = h;
+        }
+        return hashes;
+    }
+
+    /**
+     * @param hashes
+     * @param share the part of the returned hashes which is taken from the given hashes
+     * @param count
+     * @return count hashes where the given share are hits from the given array and the rest are (most probably) misses
+     */
+    public byte[][] lookupKeys(final byte[][] hashes, final double share, final int count) {
+        final byte[][] keys = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            keys[i] = this.random.nextDouble() < share ? hashes[this.random.nextInt(hashes.length)] : urlHash();
+        }
+        return keys;
+    }
+
+    /**
+     * @param minLength
+     * @param maxLength
+     * @return a blob with random content, compressible like text
+     */
+    public byte[] blob(final int minLength, final int maxLength) {
+        final byte[] b = new byte[minLength + this.random.nextInt(maxLength - minLength + 1)];
+        for (int i = 0; i < b.length; i++) b[i] = (byte) ALPHABET.charAt(this.random.nextInt(16) + (i % 7 == 0 ? 26 : 0));
+        return b;
+    }
+
+}
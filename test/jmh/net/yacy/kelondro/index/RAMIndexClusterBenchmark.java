@@ -0,0 +1,113 @@
+// RAMIndexClusterBenchmark.java
+// -----------------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+package net.yacy.kelondro.index;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.util.SpaceExceededException;
+
+/**
+ * RAMIndexCluster get, has and replace with url hash keys. The cluster is shared by all benchmark
+ * threads; run with -t to measure the contention on the cluster partitions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RAMIndexClusterBenchmark {
+
+    private static final Row row = new Row("byte[] key-12, Cardinal handle-8 {b256}", Base64Order.enhancedCoder);
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param({"16"})
+    public int clusterSize;
+
+    private Row.Entry[] entries;
+    private byte[][] lookups;
+    private RAMIndexCluster index;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next = 0;
+    }
+
+    @Setup
+    public void setup() throws SpaceExceededException {
+        final BenchmarkData data = new BenchmarkData(0);
+        final byte[][] keys = data.urlHashes(this.size);
+        this.entries = new Row.Entry[this.size];
+        this.index = new RAMIndexCluster("benchmark", row, this.clusterSize);
+        for (int i = 0; i < this.size; i++) {
+            this.entries[i] = row.newEntry();
+            this.entries[i].setCol(0, keys[i]);
+            this.entries[i].setCol(1, i * 1000L);
+            this.index.addUnique(this.entries[i]);
+        }
+        this.index.optimize();
+        this.lookups = data.lookupKeys(keys, 0.8d, 4096);
+    }
+
+    /**
+     * lookup, 80% hits
+     */
+    @Benchmark
+    public Row.Entry get(final Cursor c) {
+        return this.index.get(this.lookups[c.next++ & 4095], false);
+    }
+
+    @Benchmark
+    public boolean has(final Cursor c) {
+        return this.index.has(this.lookups[c.next++ & 4095]);
+    }
+
+    /**
+     * replace an existing entry
+     */
+    @Benchmark
+    public Row.Entry replace(final Cursor c) throws SpaceExceededException {
+        return this.index.replace(this.entries[c.next++ % this.size]);
+    }
+
+    /**
+     * the same lookups with four concurrent threads
+     */
+    @Benchmark
+    @Threads(4)
+    public Row.Entry getConcurrent(final Cursor c) {
+        return this.index.get(this.lookups[c.next++ & 4095], false);
+    }
+
+}
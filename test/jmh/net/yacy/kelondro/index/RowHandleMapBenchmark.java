@@ -0,0 +1,83 @@
+// RowHandleMapBenchmark.java
+// -----------------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+package net.yacy.kelondro.index;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.util.SpaceExceededException;
+
+/**
+ * RowHandleMap get and put with url hash keys, like the index of a heap file
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RowHandleMapBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int size;
+
+    private byte[][] keys;
+    private byte[][] lookups;
+    private RowHandleMap map;
+    private int next;
+
+    @Setup
+    public void setup() throws SpaceExceededException {
+        final BenchmarkData data = new BenchmarkData(0);
+        this.keys = data.urlHashes(this.size);
+        this.map = new RowHandleMap(12, Base64Order.enhancedCoder, 8, this.size, "benchmark");
+        for (int i = 0; i < this.size; i++) this.map.putUnique(this.keys[i], i * 1000L);
+        this.lookups = data.lookupKeys(this.keys, 0.8d, 4096);
+        this.next = 0;
+    }
+
+    /**
+     * lookup, 80% hits
+     */
+    @Benchmark
+    public long get() {
+        return this.map.get(this.lookups[this.next++ & 4095]);
+    }
+
+    /**
+     * overwrite the value of an existing key
+     */
+    @Benchmark
+    public long put() throws SpaceExceededException {
+        final int i = this.next++ % this.size;
+        return this.map.put(this.keys[i], i * 1000L);
+    }
+
+}
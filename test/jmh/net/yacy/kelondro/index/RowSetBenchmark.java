@@ -0,0 +1,115 @@
+// RowSetBenchmark.java
+// -----------------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+package net.yacy.kelondro.index;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.util.SpaceExceededException;
+
+/**
+ * RowSet add, sort and lookup with url hash keys, as used for the RWI references and the url index
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RowSetBenchmark {
+
+    private static final Row row = new Row("byte[] key-12, Cardinal count-4 {b256}, byte[] payload-16", Base64Order.enhancedCoder);
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    private Row.Entry[] entries;
+    private byte[][] lookups;
+    private RowSet sorted;
+    private int next;
+
+    @Setup
+    public void setup() throws SpaceExceededException {
+        final BenchmarkData data = new BenchmarkData(0);
+        final byte[][] keys = data.urlHashes(this.size);
+        this.entries = new Row.Entry[this.size];
+        for (int i = 0; i < this.size; i++) {
+            this.entries[i] = row.newEntry();
+            this.entries[i].setCol(0, keys[i]);
+            this.entries[i].setCol(1, i);
+            this.entries[i].setCol(2, data.blob(16, 16));
+        }
+        this.sorted = new RowSet(row, this.size);
+        for (final Row.Entry e: this.entries) this.sorted.addUnique(e);
+        this.sorted.sort();
+        this.lookups = data.lookupKeys(keys, 0.8d, 4096);
+        this.next = 0;
+    }
+
+    /**
+     * append all entries without sorting
+     */
+    @Benchmark
+    public RowSet addUnique() throws SpaceExceededException {
+        final RowSet set = new RowSet(row, this.size);
+        for (final Row.Entry e: this.entries) set.addUnique(e);
+        return set;
+    }
+
+    /**
+     * append all entries and sort the set, as done before a RowSet is dumped or merged
+     */
+    @Benchmark
+    public RowSet addUniqueAndSort() throws SpaceExceededException {
+        final RowSet set = new RowSet(row, this.size);
+        for (final Row.Entry e: this.entries) set.addUnique(e);
+        set.sort();
+        return set;
+    }
+
+    /**
+     * put entries one by one; put checks for an existing key before it adds the entry
+     */
+    @Benchmark
+    public RowSet put() throws SpaceExceededException {
+        final RowSet set = new RowSet(row, this.size);
+        for (final Row.Entry e: this.entries) set.put(e);
+        return set;
+    }
+
+    /**
+     * lookup in a sorted set, 80% hits
+     */
+    @Benchmark
+    public Row.Entry get() {
+        return this.sorted.get(this.lookups[this.next++ & 4095], false);
+    }
+
+}
@@ -0,0 +1,145 @@
+// ReferenceContainerBenchmark.java
+// -----------------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+package net.yacy.kelondro.rwi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.data.word.WordReference;
+import net.yacy.kelondro.data.word.WordReferenceFactory;
+import net.yacy.kelondro.data.word.WordReferenceRow;
+import net.yacy.kelondro.index.BenchmarkData;
+
+/**
+ * Conjunction and exclusion of RWI reference containers as done for a search with two words.
+ * The size ratio selects the join method: similar sizes are joined by enumeration, a small
+ * container and a large container are joined by lookups in the large container.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ReferenceContainerBenchmark {
+
+    private static final ReferenceFactory<WordReference> factory = new WordReferenceFactory();
+
+    @Param({"1000", "100000"})
+    public int small;
+
+    @Param({"100000"})
+    public int large;
+
+    /** the share of the references of the small container which are also in the large container */
+    @Param({"0.1", "0.5"})
+    public double overlap;
+
+    private ReferenceContainer<WordReference> smallContainer, largeContainer, pivot;
+    private List<ReferenceContainer<WordReference>> fourWords; // ordered by size
+
+    @Setup
+    public void setup() throws SpaceExceededException {
+        final BenchmarkData data = new BenchmarkData(0);
+        final byte[][] largeHashes = data.urlHashes(this.large);
+        final byte[][] smallHashes = data.lookupKeys(largeHashes, this.overlap, this.small);
+        this.largeContainer = container(data, data.urlHash(), largeHashes);
+        this.smallContainer = container(data, data.urlHash(), smallHashes);
+        // a query with four words: the small container and three frequent words
+        this.fourWords = new ArrayList<ReferenceContainer<WordReference>>();
+        this.fourWords.add(this.smallContainer);
+        for (int i = 0; i < 3; i++) {
+            this.fourWords.add(container(data, data.urlHash(), data.lookupKeys(largeHashes, 0.7d, this.large)));
+        }
+    }
+
+    private static ReferenceContainer<WordReference> container(final BenchmarkData data, final byte[] termHash, final byte[][] urlHashes) throws SpaceExceededException {
+        final ReferenceContainer<WordReference> c = new ReferenceContainer<WordReference>(factory, termHash, urlHashes.length);
+        final long now = System.currentTimeMillis();
+        for (final byte[] urlHash: urlHashes) {
+            final int wordcount = 50 + data.random().nextInt(2000);
+            c.put(new WordReferenceRow(
+                    urlHash,
+                    20 + data.random().nextInt(80),           // url length
+                    1 + data.random().nextInt(6),             // url components
+                    data.random().nextInt(12),                // words in title
+                    wordcount,
+                    wordcount / (5 + data.random().nextInt(20)),
+                    now - data.random().nextInt(1000) * 86400000L,
+                    now,
+                    new byte[]{'e', 'n'},
+                    'h',
+                    data.random().nextInt(50),
+                    data.random().nextInt(50)));
+        }
+        c.sort();
+        return c;
+    }
+
+    @Setup(Level.Invocation)
+    public void copyPivot() throws SpaceExceededException {
+        // excludeDestructive removes references from the pivot
+        this.pivot = this.largeContainer.topLevelClone();
+    }
+
+    @Benchmark
+    public ReferenceContainer<WordReference> joinConstructive() throws SpaceExceededException {
+        return ReferenceContainer.joinConstructive(factory, this.smallContainer, this.largeContainer, Integer.MAX_VALUE);
+    }
+
+    /**
+     * join four containers with one pass of the n-way join
+     */
+    @Benchmark
+    public ReferenceContainer<WordReference> joinFourWords() throws SpaceExceededException {
+        return ReferenceContainer.joinConstructive(factory, this.fourWords, Integer.MAX_VALUE);
+    }
+
+    /**
+     * join four containers with a chain of pairwise joins
+     */
+    @Benchmark
+    public ReferenceContainer<WordReference> joinFourWordsPairwise() throws SpaceExceededException {
+        ReferenceContainer<WordReference> result = this.fourWords.get(0);
+        for (int i = 1; i < this.fourWords.size() && result != null; i++) {
+            result = ReferenceContainer.joinConstructive(factory, result, this.fourWords.get(i), Integer.MAX_VALUE);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public ReferenceContainer<WordReference> excludeDestructive() {
+        return ReferenceContainer.excludeDestructive(factory, this.pivot, this.smallContainer);
+    }
+
+}
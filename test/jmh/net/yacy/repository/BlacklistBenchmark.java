@@ -0,0 +1,100 @@
+// BlacklistBenchmark.java
+// -----------------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+package net.yacy.repository;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the check time of the static Blacklist.isListed() on the host/path maps with the
+ * compiled BlacklistMatcher on generated blacklists.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BlacklistBenchmark {
+
+    private static final int HOSTS = 65536;
+    private static final String PATH = "/some/path/index.html";
+
+    @Param({"200000"})
+    public int entries;
+
+    private Map<String, Set<Pattern>> matched, notMatched;
+    private BlacklistMatcher matcher;
+    private String[] hosts;
+    private int next;
+
+    private static String host(final Random r) {
+        return "h" + r.nextInt(1000000) + ".d" + r.nextInt(1000) + ".com";
+    }
+
+    @Setup
+    public void setup() {
+        final Random r = new Random(0);
+        this.matched = new HashMap<String, Set<Pattern>>();
+        this.notMatched = new HashMap<String, Set<Pattern>>();
+        final Pattern all = Pattern.compile(".*", Pattern.CASE_INSENSITIVE);
+        for (int i = 0; i < this.entries; i++) {
+            final Set<Pattern> paths = new HashSet<Pattern>();
+            paths.add(i % 10 == 0 ? Pattern.compile("ads/.*", Pattern.CASE_INSENSITIVE) : all);
+            final String host = host(r);
+            this.matched.put(i % 3 == 0 ? "*." + host : (i % 3 == 1 ? host.substring(0, host.length() - 4) + ".*" : host), paths);
+        }
+        final Set<Pattern> regexPaths = new HashSet<Pattern>();
+        regexPaths.add(Pattern.compile("(.*/|)banner.*", Pattern.CASE_INSENSITIVE));
+        this.notMatched.put(".*\\.ads\\..*", regexPaths);
+        this.notMatched.put("tracker[0-9]+\\..*", regexPaths);
+
+        this.hosts = new String[HOSTS];
+        for (int i = 0; i < HOSTS; i++) this.hosts[i] = (i % 4 == 0 ? "www." : "") + host(r);
+        this.matcher = new BlacklistMatcher(this.matched, this.notMatched);
+        this.next = 0;
+    }
+
+    @Benchmark
+    public boolean maps() {
+        return Blacklist.isListed(this.hosts[this.next++ & (HOSTS - 1)], PATH, this.matched, this.notMatched);
+    }
+
+    @Benchmark
+    public boolean matcher() {
+        return this.matcher.isListed(this.hosts[this.next++ & (HOSTS - 1)], PATH);
+    }
+
+}